@@ -2,6 +2,7 @@ package com.example.procesa_seniales_kafka;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
  * Aplicación principal del Microservicio Procesador de Señales.
@@ -12,6 +13,7 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
  * - Publica al tópico: horarios
  */
 @SpringBootApplication
+@EnableScheduling
 public class ProcesaSenialesKafkaApplication {
 
 	public static void main(String[] args) {
@@ -0,0 +1,34 @@
+package com.example.procesa_seniales_kafka.auditoria;
+
+/**
+ * Categorías de las líneas de log por mensaje. Cada una tiene su tasa de muestreo
+ * ({@code procesador.auditoria.muestreo.<nombre>}) y su propio logger ({@code auditoria.<nombre>}),
+ * de modo que su nivel también se puede ajustar por separado.
+ */
+public enum CategoriaAuditoria {
+
+    /** 📨 Registro recibido desde Kafka. */
+    RECEPCION("recepcion"),
+
+    /** 🚗 Detalle de la ubicación recibida. */
+    UBICACION("ubicacion"),
+
+    /** 🎯 Vehículo detectado cerca de una parada. */
+    PROXIMIDAD("proximidad"),
+
+    /** ✅ Horario publicado al tópico. */
+    PUBLICACION("publicacion"),
+
+    /** 📝 Registros pendientes de insertar en BD (ubicaciones y horarios). */
+    BD_PENDIENTE("bd-pendiente");
+
+    private final String nombre;
+
+    CategoriaAuditoria(String nombre) {
+        this.nombre = nombre;
+    }
+
+    public String getNombre() {
+        return nombre;
+    }
+}
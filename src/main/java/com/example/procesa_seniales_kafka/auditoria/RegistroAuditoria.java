@@ -0,0 +1,367 @@
+package com.example.procesa_seniales_kafka.auditoria;
+
+import com.example.procesa_seniales_kafka.journal.FilasCsv;
+import com.example.procesa_seniales_kafka.journal.JournalSegmentado;
+import com.example.procesa_seniales_kafka.model.HorarioVehiculo;
+import com.example.procesa_seniales_kafka.model.UbicacionVehiculo;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Sumidero de las líneas de log que se escriben por cada mensaje procesado.
+ *
+ * Cada categoría tiene una tasa de muestreo entre 0 y 1. En modo {@code sincrono} (por defecto)
+ * las líneas muestreadas se escriben en el hilo que llama, como siempre. En modo {@code asincrono}
+ * se encolan en una cola acotada que vacía un único hilo escritor: si la cola está llena la línea
+ * se descarta y se cuenta, nunca se bloquea al hilo de procesamiento. La cola no usa locks, para que
+ * los hilos que encolan (o que descartan con la cola llena) no compitan con el escritor. En este modo
+ * los registros "BD pendiente" no van al log sino a un archivo CSV de solo anexado, pensado para carga
+ * masiva.
+ *
+ * Si el {@link JournalSegmentado} está habilitado, los registros "BD pendiente" van siempre al journal
+ * (sin muestreo ni cola) y dejan de escribirse en el log o en el CSV.
+ */
+@Slf4j
+@Component
+public class RegistroAuditoria implements DisposableBean {
+
+    private static final int LOTE_ESCRITURA = 512;
+    private static final long ESPERA_COLA_VACIA_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final boolean asincrono;
+    private final JournalSegmentado journal;
+    private final double[] tasas;
+    private final Logger[] loggers;
+
+    private final LongAdder[] registrados;
+    private final LongAdder[] descartadosPorMuestreo;
+    private final LongAdder[] descartadosPorCola;
+
+    private final ConcurrentLinkedQueue<Object> cola;
+    private final AtomicInteger tamanioCola;
+    private final int capacidadCola;
+    private final Path archivoBdPendiente;
+    private final Thread escritor;
+    private volatile boolean activo = true;
+
+    @Autowired
+    public RegistroAuditoria(@Value("${procesador.auditoria.modo:sincrono}") String modo,
+                             @Value("${procesador.auditoria.capacidad-cola:65536}") int capacidadCola,
+                             @Value("${procesador.auditoria.bd-pendiente.archivo:logs/bd-pendiente.csv}") String archivoBdPendiente,
+                             Environment environment,
+                             JournalSegmentado journal) {
+        this(modo, capacidadCola, Path.of(archivoBdPendiente), tasasDesde(environment), journal);
+    }
+
+    /**
+     * @param tasas tasa de muestreo por categoría, indexada por {@link CategoriaAuditoria#ordinal()}
+     */
+    public RegistroAuditoria(String modo, int capacidadCola, Path archivoBdPendiente, double[] tasas) {
+        this(modo, capacidadCola, archivoBdPendiente, tasas, null);
+    }
+
+    /**
+     * @param tasas   tasa de muestreo por categoría, indexada por {@link CategoriaAuditoria#ordinal()}
+     * @param journal destino de los registros BD pendiente cuando está habilitado (puede ser null)
+     */
+    public RegistroAuditoria(String modo, int capacidadCola, Path archivoBdPendiente, double[] tasas,
+                             JournalSegmentado journal) {
+        CategoriaAuditoria[] categorias = CategoriaAuditoria.values();
+        this.asincrono = "asincrono".equalsIgnoreCase(modo.trim());
+        this.journal = journal != null && journal.habilitado() ? journal : null;
+        this.tasas = tasas.clone();
+        this.loggers = new Logger[categorias.length];
+        this.registrados = new LongAdder[categorias.length];
+        this.descartadosPorMuestreo = new LongAdder[categorias.length];
+        this.descartadosPorCola = new LongAdder[categorias.length];
+        for (CategoriaAuditoria categoria : categorias) {
+            int i = categoria.ordinal();
+            loggers[i] = LoggerFactory.getLogger("auditoria." + categoria.getNombre());
+            registrados[i] = new LongAdder();
+            descartadosPorMuestreo[i] = new LongAdder();
+            descartadosPorCola[i] = new LongAdder();
+        }
+
+        this.capacidadCola = capacidadCola;
+        if (!asincrono) {
+            this.cola = null;
+            this.tamanioCola = null;
+            this.archivoBdPendiente = null;
+            this.escritor = null;
+            return;
+        }
+
+        if (capacidadCola <= 0) {
+            throw new IllegalArgumentException("La capacidad de la cola de auditoría debe ser positiva: " + capacidadCola);
+        }
+        this.cola = new ConcurrentLinkedQueue<>();
+        this.tamanioCola = new AtomicInteger();
+        this.archivoBdPendiente = archivoBdPendiente;
+        this.escritor = Thread.ofPlatform().name("auditoria-escritor").daemon().unstarted(this::escribir);
+        escritor.start();
+        log.info("📝 Auditoría asíncrona habilitada: cola de {} entradas, BD pendiente en {}",
+                capacidadCola, archivoBdPendiente.toAbsolutePath());
+    }
+
+    /**
+     * Registra una línea de log de la categoría, si sale sorteada según su tasa de muestreo.
+     */
+    public void info(CategoriaAuditoria categoria, String formato, Object... argumentos) {
+        if (!muestreado(categoria)) {
+            return;
+        }
+        if (asincrono) {
+            encolar(categoria, new LineaLog(categoria, formato, argumentos));
+        } else {
+            loggers[categoria.ordinal()].info(formato, argumentos);
+            registrados[categoria.ordinal()].increment();
+        }
+    }
+
+    /**
+     * Registra una ubicación pendiente de insertar en BD.
+     */
+    public void ubicacionPendiente(UbicacionVehiculo ubicacion) {
+        if (journal != null) {
+            journal.registrar(ubicacion);
+            registrados[CategoriaAuditoria.BD_PENDIENTE.ordinal()].increment();
+            return;
+        }
+        if (!muestreado(CategoriaAuditoria.BD_PENDIENTE)) {
+            return;
+        }
+        if (asincrono) {
+            encolar(CategoriaAuditoria.BD_PENDIENTE, ubicacion);
+            return;
+        }
+        loggers[CategoriaAuditoria.BD_PENDIENTE.ordinal()].info(
+                "📝 [LOG BD PENDIENTE] UBICACION - vehiculoId: {}, placa: {}, lat: {}, lon: {}, velocidad: {}, estado: {}, ciudad: {}, pasajeros: {}, timestamp: {}",
+                ubicacion.getVehiculoId(),
+                ubicacion.getPlacaVehiculo(),
+                ubicacion.getLatitud(),
+                ubicacion.getLongitud(),
+                ubicacion.getVelocidad(),
+                ubicacion.getEstado(),
+                ubicacion.getCiudad(),
+                ubicacion.getPasajeros(),
+                ubicacion.getTimestamp());
+        registrados[CategoriaAuditoria.BD_PENDIENTE.ordinal()].increment();
+    }
+
+    /**
+     * Registra un horario pendiente de insertar en BD.
+     */
+    public void horarioPendiente(HorarioVehiculo horario) {
+        if (journal != null) {
+            journal.registrar(horario);
+            registrados[CategoriaAuditoria.BD_PENDIENTE.ordinal()].increment();
+            return;
+        }
+        if (!muestreado(CategoriaAuditoria.BD_PENDIENTE)) {
+            return;
+        }
+        if (asincrono) {
+            encolar(CategoriaAuditoria.BD_PENDIENTE, horario);
+            return;
+        }
+        loggers[CategoriaAuditoria.BD_PENDIENTE.ordinal()].info(
+                "📝 [LOG BD PENDIENTE] HORARIO - vehiculoId: {}, paradaId: {}, estado: {}, horarioEstimado: {}, horarioReal: {}, retraso: {} min",
+                horario.getVehiculoId(),
+                horario.getParadaId(),
+                horario.getEstado(),
+                horario.getHorarioEstimado(),
+                horario.getHorarioReal(),
+                horario.getRetrasoMinutos());
+        registrados[CategoriaAuditoria.BD_PENDIENTE.ordinal()].increment();
+    }
+
+    public boolean isAsincrono() {
+        return asincrono;
+    }
+
+    public int getEnCola() {
+        return tamanioCola == null ? 0 : tamanioCola.get();
+    }
+
+    public long getRegistrados(CategoriaAuditoria categoria) {
+        return registrados[categoria.ordinal()].sum();
+    }
+
+    public long getDescartadosPorMuestreo(CategoriaAuditoria categoria) {
+        return descartadosPorMuestreo[categoria.ordinal()].sum();
+    }
+
+    public long getDescartadosPorCola(CategoriaAuditoria categoria) {
+        return descartadosPorCola[categoria.ordinal()].sum();
+    }
+
+    public double getTasa(CategoriaAuditoria categoria) {
+        return tasas[categoria.ordinal()];
+    }
+
+    /**
+     * Detiene el escritor después de vaciar lo que quedaba en la cola.
+     */
+    @Override
+    public void destroy() throws InterruptedException {
+        if (escritor == null) {
+            return;
+        }
+        activo = false;
+        escritor.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    private boolean muestreado(CategoriaAuditoria categoria) {
+        double tasa = tasas[categoria.ordinal()];
+        if (tasa >= 1 || (tasa > 0 && ThreadLocalRandom.current().nextDouble() < tasa)) {
+            return true;
+        }
+        descartadosPorMuestreo[categoria.ordinal()].increment();
+        return false;
+    }
+
+    private void encolar(CategoriaAuditoria categoria, Object entrada) {
+        // Se reserva el lugar antes de encolar; si no había, se devuelve y se descarta la entrada
+        if (tamanioCola.incrementAndGet() > capacidadCola) {
+            tamanioCola.decrementAndGet();
+            descartadosPorCola[categoria.ordinal()].increment();
+            return;
+        }
+        cola.offer(entrada);
+    }
+
+    /**
+     * Bucle del hilo escritor: toma lotes de la cola, los escribe y vacía el buffer del archivo
+     * cada vez que la cola queda vacía. Un error de E/S descarta el lote y reabre el archivo en el siguiente.
+     */
+    private void escribir() {
+        List<Object> lote = new ArrayList<>(LOTE_ESCRITURA);
+        StringBuilder linea = new StringBuilder(256);
+        BufferedWriter archivo = null;
+        try {
+            while (activo || !cola.isEmpty()) {
+                Object entradaCola;
+                while (lote.size() < LOTE_ESCRITURA && (entradaCola = cola.poll()) != null) {
+                    lote.add(entradaCola);
+                }
+                if (lote.isEmpty()) {
+                    LockSupport.parkNanos(ESPERA_COLA_VACIA_NANOS);
+                    continue;
+                }
+                tamanioCola.addAndGet(-lote.size());
+
+                try {
+                    for (Object entrada : lote) {
+                        if (entrada instanceof LineaLog lineaLog) {
+                            loggers[lineaLog.categoria.ordinal()].info(lineaLog.formato, lineaLog.argumentos);
+                            registrados[lineaLog.categoria.ordinal()].increment();
+                            continue;
+                        }
+                        if (archivo == null) {
+                            archivo = abrirArchivoBdPendiente();
+                        }
+                        linea.setLength(0);
+                        if (entrada instanceof UbicacionVehiculo ubicacion) {
+                            lineaCsv(linea, ubicacion);
+                        } else {
+                            lineaCsv(linea, (HorarioVehiculo) entrada);
+                        }
+                        archivo.append(linea);
+                        registrados[CategoriaAuditoria.BD_PENDIENTE.ordinal()].increment();
+                    }
+                    if (archivo != null && cola.isEmpty()) {
+                        archivo.flush();
+                    }
+                } catch (IOException e) {
+                    log.error("❌ Error escribiendo registros BD pendiente en {}: {}", archivoBdPendiente, e.getMessage());
+                    cerrar(archivo);
+                    archivo = null;
+                }
+                lote.clear();
+            }
+        } finally {
+            cerrar(archivo);
+        }
+    }
+
+    private BufferedWriter abrirArchivoBdPendiente() throws IOException {
+        Path directorio = archivoBdPendiente.toAbsolutePath().getParent();
+        if (directorio != null) {
+            Files.createDirectories(directorio);
+        }
+        return Files.newBufferedWriter(archivoBdPendiente, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.WRITE);
+    }
+
+    private void cerrar(BufferedWriter archivo) {
+        if (archivo == null) {
+            return;
+        }
+        try {
+            archivo.close();
+        } catch (IOException e) {
+            log.warn("⚠️  No se pudo cerrar {}: {}", archivoBdPendiente, e.getMessage());
+        }
+    }
+
+    /**
+     * U,vehiculoId,placa,lat,lon,velocidad,estado,ciudad,pasajeros,timestamp
+     */
+    static void lineaCsv(StringBuilder linea, UbicacionVehiculo ubicacion) {
+        linea.append('U');
+        FilasCsv.campos(linea, ubicacion);
+        linea.append('\n');
+    }
+
+    /**
+     * H,vehiculoId,paradaId,estado,horarioEstimado,horarioReal,retrasoMinutos,timestamp
+     */
+    static void lineaCsv(StringBuilder linea, HorarioVehiculo horario) {
+        linea.append('H');
+        FilasCsv.campos(linea, horario);
+        linea.append('\n');
+    }
+
+    private static double[] tasasDesde(Environment environment) {
+        CategoriaAuditoria[] categorias = CategoriaAuditoria.values();
+        double[] tasas = new double[categorias.length];
+        for (CategoriaAuditoria categoria : categorias) {
+            tasas[categoria.ordinal()] = environment.getProperty(
+                    "procesador.auditoria.muestreo." + categoria.getNombre(), Double.class, 1.0);
+        }
+        return tasas;
+    }
+
+    private static final class LineaLog {
+        private final CategoriaAuditoria categoria;
+        private final String formato;
+        private final Object[] argumentos;
+
+        private LineaLog(CategoriaAuditoria categoria, String formato, Object[] argumentos) {
+            this.categoria = categoria;
+            this.formato = formato;
+            this.argumentos = argumentos;
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package com.example.procesa_seniales_kafka.catalogo;
+
+import com.example.procesa_seniales_kafka.geo.IndiceParadas;
+import com.example.procesa_seniales_kafka.model.Parada;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Catálogo de paradas recargable en caliente.
+ *
+ * El catálogo vigente es un {@link SnapshotCatalogo} inmutable referenciado desde un campo volatile.
+ * Una recarga lee la fuente, valida las paradas y construye el índice completo aparte; solo al final
+ * reemplaza la referencia (copy-on-write). Quien procesa una ubicación lee la referencia una vez y
+ * trabaja con ese snapshot hasta terminar: nunca ve un catálogo a medio construir ni espera a una
+ * recarga. Las recargas se serializan entre sí, y si una falla se conserva el snapshot anterior.
+ *
+ * Además de {@link #recargar()}, {@link #revisarCambios()} recarga periódicamente cuando cambia la
+ * marca de la fuente ({@code procesador.catalogo.revision-ms}).
+ */
+@Slf4j
+public class CatalogoParadas implements DisposableBean {
+
+    private final FuenteParadas fuente;
+    private final Function<List<Parada>, IndiceParadas> constructorIndice;
+
+    private volatile SnapshotCatalogo actual;
+
+    // Contadores de recargas; se modifican bajo el lock de la instancia
+    private volatile long recargas;
+    private volatile long recargasFallidas;
+    private volatile long nanosRecargas;
+
+    /**
+     * Construye el catálogo con una primera carga; sin paradas válidas el servicio no puede
+     * funcionar, así que un fallo en esta carga impide el arranque.
+     */
+    public CatalogoParadas(FuenteParadas fuente, Function<List<Parada>, IndiceParadas> constructorIndice) {
+        this.fuente = fuente;
+        this.constructorIndice = constructorIndice;
+        try {
+            recargar();
+        } catch (IOException | RuntimeException e) {
+            throw new IllegalStateException("No se pudo cargar el catálogo de paradas desde "
+                    + fuente.descripcion() + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Índice del snapshot vigente. Quien necesite varias consultas coherentes entre sí
+     * (buscar y luego leer la parada) debe guardar este valor y no volver a pedirlo.
+     */
+    public IndiceParadas indice() {
+        return actual.getIndice();
+    }
+
+    public SnapshotCatalogo snapshot() {
+        return actual;
+    }
+
+    /**
+     * Lee la fuente y publica un snapshot nuevo.
+     * @return el snapshot publicado
+     * @throws IOException si la fuente no pudo leerse; el snapshot vigente no cambia
+     * @throws IllegalStateException si la fuente no tiene paradas válidas; el snapshot vigente no cambia
+     */
+    public synchronized SnapshotCatalogo recargar() throws IOException {
+        long inicio = System.nanoTime();
+        try {
+            String marca = fuente.marca();
+            List<Parada> leidas = fuente.cargar();
+            long finLectura = System.nanoTime();
+
+            List<Parada> validas = validar(leidas);
+            if (validas.isEmpty()) {
+                throw new IllegalStateException("La fuente no tiene paradas válidas (" + leidas.size() + " leídas)");
+            }
+            IndiceParadas indice = constructorIndice.apply(validas);
+            long fin = System.nanoTime();
+
+            SnapshotCatalogo anterior = actual;
+            SnapshotCatalogo nuevo = new SnapshotCatalogo(
+                    anterior == null ? 1 : anterior.getVersion() + 1,
+                    indice,
+                    fuente.descripcion(),
+                    marca,
+                    LocalDateTime.now(),
+                    leidas.size() - validas.size(),
+                    (finLectura - inicio) / 1_000_000,
+                    (fin - finLectura) / 1_000_000,
+                    posiciones(validas));
+            actual = nuevo;
+
+            recargas++;
+            nanosRecargas += fin - inicio;
+            log.info("🗺️  Catálogo de paradas v{} desde {}: {} paradas ({} descartadas) | lectura {} ms | índice {} ms",
+                    nuevo.getVersion(), nuevo.getOrigen(), indice.tamanio(), nuevo.getDescartadas(),
+                    nuevo.getDuracionLecturaMs(), nuevo.getDuracionIndiceMs());
+            return nuevo;
+        } catch (IOException | RuntimeException e) {
+            recargasFallidas++;
+            log.error("❌ Error al recargar el catálogo de paradas desde {}: {}", fuente.descripcion(), e.getMessage());
+            throw e;
+        }
+    }
+
+    /**
+     * Recarga si la marca de la fuente cambió desde la última carga.
+     */
+    @Scheduled(fixedDelayString = "${procesador.catalogo.revision-ms:10000}",
+            initialDelayString = "${procesador.catalogo.revision-ms:10000}")
+    public synchronized void revisarCambios() {
+        try {
+            String marca = fuente.marca();
+            if (!Objects.equals(marca, actual.getMarca())) {
+                log.info("🔄 Cambió el catálogo de paradas en {}; recargando", fuente.descripcion());
+                recargar();
+            }
+        } catch (IOException | RuntimeException e) {
+            // recargar() ya registró el error; el snapshot vigente se mantiene
+            log.debug("Revisión del catálogo fallida: {}", e.getMessage());
+        }
+    }
+
+    private static Map<String, Integer> posiciones(List<Parada> validas) {
+        Map<String, Integer> posiciones = new HashMap<>(validas.size() * 2);
+        for (int i = 0; i < validas.size(); i++) {
+            posiciones.put(validas.get(i).getParadaId(), i);
+        }
+        return posiciones;
+    }
+
+    /**
+     * Descarta paradas sin ID, sin coordenadas o con coordenadas fuera de rango, y las que
+     * repiten un ID ya visto (se conserva la primera).
+     */
+    private static List<Parada> validar(List<Parada> leidas) {
+        List<Parada> validas = new ArrayList<>(leidas.size());
+        Set<String> ids = new HashSet<>(leidas.size() * 2);
+        for (Parada parada : leidas) {
+            if (parada == null || parada.getParadaId() == null || parada.getParadaId().isBlank()) {
+                continue;
+            }
+            Double latitud = parada.getLatitud();
+            Double longitud = parada.getLongitud();
+            if (latitud == null || longitud == null
+                    || !(latitud >= -90 && latitud <= 90) || !(longitud >= -180 && longitud <= 180)) {
+                continue;
+            }
+            if (ids.add(parada.getParadaId())) {
+                validas.add(parada);
+            }
+        }
+        return validas;
+    }
+
+    public long getRecargas() {
+        return recargas;
+    }
+
+    public long getRecargasFallidas() {
+        return recargasFallidas;
+    }
+
+    public long getNanosRecargas() {
+        return nanosRecargas;
+    }
+
+    public String getDescripcionFuente() {
+        return fuente.descripcion();
+    }
+
+    @Override
+    public void destroy() {
+        fuente.cerrar();
+    }
+}
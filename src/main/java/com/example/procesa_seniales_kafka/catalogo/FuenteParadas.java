@@ -0,0 +1,35 @@
+package com.example.procesa_seniales_kafka.catalogo;
+
+import com.example.procesa_seniales_kafka.model.Parada;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Origen del catálogo de paradas. {@link CatalogoParadas} valida lo leído y construye el índice;
+ * la fuente solo entrega las paradas en el orden del origen, que es el que define el desempate
+ * entre paradas equidistantes.
+ *
+ * Las fuentes no necesitan ser thread-safe: el catálogo las usa siempre bajo su propio lock.
+ */
+public interface FuenteParadas {
+
+    /**
+     * Lee el catálogo completo.
+     */
+    List<Parada> cargar() throws IOException;
+
+    /**
+     * Marca de la versión del origen (fecha y tamaño de un archivo, offsets de un tópico, ...).
+     * Si coincide con la de la última carga no hace falta recargar.
+     */
+    String marca() throws IOException;
+
+    /**
+     * Descripción legible del origen, para logs y endpoints.
+     */
+    String descripcion();
+
+    default void cerrar() {
+    }
+}
@@ -0,0 +1,190 @@
+package com.example.procesa_seniales_kafka.catalogo;
+
+import com.example.procesa_seniales_kafka.model.Parada;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Catálogo de paradas en un archivo local, CSV o GeoJSON según la extensión.
+ *
+ * CSV ({@code .csv}): primera línea con encabezados; las columnas se ubican por nombre
+ * ({@code paradaId,nombre,direccion,latitud,longitud}) y admiten comillas dobles con {@code ""}
+ * como escape. Un registro ocupa una sola línea.
+ *
+ * GeoJSON ({@code .geojson} o {@code .json}): FeatureCollection de features con geometría Point
+ * ({@code [longitud, latitud]}) y propiedades {@code paradaId} (o {@code id}), {@code nombre} y
+ * {@code direccion}. Se lee en streaming, una feature a la vez.
+ *
+ * Las filas con números ilegibles se entregan con coordenadas nulas y el catálogo las descarta.
+ * La marca es la fecha de modificación más el tamaño del archivo.
+ */
+public class FuenteParadasArchivo implements FuenteParadas {
+
+    private final Path archivo;
+    private final ObjectMapper objectMapper;
+    private final boolean geoJson;
+
+    public FuenteParadasArchivo(Path archivo, ObjectMapper objectMapper) {
+        this.archivo = archivo;
+        this.objectMapper = objectMapper;
+        String nombre = archivo.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (nombre.endsWith(".geojson") || nombre.endsWith(".json")) {
+            this.geoJson = true;
+        } else if (nombre.endsWith(".csv")) {
+            this.geoJson = false;
+        } else {
+            throw new IllegalArgumentException("Formato de catálogo no soportado (se espera .csv, .geojson o .json): " + archivo);
+        }
+    }
+
+    @Override
+    public List<Parada> cargar() throws IOException {
+        return geoJson ? cargarGeoJson() : cargarCsv();
+    }
+
+    @Override
+    public String marca() throws IOException {
+        BasicFileAttributes atributos = Files.readAttributes(archivo, BasicFileAttributes.class);
+        return atributos.lastModifiedTime().toMillis() + "/" + atributos.size();
+    }
+
+    @Override
+    public String descripcion() {
+        return "archivo " + archivo;
+    }
+
+    private List<Parada> cargarCsv() throws IOException {
+        List<Parada> paradas = new ArrayList<>();
+        try (BufferedReader lector = Files.newBufferedReader(archivo, StandardCharsets.UTF_8)) {
+            String encabezado = lector.readLine();
+            if (encabezado == null) {
+                return paradas;
+            }
+            LineaCsv linea = new LineaCsv();
+            Map<String, Integer> columnas = columnas(linea, encabezado);
+            int id = columna(columnas, "paradaid", "parada_id", "id");
+            int nombre = columna(columnas, "nombre");
+            int direccion = columna(columnas, "direccion");
+            int latitud = columna(columnas, "latitud", "lat");
+            int longitud = columna(columnas, "longitud", "lon");
+            if (id < 0 || latitud < 0 || longitud < 0) {
+                throw new IOException("El CSV " + archivo + " debe tener columnas paradaId, latitud y longitud");
+            }
+
+            String texto;
+            while ((texto = lector.readLine()) != null) {
+                if (texto.isBlank()) {
+                    continue;
+                }
+                linea.leer(texto);
+                paradas.add(Parada.builder()
+                        .paradaId(linea.texto(id))
+                        .nombre(linea.texto(nombre))
+                        .direccion(linea.texto(direccion))
+                        .latitud(linea.decimal(latitud))
+                        .longitud(linea.decimal(longitud))
+                        .build());
+            }
+        }
+        return paradas;
+    }
+
+    private List<Parada> cargarGeoJson() throws IOException {
+        List<Parada> paradas = new ArrayList<>();
+        try (InputStream entrada = Files.newInputStream(archivo);
+             JsonParser parser = objectMapper.getFactory().createParser(entrada)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("El GeoJSON " + archivo + " no es un objeto");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String campo = parser.currentName();
+                JsonToken valor = parser.nextToken();
+                if (!"features".equals(campo) || valor != JsonToken.START_ARRAY) {
+                    parser.skipChildren();
+                    continue;
+                }
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    Parada parada = parada(parser.readValueAsTree());
+                    if (parada != null) {
+                        paradas.add(parada);
+                    }
+                }
+            }
+        }
+        return paradas;
+    }
+
+    /**
+     * Convierte una feature Point en parada; las demás geometrías se ignoran.
+     */
+    static Parada parada(JsonNode feature) {
+        JsonNode geometria = feature.path("geometry");
+        if (!"Point".equals(geometria.path("type").asText())) {
+            return null;
+        }
+        JsonNode coordenadas = geometria.path("coordinates");
+        JsonNode propiedades = feature.path("properties");
+        String id = texto(propiedades, "paradaId");
+        if (id == null) {
+            id = texto(propiedades, "id");
+        }
+        if (id == null) {
+            id = texto(feature, "id");
+        }
+        return Parada.builder()
+                .paradaId(id)
+                .nombre(texto(propiedades, "nombre"))
+                .direccion(texto(propiedades, "direccion"))
+                .latitud(coordenadas.path(1).isNumber() ? coordenadas.path(1).doubleValue() : null)
+                .longitud(coordenadas.path(0).isNumber() ? coordenadas.path(0).doubleValue() : null)
+                .build();
+    }
+
+    private static String texto(JsonNode nodo, String campo) {
+        JsonNode valor = nodo.get(campo);
+        return valor == null || valor.isNull() ? null : valor.asText();
+    }
+
+    /**
+     * Posición de cada columna según el encabezado, con los nombres en minúsculas.
+     */
+    static Map<String, Integer> columnas(LineaCsv linea, String encabezado) {
+        if (!encabezado.isEmpty() && encabezado.charAt(0) == '\uFEFF') {
+            encabezado = encabezado.substring(1);
+        }
+        linea.leer(encabezado);
+        Map<String, Integer> columnas = new HashMap<>();
+        for (int i = 0; i < linea.cantidad(); i++) {
+            String nombre = linea.texto(i);
+            if (nombre != null) {
+                columnas.putIfAbsent(nombre.toLowerCase(Locale.ROOT), i);
+            }
+        }
+        return columnas;
+    }
+
+    static int columna(Map<String, Integer> columnas, String... nombres) {
+        for (String nombre : nombres) {
+            Integer posicion = columnas.get(nombre);
+            if (posicion != null) {
+                return posicion;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,156 @@
+package com.example.procesa_seniales_kafka.catalogo;
+
+import com.example.procesa_seniales_kafka.model.Parada;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.CloseOptions;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Catálogo de paradas en un tópico compactado: la clave es el ID de la parada y el valor la
+ * parada en JSON. Cada carga lee el tópico completo desde el inicio hasta los offsets finales
+ * vigentes al empezar; gana el último valor de cada clave y un valor nulo (tombstone) elimina la
+ * parada. Si el JSON no trae {@code paradaId} se usa la clave.
+ *
+ * El consumidor no pertenece a ningún grupo (asigna todas las particiones a mano), de modo que no
+ * interfiere con el grupo de ubicaciones ni confirma offsets. La marca es la suma de los offsets
+ * finales: cualquier publicación en el tópico la cambia.
+ */
+@Slf4j
+public class FuenteParadasKafka implements FuenteParadas {
+
+    private final String bootstrapServers;
+    private final String topico;
+    private final ObjectMapper objectMapper;
+    private final Duration timeout;
+
+    private KafkaConsumer<String, byte[]> consumidor;
+
+    public FuenteParadasKafka(String bootstrapServers, String topico, ObjectMapper objectMapper, Duration timeout) {
+        this.bootstrapServers = bootstrapServers;
+        this.topico = topico;
+        this.objectMapper = objectMapper;
+        this.timeout = timeout;
+    }
+
+    @Override
+    public List<Parada> cargar() throws IOException {
+        KafkaConsumer<String, byte[]> consumidor = consumidor();
+        List<TopicPartition> particiones = particiones(consumidor);
+        Map<TopicPartition, Long> finales = consumidor.endOffsets(particiones, timeout);
+
+        consumidor.assign(particiones);
+        consumidor.seekToBeginning(particiones);
+
+        // El orden de inserción define el desempate entre paradas equidistantes
+        Map<String, Parada> paradas = new LinkedHashMap<>();
+        long limite = System.nanoTime() + timeout.toNanos();
+        while (!alcanzado(consumidor, finales)) {
+            if (System.nanoTime() > limite) {
+                throw new IOException("Tiempo agotado leyendo el tópico de paradas '" + topico + "'");
+            }
+            for (ConsumerRecord<String, byte[]> registro : consumidor.poll(Duration.ofMillis(200))) {
+                if (registro.offset() >= finales.get(new TopicPartition(registro.topic(), registro.partition()))) {
+                    continue;
+                }
+                aplicar(paradas, registro);
+            }
+        }
+        return new ArrayList<>(paradas.values());
+    }
+
+    @Override
+    public String marca() throws IOException {
+        KafkaConsumer<String, byte[]> consumidor = consumidor();
+        long suma = 0;
+        for (long offset : consumidor.endOffsets(particiones(consumidor), timeout).values()) {
+            suma += offset;
+        }
+        return Long.toString(suma);
+    }
+
+    @Override
+    public String descripcion() {
+        return "tópico " + topico;
+    }
+
+    @Override
+    public void cerrar() {
+        if (consumidor != null) {
+            consumidor.close(CloseOptions.timeout(Duration.ofSeconds(5)));
+            consumidor = null;
+        }
+    }
+
+    private void aplicar(Map<String, Parada> paradas, ConsumerRecord<String, byte[]> registro) {
+        if (registro.value() == null) {
+            if (registro.key() != null) {
+                paradas.remove(registro.key());
+            }
+            return;
+        }
+        try {
+            Parada parada = objectMapper.readValue(registro.value(), Parada.class);
+            if (parada.getParadaId() == null) {
+                parada.setParadaId(registro.key());
+            }
+            String clave = registro.key() != null ? registro.key() : parada.getParadaId();
+            if (clave != null) {
+                // Una clave reescrita pasa al final, como en el tópico
+                paradas.remove(clave);
+                paradas.put(clave, parada);
+            }
+        } catch (IOException e) {
+            log.warn("⚠️  Parada ilegible en {}-{}@{}: {}",
+                    registro.topic(), registro.partition(), registro.offset(), e.getMessage());
+        }
+    }
+
+    private boolean alcanzado(KafkaConsumer<String, byte[]> consumidor, Map<TopicPartition, Long> finales) {
+        for (Map.Entry<TopicPartition, Long> entrada : finales.entrySet()) {
+            if (consumidor.position(entrada.getKey(), timeout) < entrada.getValue()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private List<TopicPartition> particiones(KafkaConsumer<String, byte[]> consumidor) throws IOException {
+        List<PartitionInfo> info = consumidor.partitionsFor(topico, timeout);
+        if (info == null || info.isEmpty()) {
+            throw new IOException("El tópico de paradas '" + topico + "' no existe o no tiene particiones");
+        }
+        List<TopicPartition> particiones = new ArrayList<>(info.size());
+        for (PartitionInfo particion : info) {
+            particiones.add(new TopicPartition(topico, particion.partition()));
+        }
+        return particiones;
+    }
+
+    private KafkaConsumer<String, byte[]> consumidor() {
+        if (consumidor == null) {
+            Map<String, Object> config = new HashMap<>();
+            config.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+            config.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+            config.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+            config.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class);
+            config.put(ConsumerConfig.CLIENT_ID_CONFIG, "catalogo-paradas");
+            consumidor = new KafkaConsumer<>(config);
+        }
+        return consumidor;
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.procesa_seniales_kafka.catalogo;
+
+import com.example.procesa_seniales_kafka.model.Parada;
+
+import java.util.List;
+
+/**
+ * Fuente fija: una lista de paradas definida en la configuración. Su marca no cambia,
+ * así que el catálogo solo la lee al arrancar o al pedir una recarga explícita.
+ */
+public class FuenteParadasLista implements FuenteParadas {
+
+    private final List<Parada> paradas;
+    private final String descripcion;
+
+    public FuenteParadasLista(List<Parada> paradas, String descripcion) {
+        this.paradas = List.copyOf(paradas);
+        this.descripcion = descripcion;
+    }
+
+    @Override
+    public List<Parada> cargar() {
+        return paradas;
+    }
+
+    @Override
+    public String marca() {
+        return "fija";
+    }
+
+    @Override
+    public String descripcion() {
+        return descripcion;
+    }
+}
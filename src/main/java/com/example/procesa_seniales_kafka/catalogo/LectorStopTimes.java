@@ -0,0 +1,128 @@
+package com.example.procesa_seniales_kafka.catalogo;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Carga una {@link TablaHorarios} desde un archivo {@code stop_times} al estilo GTFS.
+ *
+ * Columnas usadas (por nombre, en cualquier orden): {@code trip_id}, {@code arrival_time}
+ * (o {@code departure_time} si la llegada está vacía), {@code stop_id}, {@code stop_sequence} y la
+ * ruta: {@code route_id} en el mismo archivo o, como en GTFS, un {@code trips.txt} que asocia cada
+ * {@code trip_id} a su {@code route_id}. Las filas sin hora (paradas sin punto de control), con datos
+ * ilegibles o de viajes sin ruta se descartan y se cuentan.
+ *
+ * El archivo se lee línea por línea sin crear Strings para horas, secuencias ni IDs de viaje
+ * repetidos (las filas de un viaje suelen ser consecutivas), así que millones de filas cargan en
+ * pocos segundos.
+ */
+@Slf4j
+public final class LectorStopTimes {
+
+    private LectorStopTimes() {
+    }
+
+    /**
+     * @param stopTimes archivo stop_times
+     * @param trips     archivo trips, o null si stop_times trae {@code route_id}
+     */
+    public static TablaHorarios leer(Path stopTimes, Path trips) throws IOException {
+        long inicio = System.nanoTime();
+        Map<String, String> rutaPorViaje = trips == null ? null : leerViajes(trips);
+
+        TablaHorarios.Acumulador acumulador = new TablaHorarios.Acumulador();
+        long descartadas = 0;
+        try (BufferedReader lector = Files.newBufferedReader(stopTimes, StandardCharsets.UTF_8)) {
+            String encabezado = lector.readLine();
+            if (encabezado == null) {
+                throw new IOException("El archivo " + stopTimes + " está vacío");
+            }
+            LineaCsv linea = new LineaCsv();
+            Map<String, Integer> columnas = FuenteParadasArchivo.columnas(linea, encabezado);
+            int viaje = FuenteParadasArchivo.columna(columnas, "trip_id");
+            int llegada = FuenteParadasArchivo.columna(columnas, "arrival_time");
+            int salida = FuenteParadasArchivo.columna(columnas, "departure_time");
+            int parada = FuenteParadasArchivo.columna(columnas, "stop_id");
+            int secuencia = FuenteParadasArchivo.columna(columnas, "stop_sequence");
+            int ruta = FuenteParadasArchivo.columna(columnas, "route_id");
+            if (parada < 0 || secuencia < 0 || (llegada < 0 && salida < 0)
+                    || (ruta < 0 && (viaje < 0 || rutaPorViaje == null))) {
+                throw new IOException("El archivo " + stopTimes + " debe tener stop_id, stop_sequence, arrival_time"
+                        + " o departure_time, y route_id o trip_id con un archivo trips");
+            }
+
+            // Ruta del viaje o ruta de la fila anterior, reutilizada mientras no cambie
+            String claveAnterior = null;
+            int idRutaAnterior = -1;
+
+            String texto;
+            while ((texto = lector.readLine()) != null) {
+                if (texto.isEmpty()) {
+                    continue;
+                }
+                linea.leer(texto);
+                int columnaRuta = ruta >= 0 ? ruta : viaje;
+                if (!linea.coincide(columnaRuta, claveAnterior)) {
+                    claveAnterior = linea.texto(columnaRuta);
+                    String idRuta = ruta >= 0 ? claveAnterior : (claveAnterior == null ? null : rutaPorViaje.get(claveAnterior));
+                    idRutaAnterior = idRuta == null ? -1 : acumulador.idRuta(idRuta);
+                }
+
+                int segundos = linea.segundos(llegada);
+                if (segundos < 0) {
+                    segundos = linea.segundos(salida);
+                }
+                int orden = linea.entero(secuencia);
+                String idParada = linea.texto(parada);
+                if (idRutaAnterior < 0 || segundos < 0 || orden < 0 || idParada == null) {
+                    descartadas++;
+                    continue;
+                }
+                acumulador.agregar(idRutaAnterior, acumulador.idParada(idParada), segundos, orden);
+            }
+        }
+
+        TablaHorarios tabla = acumulador.construir();
+        log.info("🕒 Tabla de horarios desde {}: {} pasadas, {} rutas, {} pares ruta-parada ({} filas descartadas) | {} ms | ~{} KB",
+                stopTimes, tabla.tamanio(), tabla.cantidadRutas(), tabla.cantidadPares(), descartadas,
+                (System.nanoTime() - inicio) / 1_000_000, tabla.memoriaAproximadaBytes() / 1024);
+        return tabla;
+    }
+
+    private static Map<String, String> leerViajes(Path trips) throws IOException {
+        Map<String, String> rutaPorViaje = new HashMap<>();
+        try (BufferedReader lector = Files.newBufferedReader(trips, StandardCharsets.UTF_8)) {
+            String encabezado = lector.readLine();
+            if (encabezado == null) {
+                return rutaPorViaje;
+            }
+            LineaCsv linea = new LineaCsv();
+            Map<String, Integer> columnas = FuenteParadasArchivo.columnas(linea, encabezado);
+            int viaje = FuenteParadasArchivo.columna(columnas, "trip_id");
+            int ruta = FuenteParadasArchivo.columna(columnas, "route_id");
+            if (viaje < 0 || ruta < 0) {
+                throw new IOException("El archivo " + trips + " debe tener trip_id y route_id");
+            }
+            String texto;
+            while ((texto = lector.readLine()) != null) {
+                if (texto.isEmpty()) {
+                    continue;
+                }
+                linea.leer(texto);
+                String idViaje = linea.texto(viaje);
+                String idRuta = linea.texto(ruta);
+                if (idViaje != null && idRuta != null) {
+                    rutaPorViaje.put(idViaje, idRuta);
+                }
+            }
+        }
+        return rutaPorViaje;
+    }
+}
@@ -0,0 +1,231 @@
+package com.example.procesa_seniales_kafka.catalogo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Cursor reutilizable sobre una línea CSV, compartido por los lectores de archivos de catálogo.
+ *
+ * Las líneas sin comillas, que son casi todas, se recorren una sola vez guardando el inicio y el
+ * fin de cada campo: los números y las horas se leen directamente de la línea sin crear Strings.
+ * Las líneas con comillas dobles ({@code ""} como escape) se separan en Strings.
+ * Los campos se entregan sin espacios alrededor. Un registro ocupa una sola línea.
+ */
+final class LineaCsv {
+
+    private String linea;
+    private int cantidad;
+    private int[] inicios = new int[16];
+    private int[] fines = new int[16];
+
+    // Campos de la línea actual cuando tiene comillas; null en el camino rápido
+    private List<String> campos;
+
+    void leer(String linea) {
+        this.linea = linea;
+        this.cantidad = 0;
+        if (linea.indexOf('"') >= 0) {
+            campos = separar(linea);
+            cantidad = campos.size();
+            return;
+        }
+        campos = null;
+        int desde = 0;
+        int coma;
+        while ((coma = linea.indexOf(',', desde)) >= 0) {
+            agregar(desde, coma);
+            desde = coma + 1;
+        }
+        agregar(desde, linea.length());
+    }
+
+    int cantidad() {
+        return cantidad;
+    }
+
+    /**
+     * Campo como texto, o null si está vacío o no existe.
+     */
+    String texto(int campo) {
+        if (vacio(campo)) {
+            return null;
+        }
+        return campos != null ? campos.get(campo).trim() : linea.substring(inicios[campo], fines[campo]);
+    }
+
+    boolean vacio(int campo) {
+        if (campo < 0 || campo >= cantidad) {
+            return true;
+        }
+        return campos != null ? campos.get(campo).isBlank() : inicios[campo] == fines[campo];
+    }
+
+    /**
+     * Compara el campo con un texto sin crear Strings.
+     */
+    boolean coincide(int campo, String valor) {
+        if (valor == null || campo < 0 || campo >= cantidad) {
+            return false;
+        }
+        if (campos != null) {
+            return valor.equals(campos.get(campo).trim());
+        }
+        int largo = fines[campo] - inicios[campo];
+        return largo == valor.length() && linea.regionMatches(inicios[campo], valor, 0, largo);
+    }
+
+    /**
+     * Entero no negativo; -1 si el campo está vacío o no es un entero.
+     */
+    int entero(int campo) {
+        if (vacio(campo)) {
+            return -1;
+        }
+        String base = base(campo);
+        int desde = inicio(campo);
+        int hasta = fin(campo);
+        if (hasta - desde > 9) {
+            return -1;
+        }
+        int valor = 0;
+        for (int i = desde; i < hasta; i++) {
+            char c = base.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            valor = valor * 10 + (c - '0');
+        }
+        return valor;
+    }
+
+    /**
+     * Hora GTFS {@code H:MM:SS} en segundos; admite horas mayores a 23 para servicios que
+     * terminan después de medianoche. -1 si el campo está vacío o no es una hora.
+     */
+    int segundos(int campo) {
+        if (vacio(campo)) {
+            return -1;
+        }
+        String base = base(campo);
+        int desde = inicio(campo);
+        int hasta = fin(campo);
+        int total = 0;
+        int parte = 0;
+        int partes = 1;
+        int digitos = 0;
+        for (int i = desde; i < hasta; i++) {
+            char c = base.charAt(i);
+            if (c == ':') {
+                if (digitos == 0 || partes == 3 || (partes > 1 && parte > 59)) {
+                    return -1;
+                }
+                total = total * 60 + parte;
+                parte = 0;
+                digitos = 0;
+                partes++;
+            } else if (c >= '0' && c <= '9' && digitos < 3) {
+                parte = parte * 10 + (c - '0');
+                digitos++;
+            } else {
+                return -1;
+            }
+        }
+        if (partes != 3 || digitos == 0 || parte > 59) {
+            return -1;
+        }
+        return total * 60 + parte;
+    }
+
+    /**
+     * Número decimal; null si el campo está vacío o no es un número.
+     */
+    Double decimal(int campo) {
+        String texto = texto(campo);
+        if (texto == null) {
+            return null;
+        }
+        try {
+            return Double.parseDouble(texto);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private String base(int campo) {
+        return campos != null ? campos.get(campo) : linea;
+    }
+
+    private int inicio(int campo) {
+        if (campos == null) {
+            return inicios[campo];
+        }
+        String valor = campos.get(campo);
+        int i = 0;
+        while (i < valor.length() && valor.charAt(i) <= ' ') {
+            i++;
+        }
+        return i;
+    }
+
+    private int fin(int campo) {
+        if (campos == null) {
+            return fines[campo];
+        }
+        String valor = campos.get(campo);
+        int i = valor.length();
+        while (i > 0 && valor.charAt(i - 1) <= ' ') {
+            i--;
+        }
+        return i;
+    }
+
+    private void agregar(int desde, int hasta) {
+        while (desde < hasta && linea.charAt(desde) <= ' ') {
+            desde++;
+        }
+        while (hasta > desde && linea.charAt(hasta - 1) <= ' ') {
+            hasta--;
+        }
+        if (cantidad == inicios.length) {
+            inicios = Arrays.copyOf(inicios, cantidad * 2);
+            fines = Arrays.copyOf(fines, cantidad * 2);
+        }
+        inicios[cantidad] = desde;
+        fines[cantidad] = hasta;
+        cantidad++;
+    }
+
+    /**
+     * Separa una línea CSV respetando comillas dobles.
+     */
+    static List<String> separar(String linea) {
+        List<String> campos = new ArrayList<>();
+        StringBuilder actual = new StringBuilder();
+        boolean entreComillas = false;
+        for (int i = 0; i < linea.length(); i++) {
+            char c = linea.charAt(i);
+            if (entreComillas) {
+                if (c == '"') {
+                    if (i + 1 < linea.length() && linea.charAt(i + 1) == '"') {
+                        actual.append('"');
+                        i++;
+                    } else {
+                        entreComillas = false;
+                    }
+                } else {
+                    actual.append(c);
+                }
+            } else if (c == '"') {
+                entreComillas = true;
+            } else if (c == ',') {
+                campos.add(actual.toString());
+                actual.setLength(0);
+            } else {
+                actual.append(c);
+            }
+        }
+        campos.add(actual.toString());
+        return campos;
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.procesa_seniales_kafka.catalogo;
+
+import com.example.procesa_seniales_kafka.geo.IndiceParadas;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * Versión inmutable del catálogo: el índice ya construido y los datos de la carga que lo produjo.
+ * Un snapshot nunca cambia después de publicarse; una recarga publica uno nuevo.
+ */
+@Getter
+@AllArgsConstructor
+public class SnapshotCatalogo {
+
+    private final long version;
+    private final IndiceParadas indice;
+    private final String origen;
+    private final String marca;
+    private final LocalDateTime cargadoEn;
+
+    /** Paradas descartadas por datos inválidos o ID repetido. */
+    private final int descartadas;
+
+    private final long duracionLecturaMs;
+    private final long duracionIndiceMs;
+
+    // Posición en el índice de cada parada por su ID
+    @Getter(AccessLevel.NONE)
+    private final Map<String, Integer> posiciones;
+
+    /**
+     * Posición de la parada en el índice, o {@link IndiceParadas#SIN_PARADA} si no está en esta versión.
+     */
+    public int posicion(String paradaId) {
+        Integer posicion = paradaId == null ? null : posiciones.get(paradaId);
+        return posicion == null ? IndiceParadas.SIN_PARADA : posicion;
+    }
+}
@@ -0,0 +1,279 @@
+package com.example.procesa_seniales_kafka.catalogo;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Tabla de horarios programados por ruta y parada, en arreglos primitivos.
+ *
+ * Cada par ruta-parada es un grupo: {@code claves} guarda los pares ordenados (IDs enteros de ruta
+ * y parada empaquetados en un long) e {@code inicio[g]..inicio[g + 1]} delimita en {@code segundos}
+ * y {@code secuencias} las pasadas programadas del grupo, ordenadas por hora del día. Una consulta
+ * son dos búsquedas en HashMap, una búsqueda binaria sobre los pares y otra sobre las horas del
+ * grupo: O(log n) y sin reservar memoria. Cada pasada ocupa 8 bytes.
+ *
+ * Las horas se guardan en segundos del día (0..86399); las horas GTFS posteriores a medianoche
+ * (25:10:00) se normalizan, y la búsqueda de la pasada más cercana da la vuelta al día.
+ */
+public class TablaHorarios {
+
+    /** Valor devuelto por {@link #buscarMasCercano} cuando el par ruta-parada no tiene horarios. */
+    public static final int SIN_HORARIO = -1;
+
+    public static final int SEGUNDOS_DIA = 86_400;
+
+    private static final TablaHorarios VACIA = new Acumulador().construir();
+
+    private final Map<String, Integer> rutas;
+    private final Map<String, Integer> paradas;
+    private final long[] claves;
+    private final int[] inicio;
+    private final int[] segundos;
+    private final int[] secuencias;
+
+    // Paradas de cada ruta (por ID de ruta) ordenadas por su menor stop_sequence
+    private final String[][] recorridos;
+
+    private TablaHorarios(Map<String, Integer> rutas, Map<String, Integer> paradas,
+                          long[] claves, int[] inicio, int[] segundos, int[] secuencias) {
+        this.rutas = rutas;
+        this.paradas = paradas;
+        this.claves = claves;
+        this.inicio = inicio;
+        this.segundos = segundos;
+        this.secuencias = secuencias;
+        this.recorridos = recorridos();
+    }
+
+    public static TablaHorarios vacia() {
+        return VACIA;
+    }
+
+    /**
+     * Pasada programada de la ruta por la parada más cercana a la hora indicada, en cualquier
+     * sentido; ante un empate se prefiere la anterior.
+     * @return Posición de la pasada, o {@link #SIN_HORARIO}
+     */
+    public int buscarMasCercano(String ruta, String paradaId, int segundoDelDia) {
+        Integer idRuta = ruta == null ? null : rutas.get(ruta);
+        Integer idParada = paradaId == null ? null : paradas.get(paradaId);
+        if (idRuta == null || idParada == null) {
+            return SIN_HORARIO;
+        }
+        int grupo = Arrays.binarySearch(claves, clave(idRuta, idParada));
+        if (grupo < 0) {
+            return SIN_HORARIO;
+        }
+
+        int desde = inicio[grupo];
+        int hasta = inicio[grupo + 1];
+        int posicion = Arrays.binarySearch(segundos, desde, hasta, segundoDelDia);
+        if (posicion >= 0) {
+            return posicion;
+        }
+        int insercion = -posicion - 1;
+        int anterior = insercion > desde ? insercion - 1 : hasta - 1;
+        int siguiente = insercion < hasta ? insercion : desde;
+        return Math.abs(diferenciaSegundos(segundoDelDia, segundos[anterior]))
+                <= Math.abs(diferenciaSegundos(segundoDelDia, segundos[siguiente])) ? anterior : siguiente;
+    }
+
+    /**
+     * Hora programada de la pasada, en segundos del día.
+     */
+    public int segundos(int posicion) {
+        return segundos[posicion];
+    }
+
+    /**
+     * Secuencia de la parada en el viaje de la pasada ({@code stop_sequence}).
+     */
+    public int secuencia(int posicion) {
+        return secuencias[posicion];
+    }
+
+    /**
+     * Paradas de la ruta en orden de recorrido (menor {@code stop_sequence} de cada parada),
+     * o null si la ruta no tiene horarios. El arreglo es compartido: no debe modificarse.
+     */
+    public String[] recorrido(String ruta) {
+        Integer idRuta = ruta == null ? null : rutas.get(ruta);
+        return idRuta == null ? null : recorridos[idRuta];
+    }
+
+    /**
+     * Diferencia real - programado en segundos, tomando el camino más corto alrededor del día:
+     * positiva si el vehículo va atrasado.
+     */
+    public static int diferenciaSegundos(int real, int programado) {
+        int diferencia = Math.floorMod(real - programado, SEGUNDOS_DIA);
+        return diferencia >= SEGUNDOS_DIA / 2 ? diferencia - SEGUNDOS_DIA : diferencia;
+    }
+
+    public boolean estaVacia() {
+        return segundos.length == 0;
+    }
+
+    /**
+     * Cantidad de pasadas programadas.
+     */
+    public int tamanio() {
+        return segundos.length;
+    }
+
+    public int cantidadRutas() {
+        return rutas.size();
+    }
+
+    public int cantidadPares() {
+        return claves.length;
+    }
+
+    /**
+     * Memoria aproximada de los arreglos, sin contar los Strings de los IDs.
+     */
+    public long memoriaAproximadaBytes() {
+        return claves.length * 8L + inicio.length * 4L + segundos.length * 8L
+                + (rutas.size() + paradas.size()) * 48L;
+    }
+
+    private String[][] recorridos() {
+        String[] idsParada = new String[paradas.size()];
+        for (Map.Entry<String, Integer> parada : paradas.entrySet()) {
+            idsParada[parada.getValue()] = parada.getKey();
+        }
+        // Los grupos están ordenados por ruta y dentro de la ruta por parada; cada recorrido se arma
+        // ordenando (menor secuencia << 32 | parada) de los grupos de la ruta
+        String[][] resultado = new String[rutas.size()][];
+        int grupo = 0;
+        while (grupo < claves.length) {
+            int ruta = (int) (claves[grupo] >>> 32);
+            int fin = grupo;
+            while (fin < claves.length && (int) (claves[fin] >>> 32) == ruta) {
+                fin++;
+            }
+            long[] orden = new long[fin - grupo];
+            for (int g = grupo; g < fin; g++) {
+                int menor = Integer.MAX_VALUE;
+                for (int i = inicio[g]; i < inicio[g + 1]; i++) {
+                    menor = Math.min(menor, secuencias[i]);
+                }
+                orden[g - grupo] = ((long) menor << 32) | (claves[g] & 0xFFFFFFFFL);
+            }
+            Arrays.sort(orden);
+            resultado[ruta] = new String[orden.length];
+            for (int i = 0; i < orden.length; i++) {
+                resultado[ruta][i] = idsParada[(int) orden[i]];
+            }
+            grupo = fin;
+        }
+        return resultado;
+    }
+
+    private static long clave(int ruta, int parada) {
+        return ((long) ruta << 32) | (parada & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Acumula pasadas en arreglos que crecen por duplicación y construye la tabla ordenada.
+     * No es thread-safe.
+     */
+    public static final class Acumulador {
+
+        private final Map<String, Integer> rutas = new HashMap<>();
+        private final Map<String, Integer> paradas = new HashMap<>();
+        private long[] claves = new long[1024];
+        private int[] segundos = new int[1024];
+        private int[] secuencias = new int[1024];
+        private int cantidad;
+
+        /**
+         * @param segundos  hora programada en segundos desde el inicio del día de servicio (puede superar 24 h)
+         * @param secuencia {@code stop_sequence} de la parada en el viaje (no negativa)
+         */
+        public Acumulador agregar(String ruta, String paradaId, int segundos, int secuencia) {
+            return agregar(idRuta(ruta), idParada(paradaId), segundos, secuencia);
+        }
+
+        int idRuta(String ruta) {
+            return id(rutas, ruta);
+        }
+
+        int idParada(String paradaId) {
+            return id(paradas, paradaId);
+        }
+
+        Acumulador agregar(int idRuta, int idParada, int segundos, int secuencia) {
+            if (segundos < 0 || secuencia < 0) {
+                throw new IllegalArgumentException("Hora y secuencia deben ser no negativas: " + segundos + ", " + secuencia);
+            }
+            if (cantidad == this.segundos.length) {
+                int capacidad = cantidad * 2;
+                claves = Arrays.copyOf(claves, capacidad);
+                this.segundos = Arrays.copyOf(this.segundos, capacidad);
+                secuencias = Arrays.copyOf(secuencias, capacidad);
+            }
+            claves[cantidad] = clave(idRuta, idParada);
+            this.segundos[cantidad] = segundos % SEGUNDOS_DIA;
+            secuencias[cantidad] = secuencia;
+            cantidad++;
+            return this;
+        }
+
+        public int cantidad() {
+            return cantidad;
+        }
+
+        public TablaHorarios construir() {
+            // Pares únicos ordenados
+            long[] unicas = Arrays.copyOf(claves, cantidad);
+            Arrays.sort(unicas);
+            int grupos = 0;
+            for (int i = 0; i < cantidad; i++) {
+                if (i == 0 || unicas[i] != unicas[i - 1]) {
+                    unicas[grupos++] = unicas[i];
+                }
+            }
+            long[] clavesGrupo = Arrays.copyOf(unicas, grupos);
+
+            // Reparto por grupo con conteo; cada pasada se empaqueta como hora << 32 | secuencia
+            // para ordenar el grupo por hora con un solo sort primitivo
+            int[] grupoPorPasada = new int[cantidad];
+            int[] inicio = new int[grupos + 1];
+            for (int i = 0; i < cantidad; i++) {
+                grupoPorPasada[i] = Arrays.binarySearch(clavesGrupo, claves[i]);
+                inicio[grupoPorPasada[i] + 1]++;
+            }
+            for (int g = 0; g < grupos; g++) {
+                inicio[g + 1] += inicio[g];
+            }
+            long[] pasadas = new long[cantidad];
+            int[] siguiente = Arrays.copyOf(inicio, grupos);
+            for (int i = 0; i < cantidad; i++) {
+                pasadas[siguiente[grupoPorPasada[i]]++] = ((long) segundos[i] << 32) | secuencias[i];
+            }
+
+            int[] segundosOrdenados = new int[cantidad];
+            int[] secuenciasOrdenadas = new int[cantidad];
+            for (int g = 0; g < grupos; g++) {
+                Arrays.sort(pasadas, inicio[g], inicio[g + 1]);
+            }
+            for (int i = 0; i < cantidad; i++) {
+                segundosOrdenados[i] = (int) (pasadas[i] >>> 32);
+                secuenciasOrdenadas[i] = (int) pasadas[i];
+            }
+            return new TablaHorarios(new HashMap<>(rutas), new HashMap<>(paradas),
+                    clavesGrupo, inicio, segundosOrdenados, secuenciasOrdenadas);
+        }
+
+        private static int id(Map<String, Integer> ids, String valor) {
+            Integer id = ids.get(valor);
+            if (id == null) {
+                id = ids.size();
+                ids.put(valor, id);
+            }
+            return id;
+        }
+    }
+}
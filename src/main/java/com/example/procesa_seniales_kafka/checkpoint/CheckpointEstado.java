@@ -0,0 +1,390 @@
+package com.example.procesa_seniales_kafka.checkpoint;
+
+import com.example.procesa_seniales_kafka.estado.EstadoDedupStore;
+import com.example.procesa_seniales_kafka.estado.MaquinaEstadosParada;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.utils.Utils;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Checkpoints locales del estado por vehículo (deduplicación y máquina de estados), un archivo por
+ * partición de ubicaciones, para no reconstruirlo desde cero al reiniciar o al recibir particiones.
+ *
+ * Cada checkpoint lleva el offset siguiente al último registro ya aplicado al estado: los consumers lo
+ * registran en orden de offset cuando la ubicación se procesó y el broker confirmó sus horarios, así que
+ * una ubicación retenida en el reorden no cuenta hasta que se entrega. Al asignarse una partición se
+ * restaura su checkpoint antes del primer poll y, si quedó detrás de la posición confirmada, se retrocede
+ * hasta él para que el estado vuelva a alinearse con el log. Las ubicaciones entre el checkpoint y esa
+ * posición se procesan otra vez y los horarios que ya habían emitido se vuelven a publicar (entrega al
+ * menos una vez). Al revocarse, se guarda el checkpoint y se descarta el estado de sus vehículos. Además
+ * se guardan periódicamente todas las particiones asignadas.
+ *
+ * El vehículo se asigna a su partición con el particionador por defecto de Kafka (murmur2 de la key,
+ * que es el vehiculoId). Se habilita con {@code procesador.checkpoint.habilitado=true}; el directorio
+ * puede ser un volumen compartido para que otra instancia restaure las particiones que recibe.
+ */
+@Slf4j
+@Component
+public class CheckpointEstado implements DisposableBean {
+
+    private static final String EXTENSION = ".checkpoint";
+
+    private final boolean habilitado;
+    private final Path directorio;
+    private final String topico;
+    private final long maxReproceso;
+    private final EstadoDedupStore estadoDedup;
+    private final MaquinaEstadosParada maquinaEstados;
+    private final LongSupplier reloj;
+
+    /** Siguiente offset a checkpointear de cada partición, -1 si no está asignada. */
+    private volatile AtomicLongArray offsets = new AtomicLongArray(0);
+    private volatile int particiones;
+
+    private final LongAdder guardados = new LongAdder();
+    private final LongAdder nanosGuardado = new LongAdder();
+    private final LongAdder fallidos = new LongAdder();
+    private final LongAdder restauraciones = new LongAdder();
+    private final LongAdder nanosRestauracion = new LongAdder();
+    private final LongAdder rechazados = new LongAdder();
+    private final LongAdder restauradas = new LongAdder();
+
+    @Autowired
+    public CheckpointEstado(@Value("${procesador.checkpoint.habilitado:false}") boolean habilitado,
+                            @Value("${procesador.checkpoint.directorio:checkpoints}") String directorio,
+                            @Value("${procesador.checkpoint.max-reproceso:100000}") long maxReproceso,
+                            EstadoDedupStore estadoDedup, MaquinaEstadosParada maquinaEstados) {
+        this(habilitado, Path.of(directorio), "ubicaciones_vehiculos", maxReproceso, estadoDedup, maquinaEstados,
+                System::currentTimeMillis);
+    }
+
+    public CheckpointEstado(boolean habilitado, Path directorio, String topico, long maxReproceso,
+                            EstadoDedupStore estadoDedup, MaquinaEstadosParada maquinaEstados, LongSupplier reloj) {
+        this.habilitado = habilitado;
+        this.directorio = directorio;
+        this.topico = topico;
+        this.maxReproceso = maxReproceso;
+        this.estadoDedup = estadoDedup;
+        this.maquinaEstados = maquinaEstados;
+        this.reloj = reloj;
+
+        if (!habilitado) {
+            return;
+        }
+        try {
+            Files.createDirectories(directorio);
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo crear el directorio de checkpoints " + directorio.toAbsolutePath(), e);
+        }
+        log.info("💾 Checkpoints de estado habilitados en {}", directorio.toAbsolutePath());
+    }
+
+    public boolean habilitado() {
+        return habilitado;
+    }
+
+    /**
+     * Registra que el registro {@code offset} de la partición y los anteriores ya se aplicaron al estado.
+     * Se puede llamar desde cualquier hilo (el que completa la confirmación del broker): el offset solo
+     * avanza. No reserva memoria.
+     */
+    public void registrarOffset(int particion, long offset) {
+        AtomicLongArray actuales = offsets;
+        if (particion >= actuales.length()) {
+            return;
+        }
+        long actual;
+        do {
+            actual = actuales.get(particion);
+            if (actual < 0 || actual > offset) {
+                return;
+            }
+        } while (!actuales.weakCompareAndSetVolatile(particion, actual, offset + 1));
+    }
+
+    /**
+     * Restaura las particiones recién asignadas. Se llama desde {@code onPartitionsAssigned}, antes de
+     * que el consumer entregue registros de ellas.
+     */
+    public void asignadas(Consumer<?, ?> consumer, Collection<TopicPartition> asignadas) {
+        List<TopicPartition> propias = propias(asignadas);
+        if (!habilitado || propias.isEmpty()) {
+            return;
+        }
+        int total = consumer.partitionsFor(topico).size();
+        Map<TopicPartition, Long> inicios = consumer.beginningOffsets(propias);
+        Map<TopicPartition, Long> finales = consumer.endOffsets(propias);
+        for (TopicPartition particion : propias) {
+            long posicion = consumer.position(particion);
+            long desde = restaurar(particion.partition(), total, inicios.get(particion), finales.get(particion), posicion);
+            if (desde != posicion) {
+                consumer.seek(particion, desde);
+            }
+        }
+    }
+
+    /**
+     * Guarda el checkpoint de las particiones revocadas y descarta el estado de sus vehículos.
+     * Se llama desde {@code onPartitionsRevokedBeforeCommit}, con lo ya consumido ya aplicado al estado.
+     */
+    public void revocadas(Collection<TopicPartition> revocadas) {
+        liberar(revocadas, true);
+    }
+
+    /**
+     * Descarta el estado de particiones que ya tiene otro consumer, sin guardarlas: el checkpoint
+     * anterior sigue siendo el válido.
+     */
+    public void perdidas(Collection<TopicPartition> perdidas) {
+        liberar(perdidas, false);
+    }
+
+    /**
+     * Guarda el checkpoint de todas las particiones asignadas.
+     */
+    @Scheduled(fixedDelayString = "${procesador.checkpoint.intervalo-ms:30000}")
+    public void guardarAsignadas() {
+        if (!habilitado) {
+            return;
+        }
+        BitSet asignadas = new BitSet();
+        AtomicLongArray actuales = offsets;
+        for (int particion = 0; particion < actuales.length(); particion++) {
+            if (actuales.get(particion) >= 0) {
+                asignadas.set(particion);
+            }
+        }
+        if (!asignadas.isEmpty()) {
+            guardar(asignadas);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        guardarAsignadas();
+    }
+
+    /**
+     * Partición de un vehículo con el particionador por defecto de Kafka.
+     */
+    public static int particionDe(String vehiculoId, int particiones) {
+        return Utils.toPositive(Utils.murmur2(vehiculoId.getBytes(StandardCharsets.UTF_8))) % particiones;
+    }
+
+    /**
+     * Restaura el checkpoint de una partición, si hay uno compatible con el log.
+     * @param posicion offset desde el que el consumer retomaría la partición
+     * @return offset desde el que conviene retomarla: el del checkpoint si quedó detrás de {@code posicion}
+     *         a una distancia reprocesable, o {@code posicion}
+     */
+    long restaurar(int particion, int totalParticiones, long inicioLog, long finLog, long posicion) {
+        asegurarParticiones(totalParticiones);
+        offsets.set(particion, posicion);
+
+        Path archivo = archivo(particion);
+        if (!Files.exists(archivo)) {
+            return posicion;
+        }
+        long inicio = System.nanoTime();
+        ByteBuffer checkpoint;
+        try {
+            checkpoint = FormatoCheckpoint.leer(archivo);
+        } catch (IOException e) {
+            rechazar(particion, e.getMessage());
+            return posicion;
+        }
+        long offset = FormatoCheckpoint.offset(checkpoint);
+        if (FormatoCheckpoint.particion(checkpoint) != particion
+                || FormatoCheckpoint.particiones(checkpoint) != totalParticiones) {
+            rechazar(particion, "es de la partición " + FormatoCheckpoint.particion(checkpoint) + " de "
+                    + FormatoCheckpoint.particiones(checkpoint) + " y el tópico tiene " + totalParticiones);
+            return posicion;
+        }
+        if (offset > finLog) {
+            rechazar(particion, "su offset " + offset + " supera el final del log (" + finLog + ")");
+            return posicion;
+        }
+
+        String[] textos = FormatoCheckpoint.textos(checkpoint);
+        int entradas = FormatoCheckpoint.restaurarEntradas(checkpoint, textos, estadoDedup);
+        int vehiculos = FormatoCheckpoint.restaurarVehiculos(checkpoint, textos, maquinaEstados);
+        long nanos = System.nanoTime() - inicio;
+        restauraciones.increment();
+        nanosRestauracion.add(nanos);
+        restauradas.add(entradas);
+
+        boolean reprocesar = offset < posicion && offset >= inicioLog && posicion - offset <= maxReproceso;
+        long desde = reprocesar ? offset : posicion;
+        offsets.set(particion, desde);
+        log.info("♻️  Partición {} restaurada en {} ms: {} entradas y {} vehículos del checkpoint en el offset {} "
+                        + "(de hace {} s); se retoma desde {}", particion, nanos / 1_000_000, entradas, vehiculos, offset,
+                (reloj.getAsLong() - FormatoCheckpoint.creacionMs(checkpoint)) / 1000, desde);
+        return desde;
+    }
+
+    /**
+     * Escribe en un solo recorrido de los almacenes el checkpoint de cada partición indicada.
+     * @return cantidad de checkpoints escritos
+     */
+    synchronized int guardar(BitSet seleccionadas) {
+        long inicio = System.nanoTime();
+        int total = particiones;
+        // Los offsets se toman antes de recorrer: el estado guardado incluye al menos todo lo anterior a ellos
+        long[] offsetsGuardados = new long[total];
+        FormatoCheckpoint.Escritura[] escrituras = new FormatoCheckpoint.Escritura[total];
+        for (int particion = seleccionadas.nextSetBit(0); particion >= 0 && particion < total;
+             particion = seleccionadas.nextSetBit(particion + 1)) {
+            offsetsGuardados[particion] = offsets.get(particion);
+            if (offsetsGuardados[particion] >= 0) {
+                escrituras[particion] = new FormatoCheckpoint.Escritura();
+            }
+        }
+
+        try {
+            estadoDedup.recorrer((vehiculoId, paradaId, estado, ultimaPublicacionMs, ultimoAccesoMs) -> {
+                FormatoCheckpoint.Escritura escritura = escrituras[particionDe(vehiculoId, total)];
+                if (escritura != null) {
+                    escritura.entrada(vehiculoId, paradaId, estado, ultimaPublicacionMs, ultimoAccesoMs);
+                }
+            });
+            maquinaEstados.recorrer((vehiculoId, paradaId, candidataId, latitud, longitud, estado, confirmadas,
+                                     llegadaMs, ultimoAccesoMs) -> {
+                FormatoCheckpoint.Escritura escritura = escrituras[particionDe(vehiculoId, total)];
+                if (escritura != null) {
+                    escritura.vehiculo(vehiculoId, paradaId, candidataId, latitud, longitud, estado,
+                            confirmadas, llegadaMs, ultimoAccesoMs);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            fallidos.increment();
+            log.error("❌ No se pudo armar el checkpoint de estado: {}", e.getCause().getMessage());
+            return 0;
+        }
+
+        int escritos = 0;
+        int entradas = 0;
+        int vehiculos = 0;
+        long creacionMs = reloj.getAsLong();
+        for (int particion = 0; particion < total; particion++) {
+            FormatoCheckpoint.Escritura escritura = escrituras[particion];
+            if (escritura == null) {
+                continue;
+            }
+            try {
+                escritura.escribir(archivo(particion), particion, total, offsetsGuardados[particion], creacionMs);
+                escritos++;
+                entradas += escritura.getEntradas();
+                vehiculos += escritura.getVehiculos();
+            } catch (IOException e) {
+                fallidos.increment();
+                log.error("❌ No se pudo escribir el checkpoint de la partición {}: {}", particion, e.getMessage());
+            }
+        }
+        long nanos = System.nanoTime() - inicio;
+        guardados.add(escritos);
+        nanosGuardado.add(nanos);
+        log.debug("💾 Checkpoint de {} particiones en {} ms: {} entradas y {} vehículos",
+                escritos, nanos / 1_000_000, entradas, vehiculos);
+        return escritos;
+    }
+
+    public Path getDirectorio() {
+        return directorio;
+    }
+
+    public long getGuardados() {
+        return guardados.sum();
+    }
+
+    public long getNanosGuardado() {
+        return nanosGuardado.sum();
+    }
+
+    public long getFallidos() {
+        return fallidos.sum();
+    }
+
+    public long getRestauraciones() {
+        return restauraciones.sum();
+    }
+
+    public long getNanosRestauracion() {
+        return nanosRestauracion.sum();
+    }
+
+    public long getRechazados() {
+        return rechazados.sum();
+    }
+
+    public long getRestauradas() {
+        return restauradas.sum();
+    }
+
+    Path archivo(int particion) {
+        return directorio.resolve(topico + "-" + particion + EXTENSION);
+    }
+
+    private void liberar(Collection<TopicPartition> liberadas, boolean guardar) {
+        List<TopicPartition> propias = propias(liberadas);
+        if (!habilitado || propias.isEmpty() || particiones == 0) {
+            return;
+        }
+        BitSet seleccionadas = new BitSet();
+        propias.forEach(particion -> seleccionadas.set(particion.partition()));
+        if (guardar) {
+            guardar(seleccionadas);
+        }
+        seleccionadas.stream().filter(particion -> particion < particiones).forEach(particion -> offsets.set(particion, -1));
+
+        int total = particiones;
+        int entradas = estadoDedup.eliminarVehiculos(vehiculoId -> seleccionadas.get(particionDe(vehiculoId, total)));
+        int vehiculos = maquinaEstados.eliminarVehiculos(vehiculoId -> seleccionadas.get(particionDe(vehiculoId, total)));
+        log.info("📤 Particiones {} liberadas: {} entradas y {} vehículos descartados", seleccionadas, entradas, vehiculos);
+    }
+
+    private List<TopicPartition> propias(Collection<TopicPartition> particionesTopicos) {
+        return particionesTopicos.stream().filter(particion -> topico.equals(particion.topic())).toList();
+    }
+
+    /**
+     * Ajusta la tabla de offsets a la cantidad de particiones del tópico, conservando las asignadas.
+     */
+    private synchronized void asegurarParticiones(int total) {
+        if (total == particiones) {
+            return;
+        }
+        AtomicLongArray anteriores = offsets;
+        AtomicLongArray nuevos = new AtomicLongArray(total);
+        for (int particion = 0; particion < total; particion++) {
+            nuevos.set(particion, particion < anteriores.length() ? anteriores.get(particion) : -1);
+        }
+        offsets = nuevos;
+        particiones = total;
+    }
+
+    private void rechazar(int particion, String motivo) {
+        rechazados.increment();
+        log.warn("⚠️  Checkpoint de la partición {} descartado: {}; el estado se reconstruye desde el log",
+                particion, motivo);
+    }
+}
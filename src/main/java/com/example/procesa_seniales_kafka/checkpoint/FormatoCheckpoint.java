@@ -0,0 +1,254 @@
+package com.example.procesa_seniales_kafka.checkpoint;
+
+import com.example.procesa_seniales_kafka.estado.EstadoDedupStore;
+import com.example.procesa_seniales_kafka.estado.MaquinaEstadosParada;
+import com.example.procesa_seniales_kafka.model.EstadoParada;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Layout binario de un checkpoint: el estado de los vehículos de una partición en el offset indicado.
+ *
+ * Los textos (vehículos y paradas) se guardan una sola vez en un diccionario y las entradas los
+ * referencian por índice (-1 = null), de modo que las entradas tienen tamaño fijo y se leen sin
+ * decodificar texto. Todos los valores van en big-endian.
+ *
+ * <pre>
+ * Cabecera:  0 int magia | 4 short versión | 8 int partición | 12 int particiones del tópico
+ *            16 long offset (siguiente a consumir) | 24 long creación (ms) | 32 int textos
+ *            36 int entradas de dedup | 40 int vehículos | 44 int inicio de las entradas | 48 int inicio de los vehículos
+ * Textos:    short longitud | UTF-8
+ * Entradas:  int vehículo | int parada | byte estado | long última publicación | long último acceso
+ * Vehículos: int vehículo | int parada | int candidata | double lat | double lon | byte estado
+ *            | int confirmadas | long llegada | long último acceso
+ * Cola:      int CRC32C de todos los bytes anteriores
+ * </pre>
+ *
+ * El archivo se escribe en un temporal, se fuerza a disco y se renombra de forma atómica: un checkpoint
+ * visible siempre está completo.
+ */
+final class FormatoCheckpoint {
+
+    static final int MAGIA = 0x50534331; // "PSC1"
+    static final short VERSION = 2;
+    static final int TAMANIO_CABECERA = 64;
+    static final int TAMANIO_ENTRADA = 2 * 4 + 1 + 2 * 8;
+    static final int TAMANIO_VEHICULO = 3 * 4 + 2 * 8 + 1 + 4 + 2 * 8;
+
+    private static final int TAMANIO_COLA = 4;
+    private static final int MAX_TEXTO = 0xFFFF;
+
+    private FormatoCheckpoint() {
+    }
+
+    /**
+     * Acumula el estado de una partición mientras se recorren los almacenes.
+     * Un identificador demasiado largo se informa como {@link UncheckedIOException}.
+     */
+    static final class Escritura {
+
+        private final Map<String, Integer> indices = new HashMap<>();
+        private final ByteArrayOutputStream textos = new ByteArrayOutputStream();
+        private final ByteArrayOutputStream entradas = new ByteArrayOutputStream();
+        private final ByteArrayOutputStream vehiculos = new ByteArrayOutputStream();
+        private final DataOutputStream salidaTextos = new DataOutputStream(textos);
+        private final DataOutputStream salidaEntradas = new DataOutputStream(entradas);
+        private final DataOutputStream salidaVehiculos = new DataOutputStream(vehiculos);
+        private int cantidadEntradas;
+        private int cantidadVehiculos;
+
+        void entrada(String vehiculoId, String paradaId, EstadoParada estado, long ultimaPublicacionMs,
+                     long ultimoAccesoMs) {
+            try {
+                salidaEntradas.writeInt(indice(vehiculoId));
+                salidaEntradas.writeInt(indice(paradaId));
+                salidaEntradas.writeByte(estado.ordinal());
+                salidaEntradas.writeLong(ultimaPublicacionMs);
+                salidaEntradas.writeLong(ultimoAccesoMs);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            cantidadEntradas++;
+        }
+
+        void vehiculo(String vehiculoId, String paradaId, String candidataId, double latitud, double longitud,
+                      int estado, int confirmadas, long llegadaMs, long ultimoAccesoMs) {
+            try {
+                salidaVehiculos.writeInt(indice(vehiculoId));
+                salidaVehiculos.writeInt(indice(paradaId));
+                salidaVehiculos.writeInt(indice(candidataId));
+                salidaVehiculos.writeDouble(latitud);
+                salidaVehiculos.writeDouble(longitud);
+                salidaVehiculos.writeByte(estado);
+                salidaVehiculos.writeInt(confirmadas);
+                salidaVehiculos.writeLong(llegadaMs);
+                salidaVehiculos.writeLong(ultimoAccesoMs);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            cantidadVehiculos++;
+        }
+
+        int getEntradas() {
+            return cantidadEntradas;
+        }
+
+        int getVehiculos() {
+            return cantidadVehiculos;
+        }
+
+        /**
+         * Escribe el checkpoint en {@code archivo}, reemplazando el anterior.
+         */
+        void escribir(Path archivo, int particion, int particiones, long offset, long creacionMs) throws IOException {
+            ByteBuffer cabecera = ByteBuffer.allocate(TAMANIO_CABECERA);
+            cabecera.putInt(0, MAGIA);
+            cabecera.putShort(4, VERSION);
+            cabecera.putInt(8, particion);
+            cabecera.putInt(12, particiones);
+            cabecera.putLong(16, offset);
+            cabecera.putLong(24, creacionMs);
+            cabecera.putInt(32, indices.size());
+            cabecera.putInt(36, cantidadEntradas);
+            cabecera.putInt(40, cantidadVehiculos);
+            cabecera.putInt(44, TAMANIO_CABECERA + textos.size());
+            cabecera.putInt(48, TAMANIO_CABECERA + textos.size() + entradas.size());
+
+            Path temporal = archivo.resolveSibling(archivo.getFileName() + ".tmp");
+            try (FileOutputStream destino = new FileOutputStream(temporal.toFile())) {
+                CRC32C crc = new CRC32C();
+                BufferedOutputStream salida = new BufferedOutputStream(new CheckedOutputStream(destino, crc), 1 << 16);
+                salida.write(cabecera.array());
+                textos.writeTo(salida);
+                entradas.writeTo(salida);
+                vehiculos.writeTo(salida);
+                salida.flush();
+                destino.write(ByteBuffer.allocate(TAMANIO_COLA).putInt(0, (int) crc.getValue()).array());
+                destino.getChannel().force(true);
+            }
+            Files.move(temporal, archivo, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        private int indice(String texto) throws IOException {
+            if (texto == null) {
+                return -1;
+            }
+            Integer indice = indices.get(texto);
+            if (indice != null) {
+                return indice;
+            }
+            byte[] bytes = texto.getBytes(StandardCharsets.UTF_8);
+            if (bytes.length > MAX_TEXTO) {
+                throw new IOException("Identificador de " + bytes.length + " bytes, máximo " + MAX_TEXTO);
+            }
+            salidaTextos.writeShort(bytes.length);
+            salidaTextos.write(bytes);
+            indice = indices.size();
+            indices.put(texto, indice);
+            return indice;
+        }
+    }
+
+    /**
+     * Lee un checkpoint completo y verifica su integridad.
+     * @throws IOException si el archivo no es un checkpoint, es de otra versión o está dañado
+     */
+    static ByteBuffer leer(Path archivo) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(archivo));
+        int datos = buffer.capacity() - TAMANIO_COLA;
+        if (datos < TAMANIO_CABECERA || buffer.getInt(0) != MAGIA) {
+            throw new IOException("No es un checkpoint: " + archivo);
+        }
+        if (buffer.getShort(4) != VERSION) {
+            throw new IOException("Versión de checkpoint no soportada: " + buffer.getShort(4));
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.array(), 0, datos);
+        if ((int) crc.getValue() != buffer.getInt(datos)) {
+            throw new IOException("Checkpoint dañado (CRC): " + archivo);
+        }
+        long esperado = (long) buffer.getInt(48) + (long) buffer.getInt(40) * TAMANIO_VEHICULO;
+        if (buffer.getInt(44) + (long) buffer.getInt(36) * TAMANIO_ENTRADA != buffer.getInt(48) || esperado != datos) {
+            throw new IOException("Checkpoint con secciones inconsistentes: " + archivo);
+        }
+        return buffer;
+    }
+
+    static int particion(ByteBuffer buffer) {
+        return buffer.getInt(8);
+    }
+
+    static int particiones(ByteBuffer buffer) {
+        return buffer.getInt(12);
+    }
+
+    static long offset(ByteBuffer buffer) {
+        return buffer.getLong(16);
+    }
+
+    static long creacionMs(ByteBuffer buffer) {
+        return buffer.getLong(24);
+    }
+
+    static String[] textos(ByteBuffer buffer) {
+        String[] textos = new String[buffer.getInt(32)];
+        int posicion = TAMANIO_CABECERA;
+        for (int i = 0; i < textos.length; i++) {
+            int longitud = buffer.getShort(posicion) & 0xFFFF;
+            textos[i] = new String(buffer.array(), posicion + 2, longitud, StandardCharsets.UTF_8);
+            posicion += 2 + longitud;
+        }
+        return textos;
+    }
+
+    /**
+     * @return cantidad de entradas que quedaron en el almacén (las expiradas se ignoran)
+     */
+    static int restaurarEntradas(ByteBuffer buffer, String[] textos, EstadoDedupStore estado) {
+        int restauradas = 0;
+        int posicion = buffer.getInt(44);
+        for (int i = buffer.getInt(36); i > 0; i--, posicion += TAMANIO_ENTRADA) {
+            if (estado.restaurar(textos[buffer.getInt(posicion)], textos[buffer.getInt(posicion + 4)],
+                    EstadoParada.deOrdinal(buffer.get(posicion + 8)), buffer.getLong(posicion + 9),
+                    buffer.getLong(posicion + 17))) {
+                restauradas++;
+            }
+        }
+        return restauradas;
+    }
+
+    /**
+     * @return cantidad de vehículos que quedaron en la máquina de estados
+     */
+    static int restaurarVehiculos(ByteBuffer buffer, String[] textos, MaquinaEstadosParada maquina) {
+        int restaurados = 0;
+        int posicion = buffer.getInt(48);
+        for (int i = buffer.getInt(40); i > 0; i--, posicion += TAMANIO_VEHICULO) {
+            if (maquina.restaurar(textos[buffer.getInt(posicion)], texto(textos, buffer.getInt(posicion + 4)),
+                    texto(textos, buffer.getInt(posicion + 8)), buffer.getDouble(posicion + 12),
+                    buffer.getDouble(posicion + 20), buffer.get(posicion + 28), buffer.getInt(posicion + 29),
+                    buffer.getLong(posicion + 33), buffer.getLong(posicion + 41))) {
+                restaurados++;
+            }
+        }
+        return restaurados;
+    }
+
+    private static String texto(String[] textos, int indice) {
+        return indice < 0 ? null : textos[indice];
+    }
+}
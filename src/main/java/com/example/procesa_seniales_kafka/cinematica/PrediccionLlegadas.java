@@ -0,0 +1,235 @@
+package com.example.procesa_seniales_kafka.cinematica;
+
+import com.example.procesa_seniales_kafka.catalogo.SnapshotCatalogo;
+import com.example.procesa_seniales_kafka.catalogo.TablaHorarios;
+import com.example.procesa_seniales_kafka.geo.DistanciaGeo;
+import com.example.procesa_seniales_kafka.geo.IndiceParadas;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Predice la llegada a las próximas paradas de la ruta a partir de la velocidad y el rumbo suavizados.
+ *
+ * El recorrido de la ruta sale de la tabla de horarios (paradas en orden de {@code stop_sequence});
+ * sin tabla se usa el catálogo completo ordenado por la secuencia derivada del ID de parada, que es
+ * lo que el servicio asumía hasta ahora. El sentido se elige con el rumbo: si apunta más hacia la
+ * parada anterior del recorrido que hacia la siguiente, el vehículo va en sentido inverso.
+ *
+ * La distancia a cada parada es la suma de los tramos en línea recta (vehículo → primera parada →
+ * segunda ...), y el tiempo estimado es esa distancia a la velocidad actual. Los recorridos traducidos
+ * a posiciones del índice se guardan por ruta hasta que cambia el catálogo o la tabla.
+ */
+@Component
+public class PrediccionLlegadas {
+
+    private final TablaHorarios tablaHorarios;
+    private final int paradasAdelante;
+    private final double velocidadMinimaKmh;
+    private final long horizonteSegundos;
+
+    private volatile Recorridos recorridos;
+
+    @Autowired
+    public PrediccionLlegadas(
+            TablaHorarios tablaHorarios,
+            @Value("${procesador.cinematica.paradas-adelante:3}") int paradasAdelante,
+            @Value("${procesador.cinematica.velocidad-minima-kmh:3}") double velocidadMinimaKmh,
+            @Value("${procesador.cinematica.horizonte-minutos:60}") long horizonteMinutos) {
+        this.tablaHorarios = tablaHorarios;
+        this.paradasAdelante = paradasAdelante;
+        this.velocidadMinimaKmh = velocidadMinimaKmh;
+        this.horizonteSegundos = horizonteMinutos * 60;
+    }
+
+    public boolean habilitada() {
+        return paradasAdelante > 0;
+    }
+
+    /**
+     * @param posicionActual posición en el índice de la parada junto a la que está el vehículo
+     * @param velocidadKmh   velocidad suavizada; por debajo del mínimo no se predice
+     * @param rumbo          rumbo suavizado en grados, o NaN
+     * @return llegadas a las siguientes paradas dentro del horizonte, en orden de recorrido
+     */
+    public List<LlegadaPredicha> predecir(SnapshotCatalogo catalogo, String ruta, int posicionActual,
+                                          double latitud, double longitud, double velocidadKmh, double rumbo) {
+        if (paradasAdelante <= 0 || !(velocidadKmh >= velocidadMinimaKmh)) {
+            return Collections.emptyList();
+        }
+        Recorrido recorrido = recorrido(catalogo, ruta);
+        int k = recorrido.lugar(posicionActual);
+        if (k < 0) {
+            return Collections.emptyList();
+        }
+        int[] paradas = recorrido.paradas;
+
+        IndiceParadas indice = catalogo.getIndice();
+        int sentido = sentido(indice, paradas, k, latitud, longitud, rumbo);
+        List<LlegadaPredicha> llegadas = new ArrayList<>(paradasAdelante);
+        double acumuladoKm = 0;
+        double latitudAnterior = latitud;
+        double longitudAnterior = longitud;
+        for (int j = 1; j <= paradasAdelante; j++) {
+            int paso = k + j * sentido;
+            if (paso < 0 || paso >= paradas.length) {
+                break;
+            }
+            int posicion = paradas[paso];
+            double latitudParada = indice.parada(posicion).getLatitud();
+            double longitudParada = indice.parada(posicion).getLongitud();
+            acumuladoKm += DistanciaGeo.calcularDistanciaHaversine(
+                    latitudAnterior, longitudAnterior, latitudParada, longitudParada);
+            long segundos = Math.round(acumuladoKm / velocidadKmh * 3600);
+            if (segundos > horizonteSegundos) {
+                break;
+            }
+            llegadas.add(new LlegadaPredicha(posicion, acumuladoKm, segundos));
+            latitudAnterior = latitudParada;
+            longitudAnterior = longitudParada;
+        }
+        return llegadas;
+    }
+
+    /**
+     * +1 si el vehículo avanza en el orden del recorrido, -1 si va en sentido inverso.
+     */
+    private static int sentido(IndiceParadas indice, int[] recorrido, int k,
+                               double latitud, double longitud, double rumbo) {
+        if (Double.isNaN(rumbo) || k == 0) {
+            return 1;
+        }
+        if (k == recorrido.length - 1) {
+            return -1;
+        }
+        double haciaSiguiente = desvio(rumbo, indice, recorrido[k + 1], latitud, longitud);
+        double haciaAnterior = desvio(rumbo, indice, recorrido[k - 1], latitud, longitud);
+        return haciaAnterior < haciaSiguiente ? -1 : 1;
+    }
+
+    private static double desvio(double rumbo, IndiceParadas indice, int posicion, double latitud, double longitud) {
+        double hacia = SeguimientoVehiculos.rumboGrados(latitud, longitud,
+                indice.parada(posicion).getLatitud(), indice.parada(posicion).getLongitud());
+        double diferencia = Math.abs(hacia - rumbo) % 360;
+        return diferencia > 180 ? 360 - diferencia : diferencia;
+    }
+
+    /**
+     * Recorrido de la ruta como posiciones del índice; las paradas que el catálogo no tiene se omiten.
+     */
+    private Recorrido recorrido(SnapshotCatalogo catalogo, String ruta) {
+        Recorridos actuales = recorridos;
+        if (actuales == null || actuales.catalogo != catalogo) {
+            actuales = new Recorridos(catalogo);
+            recorridos = actuales;
+        }
+        String clave = tablaHorarios.estaVacia() || ruta == null ? "" : ruta;
+        return actuales.porRuta.computeIfAbsent(clave, r -> construir(catalogo, r));
+    }
+
+    private Recorrido construir(SnapshotCatalogo catalogo, String ruta) {
+        IndiceParadas indice = catalogo.getIndice();
+        if (ruta.isEmpty()) {
+            if (!tablaHorarios.estaVacia()) {
+                return Recorrido.VACIO;
+            }
+            // Sin tabla de horarios: todas las paradas por secuencia, con la posición como desempate
+            long[] orden = new long[indice.tamanio()];
+            for (int i = 0; i < orden.length; i++) {
+                orden[i] = ((long) indice.secuencia(i) << 32) | i;
+            }
+            Arrays.sort(orden);
+            int[] posiciones = new int[orden.length];
+            for (int i = 0; i < orden.length; i++) {
+                posiciones[i] = (int) orden[i];
+            }
+            return new Recorrido(posiciones, indice.tamanio());
+        }
+
+        String[] paradas = tablaHorarios.recorrido(ruta);
+        if (paradas == null) {
+            return Recorrido.VACIO;
+        }
+        int[] posiciones = new int[paradas.length];
+        int cantidad = 0;
+        for (String paradaId : paradas) {
+            int posicion = catalogo.posicion(paradaId);
+            if (posicion != IndiceParadas.SIN_PARADA) {
+                posiciones[cantidad++] = posicion;
+            }
+        }
+        return new Recorrido(Arrays.copyOf(posiciones, cantidad), indice.tamanio());
+    }
+
+    /**
+     * Paradas de un recorrido en orden y, para cada posición del índice, su lugar en el recorrido.
+     * El lugar se guarda en un arreglo solo para recorridos largos (el catálogo completo sin tabla
+     * de horarios); en una ruta de unas decenas de paradas basta con recorrerlas.
+     */
+    private static final class Recorrido {
+        private static final Recorrido VACIO = new Recorrido(new int[0], 0);
+        private static final int MINIMO_PARA_LUGARES = 64;
+
+        private final int[] paradas;
+        private final int[] lugares;
+
+        private Recorrido(int[] paradas, int tamanioIndice) {
+            this.paradas = paradas;
+            if (paradas.length < MINIMO_PARA_LUGARES) {
+                this.lugares = null;
+                return;
+            }
+            this.lugares = new int[tamanioIndice];
+            Arrays.fill(lugares, -1);
+            for (int i = paradas.length - 1; i >= 0; i--) {
+                lugares[paradas[i]] = i;
+            }
+        }
+
+        private int lugar(int posicion) {
+            if (lugares != null) {
+                return posicion >= 0 && posicion < lugares.length ? lugares[posicion] : -1;
+            }
+            for (int i = 0; i < paradas.length; i++) {
+                if (paradas[i] == posicion) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    private static final class Recorridos {
+        private final SnapshotCatalogo catalogo;
+        private final Map<String, Recorrido> porRuta = new ConcurrentHashMap<>();
+
+        private Recorridos(SnapshotCatalogo catalogo) {
+            this.catalogo = catalogo;
+        }
+    }
+
+    /**
+     * Llegada estimada a una parada del recorrido.
+     */
+    @Getter
+    public static final class LlegadaPredicha {
+        /** Posición de la parada en el índice del catálogo. */
+        private final int posicion;
+        private final double distanciaKm;
+        private final long segundos;
+
+        LlegadaPredicha(int posicion, double distanciaKm, long segundos) {
+            this.posicion = posicion;
+            this.distanciaKm = distanciaKm;
+            this.segundos = segundos;
+        }
+    }
+}
@@ -0,0 +1,488 @@
+package com.example.procesa_seniales_kafka.cinematica;
+
+import com.example.procesa_seniales_kafka.estado.EstadoDedupStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import static com.example.procesa_seniales_kafka.geo.DistanciaGeo.KM_POR_GRADO;
+
+/**
+ * Cinemática incremental por vehículo: últimas posiciones, velocidad y rumbo suavizados.
+ *
+ * Cada vehículo ocupa una ranura con un anillo de {@code historia} posiciones guardado en arreglos
+ * primitivos del segmento (latitud, longitud, instante y largo del tramo desde la posición anterior).
+ * La suma de los tramos del anillo se mantiene al agregar y al pisar la posición más vieja, así que
+ * una actualización es O(1) aunque la velocidad se calcule sobre toda la ventana:
+ * velocidad = recorrido del anillo / tiempo entre la primera y la última posición, y
+ * rumbo = dirección del desplazamiento entre ambas. Los tramos son cortos, por lo que se miden
+ * con la aproximación equirectangular en lugar de Haversine, y el coseno de la latitud se calcula
+ * una vez al empezar la ventana: la actualización no evalúa funciones trigonométricas. El rumbo
+ * se guarda como desplazamiento y el ángulo se calcula recién al consultarlo.
+ *
+ * Los vehículos se reparten en segmentos con su propio lock usando {@link EstadoDedupStore#hashVehiculo},
+ * la misma función que los carriles. La cantidad de vehículos está acotada en total (no por segmento,
+ * para que el desbalance del hash no provoque desalojos con la flota por debajo del máximo): al llegar
+ * al máximo, el segmento que recibe un vehículo nuevo libera la ranura de acceso más antiguo de una
+ * muestra, y las inactivas expiran por TTL. El último acceso de cada ranura se marca con un reloj
+ * grueso que avanza en cada purga, suficiente para un TTL de minutos y ahorra leer el reloj por posición.
+ * Las posiciones anteriores a la última conocida se ignoran.
+ */
+@Slf4j
+@Component
+public class SeguimientoVehiculos {
+
+    /** Cantidad de ranuras ocupadas que se examinan al buscar una víctima para desalojar. */
+    private static final int MUESTRA_DESALOJO = 16;
+
+    /** Desplazamiento mínimo de la ventana para recalcular el rumbo; por debajo domina el ruido del GPS. */
+    private static final double DESPLAZAMIENTO_MINIMO_RUMBO_KM = 0.01;
+    private static final double DESPLAZAMIENTO_MINIMO_RUMBO_GRADOS_2 =
+            Math.pow(DESPLAZAMIENTO_MINIMO_RUMBO_KM / KM_POR_GRADO, 2);
+
+    private final Segmento[] segmentos;
+    private final int mascaraSegmentos;
+    private final int maxVehiculos;
+    private final int historia;
+    private final long ttlMs;
+    private final long brechaMaximaMs;
+    private final LongSupplier reloj;
+
+    private final LongAdder actualizaciones = new LongAdder();
+    private final LongAdder fueraDeOrden = new LongAdder();
+    private final LongAdder desalojos = new LongAdder();
+    private final AtomicInteger ocupadas = new AtomicInteger();
+
+    // Instante de la última purga; marca el último acceso de las ranuras
+    private volatile long ahoraAproximado;
+
+    @Autowired
+    public SeguimientoVehiculos(
+            @Value("${procesador.cinematica.max-vehiculos:50000}") int maxVehiculos,
+            @Value("${procesador.cinematica.historia:8}") int historia,
+            @Value("${procesador.cinematica.ttl-minutos:30}") long ttlMinutos,
+            @Value("${procesador.cinematica.brecha-maxima-segundos:300}") long brechaMaximaSegundos,
+            @Value("${procesador.cinematica.segmentos:64}") int segmentos) {
+        this(maxVehiculos, historia, ttlMinutos * 60_000L, brechaMaximaSegundos * 1000L, segmentos,
+                System::currentTimeMillis);
+    }
+
+    SeguimientoVehiculos(int maxVehiculos, int historia, long ttlMs, long brechaMaximaMs, int segmentos,
+                         LongSupplier reloj) {
+        if (maxVehiculos <= 0 || segmentos <= 0 || historia < 2) {
+            throw new IllegalArgumentException("max-vehiculos y segmentos deben ser positivos y historia al menos 2");
+        }
+        this.maxVehiculos = maxVehiculos;
+        this.historia = historia;
+        this.ttlMs = ttlMs;
+        this.brechaMaximaMs = brechaMaximaMs;
+        this.reloj = reloj;
+        this.ahoraAproximado = reloj.getAsLong();
+        // Los segmentos dimensionan sus ranuras con la historia: se crean al final
+        int cantidadSegmentos = Integer.highestOneBit(Math.min(segmentos, maxVehiculos));
+        this.segmentos = new Segmento[cantidadSegmentos];
+        for (int i = 0; i < cantidadSegmentos; i++) {
+            this.segmentos[i] = new Segmento();
+        }
+        this.mascaraSegmentos = cantidadSegmentos - 1;
+    }
+
+    /**
+     * Agrega una posición del vehículo.
+     *
+     * @param instanteMs instante de la posición en milisegundos (misma escala entre llamadas)
+     * @return velocidad suavizada en km/h, o NaN si todavía no hay dos posiciones en la ventana
+     */
+    public double actualizar(String vehiculoId, double latitud, double longitud, long instanteMs) {
+        actualizaciones.increment();
+        int hash = EstadoDedupStore.hashVehiculo(vehiculoId);
+        return segmentos[hash & mascaraSegmentos].actualizar(vehiculoId, hash, latitud, longitud, instanteMs);
+    }
+
+    /**
+     * Rumbo suavizado del vehículo en grados (0 = norte, 90 = este), o NaN si no se conoce.
+     */
+    public double rumbo(String vehiculoId) {
+        int hash = EstadoDedupStore.hashVehiculo(vehiculoId);
+        return segmentos[hash & mascaraSegmentos].rumbo(vehiculoId, hash);
+    }
+
+    /**
+     * Posición del vehículo anterior a la de {@code instanteMs}, que tiene que ser la última agregada:
+     * el tramo entre ambas es el que recorrió desde la ubicación previa.
+     * @return null si esa posición no se agregó (atrasada) o empezó una ventana nueva tras una brecha
+     */
+    public PosicionAnterior anterior(String vehiculoId, long instanteMs) {
+        int hash = EstadoDedupStore.hashVehiculo(vehiculoId);
+        return segmentos[hash & mascaraSegmentos].anterior(vehiculoId, hash, instanteMs);
+    }
+
+    /**
+     * Velocidad suavizada del vehículo en km/h, o NaN si no se conoce.
+     */
+    public double velocidad(String vehiculoId) {
+        int hash = EstadoDedupStore.hashVehiculo(vehiculoId);
+        return segmentos[hash & mascaraSegmentos].velocidad(vehiculoId, hash);
+    }
+
+    /**
+     * Libera las ranuras de los vehículos sin posiciones dentro del TTL y avanza el reloj de accesos.
+     */
+    @Scheduled(fixedDelayString = "${procesador.cinematica.purga-ms:30000}")
+    public void purgarExpirados() {
+        long ahora = reloj.getAsLong();
+        ahoraAproximado = ahora;
+        int eliminados = 0;
+        for (Segmento segmento : segmentos) {
+            eliminados += segmento.purgar(ahora);
+        }
+        if (eliminados > 0) {
+            log.debug("🧹 Cinemática: {} vehículos inactivos eliminados", eliminados);
+        }
+    }
+
+    public int tamanio() {
+        return ocupadas.get();
+    }
+
+    /**
+     * Memoria aproximada de los anillos y el índice de vehículos, sin contar los IDs.
+     */
+    public long memoriaAproximadaBytes() {
+        long ranuras = 0;
+        for (Segmento segmento : segmentos) {
+            ranuras += segmento.capacidad();
+        }
+        // Anillo: latitud, longitud, tramo e instante; por ranura: 8 campos, el ID y hasta dos entradas del índice
+        return ranuras * (historia * 32L + 8 * 8L + 8L + 2 * 8L);
+    }
+
+    public long getActualizaciones() {
+        return actualizaciones.sum();
+    }
+
+    public long getFueraDeOrden() {
+        return fueraDeOrden.sum();
+    }
+
+    public long getDesalojos() {
+        return desalojos.sum();
+    }
+
+    /**
+     * Posición e instante previos de un vehículo.
+     */
+    public record PosicionAnterior(double latitud, double longitud, long instanteMs) {
+    }
+
+    /**
+     * Rumbo inicial de 1 a 2 en grados con la aproximación equirectangular.
+     */
+    static double rumboGrados(double latitud1, double longitud1, double latitud2, double longitud2) {
+        double dx = (longitud2 - longitud1) * Math.cos(Math.toRadians((latitud1 + latitud2) / 2));
+        double dy = latitud2 - latitud1;
+        double grados = Math.toDegrees(Math.atan2(dx, dy));
+        return grados < 0 ? grados + 360 : grados;
+    }
+
+    /**
+     * Ranuras densas 0..usadas-1 (con lista de libres). Los datos de la ranura {@code r} son contiguos
+     * para que una actualización toque pocas líneas de caché:
+     * {@code valores[r * pasoValores ..]} = recorrido, velocidad, coseno de la latitud, último desplazamiento
+     * válido para el rumbo (este y norte, en grados de latitud) y el anillo (latitud, longitud, tramo),
+     * {@code tiempos[r * pasoTiempos ..]} = último acceso, cabeza, cantidad y el anillo de instantes.
+     * La cabeza es la posición del anillo más reciente.
+     *
+     * El vehículo se ubica con una tabla de direccionamiento abierto (sondeo lineal, borrado por
+     * desplazamiento hacia atrás) cuyas entradas empaquetan el hash y la ranura en un long, así la
+     * búsqueda no recorre nodos ni enteros en caja. Todas las operaciones se realizan bajo el lock del segmento.
+     */
+    private final class Segmento {
+        private static final int RECORRIDO = 0;
+        private static final int VELOCIDAD = 1;
+        private static final int COSENO_LATITUD = 2;
+        private static final int DESPLAZAMIENTO_ESTE = 3;
+        private static final int DESPLAZAMIENTO_NORTE = 4;
+        private static final int ANILLO_VALORES = 5;
+        private static final int ACCESO = 0;
+        private static final int CABEZA = 1;
+        private static final int CANTIDAD = 2;
+        private static final int ANILLO_TIEMPOS = 3;
+
+        private final int pasoValores = ANILLO_VALORES + 3 * historia;
+        private final int pasoTiempos = ANILLO_TIEMPOS + historia;
+        // (hash << 32) | (ranura + 1); 0 es una entrada vacía
+        private long[] tabla = new long[32];
+        private int tamanio;
+        private String[] vehiculos = new String[0];
+        private double[] valores = new double[0];
+        private long[] tiempos = new long[0];
+        private int usadas;
+        private int[] libres = new int[0];
+        private int cantidadLibres;
+        private int cursorDesalojo;
+
+        private synchronized double actualizar(String vehiculoId, int hash, double latitud, double longitud,
+                                               long instanteMs) {
+            long ahora = ahoraAproximado;
+            int r = buscar(vehiculoId, hash);
+            if (r < 0) {
+                r = asignar(vehiculoId, hash, ahora);
+            }
+            int v = r * pasoValores;
+            int t = r * pasoTiempos;
+            tiempos[t + ACCESO] = ahora;
+
+            int cabeza = (int) tiempos[t + CABEZA];
+            int n = (int) tiempos[t + CANTIDAD];
+            double tramo = 0;
+            if (n > 0) {
+                long dt = instanteMs - tiempos[t + ANILLO_TIEMPOS + cabeza];
+                if (dt <= 0) {
+                    fueraDeOrden.increment();
+                    return valores[v + VELOCIDAD];
+                }
+                if (dt > brechaMaximaMs) {
+                    // Tras una brecha larga la ventana no describe el movimiento actual
+                    n = 0;
+                    valores[v + RECORRIDO] = 0;
+                } else {
+                    int ultima = v + ANILLO_VALORES + 3 * cabeza;
+                    double este = (longitud - valores[ultima + 1]) * valores[v + COSENO_LATITUD];
+                    double norte = latitud - valores[ultima];
+                    tramo = Math.sqrt(este * este + norte * norte) * KM_POR_GRADO;
+                }
+            }
+            if (n == 0) {
+                valores[v + COSENO_LATITUD] = Math.cos(Math.toRadians(latitud));
+            }
+
+            int nueva = n == 0 ? 0 : (cabeza + 1) % historia;
+            if (n == historia) {
+                // Se pisa la posición más vieja: la siguiente pasa a ser la primera y su tramo sale de la ventana
+                int siguiente = v + ANILLO_VALORES + 3 * ((nueva + 1) % historia);
+                valores[v + RECORRIDO] = Math.max(0, valores[v + RECORRIDO] - valores[siguiente + 2]);
+            } else {
+                n++;
+            }
+            int posicion = v + ANILLO_VALORES + 3 * nueva;
+            valores[posicion] = latitud;
+            valores[posicion + 1] = longitud;
+            valores[posicion + 2] = tramo;
+            valores[v + RECORRIDO] += tramo;
+            tiempos[t + ANILLO_TIEMPOS + nueva] = instanteMs;
+            tiempos[t + CABEZA] = nueva;
+            tiempos[t + CANTIDAD] = n;
+
+            if (n < 2) {
+                valores[v + VELOCIDAD] = Double.NaN;
+                return Double.NaN;
+            }
+            int indicePrimera = (nueva + historia - n + 1) % historia;
+            int primera = v + ANILLO_VALORES + 3 * indicePrimera;
+            double horas = (instanteMs - tiempos[t + ANILLO_TIEMPOS + indicePrimera]) / 3_600_000.0;
+            double velocidad = valores[v + RECORRIDO] / horas;
+            valores[v + VELOCIDAD] = velocidad;
+            double este = (longitud - valores[primera + 1]) * valores[v + COSENO_LATITUD];
+            double norte = latitud - valores[primera];
+            if (este * este + norte * norte >= DESPLAZAMIENTO_MINIMO_RUMBO_GRADOS_2) {
+                valores[v + DESPLAZAMIENTO_ESTE] = este;
+                valores[v + DESPLAZAMIENTO_NORTE] = norte;
+            }
+            return velocidad;
+        }
+
+        private synchronized double rumbo(String vehiculoId, int hash) {
+            int r = buscar(vehiculoId, hash);
+            if (r < 0) {
+                return Double.NaN;
+            }
+            double este = valores[r * pasoValores + DESPLAZAMIENTO_ESTE];
+            double norte = valores[r * pasoValores + DESPLAZAMIENTO_NORTE];
+            if (Double.isNaN(este)) {
+                return Double.NaN;
+            }
+            double grados = Math.toDegrees(Math.atan2(este, norte));
+            return grados < 0 ? grados + 360 : grados;
+        }
+
+        private synchronized PosicionAnterior anterior(String vehiculoId, int hash, long instanteMs) {
+            int r = buscar(vehiculoId, hash);
+            if (r < 0) {
+                return null;
+            }
+            int t = r * pasoTiempos;
+            int cabeza = (int) tiempos[t + CABEZA];
+            if (tiempos[t + CANTIDAD] < 2 || tiempos[t + ANILLO_TIEMPOS + cabeza] != instanteMs) {
+                return null;
+            }
+            int previa = (cabeza + historia - 1) % historia;
+            int posicion = r * pasoValores + ANILLO_VALORES + 3 * previa;
+            return new PosicionAnterior(valores[posicion], valores[posicion + 1], tiempos[t + ANILLO_TIEMPOS + previa]);
+        }
+
+        private synchronized double velocidad(String vehiculoId, int hash) {
+            int r = buscar(vehiculoId, hash);
+            return r < 0 ? Double.NaN : valores[r * pasoValores + VELOCIDAD];
+        }
+
+        /**
+         * Ranura del vehículo, o -1 si no está.
+         */
+        private int buscar(String vehiculoId, int hash) {
+            int mascara = tabla.length - 1;
+            for (int i = ideal(hash, mascara); tabla[i] != 0; i = (i + 1) & mascara) {
+                if ((int) (tabla[i] >>> 32) == hash) {
+                    int r = (int) tabla[i] - 1;
+                    if (vehiculos[r].equals(vehiculoId)) {
+                        return r;
+                    }
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Los bits bajos del hash ya eligieron el segmento; dentro de la tabla se usan los altos.
+         */
+        private int ideal(int hash, int mascara) {
+            return Integer.rotateRight(hash, 16) & mascara;
+        }
+
+        private void indexar(int hash, int r) {
+            if ((tamanio + 1) * 2 > tabla.length) {
+                long[] vieja = tabla;
+                tabla = new long[vieja.length * 2];
+                for (long entrada : vieja) {
+                    if (entrada != 0) {
+                        colocar(entrada);
+                    }
+                }
+            }
+            colocar(((long) hash << 32) | (r + 1));
+            tamanio++;
+        }
+
+        private void colocar(long entrada) {
+            int mascara = tabla.length - 1;
+            int i = ideal((int) (entrada >>> 32), mascara);
+            while (tabla[i] != 0) {
+                i = (i + 1) & mascara;
+            }
+            tabla[i] = entrada;
+        }
+
+        private void desindexar(int r) {
+            int hash = EstadoDedupStore.hashVehiculo(vehiculos[r]);
+            int mascara = tabla.length - 1;
+            int i = ideal(hash, mascara);
+            while ((int) tabla[i] - 1 != r) {
+                i = (i + 1) & mascara;
+            }
+            int j = i;
+            while (true) {
+                j = (j + 1) & mascara;
+                if (tabla[j] == 0) {
+                    break;
+                }
+                int idealJ = ideal((int) (tabla[j] >>> 32), mascara);
+                boolean quedaEnSuLugar = i <= j ? (i < idealJ && idealJ <= j) : (i < idealJ || idealJ <= j);
+                if (quedaEnSuLugar) {
+                    continue;
+                }
+                tabla[i] = tabla[j];
+                i = j;
+            }
+            tabla[i] = 0;
+            tamanio--;
+        }
+
+        private int asignar(String vehiculoId, int hash, long ahora) {
+            int r;
+            if (ocupadas.get() >= maxVehiculos && tamanio > 0) {
+                // Un segmento vacío no tiene a quién desalojar: el total puede exceder el máximo en una ranura por segmento
+                r = desalojarUna(ahora);
+            } else if (cantidadLibres > 0) {
+                r = libres[--cantidadLibres];
+                ocupadas.incrementAndGet();
+            } else {
+                if (usadas == vehiculos.length) {
+                    crecer(Math.max(16, usadas * 2));
+                }
+                r = usadas++;
+                ocupadas.incrementAndGet();
+            }
+            vehiculos[r] = vehiculoId;
+            int v = r * pasoValores;
+            valores[v + RECORRIDO] = 0;
+            valores[v + VELOCIDAD] = Double.NaN;
+            valores[v + DESPLAZAMIENTO_ESTE] = Double.NaN;
+            valores[v + DESPLAZAMIENTO_NORTE] = Double.NaN;
+            tiempos[r * pasoTiempos + CABEZA] = 0;
+            tiempos[r * pasoTiempos + CANTIDAD] = 0;
+            indexar(hash, r);
+            return r;
+        }
+
+        /**
+         * Libera la ranura de acceso más antiguo entre una muestra de ranuras y la devuelve.
+         */
+        private int desalojarUna(long ahora) {
+            int victima = -1;
+            for (int k = 0; k < Math.min(MUESTRA_DESALOJO, usadas); k++) {
+                int i = (cursorDesalojo + k) % usadas;
+                if (vehiculos[i] != null && (victima < 0 || acceso(i) < acceso(victima))) {
+                    victima = i;
+                }
+            }
+            for (int i = 0; victima < 0; i++) {
+                // La muestra cayó sobre ranuras libres; el segmento tiene al menos una ocupada
+                if (vehiculos[i] != null) {
+                    victima = i;
+                }
+            }
+            cursorDesalojo = (victima + 1) % usadas;
+            desalojos.increment();
+            desindexar(victima);
+            return victima;
+        }
+
+        private synchronized int purgar(long ahora) {
+            int eliminados = 0;
+            for (int r = 0; r < usadas; r++) {
+                if (vehiculos[r] != null && ahora - acceso(r) > ttlMs) {
+                    desindexar(r);
+                    vehiculos[r] = null;
+                    ocupadas.decrementAndGet();
+                    if (cantidadLibres == libres.length) {
+                        libres = Arrays.copyOf(libres, Math.max(16, libres.length * 2));
+                    }
+                    libres[cantidadLibres++] = r;
+                    eliminados++;
+                }
+            }
+            return eliminados;
+        }
+
+        private long acceso(int r) {
+            return tiempos[r * pasoTiempos + ACCESO];
+        }
+
+        private void crecer(int capacidad) {
+            vehiculos = Arrays.copyOf(vehiculos, capacidad);
+            valores = Arrays.copyOf(valores, capacidad * pasoValores);
+            tiempos = Arrays.copyOf(tiempos, capacidad * pasoTiempos);
+        }
+
+        private synchronized int capacidad() {
+            return vehiculos.length;
+        }
+    }
+}
@@ -1,42 +1,121 @@
 package com.example.procesa_seniales_kafka.config;
 
+import com.example.procesa_seniales_kafka.checkpoint.CheckpointEstado;
+import com.example.procesa_seniales_kafka.errores.CanalErrores;
+import com.example.procesa_seniales_kafka.kpis.AgregadorKpis;
+import com.example.procesa_seniales_kafka.metricas.DeserializadorMedido;
+import com.example.procesa_seniales_kafka.metricas.MetricasProcesamiento;
 import com.example.procesa_seniales_kafka.model.HorarioVehiculo;
+import com.example.procesa_seniales_kafka.model.ResumenKpi;
 import com.example.procesa_seniales_kafka.model.UbicacionVehiculo;
+import com.example.procesa_seniales_kafka.serializacion.CodecHorarioVehiculo;
+import com.example.procesa_seniales_kafka.serializacion.CodecUbicacionVehiculo;
+import com.example.procesa_seniales_kafka.serializacion.DeserializadorNegociado;
+import com.example.procesa_seniales_kafka.serializacion.FormatoWire;
+import com.example.procesa_seniales_kafka.serializacion.SerializadorNegociado;
+import com.example.procesa_seniales_kafka.service.ProcesamientoSenialesService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.admin.AdminClient;
+import org.apache.kafka.clients.admin.AdminClientConfig;
+import org.apache.kafka.clients.consumer.Consumer;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
 import org.apache.kafka.common.serialization.StringDeserializer;
 import org.apache.kafka.common.serialization.StringSerializer;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.kafka.annotation.EnableKafka;
 import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
 import org.springframework.kafka.core.*;
+import org.springframework.kafka.listener.ConsumerAwareRebalanceListener;
 import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.listener.DefaultErrorHandler;
 import org.springframework.kafka.support.JacksonUtils;
 import org.springframework.kafka.support.serializer.ErrorHandlingDeserializer;
 import org.springframework.kafka.support.serializer.JsonDeserializer;
 import org.springframework.kafka.support.serializer.JsonSerializer;
+import org.springframework.util.backoff.FixedBackOff;
 
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Configuración de Kafka para el microservicio procesador de señales.
  * Define los consumers para recibir ubicaciones y producers para publicar horarios.
  */
+@Slf4j
 @Configuration
 @EnableKafka
 public class KafkaConfig {
 
+    private static final String TOPICO_UBICACIONES = "ubicaciones_vehiculos";
+
     @Value("${spring.kafka.bootstrap-servers}")
     private String bootstrapServers;
 
     @Value("${spring.kafka.consumer.group-id}")
     private String groupId;
 
+    @Value("${procesador.consumo.max-poll-records:500}")
+    private int maxPollRecords;
+
+    @Value("${procesador.consumo.fetch-min-bytes:1}")
+    private int fetchMinBytes;
+
+    @Value("${procesador.consumo.fetch-max-wait-ms:500}")
+    private int fetchMaxWaitMs;
+
+    @Value("${procesador.consumo.max-partition-fetch-bytes:1048576}")
+    private int maxPartitionFetchBytes;
+
+    // Hilos de consumo por contenedor; 0 = tantos como particiones del tópico (acotado por los núcleos)
+    @Value("${procesador.consumo.concurrencia:1}")
+    private int concurrencia;
+
+    // Ejecuta los contenedores de listeners y el trabajo posterior al envío en hilos virtuales
+    @Value("${procesador.hilos.virtuales:false}")
+    private boolean hilosVirtuales;
+
+    // Perfil del productor de horarios: latencia | balanceado | rendimiento
+    @Value("${procesador.productor.perfil:balanceado}")
+    private String perfilProductor;
+
+    // Ajustes individuales; vacío = valor del perfil
+    @Value("${procesador.productor.linger-ms:}")
+    private String lingerMs;
+
+    @Value("${procesador.productor.batch-size:}")
+    private String batchSize;
+
+    @Value("${procesador.productor.compression-type:}")
+    private String compressionType;
+
+    @Value("${procesador.productor.acks:all}")
+    private String acks;
+
+    @Value("${procesador.productor.enable-idempotence:true}")
+    private boolean enableIdempotence;
+
+    // Formato de payload por tópico: json | binario. En ubicaciones es el formato que se asume
+    // cuando el registro no trae el header x-formato; en horarios es el formato de escritura
+    @Value("${procesador.serializacion.ubicaciones:json}")
+    private String formatoUbicaciones;
+
+    @Value("${procesador.serializacion.horarios:json}")
+    private String formatoHorarios;
+
     @Bean
     public ObjectMapper objectMapper() {
         return JacksonUtils.enhancedObjectMapper()
@@ -48,52 +127,333 @@ public class KafkaConfig {
     // ========================================================================
 
     @Bean
-    public ConsumerFactory<String, UbicacionVehiculo> consumerFactory(ObjectMapper objectMapper) {
+    public ConsumerFactory<String, UbicacionVehiculo> consumerFactory(
+            ObjectMapper objectMapper, MeterRegistry meterRegistry, MetricasProcesamiento metricas) {
         Map<String, Object> config = new HashMap<>();
         config.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
         config.put(ConsumerConfig.GROUP_ID_CONFIG, groupId);
         config.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
         config.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false); // Manual commit
+        config.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, maxPollRecords);
+        config.put(ConsumerConfig.FETCH_MIN_BYTES_CONFIG, fetchMinBytes);
+        config.put(ConsumerConfig.FETCH_MAX_WAIT_MS_CONFIG, fetchMaxWaitMs);
+        config.put(ConsumerConfig.MAX_PARTITION_FETCH_BYTES_CONFIG, maxPartitionFetchBytes);
         
         JsonDeserializer<UbicacionVehiculo> jsonDeserializer = new JsonDeserializer<>(UbicacionVehiculo.class, objectMapper);
         jsonDeserializer.addTrustedPackages("*");
         
+        DeserializadorNegociado<UbicacionVehiculo> deserializadorNegociado = new DeserializadorNegociado<>(
+                jsonDeserializer,
+                CodecUbicacionVehiculo::decodificar,
+                FormatoWire.desdeConfiguracion(formatoUbicaciones));
+        
         ErrorHandlingDeserializer<UbicacionVehiculo> errorHandlingDeserializer = 
-                new ErrorHandlingDeserializer<>(jsonDeserializer);
+                new ErrorHandlingDeserializer<>(new DeserializadorMedido<>(deserializadorNegociado, metricas));
         
-        return new DefaultKafkaConsumerFactory<>(
+        DefaultKafkaConsumerFactory<String, UbicacionVehiculo> factory = new DefaultKafkaConsumerFactory<>(
                 config,
                 new StringDeserializer(),
                 errorHandlingDeserializer
         );
+        // Métricas del cliente Kafka (lag por partición, fetch, commits) en el MeterRegistry
+        factory.addListener(new MicrometerConsumerListener<>(meterRegistry));
+        return factory;
     }
 
     @Bean
     public ConcurrentKafkaListenerContainerFactory<String, UbicacionVehiculo> kafkaListenerContainerFactory(
-            ConsumerFactory<String, UbicacionVehiculo> consumerFactory) {
+            ConsumerFactory<String, UbicacionVehiculo> consumerFactory, AgregadorKpis agregadorKpis,
+            CheckpointEstado checkpoint, ProcesamientoSenialesService procesamientoService,
+            CanalErrores canalErrores) {
         ConcurrentKafkaListenerContainerFactory<String, UbicacionVehiculo> factory = 
                 new ConcurrentKafkaListenerContainerFactory<>();
         factory.setConsumerFactory(consumerFactory);
+        factory.setConcurrency(resolverConcurrencia());
+        factory.setCommonErrorHandler(manejadorErrores(canalErrores));
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+        // Los offsets se confirman cuando el broker confirma los horarios derivados, que pueden
+        // completarse fuera de orden; el contenedor solo hace commit de rangos contiguos
+        factory.getContainerProperties().setAsyncAcks(true);
+        factory.getContainerProperties().setConsumerRebalanceListener(
+                escucharRebalanceos(agregadorKpis, checkpoint, procesamientoService));
+        configurarHilos(factory, "consumer-ubicaciones-");
+        return factory;
+    }
+
+    /**
+     * Factory para el modo por lotes: el listener recibe todos los registros de un poll
+     * y confirma los offsets una sola vez por lote. Es el único modo que reparte el poll entre
+     * los carriles por vehículo ({@code procesador.consumo.carriles}).
+     */
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, UbicacionVehiculo> batchKafkaListenerContainerFactory(
+            ConsumerFactory<String, UbicacionVehiculo> consumerFactory, AgregadorKpis agregadorKpis,
+            CheckpointEstado checkpoint, ProcesamientoSenialesService procesamientoService,
+            CanalErrores canalErrores) {
+        ConcurrentKafkaListenerContainerFactory<String, UbicacionVehiculo> factory =
+                new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(consumerFactory);
+        factory.setBatchListener(true);
+        factory.setConcurrency(resolverConcurrencia());
+        factory.setCommonErrorHandler(manejadorErrores(canalErrores));
         factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+        factory.getContainerProperties().setAsyncAcks(true);
+        factory.getContainerProperties().setConsumerRebalanceListener(
+                escucharRebalanceos(agregadorKpis, checkpoint, procesamientoService));
+        configurarHilos(factory, "consumer-ubicaciones-lote-");
         return factory;
     }
 
+    /**
+     * Factory de los tópicos de reintento: un hilo, sin acks asíncronos, porque el listener posterga
+     * cada registro con {@code nack} hasta que vence su espera y recién entonces lo procesa.
+     */
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, UbicacionVehiculo> reintentosKafkaListenerContainerFactory(
+            ConsumerFactory<String, UbicacionVehiculo> consumerFactory, CanalErrores canalErrores) {
+        ConcurrentKafkaListenerContainerFactory<String, UbicacionVehiculo> factory =
+                new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(consumerFactory);
+        factory.setConcurrency(1);
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+        factory.setCommonErrorHandler(manejadorErrores(canalErrores));
+        configurarHilos(factory, "consumer-reintentos-");
+        return factory;
+    }
+
+    /**
+     * Los registros que el listener no llega a recibir (payload no deserializable) o que lanzan una
+     * excepción se derivan sin reintentos en memoria: la partición sigue con el siguiente offset.
+     */
+    private static DefaultErrorHandler manejadorErrores(CanalErrores canalErrores) {
+        DefaultErrorHandler manejador = new DefaultErrorHandler(canalErrores::recuperar, new FixedBackOff(0, 0));
+        manejador.setSeekAfterError(false);
+        return manejador;
+    }
+
+    /**
+     * Al recibir particiones se restaura su checkpoint de estado antes del primer poll. Al perderlas se
+     * procesan las ubicaciones retenidas en el reorden, los KPIs de las ventanas abiertas se publican como
+     * parciales (las ubicaciones de esos vehículos siguen en otra instancia, que aporta el resto de cada
+     * ventana) y se guarda el checkpoint de las particiones revocadas.
+     */
+    private static ConsumerAwareRebalanceListener escucharRebalanceos(AgregadorKpis agregadorKpis,
+                                                                      CheckpointEstado checkpoint,
+                                                                      ProcesamientoSenialesService procesamientoService) {
+        return new ConsumerAwareRebalanceListener() {
+            @Override
+            public void onPartitionsRevokedBeforeCommit(Consumer<?, ?> consumer, Collection<TopicPartition> particiones) {
+                if (!particiones.isEmpty()) {
+                    procesamientoService.entregarRetenidas();
+                    agregadorKpis.publicarParciales();
+                    checkpoint.revocadas(particiones);
+                }
+            }
+
+            @Override
+            public void onPartitionsLost(Consumer<?, ?> consumer, Collection<TopicPartition> particiones) {
+                if (!particiones.isEmpty()) {
+                    agregadorKpis.publicarParciales();
+                    checkpoint.perdidas(particiones);
+                }
+            }
+
+            @Override
+            public void onPartitionsAssigned(Consumer<?, ?> consumer, Collection<TopicPartition> particiones) {
+                checkpoint.asignadas(consumer, particiones);
+            }
+        };
+    }
+
+    /**
+     * Con hilos virtuales, cada contenedor hijo corre su bucle de poll en un hilo virtual.
+     */
+    private void configurarHilos(ConcurrentKafkaListenerContainerFactory<?, ?> factory, String prefijo) {
+        if (hilosVirtuales) {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor(prefijo);
+            executor.setVirtualThreads(true);
+            factory.getContainerProperties().setListenerTaskExecutor(executor);
+        }
+    }
+
+    /**
+     * Resuelve la concurrencia de los contenedores. Con el modo automático se consulta la
+     * cantidad de particiones de ubicaciones_vehiculos: cada hilo queda a cargo de particiones
+     * completas, con lo que se conserva el orden por vehículo (la key es el vehiculoId). Como el estado
+     * elige sus segmentos con el mismo hash que el particionador ({@code EstadoDedupStore.hashVehiculo}),
+     * con particiones potencia de dos los hilos tampoco comparten locks del estado.
+     */
+    private int resolverConcurrencia() {
+        if (concurrencia > 0) {
+            return concurrencia;
+        }
+
+        int nucleos = Runtime.getRuntime().availableProcessors();
+        Map<String, Object> config = new HashMap<>();
+        config.put(AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        config.put(AdminClientConfig.REQUEST_TIMEOUT_MS_CONFIG, 5000);
+
+        try (AdminClient admin = AdminClient.create(config)) {
+            int particiones = admin.describeTopics(List.of(TOPICO_UBICACIONES))
+                    .allTopicNames()
+                    .get(10, TimeUnit.SECONDS)
+                    .get(TOPICO_UBICACIONES)
+                    .partitions()
+                    .size();
+            int resultado = Math.max(1, Math.min(particiones, nucleos));
+            log.info("⚙️  Concurrencia automática: {} hilos ({} particiones, {} núcleos)",
+                    resultado, particiones, nucleos);
+            return resultado;
+        } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            log.warn("⚠️  No se pudo consultar las particiones de {}: {}. Se usa concurrencia 1",
+                    TOPICO_UBICACIONES, e.getMessage());
+            return 1;
+        }
+    }
+
     // ========================================================================
     // PRODUCER CONFIGURATION
     // ========================================================================
 
     @Bean
-    public ProducerFactory<String, HorarioVehiculo> producerFactory(ObjectMapper objectMapper) {
-        Map<String, Object> config = new HashMap<>();
-        config.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+    public ProducerFactory<String, HorarioVehiculo> producerFactory(
+            ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        Map<String, Object> config = configuracionProductor();
+        log.info("📤 Productor de horarios con perfil '{}': linger.ms={}, batch.size={}, compression.type={}, acks={}",
+                perfilProductor,
+                config.get(ProducerConfig.LINGER_MS_CONFIG),
+                config.get(ProducerConfig.BATCH_SIZE_CONFIG),
+                config.get(ProducerConfig.COMPRESSION_TYPE_CONFIG),
+                acks);
         
         JsonSerializer<HorarioVehiculo> jsonSerializer = new JsonSerializer<>(objectMapper);
+        SerializadorNegociado<HorarioVehiculo> serializadorNegociado = new SerializadorNegociado<>(
+                jsonSerializer,
+                CodecHorarioVehiculo::codificar,
+                FormatoWire.desdeConfiguracion(formatoHorarios));
         
-        return new DefaultKafkaProducerFactory<>(
+        DefaultKafkaProducerFactory<String, HorarioVehiculo> factory = new DefaultKafkaProducerFactory<>(
                 config,
                 new StringSerializer(),
-                jsonSerializer
+                serializadorNegociado
+        );
+        // Métricas del cliente Kafka (tamaño de batch, errores y reintentos de envío) en el MeterRegistry
+        factory.addListener(new MicrometerProducerListener<>(meterRegistry));
+        return factory;
+    }
+
+    /**
+     * Productor de ubicaciones para los tópicos laterales (ubicaciones tardías), con el mismo perfil
+     * que el de horarios y en el formato del tópico de ubicaciones, para que se puedan releer con el
+     * mismo consumer. El productor se crea recién con el primer envío.
+     */
+    @Bean
+    public ProducerFactory<String, UbicacionVehiculo> productorUbicacionesFactory(
+            ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        SerializadorNegociado<UbicacionVehiculo> serializadorNegociado = new SerializadorNegociado<>(
+                new JsonSerializer<>(objectMapper),
+                CodecUbicacionVehiculo::codificar,
+                FormatoWire.desdeConfiguracion(formatoUbicaciones));
+
+        DefaultKafkaProducerFactory<String, UbicacionVehiculo> factory = new DefaultKafkaProducerFactory<>(
+                configuracionProductor(),
+                new StringSerializer(),
+                serializadorNegociado
+        );
+        factory.addListener(new MicrometerProducerListener<>(meterRegistry));
+        return factory;
+    }
+
+    /**
+     * Productor de los resúmenes de KPIs, siempre en JSON (pocos mensajes por ventana).
+     */
+    @Bean
+    public ProducerFactory<String, ResumenKpi> productorKpisFactory(
+            ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        DefaultKafkaProducerFactory<String, ResumenKpi> factory = new DefaultKafkaProducerFactory<>(
+                configuracionProductor(),
+                new StringSerializer(),
+                new JsonSerializer<>(objectMapper)
         );
+        factory.addListener(new MicrometerProducerListener<>(meterRegistry));
+        return factory;
+    }
+
+    /**
+     * Productor de bytes crudos para el dead-letter: los registros que no se pudieron deserializar se
+     * reenvían tal como llegaron.
+     */
+    @Bean
+    public ProducerFactory<String, byte[]> productorBytesFactory(MeterRegistry meterRegistry) {
+        DefaultKafkaProducerFactory<String, byte[]> factory = new DefaultKafkaProducerFactory<>(
+                configuracionProductor(),
+                new StringSerializer(),
+                new ByteArraySerializer()
+        );
+        factory.addListener(new MicrometerProducerListener<>(meterRegistry));
+        return factory;
+    }
+
+    private Map<String, Object> configuracionProductor() {
+        Map<String, Object> config = new HashMap<>();
+        config.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        config.putAll(configuracionPerfilProductor());
+        config.put(ProducerConfig.ACKS_CONFIG, acks);
+        config.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, enableIdempotence);
+        ponerSiDefinido(config, ProducerConfig.LINGER_MS_CONFIG, lingerMs);
+        ponerSiDefinido(config, ProducerConfig.BATCH_SIZE_CONFIG, batchSize);
+        ponerSiDefinido(config, ProducerConfig.COMPRESSION_TYPE_CONFIG, compressionType);
+        return config;
+    }
+
+    /**
+     * Valores de batching y compresión de cada perfil del productor.
+     * - latencia: envía cada registro apenas está listo.
+     * - balanceado: espera unos milisegundos para agrupar y comprime con lz4.
+     * - rendimiento: lotes grandes y compresión zstd para maximizar registros por request.
+     */
+    private Map<String, Object> configuracionPerfilProductor() {
+        Map<String, Object> config = new HashMap<>();
+        switch (perfilProductor.toLowerCase()) {
+            case "latencia" -> {
+                config.put(ProducerConfig.LINGER_MS_CONFIG, 0);
+                config.put(ProducerConfig.BATCH_SIZE_CONFIG, 16_384);
+                config.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, "none");
+            }
+            case "rendimiento" -> {
+                config.put(ProducerConfig.LINGER_MS_CONFIG, 25);
+                config.put(ProducerConfig.BATCH_SIZE_CONFIG, 262_144);
+                config.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, "zstd");
+            }
+            default -> {
+                config.put(ProducerConfig.LINGER_MS_CONFIG, 5);
+                config.put(ProducerConfig.BATCH_SIZE_CONFIG, 65_536);
+                config.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, "lz4");
+            }
+        }
+        return config;
+    }
+
+    private static void ponerSiDefinido(Map<String, Object> config, String clave, String valor) {
+        if (valor != null && !valor.isBlank()) {
+            config.put(clave, valor.trim());
+        }
+    }
+
+    /**
+     * Ejecutor para el trabajo bloqueante posterior al envío (callbacks de los futures de send),
+     * para no ocupar el hilo de I/O del productor.
+     */
+    @Bean
+    public ExecutorService ejecutorPublicacion() {
+        if (hilosVirtuales) {
+            return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("publicacion-", 0).factory());
+        }
+        int hilos = Math.max(2, Runtime.getRuntime().availableProcessors() / 2);
+        return Executors.newFixedThreadPool(hilos, Thread.ofPlatform().name("publicacion-", 0).daemon().factory());
     }
 
     @Bean
@@ -101,4 +461,22 @@ public class KafkaConfig {
             ProducerFactory<String, HorarioVehiculo> producerFactory) {
         return new KafkaTemplate<>(producerFactory);
     }
+
+    @Bean
+    public KafkaTemplate<String, UbicacionVehiculo> kafkaTemplateUbicaciones(
+            ProducerFactory<String, UbicacionVehiculo> productorUbicacionesFactory) {
+        return new KafkaTemplate<>(productorUbicacionesFactory);
+    }
+
+    @Bean
+    public KafkaTemplate<String, byte[]> kafkaTemplateBytes(
+            ProducerFactory<String, byte[]> productorBytesFactory) {
+        return new KafkaTemplate<>(productorBytesFactory);
+    }
+
+    @Bean
+    public KafkaTemplate<String, ResumenKpi> kafkaTemplateKpis(
+            ProducerFactory<String, ResumenKpi> productorKpisFactory) {
+        return new KafkaTemplate<>(productorKpisFactory);
+    }
 }
@@ -1,20 +1,62 @@
 package com.example.procesa_seniales_kafka.config;
 
+import com.example.procesa_seniales_kafka.catalogo.CatalogoParadas;
+import com.example.procesa_seniales_kafka.catalogo.FuenteParadas;
+import com.example.procesa_seniales_kafka.catalogo.FuenteParadasArchivo;
+import com.example.procesa_seniales_kafka.catalogo.FuenteParadasKafka;
+import com.example.procesa_seniales_kafka.catalogo.FuenteParadasLista;
+import com.example.procesa_seniales_kafka.catalogo.LectorStopTimes;
+import com.example.procesa_seniales_kafka.catalogo.TablaHorarios;
+import com.example.procesa_seniales_kafka.geo.IndiceParadasGrid;
+import com.example.procesa_seniales_kafka.geo.IndiceParadasLineal;
 import com.example.procesa_seniales_kafka.model.Parada;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
 
 /**
- * Configuración de las paradas predefinidas del sistema.
+ * Configuración de las paradas predefinidas del sistema y de la tabla de horarios.
  * Estas paradas se utilizan para calcular la proximidad de los vehículos
  * y generar actualizaciones de horarios.
  */
 @Configuration
 public class ParadasConfig {
 
+    @Value("${procesador.indice.tipo:grid}")
+    private String tipoIndice;
+
+    @Value("${procesador.distancia.umbral.km:0.5}")
+    private double distanciaUmbralKm;
+
+    @Value("${procesador.catalogo.fuente:predefinidas}")
+    private String fuenteCatalogo;
+
+    @Value("${procesador.catalogo.archivo:}")
+    private String archivoCatalogo;
+
+    @Value("${procesador.catalogo.topico:paradas}")
+    private String topicoCatalogo;
+
+    @Value("${procesador.catalogo.timeout-ms:30000}")
+    private long timeoutCatalogoMs;
+
+    @Value("${procesador.horarios.stop-times:}")
+    private String archivoStopTimes;
+
+    @Value("${procesador.horarios.trips:}")
+    private String archivoTrips;
+
+    @Value("${spring.kafka.bootstrap-servers:localhost:9092}")
+    private String bootstrapServers;
+
     /**
      * Define las 6 paradas principales del sistema de transporte.
      * Coordenadas basadas en ubicaciones reales en Lima, Perú.
@@ -71,4 +113,45 @@ public class ParadasConfig {
                         .build()
         );
     }
+
+    /**
+     * Catálogo de paradas recargable en caliente.
+     * La fuente se elige con {@code procesador.catalogo.fuente}: "predefinidas" (las paradas de arriba),
+     * "archivo" (CSV o GeoJSON en {@code procesador.catalogo.archivo}) o "kafka" (tópico compactado
+     * {@code procesador.catalogo.topico}). Cada versión del catálogo trae su propio índice espacial:
+     * "grid" agrupa las paradas en celdas del tamaño del umbral de distancia;
+     * "lineal" conserva el recorrido completo de la lista.
+     */
+    @Bean
+    public CatalogoParadas catalogoParadas(List<Parada> paradasPredefinidas, ObjectMapper objectMapper) {
+        FuenteParadas fuente = switch (fuenteCatalogo.toLowerCase(Locale.ROOT)) {
+            case "archivo" -> {
+                if (archivoCatalogo == null || archivoCatalogo.isBlank()) {
+                    throw new IllegalStateException("procesador.catalogo.archivo es obligatorio con la fuente 'archivo'");
+                }
+                yield new FuenteParadasArchivo(Path.of(archivoCatalogo), objectMapper);
+            }
+            case "kafka" -> new FuenteParadasKafka(bootstrapServers, topicoCatalogo, objectMapper,
+                    Duration.ofMillis(timeoutCatalogoMs));
+            case "predefinidas" -> new FuenteParadasLista(paradasPredefinidas, "paradas predefinidas");
+            default -> throw new IllegalStateException("procesador.catalogo.fuente desconocida: " + fuenteCatalogo);
+        };
+
+        return new CatalogoParadas(fuente, paradas -> "lineal".equalsIgnoreCase(tipoIndice)
+                ? new IndiceParadasLineal(paradas)
+                : new IndiceParadasGrid(paradas, distanciaUmbralKm));
+    }
+
+    /**
+     * Tabla de horarios programados por ruta y parada, desde un stop_times al estilo GTFS.
+     * Sin archivo configurado la tabla queda vacía y los horarios estimados se siguen simulando.
+     */
+    @Bean
+    public TablaHorarios tablaHorarios() throws IOException {
+        if (archivoStopTimes == null || archivoStopTimes.isBlank()) {
+            return TablaHorarios.vacia();
+        }
+        Path trips = archivoTrips == null || archivoTrips.isBlank() ? null : Path.of(archivoTrips);
+        return LectorStopTimes.leer(Path.of(archivoStopTimes), trips);
+    }
 }
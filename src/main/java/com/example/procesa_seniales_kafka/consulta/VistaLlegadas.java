@@ -0,0 +1,254 @@
+package com.example.procesa_seniales_kafka.consulta;
+
+import com.example.procesa_seniales_kafka.estado.ReordenEventos;
+import com.example.procesa_seniales_kafka.model.EstadoParada;
+import com.example.procesa_seniales_kafka.model.HorarioVehiculo;
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+/**
+ * Vista materializada de los horarios publicados para las consultas en vivo: el último horario de cada
+ * vehículo con las paradas a las que se dirige, y las próximas llegadas de cada parada.
+ *
+ * Cada parada y cada vehículo guardan una instantánea inmutable con su versión (una secuencia global
+ * que crece con cada cambio). Quien publica un horario arma la instantánea nueva y la reemplaza con
+ * {@code compute} del {@link ConcurrentHashMap}, que solo serializa a los escritores de la misma clave;
+ * una consulta es un {@code get} sin locks ni copias y siempre ve una instantánea completa, así que las
+ * lecturas no frenan a los hilos del consumer ni al revés. Al publicar se actualiza el vehículo y, dentro
+ * de él, la parada: siempre en ese orden, y la purga recorre cada mapa por separado.
+ *
+ * Las llegadas de una parada se ordenan por estado (LLEGADO, LLEGANDO, ESTIMADO) y horario estimado, y
+ * se acotan a {@code max-por-parada} por parada y por vehículo. Un horario PASADO quita al vehículo de la
+ * parada; un horario con tiempo de evento anterior al ya registrado para el mismo vehículo y parada se
+ * ignora. Las llegadas sin actualizar durante {@code ttl-segundos} (un vehículo que cambió de recorrido
+ * o cuya partición pasó a otra instancia) se purgan, y cada instancia responde por los vehículos de sus
+ * particiones.
+ */
+@Slf4j
+@Component
+public class VistaLlegadas {
+
+    private static final Comparator<Llegada> ORDEN = Comparator.comparingInt(Llegada::prioridad)
+            .thenComparing(Llegada::horarioEstimado, Comparator.nullsLast(Comparator.naturalOrder()))
+            .thenComparing(Llegada::vehiculoId);
+
+    private final int maxPorParada;
+    private final int maxVehiculos;
+    private final long ttlMs;
+    private final LongSupplier reloj;
+
+    private final ConcurrentHashMap<String, LlegadasParada> paradas = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, EstadoVehiculo> vehiculos = new ConcurrentHashMap<>();
+    private final AtomicLong versiones = new AtomicLong();
+
+    private final LongAdder actualizaciones = new LongAdder();
+    private final LongAdder ignoradas = new LongAdder();
+    private final LongAdder descartadas = new LongAdder();
+    private final LongAdder expiradas = new LongAdder();
+
+    @Autowired
+    public VistaLlegadas(@Value("${procesador.consulta.max-por-parada:20}") int maxPorParada,
+                         @Value("${procesador.consulta.max-vehiculos:100000}") int maxVehiculos,
+                         @Value("${procesador.consulta.ttl-segundos:900}") int ttlSegundos) {
+        this(maxPorParada, maxVehiculos, ttlSegundos * 1000L, System::currentTimeMillis);
+    }
+
+    public VistaLlegadas(int maxPorParada, int maxVehiculos, long ttlMs, LongSupplier reloj) {
+        this.maxPorParada = Math.max(1, maxPorParada);
+        this.maxVehiculos = maxVehiculos;
+        this.ttlMs = ttlMs;
+        this.reloj = reloj;
+    }
+
+    /**
+     * Incorpora un horario publicado. Lo llama el hilo que procesa la ubicación.
+     */
+    public void actualizar(HorarioVehiculo horario) {
+        if (horario.getVehiculoId() == null || horario.getParadaId() == null) {
+            return;
+        }
+        Llegada llegada = Llegada.de(horario, reloj.getAsLong());
+        if (vehiculos.size() >= maxVehiculos && !vehiculos.containsKey(llegada.vehiculoId())) {
+            descartadas.increment();
+            return;
+        }
+        vehiculos.compute(llegada.vehiculoId(), (vehiculoId, actual) -> aplicar(actual, llegada));
+    }
+
+    private EstadoVehiculo aplicar(EstadoVehiculo actual, Llegada llegada) {
+        if (actual != null && esAnterior(actual, llegada)) {
+            ignoradas.increment();
+            return actual;
+        }
+        Llegada activa = EstadoParada.PASADO.name().equals(llegada.estado()) ? null : llegada;
+        paradas.compute(llegada.paradaId(), (paradaId, lista) -> {
+            List<Llegada> nuevas = reemplazar(lista == null ? List.of() : lista.llegadas(),
+                    otra -> otra.vehiculoId().equals(llegada.vehiculoId()), activa);
+            return nuevas.isEmpty() ? null : new LlegadasParada(paradaId, versiones.incrementAndGet(), nuevas);
+        });
+        actualizaciones.increment();
+
+        Llegada ultima = actual == null || llegada.eventoMs() >= actual.ultima().eventoMs() ? llegada : actual.ultima();
+        List<Llegada> proximas = reemplazar(actual == null ? List.of() : actual.proximas(),
+                otra -> otra.paradaId().equals(llegada.paradaId()), activa);
+        return new EstadoVehiculo(llegada.vehiculoId(), versiones.incrementAndGet(), ultima, proximas);
+    }
+
+    /**
+     * Un horario es anterior si el vehículo ya tiene uno más nuevo para la misma parada, aunque ya la haya
+     * dejado atrás.
+     */
+    private static boolean esAnterior(EstadoVehiculo actual, Llegada llegada) {
+        for (Llegada proxima : actual.proximas()) {
+            if (proxima.paradaId().equals(llegada.paradaId())) {
+                return proxima.eventoMs() > llegada.eventoMs();
+            }
+        }
+        return actual.ultima().paradaId().equals(llegada.paradaId()) && actual.ultima().eventoMs() > llegada.eventoMs();
+    }
+
+    /**
+     * Copia ordenada de las llegadas sin la que cumple {@code misma}, más {@code nueva} si no es null.
+     */
+    private List<Llegada> reemplazar(List<Llegada> actuales, Predicate<Llegada> misma, Llegada nueva) {
+        List<Llegada> nuevas = new ArrayList<>(actuales.size() + 1);
+        for (Llegada llegada : actuales) {
+            if (!misma.test(llegada)) {
+                nuevas.add(llegada);
+            }
+        }
+        if (nueva != null) {
+            nuevas.add(nueva);
+            nuevas.sort(ORDEN);
+        }
+        return List.copyOf(nuevas.size() > maxPorParada ? nuevas.subList(0, maxPorParada) : nuevas);
+    }
+
+    /**
+     * Próximas llegadas a la parada, o null si no hay ninguna.
+     */
+    public LlegadasParada llegadas(String paradaId) {
+        return paradas.get(paradaId);
+    }
+
+    /**
+     * Último horario del vehículo y las paradas a las que se dirige, o null si no se conoce.
+     */
+    public EstadoVehiculo vehiculo(String vehiculoId) {
+        return vehiculos.get(vehiculoId);
+    }
+
+    /**
+     * Quita las llegadas sin actualizar dentro del TTL y los vehículos sin horarios dentro del TTL.
+     */
+    @Scheduled(fixedDelayString = "${procesador.consulta.purga-ms:10000}")
+    public void purgarExpiradas() {
+        long limite = reloj.getAsLong() - ttlMs;
+        Predicate<Llegada> expirada = llegada -> llegada.actualizadoMs() < limite;
+        for (String vehiculoId : vehiculos.keySet()) {
+            vehiculos.computeIfPresent(vehiculoId, (id, estado) -> {
+                if (expirada.test(estado.ultima())) {
+                    expiradas.increment();
+                    return null;
+                }
+                return estado.proximas().stream().noneMatch(expirada) ? estado : new EstadoVehiculo(id,
+                        versiones.incrementAndGet(), estado.ultima(), reemplazar(estado.proximas(), expirada, null));
+            });
+        }
+        for (String paradaId : paradas.keySet()) {
+            paradas.computeIfPresent(paradaId, (id, lista) -> {
+                if (lista.llegadas().stream().noneMatch(expirada)) {
+                    return lista;
+                }
+                List<Llegada> vigentes = reemplazar(lista.llegadas(), expirada, null);
+                return vigentes.isEmpty() ? null : new LlegadasParada(id, versiones.incrementAndGet(), vigentes);
+            });
+        }
+    }
+
+    public int getParadas() {
+        return paradas.size();
+    }
+
+    public int getVehiculos() {
+        return vehiculos.size();
+    }
+
+    public long getVersion() {
+        return versiones.get();
+    }
+
+    public long getActualizaciones() {
+        return actualizaciones.sum();
+    }
+
+    public long getIgnoradas() {
+        return ignoradas.sum();
+    }
+
+    public long getDescartadas() {
+        return descartadas.sum();
+    }
+
+    public long getExpiradas() {
+        return expiradas.sum();
+    }
+
+    /**
+     * Datos de un horario publicado, copiados del {@link HorarioVehiculo} (que es mutable).
+     */
+    public record Llegada(String vehiculoId, String placaVehiculo, String ruta, String paradaId,
+                          String nombreParada, Integer secuenciaParada, String estado,
+                          @JsonFormat(pattern = "HH:mm:ss") LocalTime horarioEstimado,
+                          @JsonFormat(pattern = "HH:mm:ss") LocalTime horarioReal,
+                          Integer retrasoMinutos,
+                          @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss") LocalDateTime timestamp,
+                          @JsonIgnore long eventoMs,
+                          long actualizadoMs) {
+
+        static Llegada de(HorarioVehiculo horario, long ahora) {
+            return new Llegada(horario.getVehiculoId(), horario.getPlacaVehiculo(), horario.getRuta(),
+                    horario.getParadaId(), horario.getNombreParada(), horario.getSecuenciaParada(),
+                    horario.getEstado(), horario.getHorarioEstimado(), horario.getHorarioReal(),
+                    horario.getRetrasoMinutos(), horario.getTimestamp(),
+                    horario.getTimestamp() != null ? ReordenEventos.instanteMs(horario.getTimestamp()) : ahora, ahora);
+        }
+
+        /** Los vehículos en la parada primero, luego los que se acercan y al final las estimaciones. */
+        int prioridad() {
+            if (EstadoParada.LLEGADO.name().equals(estado)) {
+                return 0;
+            }
+            return EstadoParada.LLEGANDO.name().equals(estado) ? 1 : 2;
+        }
+    }
+
+    /**
+     * Instantánea de las llegadas a una parada.
+     */
+    public record LlegadasParada(String paradaId, long version, List<Llegada> llegadas) {
+    }
+
+    /**
+     * Instantánea de un vehículo: su último horario y sus llegadas vigentes, en el mismo orden que las de
+     * una parada.
+     */
+    public record EstadoVehiculo(String vehiculoId, long version, Llegada ultima, List<Llegada> proximas) {
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.procesa_seniales_kafka.consumer;
+
+import com.example.procesa_seniales_kafka.auditoria.RegistroAuditoria;
+import com.example.procesa_seniales_kafka.checkpoint.CheckpointEstado;
+import com.example.procesa_seniales_kafka.errores.CanalErrores;
+import com.example.procesa_seniales_kafka.metricas.MetricasProcesamiento;
+import com.example.procesa_seniales_kafka.model.UbicacionVehiculo;
+import com.example.procesa_seniales_kafka.service.ProcesamientoSenialesService;
+import com.example.procesa_seniales_kafka.service.ResultadoLote;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Consumer de Kafka en modo por lotes para el tópico de ubicaciones de vehículos.
+ * Recibe todos los registros de un poll, los procesa en bloque y confirma
+ * los offsets una sola vez por lote. Los registros ilegibles y las ubicaciones que fallan se derivan a
+ * {@link CanalErrores}; el lote se confirma cuando el broker aceptó también esos reenvíos.
+ *
+ * Se habilita con {@code procesador.consumo.batch.habilitado=true}.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "procesador.consumo.batch.habilitado", havingValue = "true")
+public class UbicacionVehiculoBatchConsumer {
+
+    @Autowired
+    private ProcesamientoSenialesService procesamientoService;
+
+    @Autowired
+    private RegistroAuditoria auditoria;
+
+    @Autowired
+    private MetricasProcesamiento metricas;
+
+    @Autowired
+    private CheckpointEstado checkpoint;
+
+    @Autowired
+    private CanalErrores canalErrores;
+
+    @KafkaListener(
+            topics = "ubicaciones_vehiculos",
+            groupId = "${spring.kafka.consumer.group-id}",
+            containerFactory = "batchKafkaListenerContainerFactory"
+    )
+    public void consumirUbicaciones(
+            List<ConsumerRecord<String, UbicacionVehiculo>> registros,
+            Acknowledgment acknowledgment
+    ) {
+        metricas.registrarMensajesRecibidos(registros.size());
+        List<UbicacionVehiculo> ubicaciones = new ArrayList<>(registros.size());
+        // Registro de origen de cada ubicación, por identidad, para derivar las que fallen
+        Map<UbicacionVehiculo, ConsumerRecord<String, UbicacionVehiculo>> origenes = new IdentityHashMap<>(registros.size());
+        List<CompletableFuture<Void>> descartes = new ArrayList<>();
+
+        for (ConsumerRecord<String, UbicacionVehiculo> registro : registros) {
+            if (registro.value() == null) {
+                // ErrorHandlingDeserializer entrega null cuando el payload no se pudo deserializar
+                descartes.add(canalErrores.descartarIlegible(registro, null));
+                continue;
+            }
+            ubicaciones.add(registro.value());
+            origenes.put(registro.value(), registro);
+            auditoria.ubicacionPendiente(registro.value());
+        }
+
+        ResultadoLote resultado = procesamientoService.procesarUbicaciones(ubicaciones,
+                (ubicacion, error) -> canalErrores.derivar(origenes.get(ubicacion), error));
+
+        // Un único commit por lote, cuando el broker confirmó todos sus horarios
+        // y aceptó los registros fallidos en los tópicos de reintento o dead-letter
+        CompletableFuture<Void> confirmacion = descartes.isEmpty() ? resultado.getConfirmacion()
+                : CompletableFuture.allOf(resultado.getConfirmacion(),
+                        CompletableFuture.allOf(descartes.toArray(new CompletableFuture[0])));
+        confirmacion.whenComplete((ok, error) -> {
+            if (error == null) {
+                // Con todo el lote entregado (incluidas las retenidas en el reorden) y confirmado
+                for (ConsumerRecord<String, UbicacionVehiculo> registro : registros) {
+                    checkpoint.registrarOffset(registro.partition(), registro.offset());
+                }
+                acknowledgment.acknowledge();
+            } else {
+                // Los fallidos e ilegibles se derivan repitiendo el reenvío hasta que el broker lo acepta;
+                // solo llega acá si un reenvío no se pudo armar
+                log.error("❌ Lote sin procesar ni derivar por completo; offsets sin confirmar: {}",
+                        error.getMessage());
+            }
+        });
+
+        log.info("📦 LOTE PROCESADO → Registros: {} | Procesados: {} | Fallidos: {} | Descartados: {}",
+                registros.size(), resultado.getProcesadas(), ubicaciones.size() - resultado.getProcesadas(), descartes.size());
+    }
+}
@@ -1,9 +1,15 @@
 package com.example.procesa_seniales_kafka.consumer;
 
+import com.example.procesa_seniales_kafka.auditoria.CategoriaAuditoria;
+import com.example.procesa_seniales_kafka.auditoria.RegistroAuditoria;
+import com.example.procesa_seniales_kafka.checkpoint.CheckpointEstado;
+import com.example.procesa_seniales_kafka.errores.CanalErrores;
+import com.example.procesa_seniales_kafka.metricas.MetricasProcesamiento;
 import com.example.procesa_seniales_kafka.model.UbicacionVehiculo;
 import com.example.procesa_seniales_kafka.service.ProcesamientoSenialesService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.kafka.support.Acknowledgment;
 import org.springframework.kafka.support.KafkaHeaders;
@@ -11,17 +17,43 @@ import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.stereotype.Component;
 
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
  * Consumer de Kafka que escucha el tópico de ubicaciones de vehículos.
- * Procesa cada mensaje y delega al servicio de procesamiento de señales.
+ * Procesa cada mensaje y delega al servicio de procesamiento de señales. Una ubicación que falla se
+ * deriva a {@link CanalErrores} y su offset se confirma cuando el broker aceptó el reenvío.
+ * Se desactiva cuando está habilitado el modo por lotes ({@link UbicacionVehiculoBatchConsumer}).
  */
 @Slf4j
 @Component
+@ConditionalOnProperty(name = "procesador.consumo.batch.habilitado", havingValue = "false", matchIfMissing = true)
 public class UbicacionVehiculoConsumer {
 
     @Autowired
     private ProcesamientoSenialesService procesamientoService;
 
+    @Autowired
+    private RegistroAuditoria auditoria;
+
+    @Autowired
+    private MetricasProcesamiento metricas;
+
+    @Autowired
+    private CheckpointEstado checkpoint;
+
+    @Autowired
+    private CanalErrores canalErrores;
+
+    /**
+     * Última confirmación encadenada de cada partición. Los acks se entregan en orden de offset:
+     * con asyncAcks el contenedor (spring-kafka 4.0.x) descarta offsets cuando recibe varios acks
+     * fuera de orden y la partición queda pausada para siempre.
+     */
+    private final Map<Integer, CompletableFuture<Void>> ultimaConfirmacion = new ConcurrentHashMap<>();
+
     @KafkaListener(
             topics = "ubicaciones_vehiculos",
             groupId = "${spring.kafka.consumer.group-id}",
@@ -30,46 +62,68 @@ public class UbicacionVehiculoConsumer {
     public void consumirUbicacion(
             @Payload UbicacionVehiculo ubicacion,
             @Header(KafkaHeaders.RECEIVED_KEY) String key,
+            @Header(KafkaHeaders.RECEIVED_TOPIC) String topic,
             @Header(KafkaHeaders.RECEIVED_PARTITION) int partition,
             @Header(KafkaHeaders.OFFSET) long offset,
             Acknowledgment acknowledgment
     ) {
-        try {
-            log.info("📨 MENSAJE RECIBIDO → Tópico: ubicaciones_vehiculos | Key: {} | Partition: {} | Offset: {}",
-                    key, partition, offset);
-            
-            log.info("🚗 UBICACIÓN → Vehículo: {} | Placa: {} | Lat: {:.4f} | Lon: {:.4f} | Velocidad: {:.2f} km/h | Estado: {} | Pasajeros: {}",
-                    ubicacion.getVehiculoId(),
-                    ubicacion.getPlacaVehiculo(),
-                    ubicacion.getLatitud(),
-                    ubicacion.getLongitud(),
-                    ubicacion.getVelocidad(),
-                    ubicacion.getEstado(),
-                    ubicacion.getPasajeros());
-
-            // Log para cuando no hay BD disponible
-            log.info("📝 [LOG BD PENDIENTE] UBICACION - vehiculoId: {}, placa: {}, lat: {}, lon: {}, velocidad: {}, estado: {}, ciudad: {}, pasajeros: {}, timestamp: {}",
-                    ubicacion.getVehiculoId(),
-                    ubicacion.getPlacaVehiculo(),
-                    ubicacion.getLatitud(),
-                    ubicacion.getLongitud(),
-                    ubicacion.getVelocidad(),
-                    ubicacion.getEstado(),
-                    ubicacion.getCiudad(),
-                    ubicacion.getPasajeros(),
-                    ubicacion.getTimestamp());
+        metricas.registrarMensajesRecibidos(1);
+        auditoria.info(CategoriaAuditoria.RECEPCION,
+                "📨 MENSAJE RECIBIDO → Tópico: ubicaciones_vehiculos | Key: {} | Partition: {} | Offset: {}",
+                key, partition, offset);
 
-            // Procesar la ubicación para generar horarios si es necesario
-            procesamientoService.procesarUbicacion(ubicacion);
+        auditoria.info(CategoriaAuditoria.UBICACION,
+                "🚗 UBICACIÓN → Vehículo: {} | Placa: {} | Lat: {} | Lon: {} | Velocidad: {} km/h | Estado: {} | Pasajeros: {}",
+                ubicacion.getVehiculoId(),
+                ubicacion.getPlacaVehiculo(),
+                ubicacion.getLatitud(),
+                ubicacion.getLongitud(),
+                ubicacion.getVelocidad(),
+                ubicacion.getEstado(),
+                ubicacion.getPasajeros());
 
-            // Confirmar que el mensaje fue procesado exitosamente
-            acknowledgment.acknowledge();
-            
-            log.debug("✅ Mensaje procesado y confirmado correctamente");
+        // Registro para cuando no hay BD disponible
+        auditoria.ubicacionPendiente(ubicacion);
 
+        // Procesar la ubicación y confirmar el offset solo cuando el broker haya confirmado el
+        // horario derivado (si lo hubo) o, si algo falló, el reenvío de la ubicación a reintentos
+        CompletableFuture<Void> confirmacion;
+        try {
+            confirmacion = procesamientoService.procesarUbicacion(ubicacion);
         } catch (Exception e) {
             log.error("❌ Error al procesar ubicación: {}", e.getMessage(), e);
-            // No hacemos acknowledge para que el mensaje se reintente
+            confirmacion = CompletableFuture.failedFuture(e);
+        }
+        if (!confirmacion.isDone() || confirmacion.isCompletedExceptionally()) {
+            confirmacion = confirmacion.exceptionallyCompose(
+                    error -> canalErrores.derivar(ubicacion, topic, partition, offset, error));
         }
+        confirmarEnOrden(partition, confirmacion)
+                .whenComplete((resultado, error) -> {
+                    if (error == null) {
+                        // Recién ahora la ubicación (y las anteriores de la partición) está en el estado
+                        checkpoint.registrarOffset(partition, offset);
+                        acknowledgment.acknowledge();
+                        log.debug("✅ Mensaje procesado y confirmado correctamente");
+                    } else {
+                        // No llega acá por un broker caído (la derivación se repite hasta que la acepta),
+                        // solo si el reenvío no se pudo armar: el offset queda sin confirmar
+                        log.error("❌ Ubicación sin procesar ni derivar; offset {} de la partición {} sin confirmar",
+                                offset, partition);
+                    }
+                });
+    }
+
+    /**
+     * Encadena la confirmación detrás de la del offset anterior de la misma partición, haya fallado
+     * o no; si ambas ya terminaron, se completa en el mismo hilo del listener.
+     */
+    private CompletableFuture<Void> confirmarEnOrden(int partition, CompletableFuture<Void> confirmacion) {
+        CompletableFuture<Void> anterior = ultimaConfirmacion.get(partition);
+        CompletableFuture<Void> enOrden = anterior == null || anterior.isDone()
+                ? confirmacion
+                : anterior.handle((resultado, error) -> null).thenCompose(ignorado -> confirmacion);
+        ultimaConfirmacion.put(partition, enOrden);
+        return enOrden;
     }
 }
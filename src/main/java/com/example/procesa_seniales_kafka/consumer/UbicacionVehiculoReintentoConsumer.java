@@ -0,0 +1,90 @@
+package com.example.procesa_seniales_kafka.consumer;
+
+import com.example.procesa_seniales_kafka.errores.CanalErrores;
+import com.example.procesa_seniales_kafka.model.UbicacionVehiculo;
+import com.example.procesa_seniales_kafka.service.ProcesamientoSenialesService;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.annotation.KafkaListenerConfigurer;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistrar;
+import org.springframework.kafka.config.MethodKafkaListenerEndpoint;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.messaging.handler.annotation.support.DefaultMessageHandlerMethodFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ReflectionUtils;
+
+import java.time.Duration;
+
+/**
+ * Consumer de los tópicos de reintento de {@link CanalErrores}, con un contenedor por tópico.
+ *
+ * Cada registro se posterga con {@code nack} hasta que vence su espera ({@value CanalErrores#HEADER_VENCE})
+ * y recién entonces se procesa. Como todos los registros de un tópico llevan la misma espera, los de una
+ * partición vencen en orden y solo se posterga la cabeza; con un contenedor por tópico, una espera larga
+ * no retiene los reintentos de los tópicos más cortos. Si vuelve a fallar, el registro pasa al siguiente
+ * tópico o al dead-letter.
+ *
+ * La ubicación reintentada no se retiene en el reorden por tiempo de evento: se procesa en el momento,
+ * detrás de las retenidas anteriores de su vehículo, y cuenta como recuperada recién cuando el broker
+ * confirmó sus horarios. Si su vehículo ya avanzó, se trata como tardía según
+ * {@code procesador.eventos.tardios.politica}.
+ */
+@Slf4j
+@Component
+public class UbicacionVehiculoReintentoConsumer implements KafkaListenerConfigurer {
+
+    @Autowired
+    private ProcesamientoSenialesService procesamientoService;
+
+    @Autowired
+    private CanalErrores canalErrores;
+
+    @Autowired
+    @Qualifier("reintentosKafkaListenerContainerFactory")
+    private ConcurrentKafkaListenerContainerFactory<String, UbicacionVehiculo> reintentosFactory;
+
+    @Value("${spring.kafka.consumer.group-id}")
+    private String groupId;
+
+    @Override
+    public void configureKafkaListeners(KafkaListenerEndpointRegistrar registrar) {
+        DefaultMessageHandlerMethodFactory metodos = new DefaultMessageHandlerMethodFactory();
+        metodos.afterPropertiesSet();
+        for (String topico : canalErrores.topicosReintento()) {
+            MethodKafkaListenerEndpoint<String, UbicacionVehiculo> endpoint = new MethodKafkaListenerEndpoint<>();
+            endpoint.setId("reintentos-" + topico);
+            endpoint.setGroupId(groupId + "-reintentos");
+            endpoint.setTopics(topico);
+            endpoint.setBean(this);
+            endpoint.setMethod(ReflectionUtils.findMethod(getClass(), "consumirReintento",
+                    ConsumerRecord.class, Acknowledgment.class));
+            endpoint.setMessageHandlerMethodFactory(metodos);
+            registrar.registerEndpoint(endpoint, reintentosFactory);
+        }
+    }
+
+    public void consumirReintento(ConsumerRecord<String, UbicacionVehiculo> registro, Acknowledgment acknowledgment) {
+        long restante = CanalErrores.numero(registro.headers(), CanalErrores.HEADER_VENCE, 0)
+                - System.currentTimeMillis();
+        if (restante > 0) {
+            // Vuelve a entregar este registro (y los siguientes de la partición) cuando vence la espera
+            acknowledgment.nack(Duration.ofMillis(restante));
+            return;
+        }
+
+        try {
+            procesamientoService.reprocesarUbicacion(registro.value()).join();
+            canalErrores.registrarRecuperado();
+            log.info("♻️  Ubicación de {} recuperada en {} (offset original {})", registro.key(), registro.topic(),
+                    CanalErrores.texto(registro.headers(), CanalErrores.HEADER_OFFSET_ORIGEN));
+        } catch (Exception e) {
+            // Espera a que el broker acepte el reenvío; si falla, el contenedor vuelve a entregar el registro
+            canalErrores.recuperar(registro, e);
+        }
+        acknowledgment.acknowledge();
+    }
+}
@@ -1,15 +1,50 @@
 package com.example.procesa_seniales_kafka.controller;
 
+import com.example.procesa_seniales_kafka.auditoria.CategoriaAuditoria;
+import com.example.procesa_seniales_kafka.auditoria.RegistroAuditoria;
+import com.example.procesa_seniales_kafka.catalogo.CatalogoParadas;
+import com.example.procesa_seniales_kafka.catalogo.SnapshotCatalogo;
+import com.example.procesa_seniales_kafka.consulta.VistaLlegadas;
+import com.example.procesa_seniales_kafka.estadisticas.EstadisticasTiempoReal;
+import com.example.procesa_seniales_kafka.estado.EstadoDedupStore;
+import com.example.procesa_seniales_kafka.journal.ExportadorJournal;
+import com.example.procesa_seniales_kafka.journal.JournalSegmentado;
+import com.example.procesa_seniales_kafka.journal.LectorJournal;
+import com.example.procesa_seniales_kafka.model.HorarioVehiculo;
+import com.example.procesa_seniales_kafka.service.PublicadorHorarios;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Measurement;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.admin.AdminClient;
+import org.apache.kafka.clients.admin.AdminClientConfig;
+import org.apache.kafka.common.Node;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Controlador REST para verificar el estado del microservicio.
@@ -19,8 +54,35 @@ import java.util.Map;
 @RequestMapping("/api/procesador")
 public class ProcesadorController {
 
+    @Value("${spring.kafka.bootstrap-servers}")
+    private String bootstrapServers;
+
+    @Autowired
+    private KafkaTemplate<String, HorarioVehiculo> kafkaTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private EstadoDedupStore estadoDedupStore;
+
+    @Autowired
+    private PublicadorHorarios publicadorHorarios;
+
+    @Autowired
+    private RegistroAuditoria auditoria;
+
+    @Autowired
+    private JournalSegmentado journal;
+
+    @Autowired
+    private EstadisticasTiempoReal estadisticas;
+
     @Autowired
-    private KafkaTemplate<String, ?> kafkaTemplate;
+    private CatalogoParadas catalogoParadas;
+
+    @Autowired
+    private VistaLlegadas vistaLlegadas;
 
     /**
      * Endpoint de health check.
@@ -68,24 +130,251 @@ public class ProcesadorController {
 
     /**
      * Endpoint para verificar el estado de conexión con Kafka.
+     * Consulta los brokers del cluster y resume el lag por partición y las métricas del productor
+     * que publican los clientes Kafka en el MeterRegistry (el detalle completo está en /actuator/prometheus).
      */
     @GetMapping("/kafka-status")
     public Map<String, Object> kafkaStatus() {
         Map<String, Object> response = new HashMap<>();
         
-        try {
-            // Intentar obtener métricas del productor
+        Map<String, Object> config = new HashMap<>();
+        config.put(AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        config.put(AdminClientConfig.REQUEST_TIMEOUT_MS_CONFIG, 3000);
+        config.put(AdminClientConfig.DEFAULT_API_TIMEOUT_MS_CONFIG, 3000);
+        try (AdminClient admin = AdminClient.create(config)) {
+            Collection<Node> brokers = admin.describeCluster().nodes().get(5, TimeUnit.SECONDS);
             response.put("kafka_conectado", true);
             response.put("estado", "CONECTADO");
+            response.put("brokers", brokers.size());
             response.put("mensaje", "Conexión con Kafka establecida correctamente");
         } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
             response.put("kafka_conectado", false);
             response.put("estado", "ERROR");
             response.put("mensaje", "Error de conexión con Kafka: " + e.getMessage());
             log.error("❌ Error al verificar conexión con Kafka", e);
         }
         
+        Map<String, Object> publicaciones = new HashMap<>();
+        publicaciones.put("enviadas", publicadorHorarios.getEnviados());
+        publicaciones.put("confirmadas", publicadorHorarios.getConfirmados());
+        publicaciones.put("fallidas", publicadorHorarios.getFallidos());
+        publicaciones.put("en_vuelo", publicadorHorarios.getEnVuelo());
+        publicaciones.put("max_en_vuelo", publicadorHorarios.getMaxEnVuelo());
+        response.put("publicaciones_horarios", publicaciones);
+        
+        // Lag del consumidor por partición asignada a esta instancia
+        Map<String, Object> lag = new TreeMap<>();
+        for (Meter meter : meterRegistry.find("kafka.consumer.fetch.manager.records.lag").meters()) {
+            double valor = valor(meter);
+            if (!Double.isNaN(valor)) {
+                lag.put(meter.getId().getTag("topic") + "-" + meter.getId().getTag("partition"), (long) valor);
+            }
+        }
+        response.put("lag_por_particion", lag);
+        
+        Map<String, Object> productor = new HashMap<>();
+        productor.put("batch_size_promedio", sumarMetrica("kafka.producer.batch.size.avg"));
+        productor.put("registros_por_request", sumarMetrica("kafka.producer.records.per.request.avg"));
+        productor.put("registros_enviados", sumarMetrica("kafka.producer.record.send.total"));
+        productor.put("registros_con_error", sumarMetrica("kafka.producer.record.error.total"));
+        productor.put("reintentos", sumarMetrica("kafka.producer.record.retry.total"));
+        response.put("productor_kafka", productor);
+        
+        response.put("timestamp", LocalDateTime.now());
+        return response;
+    }
+
+    private double sumarMetrica(String nombre) {
+        double total = 0;
+        for (Meter meter : meterRegistry.find(nombre).meters()) {
+            double valor = valor(meter);
+            if (!Double.isNaN(valor)) {
+                total += valor;
+            }
+        }
+        return total;
+    }
+
+    private static double valor(Meter meter) {
+        for (Measurement medicion : meter.measure()) {
+            return medicion.getValue();
+        }
+        return Double.NaN;
+    }
+
+    /**
+     * Endpoint con las estadísticas del estado de deduplicación vehículo-parada.
+     */
+    @GetMapping("/dedup")
+    public Map<String, Object> dedup() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("entradas", estadoDedupStore.tamanio());
+        response.put("aciertos", estadoDedupStore.getAciertos());
+        response.put("fallos", estadoDedupStore.getFallos());
+        response.put("desalojos_ttl", estadoDedupStore.getDesalojosTtl());
+        response.put("desalojos_capacidad", estadoDedupStore.getDesalojosCapacidad());
+        response.put("memoria_aproximada_bytes", estadoDedupStore.memoriaAproximadaBytes());
+        response.put("timestamp", LocalDateTime.now());
+        return response;
+    }
+
+    /**
+     * Endpoint con la versión vigente del catálogo de paradas y las recargas realizadas.
+     */
+    @GetMapping("/catalogo")
+    public Map<String, Object> catalogo() {
+        Map<String, Object> response = describir(catalogoParadas.snapshot());
+        response.put("recargas", catalogoParadas.getRecargas());
+        response.put("recargas_fallidas", catalogoParadas.getRecargasFallidas());
         response.put("timestamp", LocalDateTime.now());
         return response;
     }
+
+    /**
+     * Recarga el catálogo de paradas desde su fuente. Si la recarga falla se conserva la versión vigente.
+     */
+    @PostMapping("/catalogo/recargar")
+    public ResponseEntity<Map<String, Object>> recargarCatalogo() {
+        try {
+            Map<String, Object> response = describir(catalogoParadas.recargar());
+            response.put("timestamp", LocalDateTime.now());
+            return ResponseEntity.ok(response);
+        } catch (IOException | RuntimeException e) {
+            Map<String, Object> response = describir(catalogoParadas.snapshot());
+            response.put("error", e.getMessage());
+            response.put("timestamp", LocalDateTime.now());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+    }
+
+    private static Map<String, Object> describir(SnapshotCatalogo snapshot) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("version", snapshot.getVersion());
+        response.put("paradas", snapshot.getIndice().tamanio());
+        response.put("descartadas", snapshot.getDescartadas());
+        response.put("origen", snapshot.getOrigen());
+        response.put("cargado_en", snapshot.getCargadoEn());
+        response.put("duracion_lectura_ms", snapshot.getDuracionLecturaMs());
+        response.put("duracion_indice_ms", snapshot.getDuracionIndiceMs());
+        return response;
+    }
+
+    /**
+     * Endpoint con el throughput y la latencia de punta a punta (p50, p99, p99.9) en ventanas
+     * de 1, 5 y 15 minutos, globales y por ruta y estado.
+     */
+    @GetMapping("/stats")
+    public Map<String, Object> stats(@RequestParam(required = false) String ruta) {
+        Map<String, Object> response = new HashMap<>(estadisticas.resumen(ruta));
+        response.put("timestamp", LocalDateTime.now());
+        return response;
+    }
+
+    /**
+     * Próximas llegadas a una parada según los horarios publicados: primero los vehículos en la parada,
+     * luego los que se acercan y las estimaciones. Lee la instantánea vigente de {@link VistaLlegadas}
+     * sin bloquear al consumer.
+     */
+    @GetMapping("/paradas/{paradaId}/llegadas")
+    public Map<String, Object> llegadasParada(@PathVariable String paradaId,
+                                              @RequestParam(defaultValue = "10") int limite) {
+        VistaLlegadas.LlegadasParada llegadas = vistaLlegadas.llegadas(paradaId);
+        List<VistaLlegadas.Llegada> lista = llegadas != null ? llegadas.llegadas() : List.of();
+        Map<String, Object> response = new HashMap<>();
+        response.put("parada", paradaId);
+        response.put("version", llegadas != null ? llegadas.version() : 0);
+        response.put("llegadas", lista.subList(0, Math.clamp(limite, 0, lista.size())));
+        response.put("timestamp", LocalDateTime.now());
+        return response;
+    }
+
+    /**
+     * Último horario publicado de un vehículo y las paradas a las que se dirige; 404 si esta instancia
+     * no tiene horarios recientes del vehículo.
+     */
+    @GetMapping("/vehiculos/{vehiculoId}")
+    public ResponseEntity<Map<String, Object>> vehiculo(@PathVariable String vehiculoId) {
+        VistaLlegadas.EstadoVehiculo estado = vistaLlegadas.vehiculo(vehiculoId);
+        if (estado == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        }
+        Map<String, Object> response = new HashMap<>();
+        response.put("vehiculo", vehiculoId);
+        response.put("version", estado.version());
+        response.put("ultimo_horario", estado.ultima());
+        response.put("proximas_paradas", estado.proximas());
+        response.put("timestamp", LocalDateTime.now());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Endpoint con el estado del registro de auditoría: modo, cola y contadores por categoría.
+     */
+    @GetMapping("/auditoria")
+    public Map<String, Object> auditoria() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("modo", auditoria.isAsincrono() ? "asincrono" : "sincrono");
+        response.put("en_cola", auditoria.getEnCola());
+
+        Map<String, Object> categorias = new HashMap<>();
+        for (CategoriaAuditoria categoria : CategoriaAuditoria.values()) {
+            Map<String, Object> contadores = new HashMap<>();
+            contadores.put("tasa_muestreo", auditoria.getTasa(categoria));
+            contadores.put("registrados", auditoria.getRegistrados(categoria));
+            contadores.put("descartados_muestreo", auditoria.getDescartadosPorMuestreo(categoria));
+            contadores.put("descartados_cola_llena", auditoria.getDescartadosPorCola(categoria));
+            categorias.put(categoria.getNombre(), contadores);
+        }
+        response.put("categorias", categorias);
+        response.put("timestamp", LocalDateTime.now());
+        return response;
+    }
+
+    /**
+     * Endpoint con el estado del journal local: segmentos presentes y secuencia actual.
+     */
+    @GetMapping("/journal")
+    public Map<String, Object> journal() throws IOException {
+        Map<String, Object> response = new HashMap<>();
+        response.put("habilitado", journal.habilitado());
+        if (journal.habilitado()) {
+            List<Path> segmentos = LectorJournal.segmentos(journal.getDirectorio());
+            response.put("directorio", journal.getDirectorio().toAbsolutePath().toString());
+            response.put("segmentos", segmentos.stream().map(segmento -> segmento.getFileName().toString()).toList());
+            response.put("segmento_activo", journal.getArchivoActivo().getFileName().toString());
+            response.put("siguiente_secuencia", journal.getSiguienteSecuencia());
+            response.put("tamanio_segmento_bytes", journal.getTamanioSegmento());
+            response.put("fsync", journal.getPoliticaFsync());
+        }
+        response.put("timestamp", LocalDateTime.now());
+        return response;
+    }
+
+    /**
+     * Exporta el journal como CSV o JSON (un objeto por línea) a partir de una secuencia.
+     */
+    @GetMapping("/journal/exportar")
+    public ResponseEntity<StreamingResponseBody> exportarJournal(
+            @RequestParam(defaultValue = "csv") String formato,
+            @RequestParam(defaultValue = "0") long desde) {
+        if (!journal.habilitado()) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        }
+        if (!"csv".equalsIgnoreCase(formato) && !"json".equalsIgnoreCase(formato)) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        StreamingResponseBody cuerpo = salida -> {
+            Writer writer = new OutputStreamWriter(salida, StandardCharsets.UTF_8);
+            long exportados = ExportadorJournal.exportar(journal.getDirectorio(), formato, desde, writer);
+            log.info("📤 Journal exportado en {}: {} registros desde la secuencia {}", formato, exportados, desde);
+        };
+        MediaType tipo = "json".equalsIgnoreCase(formato)
+                ? MediaType.parseMediaType("application/x-ndjson")
+                : MediaType.parseMediaType("text/csv");
+        return ResponseEntity.ok().contentType(tipo).body(cuerpo);
+    }
 }
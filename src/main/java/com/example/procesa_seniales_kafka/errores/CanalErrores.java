@@ -0,0 +1,439 @@
+package com.example.procesa_seniales_kafka.errores;
+
+import com.example.procesa_seniales_kafka.model.UbicacionVehiculo;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.logging.LogFactory;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.log.LogAccessor;
+import org.springframework.kafka.KafkaException;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.ListenerExecutionFailedException;
+import org.springframework.kafka.support.KafkaUtils;
+import org.springframework.kafka.support.serializer.DeserializationException;
+import org.springframework.kafka.support.serializer.SerializationUtils;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Destino de los registros de ubicaciones que fallan: tópicos de reintento escalonados y un dead-letter.
+ *
+ * Un registro que falla se reenvía al primer tópico de reintento ({@code <prefijo>-1}) con el instante
+ * en que vence su espera, y el offset original se confirma apenas el broker aceptó el reenvío: la
+ * partición sigue avanzando y el registro se reintenta en otro consumer sin frenar a los sanos. Si el
+ * broker no acepta el reenvío (tópico de reintento o dead-letter no disponible) se repite con esperas
+ * que se duplican hasta {@value #ESPERA_MAXIMA_REENVIO_MS} ms: el offset sigue pendiente mientras tanto,
+ * pero no queda un hueco que frene la partición hasta reiniciar. Con acks fuera de orden el contenedor
+ * no admite {@code nack}, así que no hay otra forma de volver a entregar el registro. Si
+ * vuelve a fallar pasa al siguiente tópico y, agotadas las esperas, al dead-letter. Los fallos no
+ * reintentables (deserialización y las excepciones configuradas como de validación) van directo al
+ * dead-letter.
+ *
+ * Los registros que no se pudieron deserializar llegan al dead-letter con sus bytes y headers
+ * originales; el resto se reescribe en el formato del tópico de ubicaciones para poder releerlos con
+ * el mismo consumer. En ambos casos se agregan los headers {@code x-error-*} con la clase de fallo,
+ * la excepción y el origen (tópico, partición y offset del registro original).
+ */
+@Slf4j
+@Component
+public class CanalErrores {
+
+    public static final String HEADER_CLASE = "x-error-clase";
+    public static final String HEADER_EXCEPCION = "x-error-excepcion";
+    public static final String HEADER_MENSAJE = "x-error-mensaje";
+    public static final String HEADER_INTENTO = "x-error-intento";
+    public static final String HEADER_TOPICO_ORIGEN = "x-error-topico-origen";
+    public static final String HEADER_PARTICION_ORIGEN = "x-error-particion-origen";
+    public static final String HEADER_OFFSET_ORIGEN = "x-error-offset-origen";
+    public static final String HEADER_INSTANTE = "x-error-instante";
+    public static final String HEADER_VENCE = "x-reintento-vence";
+
+    private static final int MAX_MENSAJE = 1000;
+    private static final long ESPERA_ENVIO_SEGUNDOS = 30;
+    static final long ESPERA_INICIAL_REENVIO_MS = 100;
+    static final long ESPERA_MAXIMA_REENVIO_MS = 30_000;
+    private static final LogAccessor LOG_SERIALIZACION = new LogAccessor(LogFactory.getLog(CanalErrores.class));
+
+    /**
+     * Envío de los registros derivados; la implementación por defecto usa los templates de Kafka.
+     */
+    public interface Salida {
+
+        CompletableFuture<?> ubicacion(ProducerRecord<String, UbicacionVehiculo> registro);
+
+        CompletableFuture<?> bytes(ProducerRecord<String, byte[]> registro);
+    }
+
+    private final long[] esperasMs;
+    private final String prefijoReintentos;
+    private final String topicoDlt;
+    private final List<Class<?>> noReintentables;
+    private final Salida salida;
+    private final LongSupplier reloj;
+
+    private final LongAdder[] fallos = new LongAdder[ClaseFallo.values().length];
+    private final LongAdder aReintento = new LongAdder();
+    private final LongAdder aDlt = new LongAdder();
+    private final LongAdder recuperados = new LongAdder();
+    private final LongAdder enviosFallidos = new LongAdder();
+
+    private record Origen(String clave, int intentos, String topico, int particion, long offset) {
+    }
+
+    @Autowired
+    public CanalErrores(@Value("${procesador.errores.reintentos.esperas-ms:1000,10000,60000}") long[] esperasMs,
+                        @Value("${procesador.errores.topico-reintentos:ubicaciones_vehiculos-reintento}") String prefijoReintentos,
+                        @Value("${procesador.errores.topico-dlt:ubicaciones_vehiculos-dlt}") String topicoDlt,
+                        @Value("${procesador.errores.no-reintentables:java.lang.IllegalArgumentException,java.lang.NullPointerException}")
+                        String[] noReintentables,
+                        KafkaTemplate<String, UbicacionVehiculo> kafkaTemplateUbicaciones,
+                        KafkaTemplate<String, byte[]> kafkaTemplateBytes) {
+        this(esperasMs, prefijoReintentos, topicoDlt, noReintentables, new Salida() {
+            @Override
+            public CompletableFuture<?> ubicacion(ProducerRecord<String, UbicacionVehiculo> registro) {
+                return kafkaTemplateUbicaciones.send(registro);
+            }
+
+            @Override
+            public CompletableFuture<?> bytes(ProducerRecord<String, byte[]> registro) {
+                return kafkaTemplateBytes.send(registro);
+            }
+        }, System::currentTimeMillis);
+    }
+
+    public CanalErrores(long[] esperasMs, String prefijoReintentos, String topicoDlt, String[] noReintentables,
+                        Salida salida, LongSupplier reloj) {
+        for (long espera : esperasMs) {
+            if (espera < 0) {
+                throw new IllegalArgumentException("Las esperas de reintento no pueden ser negativas: "
+                        + Arrays.toString(esperasMs));
+            }
+        }
+        this.esperasMs = esperasMs.clone();
+        this.prefijoReintentos = prefijoReintentos;
+        this.topicoDlt = topicoDlt;
+        this.noReintentables = new ArrayList<>(noReintentables.length);
+        for (String nombre : noReintentables) {
+            if (nombre.isBlank()) {
+                continue;
+            }
+            try {
+                this.noReintentables.add(Class.forName(nombre.trim()));
+            } catch (ClassNotFoundException e) {
+                throw new IllegalArgumentException("Excepción no reintentable desconocida: " + nombre, e);
+            }
+        }
+        this.salida = salida;
+        this.reloj = reloj;
+        for (int i = 0; i < fallos.length; i++) {
+            fallos[i] = new LongAdder();
+        }
+        log.info("🧯 Registros fallidos → reintentos: {} (esperas {} ms) | dead-letter: {}",
+                esperasMs.length == 0 ? "-" : prefijoReintentos + "-1.." + esperasMs.length,
+                Arrays.toString(esperasMs), topicoDlt);
+    }
+
+    public boolean reintentosHabilitados() {
+        return esperasMs.length > 0;
+    }
+
+    /**
+     * Tópicos de reintento, del primero al último; los escucha {@code UbicacionVehiculoReintentoConsumer}.
+     */
+    public String[] topicosReintento() {
+        String[] topicos = new String[esperasMs.length];
+        for (int i = 0; i < topicos.length; i++) {
+            topicos[i] = topicoReintento(i + 1);
+        }
+        return topicos;
+    }
+
+    public String topicoReintento(int intento) {
+        return prefijoReintentos + "-" + intento;
+    }
+
+    public String getTopicoDlt() {
+        return topicoDlt;
+    }
+
+    public ClaseFallo clasificar(Throwable error) {
+        for (Throwable causa = error; causa != null; causa = causa.getCause()) {
+            if (causa instanceof DeserializationException) {
+                return ClaseFallo.DESERIALIZACION;
+            }
+        }
+        Throwable causa = desenvolver(error);
+        for (Class<?> tipo : noReintentables) {
+            if (tipo.isInstance(causa)) {
+                return ClaseFallo.VALIDACION;
+            }
+        }
+        return causa instanceof org.apache.kafka.common.KafkaException || causa instanceof KafkaException
+                || causa instanceof TimeoutException ? ClaseFallo.PUBLICACION : ClaseFallo.PROCESAMIENTO;
+    }
+
+    /**
+     * Deriva una ubicación del tópico principal que falló al procesarse o al publicar sus horarios.
+     * @return Future que se completa cuando el broker aceptó el reenvío (repitiéndolo si hace falta);
+     *         recién entonces se puede confirmar el offset original
+     */
+    public CompletableFuture<Void> derivar(UbicacionVehiculo ubicacion, String topico, int particion, long offset,
+                                           Throwable error) {
+        return derivar(ubicacion, ubicacion.getVehiculoId(), 0, topico, particion, offset, error, true);
+    }
+
+    /**
+     * Deriva un registro que falló: si viene de un tópico de reintento conserva su origen y pasa al
+     * siguiente; si no, se trata como primer fallo. Repite el reenvío hasta que el broker lo acepte.
+     */
+    public CompletableFuture<Void> derivar(ConsumerRecord<String, UbicacionVehiculo> registro, Throwable error) {
+        return derivar(registro, error, true);
+    }
+
+    private CompletableFuture<Void> derivar(ConsumerRecord<String, UbicacionVehiculo> registro, Throwable error,
+                                            boolean insistir) {
+        Origen origen = origen(registro);
+        return derivar(registro.value(), origen.clave(), origen.intentos(), origen.topico(), origen.particion(),
+                origen.offset(), error, insistir);
+    }
+
+    private static Origen origen(ConsumerRecord<String, UbicacionVehiculo> registro) {
+        Headers headers = registro.headers();
+        String topicoOrigen = texto(headers, HEADER_TOPICO_ORIGEN);
+        if (topicoOrigen == null) {
+            return new Origen(registro.key(), 0, registro.topic(), registro.partition(), registro.offset());
+        }
+        return new Origen(registro.key(), (int) numero(headers, HEADER_INTENTO, 0), topicoOrigen,
+                (int) numero(headers, HEADER_PARTICION_ORIGEN, -1), numero(headers, HEADER_OFFSET_ORIGEN, -1));
+    }
+
+    /**
+     * Envía al dead-letter un registro que no se pudo deserializar, con sus bytes y headers originales.
+     * Si el registro no trae la excepción del deserializador se usa {@code error}. Repite el envío hasta
+     * que el broker lo acepte.
+     */
+    public CompletableFuture<Void> descartarIlegible(ConsumerRecord<?, ?> registro, Throwable error) {
+        return descartarIlegible(registro, error, true);
+    }
+
+    private CompletableFuture<Void> descartarIlegible(ConsumerRecord<?, ?> registro, Throwable error,
+                                                      boolean insistir) {
+        DeserializationException deserializacion = SerializationUtils.getExceptionFromHeader(registro,
+                KafkaUtils.VALUE_DESERIALIZER_EXCEPTION_HEADER, LOG_SERIALIZACION);
+        for (Throwable causa = error; deserializacion == null && causa != null; causa = causa.getCause()) {
+            if (causa instanceof DeserializationException excepcion) {
+                deserializacion = excepcion;
+            }
+        }
+        Throwable motivo = deserializacion != null ? deserializacion : error;
+        fallos[ClaseFallo.DESERIALIZACION.ordinal()].increment();
+
+        RecordHeaders headers = new RecordHeaders();
+        for (Header header : registro.headers()) {
+            if (!header.key().startsWith(KafkaUtils.DESERIALIZER_EXCEPTION_HEADER_PREFIX)) {
+                headers.add(header);
+            }
+        }
+        agregarFallo(headers, ClaseFallo.DESERIALIZACION, motivo, 0);
+        agregarOrigen(headers, registro.topic(), registro.partition(), registro.offset());
+        Object clave = registro.key();
+        ProducerRecord<String, byte[]> dlt = new ProducerRecord<>(topicoDlt, null,
+                clave == null ? null : clave.toString(), deserializacion != null ? deserializacion.getData() : null,
+                headers);
+        log.error("☠️  Registro ilegible → {} | Partition: {} | Offset: {} | {}",
+                topicoDlt, registro.partition(), registro.offset(), mensaje(motivo));
+        return enviar(() -> confirmarEnvio(salida.bytes(dlt), aDlt, topicoDlt, registro), insistir);
+    }
+
+    /**
+     * Recuperador de los {@code DefaultErrorHandler} de los contenedores: recibe los registros que el
+     * listener no llegó a ver (deserialización) o que lanzaron una excepción. Espera la confirmación
+     * del broker; si el envío falla lanza la excepción y el contenedor vuelve a entregar el registro.
+     */
+    @SuppressWarnings("unchecked")
+    public void recuperar(ConsumerRecord<?, ?> registro, Exception error) {
+        CompletableFuture<Void> envio = registro.value() instanceof UbicacionVehiculo
+                ? derivar((ConsumerRecord<String, UbicacionVehiculo>) registro, error, false)
+                : descartarIlegible(registro, error, false);
+        try {
+            envio.get(ESPERA_ENVIO_SEGUNDOS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new KafkaException("Interrumpido derivando el registro fallido", e);
+        } catch (ExecutionException | TimeoutException e) {
+            throw new KafkaException("No se pudo derivar el registro " + registro.topic() + "-"
+                    + registro.partition() + "@" + registro.offset(), e);
+        }
+    }
+
+    /**
+     * Registra que una ubicación se procesó bien en un tópico de reintento.
+     */
+    public void registrarRecuperado() {
+        recuperados.increment();
+    }
+
+    private CompletableFuture<Void> derivar(UbicacionVehiculo ubicacion, String clave, int intentos,
+                                            String topicoOrigen, int particionOrigen, long offsetOrigen,
+                                            Throwable error, boolean insistir) {
+        ClaseFallo clase = clasificar(error);
+        fallos[clase.ordinal()].increment();
+        int intento = intentos + 1;
+        boolean reintentar = clase.reintentable() && intento <= esperasMs.length;
+        String destino = reintentar ? topicoReintento(intento) : topicoDlt;
+
+        RecordHeaders headers = new RecordHeaders();
+        agregarFallo(headers, clase, desenvolver(error), intento);
+        agregarOrigen(headers, topicoOrigen, particionOrigen, offsetOrigen);
+        if (reintentar) {
+            headers.add(HEADER_VENCE, ascii(reloj.getAsLong() + esperasMs[intento - 1]));
+        }
+        log.warn("🧯 Ubicación de {} derivada a {} ({}, intento {}) | Origen: {}-{}@{} | {}",
+                clave, destino, clase.getNombre(), intento, topicoOrigen, particionOrigen, offsetOrigen,
+                mensaje(desenvolver(error)));
+        ProducerRecord<String, UbicacionVehiculo> registro =
+                new ProducerRecord<>(destino, null, clave, ubicacion, headers);
+        LongAdder contador = reintentar ? aReintento : aDlt;
+        return enviar(() -> confirmarEnvio(salida.ubicacion(registro), contador, destino, null), insistir);
+    }
+
+    /**
+     * Hace el envío y, con {@code insistir}, lo repite cada vez que el broker no lo acepta, con esperas
+     * que se duplican desde {@value #ESPERA_INICIAL_REENVIO_MS} hasta {@value #ESPERA_MAXIMA_REENVIO_MS} ms.
+     */
+    private CompletableFuture<Void> enviar(Supplier<CompletableFuture<Void>> envio, boolean insistir) {
+        if (!insistir) {
+            return intentarEnvio(envio);
+        }
+        CompletableFuture<Void> aceptado = new CompletableFuture<>();
+        insistir(envio, ESPERA_INICIAL_REENVIO_MS, aceptado);
+        return aceptado;
+    }
+
+    private void insistir(Supplier<CompletableFuture<Void>> envio, long esperaMs, CompletableFuture<Void> aceptado) {
+        intentarEnvio(envio).whenComplete((resultado, error) -> {
+            if (error == null) {
+                aceptado.complete(null);
+                return;
+            }
+            log.warn("🔁 Reenvío no aceptado; se repite en {} ms", esperaMs);
+            CompletableFuture.delayedExecutor(esperaMs, TimeUnit.MILLISECONDS).execute(() ->
+                    insistir(envio, Math.min(esperaMs * 2, ESPERA_MAXIMA_REENVIO_MS), aceptado));
+        });
+    }
+
+    private CompletableFuture<Void> intentarEnvio(Supplier<CompletableFuture<Void>> envio) {
+        try {
+            return envio.get();
+        } catch (RuntimeException e) {
+            // El envío falló antes de llegar al productor (serialización, metadata, etc.)
+            enviosFallidos.increment();
+            log.error("❌ No se pudo derivar el registro fallido: {}", e.getMessage());
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private CompletableFuture<Void> confirmarEnvio(CompletableFuture<?> envio, LongAdder contador, String destino,
+                                                   ConsumerRecord<?, ?> origen) {
+        return envio.handle((resultado, error) -> {
+            if (error != null) {
+                enviosFallidos.increment();
+                log.error("❌ No se pudo derivar el registro fallido a '{}'{}: {}", destino,
+                        origen == null ? "" : " (offset " + origen.offset() + ")", error.getMessage());
+                throw new CompletionException(error);
+            }
+            contador.increment();
+            return null;
+        });
+    }
+
+    private void agregarFallo(Headers headers, ClaseFallo clase, Throwable error, int intento) {
+        headers.add(HEADER_CLASE, clase.getNombre().getBytes(StandardCharsets.US_ASCII));
+        headers.add(HEADER_EXCEPCION, error.getClass().getName().getBytes(StandardCharsets.UTF_8));
+        headers.add(HEADER_MENSAJE, mensaje(error).getBytes(StandardCharsets.UTF_8));
+        headers.add(HEADER_INTENTO, ascii(intento));
+        headers.add(HEADER_INSTANTE, ascii(reloj.getAsLong()));
+    }
+
+    private static void agregarOrigen(Headers headers, String topico, int particion, long offset) {
+        headers.add(HEADER_TOPICO_ORIGEN, topico.getBytes(StandardCharsets.UTF_8));
+        headers.add(HEADER_PARTICION_ORIGEN, ascii(particion));
+        headers.add(HEADER_OFFSET_ORIGEN, ascii(offset));
+    }
+
+    /**
+     * Quita los envoltorios de los futures y del contenedor para quedarse con la excepción original.
+     */
+    private static Throwable desenvolver(Throwable error) {
+        Throwable causa = error;
+        while ((causa instanceof CompletionException || causa instanceof ExecutionException
+                || causa instanceof ListenerExecutionFailedException)
+                && causa.getCause() != null) {
+            causa = causa.getCause();
+        }
+        return causa;
+    }
+
+    private static String mensaje(Throwable error) {
+        String mensaje = String.valueOf(error.getMessage());
+        return mensaje.length() <= MAX_MENSAJE ? mensaje : mensaje.substring(0, MAX_MENSAJE);
+    }
+
+    private static byte[] ascii(long valor) {
+        return Long.toString(valor).getBytes(StandardCharsets.US_ASCII);
+    }
+
+    public static String texto(Headers headers, String nombre) {
+        Header header = headers.lastHeader(nombre);
+        return header == null || header.value() == null ? null : new String(header.value(), StandardCharsets.UTF_8);
+    }
+
+    public static long numero(Headers headers, String nombre, long porDefecto) {
+        String texto = texto(headers, nombre);
+        if (texto == null) {
+            return porDefecto;
+        }
+        try {
+            return Long.parseLong(texto);
+        } catch (NumberFormatException e) {
+            return porDefecto;
+        }
+    }
+
+    public long getFallos(ClaseFallo clase) {
+        return fallos[clase.ordinal()].sum();
+    }
+
+    public long getAReintento() {
+        return aReintento.sum();
+    }
+
+    public long getADlt() {
+        return aDlt.sum();
+    }
+
+    public long getRecuperados() {
+        return recuperados.sum();
+    }
+
+    public long getEnviosFallidos() {
+        return enviosFallidos.sum();
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.procesa_seniales_kafka.errores;
+
+/**
+ * Clases de fallo de un registro de ubicaciones. Cada una tiene su contador y decide si el registro
+ * pasa por los tópicos de reintento o va directo al dead-letter.
+ */
+public enum ClaseFallo {
+
+    /** El payload no se pudo deserializar: reintentar no cambia el resultado. */
+    DESERIALIZACION("deserializacion", false),
+
+    /** La ubicación se leyó pero es inválida (excepciones configuradas como no reintentables). */
+    VALIDACION("validacion", false),
+
+    /** Error inesperado al procesar la ubicación. */
+    PROCESAMIENTO("procesamiento", true),
+
+    /** El broker no confirmó los horarios derivados de la ubicación. */
+    PUBLICACION("publicacion", true);
+
+    private final String nombre;
+    private final boolean reintentable;
+
+    ClaseFallo(String nombre, boolean reintentable) {
+        this.nombre = nombre;
+        this.reintentable = reintentable;
+    }
+
+    public String getNombre() {
+        return nombre;
+    }
+
+    public boolean reintentable() {
+        return reintentable;
+    }
+}
@@ -0,0 +1,211 @@
+package com.example.procesa_seniales_kafka.estadisticas;
+
+import com.example.procesa_seniales_kafka.model.HorarioVehiculo;
+import com.example.procesa_seniales_kafka.model.UbicacionVehiculo;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Estadísticas en vivo del procesamiento, sin depender de un stack de métricas externo:
+ * ubicaciones y horarios por segundo, y latencia de punta a punta de los horarios
+ * (desde {@code UbicacionVehiculo.timestamp} hasta el envío del horario), en ventanas
+ * móviles de 1, 5 y 15 minutos, globales y por ruta y estado.
+ *
+ * Cada serie es una {@link VentanaMinutos}: registrar no toma locks ni reserva memoria, y las series
+ * de una ruta y estado se crean una sola vez, la primera vez que aparecen. Las rutas distintas están
+ * acotadas por {@code procesador.estadisticas.max-rutas}; las que exceden el límite se agrupan en
+ * {@value #RUTA_OTRAS}. Cada serie ocupa unos 45 KB.
+ *
+ * El timestamp de la ubicación es una hora local sin zona, igual que la que se asigna a los horarios,
+ * por lo que la latencia se calcula en hora local de la zona del sistema. Su resolución es la del
+ * timestamp recibido (segundos en JSON).
+ */
+@Slf4j
+@Component
+public class EstadisticasTiempoReal {
+
+    static final String RUTA_SIN_DATO = "sin-ruta";
+    static final String RUTA_OTRAS = "otras";
+
+    private static final long MS_POR_MINUTO = 60_000L;
+    private static final long MS_POR_DIA = 86_400_000L;
+    private static final int[] VENTANAS_MINUTOS = {1, 5, 15};
+
+    private final int maxRutas;
+    private final LongSupplier reloj;
+    private final ZoneId zona;
+    private final long inicioMs;
+
+    // Desfase de la zona respecto de UTC, recalculado una vez por minuto (cambios de horario)
+    private volatile long desfaseMs;
+    private volatile long minutoDesfase = Long.MIN_VALUE;
+
+    private final VentanaMinutos ubicaciones = new VentanaMinutos(false);
+    private final VentanaMinutos horarios = new VentanaMinutos(true);
+    private final ConcurrentHashMap<String, ConcurrentHashMap<String, VentanaMinutos>> porRuta =
+            new ConcurrentHashMap<>();
+
+    @Autowired
+    public EstadisticasTiempoReal(@Value("${procesador.estadisticas.max-rutas:64}") int maxRutas) {
+        this(maxRutas, System::currentTimeMillis, ZoneId.systemDefault());
+    }
+
+    EstadisticasTiempoReal(int maxRutas, LongSupplier reloj, ZoneId zona) {
+        this.maxRutas = maxRutas;
+        this.reloj = reloj;
+        this.zona = zona;
+        this.inicioMs = reloj.getAsLong();
+    }
+
+    /** Cuenta una ubicación procesada. */
+    public void registrarUbicacion() {
+        ubicaciones.contar(reloj.getAsLong() / MS_POR_MINUTO);
+    }
+
+    /**
+     * Cuenta un horario enviado y registra su latencia desde la ubicación que lo originó.
+     */
+    public void registrarHorario(UbicacionVehiculo ubicacion, HorarioVehiculo horario) {
+        long ahora = reloj.getAsLong();
+        long minuto = ahora / MS_POR_MINUTO;
+        VentanaMinutos serie = serie(horario.getRuta(), horario.getEstado());
+
+        LocalDateTime timestamp = ubicacion.getTimestamp();
+        if (timestamp == null) {
+            horarios.contar(minuto);
+            serie.contar(minuto);
+            return;
+        }
+
+        if (minuto != minutoDesfase) {
+            actualizarDesfase(ahora, minuto);
+        }
+        // Un reloj del productor adelantado no debe producir latencias negativas
+        long latenciaMs = Math.max(0, ahora + desfaseMs - milisLocales(timestamp));
+        horarios.registrar(minuto, latenciaMs);
+        serie.registrar(minuto, latenciaMs);
+    }
+
+    private VentanaMinutos serie(String ruta, String estado) {
+        String claveRuta = ruta != null ? ruta : RUTA_SIN_DATO;
+        String claveEstado = estado != null ? estado : "DESCONOCIDO";
+
+        ConcurrentHashMap<String, VentanaMinutos> porEstado = porRuta.get(claveRuta);
+        if (porEstado == null) {
+            porEstado = crearRuta(claveRuta);
+        }
+        VentanaMinutos serie = porEstado.get(claveEstado);
+        if (serie == null) {
+            serie = porEstado.computeIfAbsent(claveEstado, e -> new VentanaMinutos(true));
+        }
+        return serie;
+    }
+
+    private ConcurrentHashMap<String, VentanaMinutos> crearRuta(String ruta) {
+        String clave = porRuta.size() < maxRutas ? ruta : RUTA_OTRAS;
+        if (RUTA_OTRAS.equals(clave) && !porRuta.containsKey(RUTA_OTRAS)) {
+            log.warn("⚠️  Límite de {} rutas en estadísticas alcanzado; las nuevas rutas se agrupan en '{}'",
+                    maxRutas, RUTA_OTRAS);
+        }
+        return porRuta.computeIfAbsent(clave, r -> new ConcurrentHashMap<>());
+    }
+
+    private void actualizarDesfase(long ahora, long minuto) {
+        desfaseMs = zona.getRules().getOffset(Instant.ofEpochMilli(ahora)).getTotalSeconds() * 1000L;
+        minutoDesfase = minuto;
+    }
+
+    /**
+     * Milisegundos de una hora local contados desde 1970-01-01T00:00 local, sin reservar objetos.
+     */
+    static long milisLocales(LocalDateTime timestamp) {
+        return timestamp.toLocalDate().toEpochDay() * MS_POR_DIA
+                + timestamp.toLocalTime().toNanoOfDay() / 1_000_000;
+    }
+
+    /**
+     * Resumen de las ventanas globales y por ruta y estado.
+     * @param ruta si no es null, solo se incluye esa ruta en el detalle
+     */
+    public Map<String, Object> resumen(String ruta) {
+        long ahora = reloj.getAsLong();
+        long minuto = ahora / MS_POR_MINUTO;
+
+        Map<String, Object> globales = new LinkedHashMap<>();
+        for (int minutos : VENTANAS_MINUTOS) {
+            double segundos = segundosCubiertos(ahora, minutos);
+            Map<String, Object> ventana = resumenSerie(horarios, minuto, minutos, segundos);
+            ventana.put("ubicaciones_por_segundo",
+                    redondear(ubicaciones.acumular(minuto, minutos, null).total / segundos));
+            globales.put(minutos + "m", ventana);
+        }
+
+        Map<String, Object> rutas = new TreeMap<>();
+        porRuta.forEach((claveRuta, porEstado) -> {
+            if (ruta != null && !ruta.equals(claveRuta)) {
+                return;
+            }
+            Map<String, Object> estados = new TreeMap<>();
+            porEstado.forEach((estado, serie) -> {
+                Map<String, Object> ventanas = new LinkedHashMap<>();
+                for (int minutos : VENTANAS_MINUTOS) {
+                    ventanas.put(minutos + "m", resumenSerie(serie, minuto, minutos, segundosCubiertos(ahora, minutos)));
+                }
+                estados.put(estado, ventanas);
+            });
+            rutas.put(claveRuta, estados);
+        });
+
+        Map<String, Object> resumen = new LinkedHashMap<>();
+        resumen.put("ventanas", globales);
+        resumen.put("por_ruta", rutas);
+        return resumen;
+    }
+
+    private static Map<String, Object> resumenSerie(VentanaMinutos serie, long minuto, int minutos, double segundos) {
+        long[] conteos = new long[HistogramaLogLineal.CANTIDAD_BUCKETS];
+        VentanaMinutos.Resumen acumulado = serie.acumular(minuto, minutos, conteos);
+        long conLatencia = 0;
+        for (long conteo : conteos) {
+            conLatencia += conteo;
+        }
+
+        Map<String, Object> latencia = new LinkedHashMap<>();
+        latencia.put("muestras", conLatencia);
+        latencia.put("p50", HistogramaLogLineal.percentil(conteos, conLatencia, 50));
+        latencia.put("p99", HistogramaLogLineal.percentil(conteos, conLatencia, 99));
+        latencia.put("p999", HistogramaLogLineal.percentil(conteos, conLatencia, 99.9));
+        latencia.put("max", acumulado.maximo);
+
+        Map<String, Object> resumen = new LinkedHashMap<>();
+        resumen.put("segundos", Math.round(segundos));
+        resumen.put("horarios", acumulado.total);
+        resumen.put("horarios_por_segundo", redondear(acumulado.total / segundos));
+        resumen.put("latencia_ms", latencia);
+        return resumen;
+    }
+
+    /**
+     * Segundos que cubre una ventana: los minutos completos más lo transcurrido del minuto en curso,
+     * sin contar el tiempo anterior al arranque.
+     */
+    private double segundosCubiertos(long ahora, int minutos) {
+        long desde = Math.max(inicioMs, (ahora / MS_POR_MINUTO - minutos) * MS_POR_MINUTO);
+        return Math.max(1, ahora - desde) / 1000.0;
+    }
+
+    private static double redondear(double valor) {
+        return Math.round(valor * 100) / 100.0;
+    }
+}
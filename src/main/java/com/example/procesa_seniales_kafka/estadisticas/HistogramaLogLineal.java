@@ -0,0 +1,76 @@
+package com.example.procesa_seniales_kafka.estadisticas;
+
+/**
+ * Distribución de buckets log-lineal, al estilo de HdrHistogram.
+ *
+ * Los valores menores a {@value #SUB_BUCKETS} tienen un bucket propio; a partir de ahí cada potencia
+ * de dos se divide en {@value #SUB_BUCKETS} buckets de igual ancho, por lo que el error relativo de
+ * un valor reportado es como máximo 1/{@value #SUB_BUCKETS} (~3%). Los valores por encima de
+ * {@link #VALOR_MAXIMO} se acumulan en el último bucket.
+ *
+ * Solo define la correspondencia valor-bucket y el cálculo de percentiles sobre conteos ya sumados;
+ * los conteos viven en {@link VentanaMinutos}.
+ */
+public final class HistogramaLogLineal {
+
+    /** Bits de precisión: sub-buckets por potencia de dos = 2^BITS. */
+    private static final int BITS = 5;
+    static final int SUB_BUCKETS = 1 << BITS;
+
+    /** Mayor potencia de dos representada (2^24 ms ≈ 4,6 horas). */
+    private static final int EXPONENTE_MAXIMO = 23;
+    public static final long VALOR_MAXIMO = (1L << (EXPONENTE_MAXIMO + 1)) - 1;
+
+    public static final int CANTIDAD_BUCKETS = SUB_BUCKETS + (EXPONENTE_MAXIMO - BITS + 1) * SUB_BUCKETS;
+
+    private HistogramaLogLineal() {
+    }
+
+    public static int indice(long valor) {
+        if (valor < SUB_BUCKETS) {
+            return valor < 0 ? 0 : (int) valor;
+        }
+        if (valor > VALOR_MAXIMO) {
+            return CANTIDAD_BUCKETS - 1;
+        }
+        int exponente = 63 - Long.numberOfLeadingZeros(valor);
+        int desplazamiento = exponente - BITS;
+        int sub = (int) (valor >>> desplazamiento) - SUB_BUCKETS;
+        return SUB_BUCKETS + desplazamiento * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * Mayor valor que cae en el bucket: es lo que se reporta para un percentil, de modo que el valor
+     * reportado nunca subestima al real.
+     */
+    public static long limiteSuperior(int indice) {
+        if (indice < SUB_BUCKETS) {
+            return indice;
+        }
+        int desplazamiento = (indice - SUB_BUCKETS) / SUB_BUCKETS;
+        int sub = (indice - SUB_BUCKETS) % SUB_BUCKETS;
+        long inferior = (long) (SUB_BUCKETS + sub) << desplazamiento;
+        return inferior + (1L << desplazamiento) - 1;
+    }
+
+    /**
+     * @param conteos   conteos por bucket
+     * @param total     suma de los conteos
+     * @param percentil entre 0 y 100
+     * @return límite superior del bucket que contiene al percentil, o 0 sin muestras
+     */
+    public static long percentil(long[] conteos, long total, double percentil) {
+        if (total == 0) {
+            return 0;
+        }
+        long objetivo = Math.max(1, (long) Math.ceil(total * percentil / 100.0));
+        long acumulado = 0;
+        for (int i = 0; i < conteos.length; i++) {
+            acumulado += conteos[i];
+            if (acumulado >= objetivo) {
+                return limiteSuperior(i);
+            }
+        }
+        return limiteSuperior(conteos.length - 1);
+    }
+}
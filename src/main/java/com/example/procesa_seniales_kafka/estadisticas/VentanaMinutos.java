@@ -0,0 +1,133 @@
+package com.example.procesa_seniales_kafka.estadisticas;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Anillo de franjas de un minuto con conteos y, opcionalmente, un histograma de latencias por franja.
+ *
+ * El registro no toma locks ni reserva memoria: elige la franja por el minuto actual, incrementa un
+ * contador atómico del bucket y actualiza el máximo con CAS. Cuando un minuto nuevo llega a su franja,
+ * el hilo que gana el CAS del minuto la reetiqueta; la franja siguiente se limpia en ese momento, un
+ * minuto antes de volver a usarse, por lo que en tráfico continuo nunca se limpia una franja en uso.
+ * Solo tras un período sin registros puede limpiarse una franja mientras otro hilo registra en ella,
+ * y en ese caso se pierden a lo sumo las muestras concurrentes con la limpieza.
+ *
+ * Las lecturas suman las franjas cuyo minuto cae dentro de la ventana pedida.
+ */
+final class VentanaMinutos {
+
+    /** Minutos de historia, sin contar el minuto en curso. */
+    static final int MINUTOS_HISTORIA = 15;
+
+    // Historia + minuto en curso + la franja que se limpia por adelantado
+    private static final int FRANJAS = MINUTOS_HISTORIA + 2;
+
+    private final Franja[] franjas = new Franja[FRANJAS];
+
+    VentanaMinutos(boolean conHistograma) {
+        for (int i = 0; i < FRANJAS; i++) {
+            franjas[i] = new Franja(conHistograma);
+        }
+    }
+
+    /** Cuenta un evento sin valor asociado. */
+    void contar(long minuto) {
+        franjaVigente(minuto).total.increment();
+    }
+
+    /** Cuenta un evento y registra su valor en el histograma. */
+    void registrar(long minuto, long valor) {
+        Franja franja = franjaVigente(minuto);
+        franja.total.increment();
+        franja.conteos.incrementAndGet(HistogramaLogLineal.indice(valor));
+        AtomicLong maximo = franja.maximo;
+        long actual;
+        while (valor > (actual = maximo.get()) && !maximo.compareAndSet(actual, valor)) {
+            // reintenta hasta que el máximo sea mayor o igual al valor
+        }
+    }
+
+    /**
+     * Suma las franjas de los últimos {@code minutos} minutos completos más el minuto en curso.
+     * @param conteos arreglo de {@link HistogramaLogLineal#CANTIDAD_BUCKETS} donde se acumulan los buckets,
+     *                o null para leer solo el total
+     * @return total de eventos y máximo registrado en la ventana
+     */
+    Resumen acumular(long minutoActual, int minutos, long[] conteos) {
+        long total = 0;
+        long maximo = 0;
+        for (Franja franja : franjas) {
+            long minuto = franja.minuto.get();
+            if (minuto > minutoActual || minuto < minutoActual - minutos) {
+                continue;
+            }
+            total += franja.total.sum();
+            if (franja.conteos != null) {
+                maximo = Math.max(maximo, franja.maximo.get());
+                if (conteos != null) {
+                    for (int i = 0; i < conteos.length; i++) {
+                        conteos[i] += franja.conteos.get(i);
+                    }
+                }
+            }
+        }
+        return new Resumen(total, maximo);
+    }
+
+    private Franja franjaVigente(long minuto) {
+        Franja franja = franjas[(int) (minuto % FRANJAS)];
+        long etiqueta = franja.minuto.get();
+        if (etiqueta < minuto && franja.minuto.compareAndSet(etiqueta, minuto)) {
+            // La franja no fue limpiada por adelantado si el minuto anterior no tuvo registros
+            if (!franja.limpiaPorAdelantado) {
+                franja.limpiar();
+            }
+            franja.limpiaPorAdelantado = false;
+
+            // La siguiente guarda datos de hace FRANJAS minutos, ya fuera de toda ventana
+            Franja siguiente = franjas[(int) ((minuto + 1) % FRANJAS)];
+            if (siguiente.minuto.get() < minuto + 1) {
+                siguiente.limpiar();
+                siguiente.limpiaPorAdelantado = true;
+            }
+        }
+        return franja;
+    }
+
+    /** Total de eventos y máximo de una ventana. */
+    static final class Resumen {
+
+        final long total;
+        final long maximo;
+
+        Resumen(long total, long maximo) {
+            this.total = total;
+            this.maximo = maximo;
+        }
+    }
+
+    private static final class Franja {
+
+        private final AtomicLong minuto = new AtomicLong(Long.MIN_VALUE);
+        private final LongAdder total = new LongAdder();
+        private final AtomicIntegerArray conteos;
+        private final AtomicLong maximo = new AtomicLong();
+        private volatile boolean limpiaPorAdelantado;
+
+        private Franja(boolean conHistograma) {
+            this.conteos = conHistograma ? new AtomicIntegerArray(HistogramaLogLineal.CANTIDAD_BUCKETS) : null;
+        }
+
+        private void limpiar() {
+            total.reset();
+            maximo.set(0);
+            if (conteos != null) {
+                for (int i = 0; i < conteos.length(); i++) {
+                    conteos.set(i, 0);
+                }
+            }
+        }
+    }
+}
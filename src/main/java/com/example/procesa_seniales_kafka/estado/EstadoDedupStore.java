@@ -0,0 +1,514 @@
+package com.example.procesa_seniales_kafka.estado;
+
+import com.example.procesa_seniales_kafka.model.EstadoParada;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.utils.Utils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+/**
+ * Almacén concurrente del último horario publicado por cada par vehículo-parada.
+ *
+ * Reemplaza al antiguo {@code HashMap<String, HorarioVehiculo>}: la clave compuesta se guarda
+ * como dos referencias (vehiculoId, paradaId) sin concatenar, y por cada entrada solo se conservan
+ * los datos que necesita la regla de deduplicación (estado e instante de la última publicación).
+ *
+ * Está dividido en segmentos independientes, cada uno protegido por su propio lock y con una
+ * tabla de direccionamiento abierto. El segmento se elige solo por el vehículo, de modo que todas
+ * las paradas de un vehículo comparten segmento. Las entradas expiran por TTL de inactividad y el
+ * total de entradas está acotado: al llenarse un segmento se desaloja la entrada menos usada
+ * de una muestra.
+ *
+ * El segmento de un vehículo es {@code hashVehiculo(vehiculoId) & (segmentos - 1)}, y {@link #hashVehiculo}
+ * es el mismo murmur2 con el que el productor de Kafka elige la partición de la key. Si la cantidad de
+ * particiones de ubicaciones_vehiculos es potencia de dos y no supera la de segmentos, los vehículos de
+ * una partición caen siempre en los mismos segmentos, y los de dos particiones distintas nunca en el
+ * mismo; como cada hilo del contenedor atiende particiones completas, los hilos de consumo no comparten
+ * locks entre sí. Con otra cantidad de particiones el reparto no coincide y dos hilos pueden cruzarse en
+ * un segmento. En cualquier caso los locks se comparten con las purgas programadas y con el hilo que
+ * vacía el reorden por tiempo de evento.
+ */
+@Slf4j
+@Component
+public class EstadoDedupStore {
+
+    /** Cantidad de ranuras ocupadas que se examinan al buscar una víctima para desalojar. */
+    private static final int MUESTRA_DESALOJO = 16;
+
+    /** Bytes aproximados por ranura: tres referencias comprimidas y dos long. */
+    private static final int BYTES_POR_RANURA = 3 * 4 + 2 * 8;
+
+    /** Constantes de {@code Utils.murmur2} de kafka-clients. */
+    private static final int SEMILLA_MURMUR2 = 0x9747b28c;
+    private static final int MULTIPLICADOR_MURMUR2 = 0x5bd1e995;
+
+    private final Segmento[] segmentos;
+    private final int mascaraSegmentos;
+    private final int maxPorSegmento;
+    private final long ttlMs;
+    private final long intervaloRepublicacionMs;
+    private final LongSupplier reloj;
+
+    private final LongAdder aciertos = new LongAdder();
+    private final LongAdder fallos = new LongAdder();
+    private final LongAdder desalojosTtl = new LongAdder();
+    private final LongAdder desalojosCapacidad = new LongAdder();
+
+    @Autowired
+    public EstadoDedupStore(
+            @Value("${procesador.dedup.max-entradas:200000}") int maxEntradas,
+            @Value("${procesador.dedup.ttl-minutos:30}") long ttlMinutos,
+            @Value("${procesador.dedup.segmentos:64}") int segmentos,
+            @Value("${procesador.dedup.intervalo-republicacion-segundos:60}") long intervaloRepublicacionSegundos) {
+        this(maxEntradas, ttlMinutos * 60_000L, segmentos, intervaloRepublicacionSegundos * 1000L,
+                System::currentTimeMillis);
+    }
+
+    EstadoDedupStore(int maxEntradas, long ttlMs, int segmentos, long intervaloRepublicacionMs, LongSupplier reloj) {
+        if (maxEntradas <= 0 || segmentos <= 0) {
+            throw new IllegalArgumentException("max-entradas y segmentos deben ser positivos");
+        }
+        int cantidadSegmentos = Integer.highestOneBit(Math.min(segmentos, maxEntradas));
+        this.segmentos = new Segmento[cantidadSegmentos];
+        for (int i = 0; i < cantidadSegmentos; i++) {
+            this.segmentos[i] = new Segmento();
+        }
+        this.mascaraSegmentos = cantidadSegmentos - 1;
+        this.maxPorSegmento = Math.max(1, maxEntradas / cantidadSegmentos);
+        this.ttlMs = ttlMs;
+        this.intervaloRepublicacionMs = intervaloRepublicacionMs;
+        this.reloj = reloj;
+    }
+
+    /**
+     * Decide si un horario debe publicarse y, en ese caso, lo registra como última publicación.
+     * Se publica cuando no hay registro previo vigente, cuando cambió el estado o cuando pasó
+     * el intervalo de republicación desde la última publicación.
+     *
+     * @param instanteMs instante del horario en milisegundos (misma escala entre llamadas)
+     */
+    public boolean debePublicar(String vehiculoId, String paradaId, EstadoParada estado, long instanteMs) {
+        int hashVehiculo = hashVehiculo(vehiculoId);
+        Segmento segmento = segmentos[hashVehiculo & mascaraSegmentos];
+        return segmento.debePublicar(vehiculoId, paradaId, hash(hashVehiculo, paradaId), estado, instanteMs);
+    }
+
+    /**
+     * Elimina las entradas expiradas de todos los segmentos.
+     */
+    @Scheduled(fixedDelayString = "${procesador.dedup.purga-ms:30000}")
+    public void purgarExpirados() {
+        long ahora = reloj.getAsLong();
+        int eliminadas = 0;
+        for (Segmento segmento : segmentos) {
+            eliminadas += segmento.purgar(ahora);
+        }
+        if (eliminadas > 0) {
+            log.debug("🧹 Estado dedup: {} entradas expiradas eliminadas", eliminadas);
+        }
+    }
+
+    /**
+     * Entrega las entradas vigentes, un segmento a la vez bajo su lock: las de cada segmento son una vista
+     * consistente, mientras el resto del almacén sigue atendiendo ubicaciones.
+     */
+    public void recorrer(VisitanteEntradas visitante) {
+        long ahora = reloj.getAsLong();
+        for (Segmento segmento : segmentos) {
+            segmento.recorrer(visitante, ahora);
+        }
+    }
+
+    /**
+     * Restaura una entrada guardada, por ejemplo desde un checkpoint. Si el par ya tiene entrada queda la
+     * de publicación más reciente; las expiradas se ignoran y el límite de entradas se aplica como en
+     * cualquier inserción.
+     * @return true si la entrada quedó en el almacén
+     */
+    public boolean restaurar(String vehiculoId, String paradaId, EstadoParada estado, long ultimaPublicacionMs,
+                             long ultimoAccesoMs) {
+        int hashVehiculo = hashVehiculo(vehiculoId);
+        Segmento segmento = segmentos[hashVehiculo & mascaraSegmentos];
+        return segmento.restaurar(vehiculoId, paradaId, hash(hashVehiculo, paradaId), estado,
+                ultimaPublicacionMs, ultimoAccesoMs);
+    }
+
+    /**
+     * Elimina todas las entradas de los vehículos que cumplen la condición.
+     * @return cantidad de entradas eliminadas
+     */
+    public int eliminarVehiculos(Predicate<String> vehiculos) {
+        long ahora = reloj.getAsLong();
+        int eliminadas = 0;
+        for (Segmento segmento : segmentos) {
+            eliminadas += segmento.eliminarVehiculos(vehiculos, ahora);
+        }
+        return eliminadas;
+    }
+
+    /**
+     * Hash de un vehículo usado para elegir su segmento: {@code Utils.murmur2} de Kafka sobre los bytes
+     * UTF-8 del vehiculoId, de modo que {@code (hash & 0x7fffffff) % particiones} es la partición que le
+     * asigna el particionador por defecto. Con un vehiculoId ASCII se calcula sobre los caracteres, sin
+     * copiar la cadena a un arreglo de bytes.
+     */
+    public static int hashVehiculo(String vehiculoId) {
+        int largo = vehiculoId.length();
+        for (int i = 0; i < largo; i++) {
+            if (vehiculoId.charAt(i) >= 0x80) {
+                return Utils.murmur2(vehiculoId.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+
+        int h = SEMILLA_MURMUR2 ^ largo;
+        int bloques = largo & ~3;
+        for (int i = 0; i < bloques; i += 4) {
+            int k = vehiculoId.charAt(i) | vehiculoId.charAt(i + 1) << 8
+                    | vehiculoId.charAt(i + 2) << 16 | vehiculoId.charAt(i + 3) << 24;
+            k *= MULTIPLICADOR_MURMUR2;
+            k ^= k >>> 24;
+            k *= MULTIPLICADOR_MURMUR2;
+            h *= MULTIPLICADOR_MURMUR2;
+            h ^= k;
+        }
+        switch (largo & 3) {
+            case 3:
+                h ^= vehiculoId.charAt(bloques + 2) << 16;
+            case 2:
+                h ^= vehiculoId.charAt(bloques + 1) << 8;
+            case 1:
+                h ^= vehiculoId.charAt(bloques);
+                h *= MULTIPLICADOR_MURMUR2;
+            default:
+        }
+        h ^= h >>> 13;
+        h *= MULTIPLICADOR_MURMUR2;
+        h ^= h >>> 15;
+        return h;
+    }
+
+    public int getSegmentos() {
+        return segmentos.length;
+    }
+
+    public int tamanio() {
+        int total = 0;
+        for (Segmento segmento : segmentos) {
+            total += segmento.tamanio;
+        }
+        return total;
+    }
+
+    public long getAciertos() {
+        return aciertos.sum();
+    }
+
+    public long getFallos() {
+        return fallos.sum();
+    }
+
+    public long getDesalojosTtl() {
+        return desalojosTtl.sum();
+    }
+
+    public long getDesalojosCapacidad() {
+        return desalojosCapacidad.sum();
+    }
+
+    /**
+     * Memoria aproximada de las tablas, sin contar los Strings de las claves
+     * (se comparten con los mensajes y las paradas).
+     */
+    public long memoriaAproximadaBytes() {
+        long ranuras = 0;
+        for (Segmento segmento : segmentos) {
+            ranuras += segmento.capacidad();
+        }
+        return ranuras * BYTES_POR_RANURA;
+    }
+
+    private static int hash(int hashVehiculo, String paradaId) {
+        return mezclar(hashVehiculo * 31 + paradaId.hashCode());
+    }
+
+    /**
+     * Finalizador de MurmurHash3 para distribuir bien hashes de Strings parecidos.
+     */
+    private static int mezclar(int h) {
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    /**
+     * Recibe las entradas de {@link #recorrer}.
+     */
+    @FunctionalInterface
+    public interface VisitanteEntradas {
+        void entrada(String vehiculoId, String paradaId, EstadoParada estado, long ultimaPublicacionMs,
+                     long ultimoAccesoMs);
+    }
+
+    /**
+     * Tabla de direccionamiento abierto con sondeo lineal y borrado por desplazamiento hacia atrás.
+     * Todas las operaciones se realizan bajo el lock del propio segmento.
+     */
+    private final class Segmento {
+        private String[] vehiculos = new String[16];
+        private String[] paradas = new String[16];
+        private EstadoParada[] estados = new EstadoParada[16];
+        private long[] ultimaPublicacionMs = new long[16];
+        private long[] ultimoAccesoMs = new long[16];
+        private volatile int tamanio;
+        private int cursorDesalojo;
+
+        private synchronized boolean debePublicar(String vehiculoId, String paradaId, int hash,
+                                                  EstadoParada estado, long instanteMs) {
+            long ahora = reloj.getAsLong();
+            int mascara = vehiculos.length - 1;
+            int i = hash & mascara;
+
+            while (vehiculos[i] != null) {
+                if (vehiculos[i].equals(vehiculoId) && paradas[i].equals(paradaId)) {
+                    if (ahora - ultimoAccesoMs[i] > ttlMs) {
+                        desalojosTtl.increment();
+                        break;
+                    }
+                    aciertos.increment();
+                    ultimoAccesoMs[i] = ahora;
+
+                    boolean publicar = estados[i] != estado
+                            || instanteMs - ultimaPublicacionMs[i] >= intervaloRepublicacionMs;
+                    if (publicar) {
+                        estados[i] = estado;
+                        ultimaPublicacionMs[i] = instanteMs;
+                    }
+                    return publicar;
+                }
+                i = (i + 1) & mascara;
+            }
+
+            if (vehiculos[i] != null) {
+                // Entrada expirada encontrada: se reutiliza la ranura
+                estados[i] = estado;
+                ultimaPublicacionMs[i] = instanteMs;
+                ultimoAccesoMs[i] = ahora;
+                fallos.increment();
+                return true;
+            }
+
+            fallos.increment();
+            if (tamanio >= maxPorSegmento) {
+                desalojarUna(ahora);
+            }
+            insertar(vehiculoId, paradaId, hash, estado, instanteMs, ahora);
+            return true;
+        }
+
+        private synchronized void recorrer(VisitanteEntradas visitante, long ahora) {
+            for (int i = 0; i < vehiculos.length; i++) {
+                if (vehiculos[i] != null && ahora - ultimoAccesoMs[i] <= ttlMs) {
+                    visitante.entrada(vehiculos[i], paradas[i], estados[i], ultimaPublicacionMs[i], ultimoAccesoMs[i]);
+                }
+            }
+        }
+
+        private synchronized boolean restaurar(String vehiculoId, String paradaId, int hash, EstadoParada estado,
+                                               long publicacionMs, long accesoMs) {
+            long ahora = reloj.getAsLong();
+            if (ahora - accesoMs > ttlMs) {
+                return false;
+            }
+            int mascara = vehiculos.length - 1;
+            for (int i = hash & mascara; vehiculos[i] != null; i = (i + 1) & mascara) {
+                if (vehiculos[i].equals(vehiculoId) && paradas[i].equals(paradaId)) {
+                    if (publicacionMs > ultimaPublicacionMs[i] || ahora - ultimoAccesoMs[i] > ttlMs) {
+                        estados[i] = estado;
+                        ultimaPublicacionMs[i] = publicacionMs;
+                    }
+                    ultimoAccesoMs[i] = Math.max(ultimoAccesoMs[i], accesoMs);
+                    return true;
+                }
+            }
+            if (tamanio >= maxPorSegmento) {
+                desalojarUna(ahora);
+            }
+            int i = insertar(vehiculoId, paradaId, hash, estado, publicacionMs, ahora);
+            ultimoAccesoMs[i] = accesoMs;
+            return true;
+        }
+
+        private synchronized int eliminarVehiculos(Predicate<String> condicion, long ahora) {
+            int eliminadas = 0;
+            for (int i = 0; i < vehiculos.length; i++) {
+                if (vehiculos[i] != null && condicion.test(vehiculos[i])) {
+                    vehiculos[i] = null;
+                    eliminadas++;
+                }
+            }
+            if (eliminadas > 0) {
+                // Las ranuras vaciadas cortan las cadenas de sondeo: se reconstruye la tabla
+                redimensionar(vehiculos.length, ahora);
+            }
+            return eliminadas;
+        }
+
+        private int insertar(String vehiculoId, String paradaId, int hash,
+                             EstadoParada estado, long instanteMs, long ahora) {
+            if ((tamanio + 1) * 2 > vehiculos.length) {
+                redimensionar(vehiculos.length * 2, ahora);
+            }
+            int mascara = vehiculos.length - 1;
+            int i = hash & mascara;
+            while (vehiculos[i] != null) {
+                i = (i + 1) & mascara;
+            }
+            vehiculos[i] = vehiculoId;
+            paradas[i] = paradaId;
+            estados[i] = estado;
+            ultimaPublicacionMs[i] = instanteMs;
+            ultimoAccesoMs[i] = ahora;
+            tamanio++;
+            return i;
+        }
+
+        /**
+         * Desaloja una entrada: la primera expirada de la muestra o, si no hay, la de acceso más antiguo.
+         */
+        private void desalojarUna(long ahora) {
+            int mascara = vehiculos.length - 1;
+            int victima = -1;
+            int examinadas = 0;
+            for (int k = 0; k <= mascara && examinadas < MUESTRA_DESALOJO; k++) {
+                int i = (cursorDesalojo + k) & mascara;
+                if (vehiculos[i] == null) {
+                    continue;
+                }
+                examinadas++;
+                if (ahora - ultimoAccesoMs[i] > ttlMs) {
+                    victima = i;
+                    desalojosTtl.increment();
+                    break;
+                }
+                if (victima < 0 || ultimoAccesoMs[i] < ultimoAccesoMs[victima]) {
+                    victima = i;
+                }
+            }
+            if (victima < 0) {
+                return;
+            }
+            if (ahora - ultimoAccesoMs[victima] <= ttlMs) {
+                desalojosCapacidad.increment();
+            }
+            cursorDesalojo = (victima + 1) & mascara;
+            eliminar(victima);
+        }
+
+        private void eliminar(int i) {
+            int mascara = vehiculos.length - 1;
+            int j = i;
+            while (true) {
+                j = (j + 1) & mascara;
+                if (vehiculos[j] == null) {
+                    break;
+                }
+                int ideal = hash(hashVehiculo(vehiculos[j]), paradas[j]) & mascara;
+                boolean quedaEnSuLugar = i <= j ? (i < ideal && ideal <= j) : (i < ideal || ideal <= j);
+                if (quedaEnSuLugar) {
+                    continue;
+                }
+                mover(j, i);
+                i = j;
+            }
+            vehiculos[i] = null;
+            paradas[i] = null;
+            estados[i] = null;
+            tamanio--;
+        }
+
+        private void mover(int desde, int hacia) {
+            vehiculos[hacia] = vehiculos[desde];
+            paradas[hacia] = paradas[desde];
+            estados[hacia] = estados[desde];
+            ultimaPublicacionMs[hacia] = ultimaPublicacionMs[desde];
+            ultimoAccesoMs[hacia] = ultimoAccesoMs[desde];
+        }
+
+        private synchronized int purgar(long ahora) {
+            int antes = tamanio;
+            int capacidad = vehiculos.length;
+            while (capacidad > 16 && (antes * 4 < capacidad)) {
+                capacidad >>= 1;
+            }
+            if (capacidad == vehiculos.length && !hayExpiradas(ahora)) {
+                return 0;
+            }
+            redimensionar(capacidad, ahora);
+            return antes - tamanio;
+        }
+
+        private boolean hayExpiradas(long ahora) {
+            for (int i = 0; i < vehiculos.length; i++) {
+                if (vehiculos[i] != null && ahora - ultimoAccesoMs[i] > ttlMs) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Reconstruye la tabla con la capacidad indicada descartando las entradas expiradas.
+         */
+        private void redimensionar(int nuevaCapacidad, long ahora) {
+            String[] viejosVehiculos = vehiculos;
+            String[] viejasParadas = paradas;
+            EstadoParada[] viejosEstados = estados;
+            long[] viejasPublicaciones = ultimaPublicacionMs;
+            long[] viejosAccesos = ultimoAccesoMs;
+
+            vehiculos = new String[nuevaCapacidad];
+            paradas = new String[nuevaCapacidad];
+            estados = new EstadoParada[nuevaCapacidad];
+            ultimaPublicacionMs = new long[nuevaCapacidad];
+            ultimoAccesoMs = new long[nuevaCapacidad];
+            int mascara = nuevaCapacidad - 1;
+            int vivas = 0;
+
+            for (int k = 0; k < viejosVehiculos.length; k++) {
+                if (viejosVehiculos[k] == null) {
+                    continue;
+                }
+                if (ahora - viejosAccesos[k] > ttlMs) {
+                    desalojosTtl.increment();
+                    continue;
+                }
+                int i = hash(hashVehiculo(viejosVehiculos[k]), viejasParadas[k]) & mascara;
+                while (vehiculos[i] != null) {
+                    i = (i + 1) & mascara;
+                }
+                vehiculos[i] = viejosVehiculos[k];
+                paradas[i] = viejasParadas[k];
+                estados[i] = viejosEstados[k];
+                ultimaPublicacionMs[i] = viejasPublicaciones[k];
+                ultimoAccesoMs[i] = viejosAccesos[k];
+                vivas++;
+            }
+            tamanio = vivas;
+            cursorDesalojo = 0;
+        }
+
+        private synchronized int capacidad() {
+            return vehiculos.length;
+        }
+    }
+}
@@ -0,0 +1,699 @@
+package com.example.procesa_seniales_kafka.estado;
+
+import com.example.procesa_seniales_kafka.geo.DistanciaGeo;
+import com.example.procesa_seniales_kafka.model.EstadoParada;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+/**
+ * Máquina de estados de cada vehículo respecto a su parada activa.
+ *
+ * La parada activa es la más cercana dentro del umbral. Mientras el vehículo sigue con ella, el estado
+ * solo avanza (ESTIMADO → LLEGANDO → LLEGADO → PASADO) y nunca retrocede. Por eso el ruido del GPS
+ * alrededor de los límites de 50 m y 200 m no produce idas y vueltas entre LLEGADO y LLEGANDO.
+ * La parada se da por PASADA, una sola vez por visita, en tres casos:
+ * <ul>
+ *   <li>tras LLEGADO, el vehículo se aleja más de {@code llegado-km + histeresis-km};</li>
+ *   <li>otra parada pasa a ser la más cercana;</li>
+ *   <li>el vehículo sale del radio de salida ({@code umbral + histeresis-km}).</li>
+ * </ul>
+ * En los tres casos la condición tiene que repetirse en {@code confirmaciones} ubicaciones seguidas.
+ * Dentro de la banda de histéresis el vehículo sigue con la parada aunque la búsqueda ya no la encuentre.
+ * Se guarda además el instante (del evento) de llegada a la parada activa, que una ubicación tardía
+ * puede adelantar con {@link #corregirLlegada}.
+ *
+ * Con muestreo espaciado el vehículo puede pasar por la zona de LLEGADO entre dos ubicaciones sin que
+ * ninguna caiga adentro. {@link #observarCruce} registra esa llegada detectada sobre el tramo: es una
+ * evidencia firme, así que cambia de parada sin esperar confirmaciones.
+ *
+ * Los vehículos se guardan en segmentos con su propio lock, elegidos con
+ * {@link EstadoDedupStore#hashVehiculo}. Cada segmento es una tabla de direccionamiento abierto con
+ * arreglos paralelos, como en {@link EstadoDedupStore}, y el estado se guarda como ordinal. El total de
+ * vehículos está acotado y los inactivos expiran por TTL. Observar una ubicación sin cambios no
+ * reserva memoria.
+ */
+@Slf4j
+@Component
+public class MaquinaEstadosParada {
+
+    /** Cantidad de vehículos que se examinan al buscar uno para desalojar. */
+    private static final int MUESTRA_DESALOJO = 16;
+
+    private static final byte SIN_PARADA = -1;
+    private static final byte LLEGADO = (byte) EstadoParada.LLEGADO.ordinal();
+    private static final byte PASADO = (byte) EstadoParada.PASADO.ordinal();
+
+    private final Segmento[] segmentos;
+    private final int mascaraSegmentos;
+    private final int maxPorSegmento;
+    private final long ttlMs;
+    private final double llegadoKm;
+    private final double llegandoKm;
+    private final double llegandoVelocidadKmh;
+    private final double radioPartidaKm;
+    private final double radioSalidaKm;
+    private final int confirmaciones;
+    private final LongSupplier reloj;
+
+    private final LongAdder transiciones = new LongAdder();
+    private final LongAdder pasadas = new LongAdder();
+    private final LongAdder desalojos = new LongAdder();
+    private final LongAdder correcciones = new LongAdder();
+    private final LongAdder cruces = new LongAdder();
+
+    @Autowired
+    public MaquinaEstadosParada(
+            @Value("${procesador.distancia.umbral.km:0.5}") double umbralKm,
+            @Value("${procesador.estado.llegado-km:0.05}") double llegadoKm,
+            @Value("${procesador.estado.llegando-km:0.2}") double llegandoKm,
+            @Value("${procesador.estado.llegando-velocidad-kmh:10}") double llegandoVelocidadKmh,
+            @Value("${procesador.estado.histeresis-km:0.05}") double histeresisKm,
+            @Value("${procesador.estado.confirmaciones:2}") int confirmaciones,
+            @Value("${procesador.estado.max-vehiculos:100000}") int maxVehiculos,
+            @Value("${procesador.estado.ttl-minutos:30}") long ttlMinutos,
+            @Value("${procesador.estado.segmentos:64}") int segmentos) {
+        this(umbralKm, llegadoKm, llegandoKm, llegandoVelocidadKmh, histeresisKm, confirmaciones,
+                maxVehiculos, ttlMinutos * 60_000L, segmentos, System::currentTimeMillis);
+    }
+
+    MaquinaEstadosParada(double umbralKm, double llegadoKm, double llegandoKm, double llegandoVelocidadKmh,
+                         double histeresisKm, int confirmaciones, int maxVehiculos, long ttlMs, int segmentos,
+                         LongSupplier reloj) {
+        if (maxVehiculos <= 0 || segmentos <= 0 || confirmaciones <= 0 || histeresisKm < 0) {
+            throw new IllegalArgumentException(
+                    "max-vehiculos, segmentos y confirmaciones deben ser positivos y la histéresis no negativa");
+        }
+        this.llegadoKm = llegadoKm;
+        this.llegandoKm = llegandoKm;
+        this.llegandoVelocidadKmh = llegandoVelocidadKmh;
+        this.radioPartidaKm = llegadoKm + histeresisKm;
+        this.radioSalidaKm = umbralKm + histeresisKm;
+        this.confirmaciones = confirmaciones;
+        this.ttlMs = ttlMs;
+        this.reloj = reloj;
+        int cantidadSegmentos = Integer.highestOneBit(Math.min(segmentos, maxVehiculos));
+        this.segmentos = new Segmento[cantidadSegmentos];
+        for (int i = 0; i < cantidadSegmentos; i++) {
+            this.segmentos[i] = new Segmento();
+        }
+        this.mascaraSegmentos = cantidadSegmentos - 1;
+        this.maxPorSegmento = Math.max(1, maxVehiculos / cantidadSegmentos);
+    }
+
+    /**
+     * Estado que corresponde a la distancia a la parada, sin tener en cuenta el historial.
+     */
+    public EstadoParada clasificar(double distanciaKm, double velocidadKmh) {
+        if (distanciaKm < llegadoKm) {
+            return EstadoParada.LLEGADO;
+        } else if (distanciaKm < llegandoKm && velocidadKmh < llegandoVelocidadKmh) {
+            return EstadoParada.LLEGANDO;
+        }
+        return EstadoParada.ESTIMADO;
+    }
+
+    /**
+     * Registra una ubicación con parada dentro del umbral.
+     *
+     * @param paradaId    parada más cercana
+     * @param distanciaKm distancia del vehículo a esa parada
+     * @param instanteMs  instante de la ubicación en milisegundos (misma escala entre llamadas)
+     */
+    public Transicion observar(String vehiculoId, String paradaId, double latitudParada, double longitudParada,
+                               double distanciaKm, double velocidadKmh, long instanteMs) {
+        int hash = EstadoDedupStore.hashVehiculo(vehiculoId);
+        Transicion transicion = segmentos[hash & mascaraSegmentos].observar(vehiculoId, hash, paradaId,
+                latitudParada, longitudParada, distanciaKm, clasificar(distanciaKm, velocidadKmh), instanteMs);
+        contar(transicion);
+        return transicion;
+    }
+
+    /**
+     * Registra que el vehículo pasó por la zona de LLEGADO de la parada entre dos ubicaciones.
+     * Si la parada no es la activa, la activa se da por pasada y la parada cruzada queda activa en LLEGADO;
+     * si ya es la activa, avanza a LLEGADO salvo que ya haya llegado.
+     *
+     * @param instanteMs instante interpolado del paso por la parada
+     */
+    public Transicion observarCruce(String vehiculoId, String paradaId, double latitudParada, double longitudParada,
+                                    long instanteMs) {
+        int hash = EstadoDedupStore.hashVehiculo(vehiculoId);
+        Transicion transicion = segmentos[hash & mascaraSegmentos].observarCruce(vehiculoId, hash, paradaId,
+                latitudParada, longitudParada, instanteMs);
+        if (transicion.isCambio()) {
+            cruces.increment();
+        }
+        contar(transicion);
+        return transicion;
+    }
+
+    /**
+     * Adelanta la llegada a la parada activa del vehículo con una ubicación tardía que lo ubica en ella.
+     * Solo corrige si la parada sigue siendo la activa en LLEGADO o PASADO (hasta que el vehículo se acerca
+     * a otra o sale del radio) y el instante es anterior a la llegada registrada.
+     * @return true si la llegada se adelantó y corresponde republicarla
+     */
+    public boolean corregirLlegada(String vehiculoId, String paradaId, long instanteMs) {
+        int hash = EstadoDedupStore.hashVehiculo(vehiculoId);
+        boolean corregida = segmentos[hash & mascaraSegmentos].corregirLlegada(vehiculoId, hash, paradaId, instanteMs);
+        if (corregida) {
+            correcciones.increment();
+        }
+        return corregida;
+    }
+
+    /**
+     * Registra una ubicación sin paradas dentro del umbral.
+     */
+    public Transicion observarSinParada(String vehiculoId, double latitud, double longitud) {
+        int hash = EstadoDedupStore.hashVehiculo(vehiculoId);
+        Transicion transicion = segmentos[hash & mascaraSegmentos].observarSinParada(vehiculoId, hash, latitud, longitud);
+        contar(transicion);
+        return transicion;
+    }
+
+    private void contar(Transicion transicion) {
+        if (transicion.isCambio()) {
+            transiciones.increment();
+        }
+        if (transicion.getParadaPasada() != null) {
+            pasadas.increment();
+        }
+    }
+
+    /**
+     * Elimina los vehículos sin ubicaciones dentro del TTL.
+     */
+    @Scheduled(fixedDelayString = "${procesador.estado.purga-ms:30000}")
+    public void purgarExpirados() {
+        long ahora = reloj.getAsLong();
+        int eliminados = 0;
+        for (Segmento segmento : segmentos) {
+            eliminados += segmento.purgar(ahora);
+        }
+        if (eliminados > 0) {
+            log.debug("🧹 Estados por parada: {} vehículos inactivos eliminados", eliminados);
+        }
+    }
+
+    /**
+     * Entrega el estado de cada vehículo vigente, un segmento a la vez bajo su lock.
+     */
+    public void recorrer(VisitanteVehiculos visitante) {
+        long ahora = reloj.getAsLong();
+        for (Segmento segmento : segmentos) {
+            segmento.recorrer(visitante, ahora);
+        }
+    }
+
+    /**
+     * Restaura el estado de un vehículo, por ejemplo desde un checkpoint. Si el vehículo ya tiene estado
+     * queda el de acceso más reciente; los expirados se ignoran.
+     * @param estado ordinal de {@link EstadoParada}, o -1 sin parada activa
+     * @return true si el vehículo quedó en la máquina
+     */
+    public boolean restaurar(String vehiculoId, String paradaId, String candidataId, double latitudParada,
+                             double longitudParada, int estado, int confirmadas, long llegadaMs, long ultimoAccesoMs) {
+        if (estado < SIN_PARADA || estado > PASADO || (estado != SIN_PARADA && paradaId == null)) {
+            throw new IllegalArgumentException("Estado inválido para " + vehiculoId + ": " + estado);
+        }
+        int hash = EstadoDedupStore.hashVehiculo(vehiculoId);
+        return segmentos[hash & mascaraSegmentos].restaurar(vehiculoId, hash, paradaId, candidataId,
+                latitudParada, longitudParada, (byte) estado, confirmadas, llegadaMs, ultimoAccesoMs);
+    }
+
+    /**
+     * Elimina los vehículos que cumplen la condición.
+     * @return cantidad de vehículos eliminados
+     */
+    public int eliminarVehiculos(Predicate<String> vehiculos) {
+        int eliminados = 0;
+        for (Segmento segmento : segmentos) {
+            eliminados += segmento.eliminarVehiculos(vehiculos);
+        }
+        return eliminados;
+    }
+
+    public int tamanio() {
+        int total = 0;
+        for (Segmento segmento : segmentos) {
+            total += segmento.tamanio;
+        }
+        return total;
+    }
+
+    /**
+     * Distancia por debajo de la cual el vehículo está en la parada (LLEGADO).
+     */
+    public double getLlegadoKm() {
+        return llegadoKm;
+    }
+
+    public long getTransiciones() {
+        return transiciones.sum();
+    }
+
+    public long getPasadas() {
+        return pasadas.sum();
+    }
+
+    public long getDesalojos() {
+        return desalojos.sum();
+    }
+
+    public long getCorrecciones() {
+        return correcciones.sum();
+    }
+
+    public long getCruces() {
+        return cruces.sum();
+    }
+
+    /**
+     * Resultado de observar una ubicación: el estado del vehículo en la parada observada, si acaba de
+     * cambiar, y la parada que quedó atrás (a publicar como PASADO), si la hay.
+     * Las combinaciones sin parada pasada son constantes compartidas.
+     */
+    @Getter
+    public static final class Transicion {
+
+        /** Sin parada activa y sin nada que publicar. */
+        public static final Transicion NINGUNA = new Transicion(null, false, null);
+
+        private static final Transicion[] SIN_CAMBIO = new Transicion[EstadoParada.values().length];
+        private static final Transicion[] CAMBIO = new Transicion[EstadoParada.values().length];
+
+        static {
+            for (EstadoParada estado : EstadoParada.values()) {
+                SIN_CAMBIO[estado.ordinal()] = new Transicion(estado, false, null);
+                CAMBIO[estado.ordinal()] = new Transicion(estado, true, null);
+            }
+        }
+
+        /**
+         * Estado en la parada observada, o null si no es la activa (cambio sin confirmar, ubicación sin
+         * parada) o si ya se dio por pasada.
+         */
+        private final EstadoParada estado;
+
+        /** true si el estado es nuevo (primera observación de la parada o avance). */
+        private final boolean cambio;
+
+        /** Parada que el vehículo dejó atrás con esta ubicación, o null. */
+        private final String paradaPasada;
+
+        private Transicion(EstadoParada estado, boolean cambio, String paradaPasada) {
+            this.estado = estado;
+            this.cambio = cambio;
+            this.paradaPasada = paradaPasada;
+        }
+
+        private static Transicion de(int estado, boolean cambio, String paradaPasada) {
+            if (paradaPasada != null) {
+                return new Transicion(estado == SIN_PARADA ? null : EstadoParada.deOrdinal(estado), cambio, paradaPasada);
+            }
+            if (estado == SIN_PARADA) {
+                return NINGUNA;
+            }
+            return cambio ? CAMBIO[estado] : SIN_CAMBIO[estado];
+        }
+    }
+
+    /**
+     * Recibe los vehículos de {@link #recorrer}: parada activa (null sin parada) y su posición, parada
+     * candidata, estado como ordinal (-1 sin parada), confirmaciones acumuladas, instante de llegada
+     * ({@link Long#MAX_VALUE} si no llegó) y último acceso.
+     */
+    @FunctionalInterface
+    public interface VisitanteVehiculos {
+        void vehiculo(String vehiculoId, String paradaId, String candidataId, double latitudParada,
+                      double longitudParada, int estado, int confirmadas, long llegadaMs, long ultimoAccesoMs);
+    }
+
+    /**
+     * Tabla de direccionamiento abierto con sondeo lineal y borrado por desplazamiento hacia atrás.
+     * Por vehículo: parada activa y su posición, estado (ordinal o {@link #SIN_PARADA}), parada candidata
+     * a reemplazarla, ubicaciones seguidas que confirman la salida o el cambio e instante de llegada
+     * ({@link Long#MAX_VALUE} mientras no llegó).
+     * Todas las operaciones se realizan bajo el lock del propio segmento.
+     */
+    private final class Segmento {
+        private String[] vehiculos = new String[16];
+        private String[] paradas = new String[16];
+        private String[] candidatas = new String[16];
+        private double[] latitudes = new double[16];
+        private double[] longitudes = new double[16];
+        private byte[] estados = new byte[16];
+        private int[] confirmadas = new int[16];
+        private long[] llegadasMs = new long[16];
+        private long[] ultimoAccesoMs = new long[16];
+        private volatile int tamanio;
+        private int cursorDesalojo;
+
+        private synchronized Transicion observar(String vehiculoId, int hash, String paradaId, double latitudParada,
+                                                 double longitudParada, double distanciaKm, EstadoParada segunDistancia,
+                                                 long instanteMs) {
+            long ahora = reloj.getAsLong();
+            int i = buscar(vehiculoId, hash);
+            if (i < 0) {
+                i = insertar(vehiculoId, hash);
+            }
+            ultimoAccesoMs[i] = ahora;
+
+            if (estados[i] == SIN_PARADA) {
+                activar(i, paradaId, latitudParada, longitudParada, segunDistancia, instanteMs);
+                return Transicion.de(estados[i], true, null);
+            }
+            if (paradas[i].equals(paradaId)) {
+                candidatas[i] = null;
+                if (estados[i] == PASADO) {
+                    confirmadas[i] = 0;
+                    return Transicion.NINGUNA;
+                }
+                if (estados[i] == LLEGADO && distanciaKm > radioPartidaKm) {
+                    // Se aleja de la parada a la que llegó
+                    if (++confirmadas[i] < confirmaciones) {
+                        return Transicion.de(estados[i], false, null);
+                    }
+                    estados[i] = PASADO;
+                    confirmadas[i] = 0;
+                    return Transicion.de(SIN_PARADA, false, paradas[i]);
+                }
+                confirmadas[i] = 0;
+                if (segunDistancia.ordinal() > estados[i]) {
+                    estados[i] = (byte) segunDistancia.ordinal();
+                    if (estados[i] == LLEGADO) {
+                        llegadasMs[i] = instanteMs;
+                    }
+                    return Transicion.de(estados[i], true, null);
+                }
+                return Transicion.de(estados[i], false, null);
+            }
+
+            // Otra parada es la más cercana: el cambio se confirma antes de dar por pasada la activa
+            if (paradaId.equals(candidatas[i])) {
+                confirmadas[i]++;
+            } else {
+                candidatas[i] = paradaId;
+                confirmadas[i] = 1;
+            }
+            if (confirmadas[i] < confirmaciones) {
+                return Transicion.NINGUNA;
+            }
+            String pasada = estados[i] == PASADO ? null : paradas[i];
+            activar(i, paradaId, latitudParada, longitudParada, segunDistancia, instanteMs);
+            return Transicion.de(estados[i], true, pasada);
+        }
+
+        private synchronized Transicion observarCruce(String vehiculoId, int hash, String paradaId,
+                                                      double latitudParada, double longitudParada, long instanteMs) {
+            int i = buscar(vehiculoId, hash);
+            if (i < 0) {
+                i = insertar(vehiculoId, hash);
+            }
+            ultimoAccesoMs[i] = reloj.getAsLong();
+
+            if (estados[i] != SIN_PARADA && paradas[i].equals(paradaId)) {
+                if (estados[i] >= LLEGADO) {
+                    return Transicion.NINGUNA;
+                }
+                estados[i] = LLEGADO;
+                llegadasMs[i] = instanteMs;
+                candidatas[i] = null;
+                confirmadas[i] = 0;
+                return Transicion.de(LLEGADO, true, null);
+            }
+            String pasada = estados[i] == SIN_PARADA || estados[i] == PASADO ? null : paradas[i];
+            activar(i, paradaId, latitudParada, longitudParada, EstadoParada.LLEGADO, instanteMs);
+            return Transicion.de(LLEGADO, true, pasada);
+        }
+
+        private synchronized boolean corregirLlegada(String vehiculoId, int hash, String paradaId, long instanteMs) {
+            int i = buscar(vehiculoId, hash);
+            if (i < 0 || estados[i] < LLEGADO || !paradaId.equals(paradas[i]) || instanteMs >= llegadasMs[i]) {
+                return false;
+            }
+            llegadasMs[i] = instanteMs;
+            return true;
+        }
+
+        private synchronized Transicion observarSinParada(String vehiculoId, int hash, double latitud, double longitud) {
+            int i = buscar(vehiculoId, hash);
+            if (i < 0 || estados[i] == SIN_PARADA) {
+                return Transicion.NINGUNA;
+            }
+            ultimoAccesoMs[i] = reloj.getAsLong();
+            candidatas[i] = null;
+            double distanciaKm = DistanciaGeo.calcularDistanciaHaversine(latitud, longitud, latitudes[i], longitudes[i]);
+            if (distanciaKm <= radioSalidaKm) {
+                // Banda de histéresis: sigue con la parada aunque esté fuera del umbral de búsqueda
+                confirmadas[i] = 0;
+                return Transicion.NINGUNA;
+            }
+            if (++confirmadas[i] < confirmaciones) {
+                return Transicion.NINGUNA;
+            }
+            String pasada = estados[i] == PASADO ? null : paradas[i];
+            paradas[i] = null;
+            estados[i] = SIN_PARADA;
+            confirmadas[i] = 0;
+            return Transicion.de(SIN_PARADA, false, pasada);
+        }
+
+        private synchronized void recorrer(VisitanteVehiculos visitante, long ahora) {
+            for (int i = 0; i < vehiculos.length; i++) {
+                if (vehiculos[i] != null && ahora - ultimoAccesoMs[i] <= ttlMs) {
+                    visitante.vehiculo(vehiculos[i], paradas[i], candidatas[i], latitudes[i], longitudes[i],
+                            estados[i], confirmadas[i], llegadasMs[i], ultimoAccesoMs[i]);
+                }
+            }
+        }
+
+        private synchronized boolean restaurar(String vehiculoId, int hash, String paradaId, String candidataId,
+                                               double latitud, double longitud, byte estado, int confirmadasVehiculo,
+                                               long llegadaMs, long accesoMs) {
+            if (reloj.getAsLong() - accesoMs > ttlMs) {
+                return false;
+            }
+            int i = buscar(vehiculoId, hash);
+            if (i >= 0 && ultimoAccesoMs[i] >= accesoMs) {
+                return true;
+            }
+            if (i < 0) {
+                i = insertar(vehiculoId, hash);
+            }
+            paradas[i] = estado == SIN_PARADA ? null : paradaId;
+            candidatas[i] = candidataId;
+            latitudes[i] = latitud;
+            longitudes[i] = longitud;
+            estados[i] = estado;
+            confirmadas[i] = confirmadasVehiculo;
+            llegadasMs[i] = llegadaMs;
+            ultimoAccesoMs[i] = accesoMs;
+            return true;
+        }
+
+        private synchronized int eliminarVehiculos(Predicate<String> condicion) {
+            int eliminados = 0;
+            for (int i = 0; i < vehiculos.length; i++) {
+                if (vehiculos[i] != null && condicion.test(vehiculos[i])) {
+                    vehiculos[i] = null;
+                    eliminados++;
+                }
+            }
+            if (eliminados > 0) {
+                // Las ranuras vaciadas cortan las cadenas de sondeo: se reconstruye la tabla
+                redimensionar(vehiculos.length);
+            }
+            return eliminados;
+        }
+
+        private void activar(int i, String paradaId, double latitud, double longitud, EstadoParada estado,
+                             long instanteMs) {
+            paradas[i] = paradaId;
+            latitudes[i] = latitud;
+            longitudes[i] = longitud;
+            estados[i] = (byte) estado.ordinal();
+            llegadasMs[i] = estado == EstadoParada.LLEGADO ? instanteMs : Long.MAX_VALUE;
+            candidatas[i] = null;
+            confirmadas[i] = 0;
+        }
+
+        private int buscar(String vehiculoId, int hash) {
+            int mascara = vehiculos.length - 1;
+            for (int i = ideal(hash, mascara); vehiculos[i] != null; i = (i + 1) & mascara) {
+                if (vehiculos[i].equals(vehiculoId)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Los bits bajos del hash ya eligieron el segmento; dentro de la tabla se usan los altos.
+         */
+        private int ideal(int hash, int mascara) {
+            return Integer.rotateRight(hash, 16) & mascara;
+        }
+
+        private int insertar(String vehiculoId, int hash) {
+            if (tamanio >= maxPorSegmento) {
+                desalojarUno();
+            }
+            if ((tamanio + 1) * 2 > vehiculos.length) {
+                redimensionar(vehiculos.length * 2);
+            }
+            int mascara = vehiculos.length - 1;
+            int i = ideal(hash, mascara);
+            while (vehiculos[i] != null) {
+                i = (i + 1) & mascara;
+            }
+            vehiculos[i] = vehiculoId;
+            paradas[i] = null;
+            candidatas[i] = null;
+            estados[i] = SIN_PARADA;
+            confirmadas[i] = 0;
+            tamanio++;
+            return i;
+        }
+
+        /**
+         * Desaloja el vehículo de acceso más antiguo de una muestra.
+         */
+        private void desalojarUno() {
+            int mascara = vehiculos.length - 1;
+            int victima = -1;
+            int examinados = 0;
+            for (int k = 0; k <= mascara && examinados < MUESTRA_DESALOJO; k++) {
+                int i = (cursorDesalojo + k) & mascara;
+                if (vehiculos[i] == null) {
+                    continue;
+                }
+                examinados++;
+                if (victima < 0 || ultimoAccesoMs[i] < ultimoAccesoMs[victima]) {
+                    victima = i;
+                }
+            }
+            if (victima < 0) {
+                return;
+            }
+            cursorDesalojo = (victima + 1) & mascara;
+            desalojos.increment();
+            eliminar(victima);
+        }
+
+        private void eliminar(int i) {
+            int mascara = vehiculos.length - 1;
+            int j = i;
+            while (true) {
+                j = (j + 1) & mascara;
+                if (vehiculos[j] == null) {
+                    break;
+                }
+                int idealJ = ideal(EstadoDedupStore.hashVehiculo(vehiculos[j]), mascara);
+                boolean quedaEnSuLugar = i <= j ? (i < idealJ && idealJ <= j) : (i < idealJ || idealJ <= j);
+                if (quedaEnSuLugar) {
+                    continue;
+                }
+                mover(j, i);
+                i = j;
+            }
+            vehiculos[i] = null;
+            paradas[i] = null;
+            candidatas[i] = null;
+            tamanio--;
+        }
+
+        private void mover(int desde, int hacia) {
+            vehiculos[hacia] = vehiculos[desde];
+            paradas[hacia] = paradas[desde];
+            candidatas[hacia] = candidatas[desde];
+            latitudes[hacia] = latitudes[desde];
+            longitudes[hacia] = longitudes[desde];
+            estados[hacia] = estados[desde];
+            confirmadas[hacia] = confirmadas[desde];
+            llegadasMs[hacia] = llegadasMs[desde];
+            ultimoAccesoMs[hacia] = ultimoAccesoMs[desde];
+        }
+
+        private synchronized int purgar(long ahora) {
+            int antes = tamanio;
+            boolean hayExpirados = false;
+            for (int i = 0; i < vehiculos.length && !hayExpirados; i++) {
+                hayExpirados = vehiculos[i] != null && ahora - ultimoAccesoMs[i] > ttlMs;
+            }
+            if (!hayExpirados) {
+                return 0;
+            }
+            int capacidad = vehiculos.length;
+            while (capacidad > 16 && antes * 4 < capacidad) {
+                capacidad >>= 1;
+            }
+            redimensionar(capacidad, ahora);
+            return antes - tamanio;
+        }
+
+        private void redimensionar(int nuevaCapacidad) {
+            redimensionar(nuevaCapacidad, Long.MIN_VALUE);
+        }
+
+        /**
+         * Reconstruye la tabla con la capacidad indicada, descartando los vehículos expirados a {@code ahora}
+         * ({@link Long#MIN_VALUE} para conservarlos todos).
+         */
+        private void redimensionar(int nuevaCapacidad, long ahora) {
+            String[] viejosVehiculos = vehiculos;
+            String[] viejasParadas = paradas;
+            String[] viejasCandidatas = candidatas;
+            double[] viejasLatitudes = latitudes;
+            double[] viejasLongitudes = longitudes;
+            byte[] viejosEstados = estados;
+            int[] viejasConfirmadas = confirmadas;
+            long[] viejasLlegadas = llegadasMs;
+            long[] viejosAccesos = ultimoAccesoMs;
+
+            vehiculos = new String[nuevaCapacidad];
+            paradas = new String[nuevaCapacidad];
+            candidatas = new String[nuevaCapacidad];
+            latitudes = new double[nuevaCapacidad];
+            longitudes = new double[nuevaCapacidad];
+            estados = new byte[nuevaCapacidad];
+            confirmadas = new int[nuevaCapacidad];
+            llegadasMs = new long[nuevaCapacidad];
+            ultimoAccesoMs = new long[nuevaCapacidad];
+            int mascara = nuevaCapacidad - 1;
+            int vivos = 0;
+
+            for (int k = 0; k < viejosVehiculos.length; k++) {
+                if (viejosVehiculos[k] == null
+                        || (ahora != Long.MIN_VALUE && ahora - viejosAccesos[k] > ttlMs)) {
+                    continue;
+                }
+                int i = ideal(EstadoDedupStore.hashVehiculo(viejosVehiculos[k]), mascara);
+                while (vehiculos[i] != null) {
+                    i = (i + 1) & mascara;
+                }
+                vehiculos[i] = viejosVehiculos[k];
+                paradas[i] = viejasParadas[k];
+                candidatas[i] = viejasCandidatas[k];
+                latitudes[i] = viejasLatitudes[k];
+                longitudes[i] = viejasLongitudes[k];
+                estados[i] = viejosEstados[k];
+                confirmadas[i] = viejasConfirmadas[k];
+                llegadasMs[i] = viejasLlegadas[k];
+                ultimoAccesoMs[i] = viejosAccesos[k];
+                vivos++;
+            }
+            tamanio = vivos;
+            cursorDesalojo = 0;
+        }
+    }
+}
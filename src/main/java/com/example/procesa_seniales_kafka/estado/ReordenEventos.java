@@ -0,0 +1,523 @@
+package com.example.procesa_seniales_kafka.estado;
+
+import com.example.procesa_seniales_kafka.model.UbicacionVehiculo;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Procesamiento en tiempo de evento: ordena las ubicaciones de cada vehículo por su {@code timestamp}
+ * antes de entregarlas al servicio.
+ *
+ * Cada vehículo tiene una marca de agua (el instante más nuevo visto menos {@code demora-ms}) y un
+ * buffer ordenado de hasta {@code capacidad} ubicaciones. Una ubicación se entrega cuando la marca de
+ * agua la alcanza o cuando el buffer se desborda (sale la más vieja): mientras lleguen ubicaciones del
+ * vehículo solo manda el tiempo de evento, así que reproducir un backlog da el mismo resultado a
+ * cualquier velocidad. Solo un vehículo sin ubicaciones nuevas durante {@code espera-ms} se vacía por
+ * reloj; esa revisión corre en un hilo propio, porque entregar publica horarios y la publicación puede
+ * bloquearse esperando lugar entre los envíos en vuelo. Así cada vehículo recibe sus ubicaciones en
+ * orden de evento aunque lleguen desordenadas dentro de la ventana.
+ *
+ * Una ubicación con el mismo instante que la última entregada (o que otra retenida) es repetida y se
+ * descarta: es lo que llega al releer un tópico después de un rebalanceo. Una anterior a la última
+ * entregada es tardía y la resuelve {@link Destino#tardia} según la política configurada. Las
+ * ubicaciones sin timestamp no tienen tiempo de evento y se entregan directamente.
+ *
+ * El future de una ubicación retenida se completa recién cuando se entrega y el broker confirma sus
+ * horarios: su offset no se confirma antes y una caída no pierde nada. Como el contenedor deja de
+ * consumir mientras haya acks pendientes, lo retenido al final de un poll sale por inactividad: en vivo
+ * cada horario se demora hasta {@code espera-ms} + {@code revision-ms} (~600 ms con los valores por
+ * defecto) y cada poll que deja ubicaciones retenidas espera ese tiempo antes del siguiente.
+ */
+@Slf4j
+@Component
+public class ReordenEventos implements DisposableBean {
+
+    /** Future ya completado que se devuelve cuando no hay nada que esperar; se compara por identidad. */
+    public static final CompletableFuture<Void> COMPLETADO = CompletableFuture.completedFuture(null);
+
+    /**
+     * Quién recibe las ubicaciones una vez ordenadas.
+     */
+    public interface Destino {
+
+        /** Procesa una ubicación en orden de evento. */
+        CompletableFuture<Void> procesar(UbicacionVehiculo ubicacion);
+
+        /** Resuelve una ubicación anterior a la última entregada del vehículo. */
+        CompletableFuture<Void> tardia(UbicacionVehiculo ubicacion, long ultimaEntregadaMs);
+    }
+
+    /**
+     * Qué hacer con una ubicación tardía ({@code procesador.eventos.tardios.politica}).
+     */
+    public enum PoliticaTardios {
+        /** Se descarta; solo queda contada. */
+        DESCARTAR,
+        /** Se reenvía sin procesar a un tópico lateral. */
+        TOPICO,
+        /** Solo se usa para adelantar una llegada ya publicada de su parada. */
+        CORREGIR;
+
+        public static PoliticaTardios desde(String nombre) {
+            if (nombre == null || nombre.isBlank()) {
+                return DESCARTAR;
+            }
+            for (PoliticaTardios politica : values()) {
+                if (politica.name().equalsIgnoreCase(nombre.trim())) {
+                    return politica;
+                }
+            }
+            throw new IllegalArgumentException("Política de ubicaciones tardías desconocida: " + nombre);
+        }
+    }
+
+    private final int capacidad;
+    private final long demoraMs;
+    private final long esperaMs;
+    private final int maxVehiculos;
+    private final long ttlMs;
+    private final LongSupplier reloj;
+    // Vacía los vehículos inactivos fuera del hilo de las tareas programadas
+    private final Executor liberador;
+    private final AtomicBoolean revisionEnCurso = new AtomicBoolean();
+
+    private final ConcurrentHashMap<String, Vehiculo> vehiculos = new ConcurrentHashMap<>();
+    private final Set<Vehiculo> conRetenidas = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger retenidas = new AtomicInteger();
+
+    private final LongAdder entregadas = new LongAdder();
+    private final LongAdder reordenadas = new LongAdder();
+    private final LongAdder tardias = new LongAdder();
+    private final LongAdder repetidas = new LongAdder();
+    private final LongAdder vencidas = new LongAdder();
+    private final LongAdder desbordes = new LongAdder();
+    private final LongAdder sinSeguimiento = new LongAdder();
+
+    // Último destino recibido; la revisión programada entrega ahí las ubicaciones vencidas
+    private volatile Destino destino;
+
+    @Autowired
+    public ReordenEventos(
+            @Value("${procesador.eventos.reorden.capacidad:4}") int capacidad,
+            @Value("${procesador.eventos.reorden.demora-ms:5000}") long demoraMs,
+            @Value("${procesador.eventos.reorden.espera-ms:500}") long esperaMs,
+            @Value("${procesador.eventos.max-vehiculos:100000}") int maxVehiculos,
+            @Value("${procesador.eventos.ttl-minutos:30}") long ttlMinutos) {
+        this(capacidad, demoraMs, esperaMs, maxVehiculos, ttlMinutos * 60_000L, System::currentTimeMillis,
+                Executors.newSingleThreadExecutor(Thread.ofPlatform().name("reorden-vencidas").daemon().factory()));
+    }
+
+    ReordenEventos(int capacidad, long demoraMs, long esperaMs, int maxVehiculos, long ttlMs, LongSupplier reloj,
+                   Executor liberador) {
+        if (capacidad < 0 || demoraMs < 0 || esperaMs < 0 || maxVehiculos <= 0) {
+            throw new IllegalArgumentException("capacidad, demora y espera no pueden ser negativas y max-vehiculos debe ser positivo");
+        }
+        this.capacidad = capacidad;
+        this.demoraMs = demoraMs;
+        this.esperaMs = esperaMs;
+        this.maxVehiculos = maxVehiculos;
+        this.ttlMs = ttlMs;
+        this.reloj = reloj;
+        this.liberador = liberador;
+    }
+
+    /**
+     * Recibe una ubicación y entrega al destino las que queden listas, en orden de evento. Las retenidas
+     * que salen con ella completan sus propios futures.
+     * @return Future que se completa cuando la ubicación recibida se entregó y el broker confirmó sus
+     *         horarios (si quedó retenida, al liberarse); falla si falló esa ubicación
+     */
+    public CompletableFuture<Void> ofrecer(UbicacionVehiculo ubicacion, Destino destino) {
+        return recibir(ubicacion, destino, true, true);
+    }
+
+    /**
+     * Como {@link #ofrecer}, para quien no espera la confirmación: si la ubicación queda retenida no se
+     * crea el future de su liberación, así que recibirla no reserva memoria.
+     */
+    public void ofrecerSinEsperar(UbicacionVehiculo ubicacion, Destino destino) {
+        recibir(ubicacion, destino, true, false);
+    }
+
+    /**
+     * Entrega una ubicación sin retenerla, detrás de las retenidas anteriores de su vehículo (que salen
+     * con ella); las posteriores siguen retenidas. Es para las ubicaciones de los tópicos de reintento,
+     * que se confirman una por una y no deben esperar a la marca de agua.
+     * @return Future que se completa cuando la ubicación se entregó y el broker confirmó sus horarios
+     */
+    public CompletableFuture<Void> entregarSinRetener(UbicacionVehiculo ubicacion, Destino destino) {
+        return recibir(ubicacion, destino, false, true);
+    }
+
+    private CompletableFuture<Void> recibir(UbicacionVehiculo ubicacion, Destino destino, boolean retener,
+                                            boolean esperar) {
+        this.destino = destino;
+        if (ubicacion.getTimestamp() == null) {
+            return entregar(ubicacion, destino);
+        }
+        long instante = instanteMs(ubicacion.getTimestamp());
+        long ahora = reloj.getAsLong();
+        Vehiculo vehiculo;
+        while (true) {
+            vehiculo = vehiculos.get(ubicacion.getVehiculoId());
+            if (vehiculo == null) {
+                if (vehiculos.size() >= maxVehiculos) {
+                    // Sin lugar para seguir al vehículo: se procesa tal como llega
+                    sinSeguimiento.increment();
+                    return entregar(ubicacion, destino);
+                }
+                vehiculo = vehiculos.computeIfAbsent(ubicacion.getVehiculoId(), id -> new Vehiculo(id, capacidad));
+            }
+            vehiculo.lock.lock();
+            if (!vehiculo.eliminado) {
+                break;
+            }
+            vehiculo.lock.unlock();
+        }
+        try {
+            vehiculo.ultimoAccesoMs = ahora;
+            if (instante == vehiculo.ultimaEntregadaMs) {
+                repetidas.increment();
+                return COMPLETADO;
+            }
+            if (instante < vehiculo.ultimaEntregadaMs) {
+                tardias.increment();
+                return destino.tardia(ubicacion, vehiculo.ultimaEntregadaMs);
+            }
+            if (!retener && vehiculo.cantidad > 0) {
+                int anteriores = 0;
+                while (anteriores < vehiculo.cantidad && vehiculo.instantes[anteriores] < instante) {
+                    anteriores++;
+                }
+                if (anteriores < vehiculo.cantidad && vehiculo.instantes[anteriores] == instante) {
+                    repetidas.increment();
+                    return COMPLETADO;
+                }
+                if (anteriores > 0) {
+                    liberarPrimeras(vehiculo, anteriores, destino, null);
+                }
+            }
+            if (capacidad == 0 || !retener) {
+                vehiculo.ultimaEntregadaMs = instante;
+                return entregar(ubicacion, destino);
+            }
+            if (!vehiculo.insertar(ubicacion, instante)) {
+                repetidas.increment();
+                return COMPLETADO;
+            }
+            retenidas.incrementAndGet();
+            if (vehiculo.cantidad == 1) {
+                conRetenidas.add(vehiculo);
+            }
+            CompletableFuture<Void> propia = liberar(vehiculo, vehiculo.maximoMs - demoraMs, destino, ubicacion);
+            if (propia != null) {
+                return propia;
+            }
+            return esperar ? vehiculo.retener(ubicacion) : COMPLETADO;
+        } finally {
+            vehiculo.lock.unlock();
+        }
+    }
+
+    /**
+     * Programa la entrega de lo retenido por los vehículos sin ubicaciones nuevas durante {@code espera-ms}.
+     * Solo encola la revisión: las entregas corren en el hilo del reorden, no en el de las tareas programadas.
+     */
+    @Scheduled(fixedDelayString = "${procesador.eventos.reorden.revision-ms:100}")
+    public void entregarVencidas() {
+        Destino actual = destino;
+        if (actual == null || conRetenidas.isEmpty() || !revisionEnCurso.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            liberador.execute(() -> {
+                try {
+                    vaciarInactivos(actual);
+                } finally {
+                    revisionEnCurso.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Apagándose: entregarTodas procesa lo que quede
+            revisionEnCurso.set(false);
+        }
+    }
+
+    private void vaciarInactivos(Destino destino) {
+        long limite = reloj.getAsLong() - esperaMs;
+        for (Vehiculo vehiculo : conRetenidas) {
+            if (vehiculo.ultimoAccesoMs > limite) {
+                continue;
+            }
+            try {
+                vehiculo.lock.lock();
+                try {
+                    if (vehiculo.ultimoAccesoMs <= limite && vehiculo.cantidad > 0) {
+                        vencidas.add(vehiculo.cantidad);
+                        liberarPrimeras(vehiculo, vehiculo.cantidad, destino, null);
+                    }
+                } finally {
+                    vehiculo.lock.unlock();
+                }
+            } catch (RuntimeException e) {
+                log.error("❌ Error al entregar ubicaciones retenidas: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Entrega todas las ubicaciones retenidas, en orden de evento por vehículo (al apagar el servicio).
+     */
+    public void entregarTodas(Destino destino) {
+        for (Vehiculo vehiculo : conRetenidas) {
+            vehiculo.lock.lock();
+            try {
+                liberarPrimeras(vehiculo, vehiculo.cantidad, destino, null);
+            } finally {
+                vehiculo.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Olvida los vehículos sin ubicaciones retenidas ni actividad dentro del TTL.
+     */
+    @Scheduled(fixedDelayString = "${procesador.eventos.purga-ms:30000}")
+    public void purgarExpirados() {
+        long limite = reloj.getAsLong() - ttlMs;
+        int eliminados = 0;
+        for (Vehiculo vehiculo : vehiculos.values()) {
+            if (vehiculo.ultimoAccesoMs >= limite) {
+                continue;
+            }
+            vehiculo.lock.lock();
+            try {
+                if (vehiculo.ultimoAccesoMs < limite && vehiculo.cantidad == 0) {
+                    vehiculo.eliminado = true;
+                    vehiculos.remove(vehiculo.id, vehiculo);
+                    eliminados++;
+                }
+            } finally {
+                vehiculo.lock.unlock();
+            }
+        }
+        if (eliminados > 0) {
+            log.debug("🧹 Reorden de eventos: {} vehículos inactivos eliminados", eliminados);
+        }
+    }
+
+    /**
+     * Suelta las retenidas que alcanzó la marca de agua y las que excedan la capacidad.
+     * @return el future de {@code ofrecida} si salió, o null si sigue retenida
+     */
+    private CompletableFuture<Void> liberar(Vehiculo vehiculo, long marcaDeAgua, Destino destino,
+                                            UbicacionVehiculo ofrecida) {
+        int listas = 0;
+        while (listas < vehiculo.cantidad && vehiculo.instantes[listas] <= marcaDeAgua) {
+            listas++;
+        }
+        if (vehiculo.cantidad - listas > capacidad) {
+            desbordes.add(vehiculo.cantidad - listas - capacidad);
+            listas = vehiculo.cantidad - capacidad;
+        }
+        return listas == 0 ? null : liberarPrimeras(vehiculo, listas, destino, ofrecida);
+    }
+
+    /**
+     * Entrega las primeras {@code cantidad} retenidas; cada una que ya tenía future lo completa con su
+     * confirmación.
+     * @return el future de {@code ofrecida} si estaba entre ellas, o null
+     */
+    private CompletableFuture<Void> liberarPrimeras(Vehiculo vehiculo, int cantidad, Destino destino,
+                                                    UbicacionVehiculo ofrecida) {
+        CompletableFuture<Void> propia = null;
+        for (int i = 0; i < cantidad; i++) {
+            vehiculo.ultimaEntregadaMs = vehiculo.instantes[i];
+            CompletableFuture<Void> entregada = entregar(vehiculo.ubicaciones[i], destino);
+            if (vehiculo.ubicaciones[i] == ofrecida) {
+                propia = entregada;
+            } else if (vehiculo.pendientes[i] != null) {
+                completar(vehiculo.pendientes[i], entregada);
+            }
+        }
+        vehiculo.quitarPrimeras(cantidad);
+        retenidas.addAndGet(-cantidad);
+        if (vehiculo.cantidad == 0) {
+            conRetenidas.remove(vehiculo);
+        }
+        return propia;
+    }
+
+    private CompletableFuture<Void> entregar(UbicacionVehiculo ubicacion, Destino destino) {
+        entregadas.increment();
+        try {
+            return destino.procesar(ubicacion);
+        } catch (RuntimeException e) {
+            // Una ubicación que falla no frena a las que se liberan con ella
+            log.error("❌ Error al procesar ubicación del vehículo {}: {}",
+                    ubicacion.getVehiculoId(), e.getMessage(), e);
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private static void completar(CompletableFuture<Void> pendiente, CompletableFuture<Void> confirmacion) {
+        if (confirmacion == COMPLETADO) {
+            pendiente.complete(null);
+            return;
+        }
+        confirmacion.whenComplete((resultado, error) -> {
+            if (error == null) {
+                pendiente.complete(null);
+            } else {
+                pendiente.completeExceptionally(error);
+            }
+        });
+    }
+
+    /**
+     * Instante en milisegundos de una fecha local; la misma escala que usa el resto del estado.
+     */
+    public static long instanteMs(LocalDateTime fecha) {
+        return fecha.toEpochSecond(ZoneOffset.UTC) * 1000 + fecha.getNano() / 1_000_000;
+    }
+
+    public int getRetenidas() {
+        return retenidas.get();
+    }
+
+    public int tamanio() {
+        return vehiculos.size();
+    }
+
+    public long getEntregadas() {
+        return entregadas.sum();
+    }
+
+    public long getReordenadas() {
+        return reordenadas.sum();
+    }
+
+    public long getTardias() {
+        return tardias.sum();
+    }
+
+    public long getRepetidas() {
+        return repetidas.sum();
+    }
+
+    public long getVencidas() {
+        return vencidas.sum();
+    }
+
+    public long getDesbordes() {
+        return desbordes.sum();
+    }
+
+    public long getSinSeguimiento() {
+        return sinSeguimiento.sum();
+    }
+
+    @Override
+    public void destroy() {
+        if (liberador instanceof ExecutorService servicio) {
+            servicio.shutdown();
+        }
+    }
+
+    /**
+     * Buffer ordenado de un vehículo; se accede con su lock tomado. Tiene un lugar más que la
+     * capacidad para insertar antes de decidir qué sale.
+     */
+    private final class Vehiculo {
+
+        final ReentrantLock lock = new ReentrantLock();
+        final String id;
+        final UbicacionVehiculo[] ubicaciones;
+        final long[] instantes;
+        // Future de cada retenida, creado cuando quedó retenida al volver de ofrecer
+        final CompletableFuture<Void>[] pendientes;
+        int cantidad;
+        long maximoMs = Long.MIN_VALUE;
+        long ultimaEntregadaMs = Long.MIN_VALUE;
+        volatile long ultimoAccesoMs;
+        // La purga lo quitó del mapa: quien lo tenía en la mano vuelve a buscarlo
+        boolean eliminado;
+
+        Vehiculo(String id, int capacidad) {
+            this.id = id;
+            ubicaciones = new UbicacionVehiculo[capacidad + 1];
+            instantes = new long[capacidad + 1];
+            @SuppressWarnings("unchecked")
+            CompletableFuture<Void>[] futures = new CompletableFuture[capacidad + 1];
+            pendientes = futures;
+        }
+
+        /**
+         * Inserta en orden de instante.
+         * @return false si ya hay una retenida con el mismo instante
+         */
+        boolean insertar(UbicacionVehiculo ubicacion, long instante) {
+            int posicion = cantidad;
+            while (posicion > 0 && instantes[posicion - 1] > instante) {
+                posicion--;
+            }
+            if (posicion > 0 && instantes[posicion - 1] == instante) {
+                return false;
+            }
+            if (posicion < cantidad) {
+                reordenadas.increment();
+                System.arraycopy(ubicaciones, posicion, ubicaciones, posicion + 1, cantidad - posicion);
+                System.arraycopy(instantes, posicion, instantes, posicion + 1, cantidad - posicion);
+                System.arraycopy(pendientes, posicion, pendientes, posicion + 1, cantidad - posicion);
+            }
+            ubicaciones[posicion] = ubicacion;
+            instantes[posicion] = instante;
+            pendientes[posicion] = null;
+            cantidad++;
+            maximoMs = Math.max(maximoMs, instante);
+            return true;
+        }
+
+        /** Crea el future de una ubicación que quedó retenida. */
+        CompletableFuture<Void> retener(UbicacionVehiculo ubicacion) {
+            for (int i = cantidad - 1; i >= 0; i--) {
+                if (ubicaciones[i] == ubicacion) {
+                    pendientes[i] = new CompletableFuture<>();
+                    return pendientes[i];
+                }
+            }
+            throw new IllegalStateException("La ubicación no está retenida");
+        }
+
+        void quitarPrimeras(int n) {
+            int restantes = cantidad - n;
+            System.arraycopy(ubicaciones, n, ubicaciones, 0, restantes);
+            System.arraycopy(instantes, n, instantes, 0, restantes);
+            System.arraycopy(pendientes, n, pendientes, 0, restantes);
+            for (int i = restantes; i < cantidad; i++) {
+                ubicaciones[i] = null;
+                pendientes[i] = null;
+            }
+            cantidad = restantes;
+        }
+    }
+}
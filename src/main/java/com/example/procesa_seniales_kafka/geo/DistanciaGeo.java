@@ -0,0 +1,49 @@
+package com.example.procesa_seniales_kafka.geo;
+
+/**
+ * Utilidades de cálculo de distancias geográficas.
+ */
+public final class DistanciaGeo {
+
+    public static final double RADIO_TIERRA_KM = 6371;
+
+    /** Kilómetros que abarca un grado de latitud sobre la esfera de radio {@link #RADIO_TIERRA_KM}. */
+    public static final double KM_POR_GRADO = Math.toRadians(1) * RADIO_TIERRA_KM;
+
+    private DistanciaGeo() {
+    }
+
+    /**
+     * Calcula la distancia entre dos puntos GPS usando la fórmula de Haversine.
+     * @return Distancia en kilómetros
+     */
+    public static double calcularDistanciaHaversine(double lat1, double lon1, double lat2, double lon2) {
+        double latDistancia = Math.toRadians(lat2 - lat1);
+        double lonDistancia = Math.toRadians(lon2 - lon1);
+
+        double a = Math.sin(latDistancia / 2) * Math.sin(latDistancia / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                * Math.sin(lonDistancia / 2) * Math.sin(lonDistancia / 2);
+
+        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+
+        return RADIO_TIERRA_KM * c;
+    }
+
+    /**
+     * Variante de Haversine para coordenadas ya convertidas a radianes y con el coseno de cada
+     * latitud precalculado, pensada para recorrer arreglos de paradas sin conversiones repetidas.
+     * @return Distancia en kilómetros
+     */
+    public static double calcularDistanciaHaversineRad(double latRad1, double lonRad1, double cosLat1,
+                                                       double latRad2, double lonRad2, double cosLat2) {
+        double senoLat = Math.sin((latRad2 - latRad1) / 2);
+        double senoLon = Math.sin((lonRad2 - lonRad1) / 2);
+
+        double a = senoLat * senoLat + cosLat1 * cosLat2 * senoLon * senoLon;
+
+        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+
+        return RADIO_TIERRA_KM * c;
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.procesa_seniales_kafka.geo;
+
+import com.example.procesa_seniales_kafka.model.Parada;
+
+import java.util.Optional;
+
+/**
+ * Índice de búsqueda de paradas por proximidad.
+ *
+ * Todas las implementaciones devuelven exactamente la misma parada que el recorrido
+ * lineal original: la de menor distancia Haversine dentro del radio y, en caso de empate,
+ * la que aparece primero en la lista de paradas con la que se construyó el índice.
+ *
+ * Las paradas se identifican por su posición en esa lista. {@link #buscarIndiceMasCercano}
+ * no reserva memoria, de modo que una ubicación que no está cerca de ninguna parada no genera
+ * basura; la parada y la distancia se obtienen después, solo cuando hubo coincidencia.
+ */
+public interface IndiceParadas {
+
+    /** Valor devuelto por {@link #buscarIndiceMasCercano} cuando no hay paradas dentro del radio. */
+    int SIN_PARADA = -1;
+
+    /**
+     * Busca la parada más cercana al punto dentro del radio indicado.
+     * @return Posición de la parada, o {@link #SIN_PARADA}
+     */
+    int buscarIndiceMasCercano(double latitud, double longitud, double radioKm);
+
+    /**
+     * Busca la primera parada por la que pasa el tramo recto entre dos ubicaciones consecutivas, dentro
+     * del radio indicado: la de menor {@link #fraccionCruce} entre las que el vehículo tiene más cerca en
+     * un punto interior del tramo (no en sus extremos, que se evalúan como ubicaciones). Detecta paradas
+     * que ninguna de las dos ubicaciones alcanzó por lo espaciado del muestreo; para las siguientes se
+     * vuelve a buscar desde el punto de paso. Los tramos entre ubicaciones son cortos, así que la
+     * distancia al tramo se mide con la aproximación equirectangular.
+     * @return Posición de la parada, o {@link #SIN_PARADA}
+     */
+    int buscarIndiceCruce(double latitud1, double longitud1, double latitud2, double longitud2, double radioKm);
+
+    /**
+     * Fracción del tramo (0 = primera ubicación, 1 = segunda) en la que el vehículo pasa más cerca de la parada.
+     */
+    double fraccionCruce(int indice, double latitud1, double longitud1, double latitud2, double longitud2);
+
+    /**
+     * Distancia de la parada al punto más cercano del tramo; es el mismo valor con el que se la eligió.
+     */
+    double distanciaTramoKm(int indice, double latitud1, double longitud1, double latitud2, double longitud2);
+
+    /**
+     * Parada ubicada en la posición indicada.
+     */
+    Parada parada(int indice);
+
+    /**
+     * Distancia Haversine desde el punto a la parada; es el mismo valor con el que se la eligió.
+     */
+    double distanciaKm(int indice, double latitud, double longitud);
+
+    /**
+     * Secuencia de la parada en la ruta, precalculada a partir de su ID.
+     */
+    int secuencia(int indice);
+
+    /**
+     * Cantidad de paradas indexadas.
+     */
+    int tamanio();
+
+    /**
+     * Busca la parada más cercana al punto dentro del radio indicado.
+     */
+    default Optional<ParadaCercana> buscarMasCercana(double latitud, double longitud, double radioKm) {
+        int indice = buscarIndiceMasCercano(latitud, longitud, radioKm);
+        if (indice == SIN_PARADA) {
+            return Optional.empty();
+        }
+        return Optional.of(new ParadaCercana(parada(indice), distanciaKm(indice, latitud, longitud)));
+    }
+}
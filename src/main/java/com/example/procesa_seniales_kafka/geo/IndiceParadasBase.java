@@ -0,0 +1,168 @@
+package com.example.procesa_seniales_kafka.geo;
+
+import com.example.procesa_seniales_kafka.model.Parada;
+
+import java.util.List;
+
+import static com.example.procesa_seniales_kafka.geo.DistanciaGeo.KM_POR_GRADO;
+
+/**
+ * Datos por parada compartidos por los índices, guardados en arreglos primitivos paralelos:
+ * coordenadas en grados y en radianes, coseno de la latitud, vector unitario y secuencia en la ruta.
+ *
+ * Antes de evaluar Haversine se descartan las paradas cuya cuerda al punto consultado supera la
+ * del radio. En la esfera unitaria la cuerda cumple cuerda² = 4·sin²(c/2) = 4·a, donde a es el
+ * término intermedio de Haversine, así que el filtro es una cota exacta (con una holgura para el
+ * redondeo) y solo cuesta tres restas y tres productos por parada.
+ *
+ * La distancia a un tramo se calcula en el plano tangente al punto medio del tramo (grados de latitud
+ * y grados de longitud escalados por su coseno), igual que los tramos de la cinemática.
+ */
+abstract class IndiceParadasBase implements IndiceParadas {
+
+    /** Holgura relativa y absoluta sobre la cota de cuerda; muy superior al error de redondeo. */
+    private static final double MARGEN_CUERDA = 1e-9;
+    private static final double MARGEN_CUERDA_ABSOLUTO = 1e-15;
+    /** Fracciones a menos de esto de un extremo cuentan como el extremo (redondeo al partir el tramo). */
+    private static final double MARGEN_FRACCION = 1e-9;
+
+    protected final Parada[] paradas;
+    protected final double[] latitudes;
+    protected final double[] longitudes;
+    protected final double[] latitudesRad;
+    protected final double[] longitudesRad;
+    protected final double[] cosenosLatitud;
+    private final double[] x;
+    private final double[] y;
+    private final double[] z;
+    private final int[] secuencias;
+
+    protected IndiceParadasBase(List<Parada> lista) {
+        int cantidad = lista.size();
+        this.paradas = lista.toArray(new Parada[0]);
+        this.latitudes = new double[cantidad];
+        this.longitudes = new double[cantidad];
+        this.latitudesRad = new double[cantidad];
+        this.longitudesRad = new double[cantidad];
+        this.cosenosLatitud = new double[cantidad];
+        this.x = new double[cantidad];
+        this.y = new double[cantidad];
+        this.z = new double[cantidad];
+        this.secuencias = new int[cantidad];
+
+        for (int i = 0; i < cantidad; i++) {
+            latitudes[i] = paradas[i].getLatitud();
+            longitudes[i] = paradas[i].getLongitud();
+            latitudesRad[i] = Math.toRadians(latitudes[i]);
+            longitudesRad[i] = Math.toRadians(longitudes[i]);
+            cosenosLatitud[i] = Math.cos(latitudesRad[i]);
+            x[i] = cosenosLatitud[i] * Math.cos(longitudesRad[i]);
+            y[i] = cosenosLatitud[i] * Math.sin(longitudesRad[i]);
+            z[i] = Math.sin(latitudesRad[i]);
+            secuencias[i] = secuenciaDe(paradas[i].getParadaId());
+        }
+    }
+
+    @Override
+    public Parada parada(int indice) {
+        return paradas[indice];
+    }
+
+    @Override
+    public double distanciaKm(int indice, double latitud, double longitud) {
+        double latitudRad = Math.toRadians(latitud);
+        return distanciaKm(indice, latitudRad, Math.toRadians(longitud), Math.cos(latitudRad));
+    }
+
+    @Override
+    public int secuencia(int indice) {
+        return secuencias[indice];
+    }
+
+    @Override
+    public int tamanio() {
+        return paradas.length;
+    }
+
+    @Override
+    public double fraccionCruce(int indice, double latitud1, double longitud1, double latitud2, double longitud2) {
+        double coseno = Math.cos(Math.toRadians((latitud1 + latitud2) / 2));
+        return fraccionTramo(indice, latitud1, longitud1, latitud2 - latitud1, (longitud2 - longitud1) * coseno, coseno);
+    }
+
+    @Override
+    public double distanciaTramoKm(int indice, double latitud1, double longitud1, double latitud2, double longitud2) {
+        double coseno = Math.cos(Math.toRadians((latitud1 + latitud2) / 2));
+        return distanciaTramoKm(indice, latitud1, longitud1, latitud2 - latitud1, (longitud2 - longitud1) * coseno, coseno);
+    }
+
+    /**
+     * Fracción del tramo más cercana a la parada. El tramo empieza en (latitud1, longitud1) y avanza
+     * {@code norte} grados de latitud y {@code este} grados de longitud ya escalados por {@code coseno}.
+     */
+    protected final double fraccionTramo(int indice, double latitud1, double longitud1,
+                                         double norte, double este, double coseno) {
+        double largo2 = norte * norte + este * este;
+        if (largo2 == 0) {
+            return 0;
+        }
+        double fraccion = ((latitudes[indice] - latitud1) * norte
+                + (longitudes[indice] - longitud1) * coseno * este) / largo2;
+        return Math.max(0, Math.min(1, fraccion));
+    }
+
+    protected static boolean esInterior(double fraccion) {
+        return fraccion > MARGEN_FRACCION && fraccion < 1 - MARGEN_FRACCION;
+    }
+
+    protected final double distanciaTramoKm(int indice, double latitud1, double longitud1,
+                                            double norte, double este, double coseno) {
+        double fraccion = fraccionTramo(indice, latitud1, longitud1, norte, este, coseno);
+        double dNorte = latitudes[indice] - latitud1 - fraccion * norte;
+        double dEste = (longitudes[indice] - longitud1) * coseno - fraccion * este;
+        return Math.sqrt(dNorte * dNorte + dEste * dEste) * KM_POR_GRADO;
+    }
+
+    protected final double distanciaKm(int indice, double latitudRad, double longitudRad, double cosenoLatitud) {
+        return DistanciaGeo.calcularDistanciaHaversineRad(
+                latitudRad, longitudRad, cosenoLatitud,
+                latitudesRad[indice], longitudesRad[indice], cosenosLatitud[indice]);
+    }
+
+    /**
+     * Cuadrado de la cuerda (en la esfera unitaria) por encima del cual una parada está seguro fuera del radio.
+     */
+    protected static double cotaCuerda(double radioKm) {
+        double mitadAngulo = radioKm / (2 * DistanciaGeo.RADIO_TIERRA_KM);
+        if (mitadAngulo >= Math.PI / 2) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double seno = Math.sin(mitadAngulo);
+        return 4 * seno * seno * (1 + MARGEN_CUERDA) + MARGEN_CUERDA_ABSOLUTO;
+    }
+
+    /**
+     * Filtro previo a Haversine: true si la parada no puede estar dentro del radio.
+     * (qx, qy, qz) es el vector unitario del punto consultado.
+     */
+    protected final boolean fueraDeCota(int indice, double qx, double qy, double qz, double cotaCuerda) {
+        double dx = x[indice] - qx;
+        double dy = y[indice] - qy;
+        double dz = z[indice] - qz;
+        return dx * dx + dy * dy + dz * dz > cotaCuerda;
+    }
+
+    /**
+     * Extrae el número del ID (P001 -> 1, P002 -> 2, etc.); 0 si el ID no sigue ese formato.
+     */
+    static int secuenciaDe(String paradaId) {
+        if (paradaId == null || paradaId.length() < 2) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(paradaId, 1, paradaId.length(), 10);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
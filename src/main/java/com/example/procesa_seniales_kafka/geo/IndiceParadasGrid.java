@@ -0,0 +1,285 @@
+package com.example.procesa_seniales_kafka.geo;
+
+import com.example.procesa_seniales_kafka.model.Parada;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static com.example.procesa_seniales_kafka.geo.DistanciaGeo.KM_POR_GRADO;
+import static com.example.procesa_seniales_kafka.geo.DistanciaGeo.RADIO_TIERRA_KM;
+
+/**
+ * Índice de paradas basado en una grilla regular de celdas en grados.
+ *
+ * Las paradas se agrupan por celda en arreglos contiguos (claves de celda ordenadas
+ * y offsets), de modo que una consulta solo evalúa Haversine para las paradas de las
+ * celdas que intersectan la caja que encierra al círculo de búsqueda. La caja se calcula
+ * a partir de cotas exactas de la fórmula de Haversine, por lo que nunca se descarta
+ * una parada que el recorrido lineal habría aceptado.
+ *
+ * Una consulta no reserva memoria: el recorrido de celdas y la mejor candidata viven
+ * en variables locales.
+ */
+public class IndiceParadasGrid extends IndiceParadasBase {
+
+    /** Latitud máxima usada para dimensionar el ancho de las celdas. */
+    private static final double LATITUD_REFERENCIA_MAXIMA = 85.0;
+
+    /** Holgura relativa aplicada a las cotas para absorber errores de redondeo. */
+    private static final double MARGEN = 1e-9;
+
+    private final double altoCeldaGrados;
+    private final double anchoCeldaGrados;
+
+    // Claves de celda únicas y ordenadas; inicioCelda[i]..inicioCelda[i + 1] delimita
+    // en indicesPorCelda las paradas de la celda clavesCelda[i]
+    private final long[] clavesCelda;
+    private final int[] inicioCelda;
+    private final int[] indicesPorCelda;
+
+    /**
+     * @param lista          paradas a indexar (el orden define el desempate)
+     * @param tamanioCeldaKm lado aproximado de cada celda; conviene igualarlo al radio de búsqueda habitual
+     */
+    public IndiceParadasGrid(List<Parada> lista, double tamanioCeldaKm) {
+        super(lista);
+        if (!(tamanioCeldaKm > 0)) {
+            throw new IllegalArgumentException("El tamaño de celda debe ser positivo: " + tamanioCeldaKm);
+        }
+
+        int cantidad = paradas.length;
+        double latitudAbsMaxima = 0;
+        for (int i = 0; i < cantidad; i++) {
+            latitudAbsMaxima = Math.max(latitudAbsMaxima, Math.abs(latitudes[i]));
+        }
+
+        this.altoCeldaGrados = tamanioCeldaKm / KM_POR_GRADO;
+        this.anchoCeldaGrados = altoCeldaGrados
+                / Math.cos(Math.toRadians(Math.min(latitudAbsMaxima, LATITUD_REFERENCIA_MAXIMA)));
+
+        long[] clavePorParada = new long[cantidad];
+        for (int i = 0; i < cantidad; i++) {
+            clavePorParada[i] = clave(fila(latitudes[i]), columna(longitudes[i]));
+        }
+
+        // Claves únicas ordenadas; con catálogos de cientos de miles de paradas el orden se
+        // arma con arreglos primitivos, sin encajonar índices
+        long[] ordenadas = clavePorParada.clone();
+        Arrays.sort(ordenadas);
+        int celdas = 0;
+        for (int i = 0; i < cantidad; i++) {
+            if (i == 0 || ordenadas[i] != ordenadas[i - 1]) {
+                ordenadas[celdas++] = ordenadas[i];
+            }
+        }
+        this.clavesCelda = Arrays.copyOf(ordenadas, celdas);
+
+        // Conteo por celda y reparto estable: dentro de cada celda se conserva el orden original
+        int[] celdaPorParada = new int[cantidad];
+        this.inicioCelda = new int[celdas + 1];
+        for (int i = 0; i < cantidad; i++) {
+            celdaPorParada[i] = Arrays.binarySearch(clavesCelda, clavePorParada[i]);
+            inicioCelda[celdaPorParada[i] + 1]++;
+        }
+        for (int celda = 0; celda < celdas; celda++) {
+            inicioCelda[celda + 1] += inicioCelda[celda];
+        }
+        this.indicesPorCelda = new int[cantidad];
+        int[] siguiente = Arrays.copyOf(inicioCelda, celdas);
+        for (int i = 0; i < cantidad; i++) {
+            indicesPorCelda[siguiente[celdaPorParada[i]]++] = i;
+        }
+    }
+
+    @Override
+    public int buscarIndiceMasCercano(double latitud, double longitud, double radioKm) {
+        if (paradas.length == 0 || !(radioKm >= 0)) {
+            return SIN_PARADA;
+        }
+
+        double deltaLatitud = Math.toDegrees(radioKm / RADIO_TIERRA_KM) * (1 + MARGEN) + MARGEN;
+        double deltaLongitud = deltaLongitudMaxima(latitud, longitud, deltaLatitud, radioKm);
+
+        double latitudRad = Math.toRadians(latitud);
+        double longitudRad = Math.toRadians(longitud);
+        double cosenoLatitud = Math.cos(latitudRad);
+        double qx = cosenoLatitud * Math.cos(longitudRad);
+        double qy = cosenoLatitud * Math.sin(longitudRad);
+        double qz = Math.sin(latitudRad);
+        double cota = cotaCuerda(radioKm);
+
+        int filaMin = 0;
+        int filaMax = 0;
+        int columnaMin = 0;
+        int columnaMax = 0;
+        boolean recorridoCompleto = Double.isNaN(deltaLongitud);
+        if (!recorridoCompleto) {
+            filaMin = fila(latitud - deltaLatitud);
+            filaMax = fila(latitud + deltaLatitud);
+            columnaMin = columna(longitud - deltaLongitud);
+            columnaMax = columna(longitud + deltaLongitud);
+
+            // Radio desproporcionado respecto de la grilla: es más barato revisar todo
+            long celdasConsultadas = (long) (filaMax - filaMin + 1) * (columnaMax - columnaMin + 1);
+            if (celdasConsultadas > clavesCelda.length) {
+                recorridoCompleto = true;
+                filaMin = filaMax = columnaMin = columnaMax = 0;
+            }
+        }
+
+        int mejorIndice = SIN_PARADA;
+        double distanciaMinima = Double.MAX_VALUE;
+
+        // Con recorrido completo se visita una única "celda" que abarca todas las paradas
+        for (int f = filaMin; f <= filaMax; f++) {
+            for (int c = columnaMin; c <= columnaMax; c++) {
+                int desde;
+                int hasta;
+                if (recorridoCompleto) {
+                    desde = 0;
+                    hasta = indicesPorCelda.length;
+                } else {
+                    int posicion = Arrays.binarySearch(clavesCelda, clave(f, c));
+                    if (posicion < 0) {
+                        continue;
+                    }
+                    desde = inicioCelda[posicion];
+                    hasta = inicioCelda[posicion + 1];
+                }
+
+                for (int k = desde; k < hasta; k++) {
+                    int indice = indicesPorCelda[k];
+                    if (Math.abs(latitudes[indice] - latitud) > deltaLatitud
+                            || fueraDeCota(indice, qx, qy, qz, cota)) {
+                        continue;
+                    }
+
+                    double distancia = distanciaKm(indice, latitudRad, longitudRad, cosenoLatitud);
+
+                    if (distancia <= radioKm
+                            && (distancia < distanciaMinima || (distancia == distanciaMinima && indice < mejorIndice))) {
+                        distanciaMinima = distancia;
+                        mejorIndice = indice;
+                    }
+                }
+            }
+        }
+
+        return mejorIndice;
+    }
+
+    /**
+     * Recorre las celdas de la caja que encierra al tramo ampliada en el radio. La caja es holgada
+     * frente a la distancia equirectangular (se amplía un 1% más), de modo que da el mismo resultado
+     * que el recorrido lineal. La fracción se evalúa antes que la distancia: descarta sin raíz cuadrada
+     * las paradas que quedan antes o después del tramo.
+     */
+    @Override
+    public int buscarIndiceCruce(double latitud1, double longitud1, double latitud2, double longitud2, double radioKm) {
+        if (paradas.length == 0 || !(radioKm >= 0)) {
+            return SIN_PARADA;
+        }
+
+        double coseno = Math.cos(Math.toRadians((latitud1 + latitud2) / 2));
+        double norte = latitud2 - latitud1;
+        double este = (longitud2 - longitud1) * coseno;
+
+        double deltaLatitud = radioKm / KM_POR_GRADO * 1.01 + MARGEN;
+        double latitudMin = Math.min(latitud1, latitud2) - deltaLatitud;
+        double latitudMax = Math.max(latitud1, latitud2) + deltaLatitud;
+        double deltaLongitud = deltaLatitud / coseno;
+        double longitudMin = Math.min(longitud1, longitud2) - deltaLongitud;
+        double longitudMax = Math.max(longitud1, longitud2) + deltaLongitud;
+
+        int filaMin = fila(latitudMin);
+        int filaMax = fila(latitudMax);
+        int columnaMin = columna(longitudMin);
+        int columnaMax = columna(longitudMax);
+        // Tramo desproporcionado respecto de la grilla (o coordenadas inválidas): se revisa todo
+        long celdasConsultadas = (long) (filaMax - filaMin + 1) * (columnaMax - columnaMin + 1);
+        boolean recorridoCompleto = !(coseno > 0) || celdasConsultadas <= 0 || celdasConsultadas > clavesCelda.length;
+        if (recorridoCompleto) {
+            filaMin = filaMax = columnaMin = columnaMax = 0;
+        }
+
+        int mejorIndice = SIN_PARADA;
+        double fraccionMinima = Double.MAX_VALUE;
+
+        for (int f = filaMin; f <= filaMax; f++) {
+            for (int c = columnaMin; c <= columnaMax; c++) {
+                int desde;
+                int hasta;
+                if (recorridoCompleto) {
+                    desde = 0;
+                    hasta = indicesPorCelda.length;
+                } else {
+                    int posicion = Arrays.binarySearch(clavesCelda, clave(f, c));
+                    if (posicion < 0) {
+                        continue;
+                    }
+                    desde = inicioCelda[posicion];
+                    hasta = inicioCelda[posicion + 1];
+                }
+
+                for (int k = desde; k < hasta; k++) {
+                    int indice = indicesPorCelda[k];
+                    if (latitudes[indice] < latitudMin || latitudes[indice] > latitudMax) {
+                        continue;
+                    }
+
+                    double fraccion = fraccionTramo(indice, latitud1, longitud1, norte, este, coseno);
+                    if (!esInterior(fraccion) || fraccion > fraccionMinima
+                            || (fraccion == fraccionMinima && indice > mejorIndice)) {
+                        continue;
+                    }
+                    if (distanciaTramoKm(indice, latitud1, longitud1, norte, este, coseno) <= radioKm) {
+                        fraccionMinima = fraccion;
+                        mejorIndice = indice;
+                    }
+                }
+            }
+        }
+
+        return mejorIndice;
+    }
+
+    /**
+     * Cota superior de |Δlon| para cualquier parada a distancia Haversine ≤ radio.
+     *
+     * De a = sin²(Δlat/2) + cos(lat1)·cos(lat2)·sin²(Δlon/2) ≥ cos(lat1)·cos(lat2)·sin²(Δlon/2)
+     * y cos(lat2) ≥ cos(|lat1| + Δlat) se obtiene sin(Δlon/2) ≤ sin(d/2R) / √(cos(lat1)·cos(|lat1| + Δlat)).
+     *
+     * @return la cota en grados, o NaN si la caja cubre un polo o cruza el antimeridiano
+     */
+    private static double deltaLongitudMaxima(double latitud, double longitud, double deltaLatitud, double radioKm) {
+        double latitudExtrema = Math.abs(latitud) + deltaLatitud;
+        if (latitudExtrema >= 90) {
+            return Double.NaN;
+        }
+
+        double senoRadio = Math.sin(radioKm / (2 * RADIO_TIERRA_KM));
+        double cosenos = Math.cos(Math.toRadians(latitud)) * Math.cos(Math.toRadians(latitudExtrema));
+        double razon = senoRadio / Math.sqrt(cosenos);
+        if (!(razon < 1)) {
+            return Double.NaN;
+        }
+
+        double delta = Math.toDegrees(2 * Math.asin(razon)) * (1 + MARGEN) + MARGEN;
+        if (longitud - delta < -180 || longitud + delta > 180) {
+            return Double.NaN;
+        }
+        return delta;
+    }
+
+    private int fila(double latitud) {
+        return (int) Math.floor(latitud / altoCeldaGrados);
+    }
+
+    private int columna(double longitud) {
+        return (int) Math.floor(longitud / anchoCeldaGrados);
+    }
+
+    private static long clave(int fila, int columna) {
+        return ((long) fila << 32) | (columna & 0xFFFFFFFFL);
+    }
+}
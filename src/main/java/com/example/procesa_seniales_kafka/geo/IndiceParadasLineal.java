@@ -0,0 +1,66 @@
+package com.example.procesa_seniales_kafka.geo;
+
+import com.example.procesa_seniales_kafka.model.Parada;
+
+import java.util.List;
+
+/**
+ * Índice trivial que recorre todas las paradas en cada consulta, aplicando Haversine
+ * solo a las que pasan el filtro de cuerda. Se mantiene como referencia y para catálogos muy pequeños.
+ */
+public class IndiceParadasLineal extends IndiceParadasBase {
+
+    public IndiceParadasLineal(List<Parada> paradas) {
+        super(paradas);
+    }
+
+    @Override
+    public int buscarIndiceMasCercano(double latitud, double longitud, double radioKm) {
+        double latitudRad = Math.toRadians(latitud);
+        double longitudRad = Math.toRadians(longitud);
+        double cosenoLatitud = Math.cos(latitudRad);
+        double qx = cosenoLatitud * Math.cos(longitudRad);
+        double qy = cosenoLatitud * Math.sin(longitudRad);
+        double qz = Math.sin(latitudRad);
+        double cota = cotaCuerda(radioKm);
+
+        int masCercana = SIN_PARADA;
+        double distanciaMinima = Double.MAX_VALUE;
+
+        for (int i = 0; i < paradas.length; i++) {
+            if (fueraDeCota(i, qx, qy, qz, cota)) {
+                continue;
+            }
+
+            double distancia = distanciaKm(i, latitudRad, longitudRad, cosenoLatitud);
+
+            if (distancia < distanciaMinima && distancia <= radioKm) {
+                distanciaMinima = distancia;
+                masCercana = i;
+            }
+        }
+
+        return masCercana;
+    }
+
+    @Override
+    public int buscarIndiceCruce(double latitud1, double longitud1, double latitud2, double longitud2, double radioKm) {
+        double coseno = Math.cos(Math.toRadians((latitud1 + latitud2) / 2));
+        double norte = latitud2 - latitud1;
+        double este = (longitud2 - longitud1) * coseno;
+
+        int primera = SIN_PARADA;
+        double fraccionMinima = Double.MAX_VALUE;
+
+        for (int i = 0; i < paradas.length; i++) {
+            double fraccion = fraccionTramo(i, latitud1, longitud1, norte, este, coseno);
+            if (esInterior(fraccion) && fraccion < fraccionMinima
+                    && distanciaTramoKm(i, latitud1, longitud1, norte, este, coseno) <= radioKm) {
+                fraccionMinima = fraccion;
+                primera = i;
+            }
+        }
+
+        return primera;
+    }
+}
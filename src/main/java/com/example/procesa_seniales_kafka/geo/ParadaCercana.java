@@ -0,0 +1,24 @@
+package com.example.procesa_seniales_kafka.geo;
+
+import com.example.procesa_seniales_kafka.model.Parada;
+
+/**
+ * Resultado de una búsqueda en el índice: la parada encontrada y su distancia al punto consultado.
+ */
+public class ParadaCercana {
+    private final Parada parada;
+    private final double distanciaKm;
+
+    public ParadaCercana(Parada parada, double distanciaKm) {
+        this.parada = parada;
+        this.distanciaKm = distanciaKm;
+    }
+
+    public Parada getParada() {
+        return parada;
+    }
+
+    public double getDistanciaKm() {
+        return distanciaKm;
+    }
+}
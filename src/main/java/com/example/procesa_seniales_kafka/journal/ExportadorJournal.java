@@ -0,0 +1,102 @@
+package com.example.procesa_seniales_kafka.journal;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Exporta los registros del journal como CSV o como JSON (un objeto por línea).
+ *
+ * CSV:  U,secuencia,instante_ms,vehiculoId,placa,lat,lon,velocidad,estado,ciudad,pasajeros,timestamp
+ *       H,secuencia,instante_ms,vehiculoId,paradaId,estado,horarioEstimado,horarioReal,retrasoMinutos,timestamp
+ *
+ * Uso por línea de comandos:
+ * {@code java -cp <classpath> com.example.procesa_seniales_kafka.journal.ExportadorJournal <directorio> [csv|json] [desdeSecuencia]}
+ */
+public final class ExportadorJournal {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+    private ExportadorJournal() {
+    }
+
+    /**
+     * @param formato {@code csv} o {@code json}
+     * @return Cantidad de registros exportados
+     */
+    public static long exportar(Path directorio, String formato, long desdeSecuencia, Writer salida) throws IOException {
+        boolean json = "json".equalsIgnoreCase(formato);
+        if (!json && !"csv".equalsIgnoreCase(formato)) {
+            throw new IllegalArgumentException("Formato de exportación desconocido: '" + formato + "' (csv o json)");
+        }
+
+        StringBuilder linea = new StringBuilder(256);
+        try {
+            return LectorJournal.recorrer(directorio, desdeSecuencia, registro -> {
+                try {
+                    linea.setLength(0);
+                    if (json) {
+                        lineaJson(linea, registro);
+                    } else {
+                        lineaCsv(linea, registro);
+                    }
+                    salida.append(linea);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            salida.flush();
+        }
+    }
+
+    private static void lineaCsv(StringBuilder linea, RegistroJournal registro) {
+        boolean esUbicacion = registro.getTipo() == RegistroJournal.Tipo.UBICACION;
+        linea.append(esUbicacion ? 'U' : 'H');
+        FilasCsv.campo(linea, registro.getSecuencia());
+        FilasCsv.campo(linea, registro.getInstanteEscrituraMs());
+        if (esUbicacion) {
+            FilasCsv.campos(linea, registro.getUbicacion());
+        } else {
+            FilasCsv.campos(linea, registro.getHorario());
+        }
+        linea.append('\n');
+    }
+
+    private static void lineaJson(StringBuilder linea, RegistroJournal registro) throws IOException {
+        Map<String, Object> objeto = new LinkedHashMap<>();
+        objeto.put("tipo", registro.getTipo());
+        objeto.put("secuencia", registro.getSecuencia());
+        objeto.put("instante_escritura_ms", registro.getInstanteEscrituraMs());
+        objeto.put("datos", registro.getTipo() == RegistroJournal.Tipo.UBICACION
+                ? registro.getUbicacion()
+                : registro.getHorario());
+        linea.append(OBJECT_MAPPER.writeValueAsString(objeto)).append('\n');
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Uso: ExportadorJournal <directorio> [csv|json] [desdeSecuencia]");
+            System.exit(2);
+        }
+        String formato = args.length > 1 ? args[1] : "csv";
+        long desde = args.length > 2 ? Long.parseLong(args[2]) : 0;
+
+        Writer salida = new OutputStreamWriter(System.out, StandardCharsets.UTF_8);
+        long exportados = exportar(Path.of(args[0]), formato, desde, salida);
+        System.err.printf("%d registros exportados%n", exportados);
+    }
+}
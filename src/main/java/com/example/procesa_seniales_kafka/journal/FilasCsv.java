@@ -0,0 +1,56 @@
+package com.example.procesa_seniales_kafka.journal;
+
+import com.example.procesa_seniales_kafka.model.HorarioVehiculo;
+import com.example.procesa_seniales_kafka.model.UbicacionVehiculo;
+
+/**
+ * Columnas CSV de ubicaciones y horarios, compartidas por el archivo BD pendiente y la exportación
+ * del journal. Cada método agrega los campos precedidos por coma; el prefijo y el fin de línea
+ * quedan a cargo de quien llama.
+ */
+public final class FilasCsv {
+
+    private FilasCsv() {
+    }
+
+    /**
+     * vehiculoId,placa,lat,lon,velocidad,estado,ciudad,pasajeros,timestamp
+     */
+    public static void campos(StringBuilder linea, UbicacionVehiculo ubicacion) {
+        campo(linea, ubicacion.getVehiculoId());
+        campo(linea, ubicacion.getPlacaVehiculo());
+        campo(linea, ubicacion.getLatitud());
+        campo(linea, ubicacion.getLongitud());
+        campo(linea, ubicacion.getVelocidad());
+        campo(linea, ubicacion.getEstado());
+        campo(linea, ubicacion.getCiudad());
+        campo(linea, ubicacion.getPasajeros());
+        campo(linea, ubicacion.getTimestamp());
+    }
+
+    /**
+     * vehiculoId,paradaId,estado,horarioEstimado,horarioReal,retrasoMinutos,timestamp
+     */
+    public static void campos(StringBuilder linea, HorarioVehiculo horario) {
+        campo(linea, horario.getVehiculoId());
+        campo(linea, horario.getParadaId());
+        campo(linea, horario.getEstado());
+        campo(linea, horario.getHorarioEstimado());
+        campo(linea, horario.getHorarioReal());
+        campo(linea, horario.getRetrasoMinutos());
+        campo(linea, horario.getTimestamp());
+    }
+
+    public static void campo(StringBuilder linea, Object valor) {
+        linea.append(',');
+        if (valor == null) {
+            return;
+        }
+        String texto = valor.toString();
+        if (texto.indexOf(',') < 0 && texto.indexOf('"') < 0 && texto.indexOf('\n') < 0) {
+            linea.append(texto);
+            return;
+        }
+        linea.append('"').append(texto.replace("\"", "\"\"")).append('"');
+    }
+}
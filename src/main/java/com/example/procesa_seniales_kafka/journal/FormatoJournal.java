@@ -0,0 +1,244 @@
+package com.example.procesa_seniales_kafka.journal;
+
+import com.example.procesa_seniales_kafka.model.HorarioVehiculo;
+import com.example.procesa_seniales_kafka.model.UbicacionVehiculo;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.zip.CRC32C;
+
+/**
+ * Layout binario de los segmentos del journal.
+ *
+ * Cada segmento empieza con una cabecera de {@value #TAMANIO_CABECERA} bytes seguida de registros de
+ * tamaño fijo ({@value #TAMANIO_REGISTRO} bytes), lo que permite ubicar el registro k sin recorrer
+ * los anteriores. Todos los valores van en big-endian.
+ *
+ * <pre>
+ * Cabecera:  0 int magia | 4 short versión | 6 short tamaño de registro | 8 long creación (ms) | 16 long primera secuencia
+ * Registro:  0 byte tipo (0 = libre) | 1 byte versión | 4 int CRC32C de los bytes 8..191
+ *            8 long secuencia | 16 long instante de escritura (ms) | 24.. datos según el tipo
+ * </pre>
+ *
+ * Los textos ocupan campos de ancho fijo: un byte de longitud (255 = null) y el UTF-8 truncado al ancho.
+ * Los números ausentes se guardan como NaN, {@link Long#MIN_VALUE} o {@link Integer#MIN_VALUE}.
+ * El byte de tipo se escribe al final, de modo que un registro a medio escribir nunca parece válido.
+ */
+final class FormatoJournal {
+
+    static final int MAGIA = 0x50534A31; // "PSJ1"
+    static final short VERSION = 1;
+    static final int TAMANIO_CABECERA = 64;
+    static final int TAMANIO_REGISTRO = 192;
+
+    static final byte TIPO_LIBRE = 0;
+    static final byte TIPO_UBICACION = 1;
+    static final byte TIPO_HORARIO = 2;
+
+    private static final int INICIO_CRC = 8;
+    private static final int DATOS = 24;
+    private static final int NULO_TEXTO = 0xFF;
+    private static final long NULO_LONG = Long.MIN_VALUE;
+    private static final int NULO_INT = Integer.MIN_VALUE;
+
+    // Ubicación: 24 lat | 32 lon | 40 velocidad | 48 timestamp (ms) | 56 pasajeros | textos desde 60
+    private static final int[] TEXTOS_UBICACION = {60, 24, 84, 16, 100, 16, 116, 24, 140, 32, 172, 20};
+
+    // Horario: 24 timestamp (ms) | 32 estimado (ns del día) | 40 real | 48 retraso | 52 secuencia | textos desde 56
+    private static final int[] TEXTOS_HORARIO = {56, 24, 80, 16, 96, 16, 112, 12, 124, 32, 156, 36};
+
+    private FormatoJournal() {
+    }
+
+    static void escribirCabecera(ByteBuffer buffer, long creacionMs, long primeraSecuencia) {
+        buffer.putInt(0, MAGIA);
+        buffer.putShort(4, VERSION);
+        buffer.putShort(6, (short) TAMANIO_REGISTRO);
+        buffer.putLong(8, creacionMs);
+        buffer.putLong(16, primeraSecuencia);
+    }
+
+    static boolean cabeceraValida(ByteBuffer buffer) {
+        return buffer.capacity() >= TAMANIO_CABECERA
+                && buffer.getInt(0) == MAGIA
+                && buffer.getShort(4) == VERSION
+                && buffer.getShort(6) == TAMANIO_REGISTRO;
+    }
+
+    static long primeraSecuencia(ByteBuffer buffer) {
+        return buffer.getLong(16);
+    }
+
+    static int capacidad(long tamanioSegmento) {
+        return (int) ((tamanioSegmento - TAMANIO_CABECERA) / TAMANIO_REGISTRO);
+    }
+
+    static int posicion(int indice) {
+        return TAMANIO_CABECERA + indice * TAMANIO_REGISTRO;
+    }
+
+    static void escribir(ByteBuffer buffer, int posicion, long secuencia, long instanteMs, UbicacionVehiculo ubicacion) {
+        limpiar(buffer, posicion);
+        buffer.putLong(posicion + 8, secuencia);
+        buffer.putLong(posicion + 16, instanteMs);
+        buffer.putDouble(posicion + 24, doble(ubicacion.getLatitud()));
+        buffer.putDouble(posicion + 32, doble(ubicacion.getLongitud()));
+        buffer.putDouble(posicion + 40, doble(ubicacion.getVelocidad()));
+        buffer.putLong(posicion + 48, epochMs(ubicacion.getTimestamp()));
+        buffer.putInt(posicion + 56, entero(ubicacion.getPasajeros()));
+        String[] textos = {ubicacion.getVehiculoId(), ubicacion.getPlacaVehiculo(), ubicacion.getEstado(),
+                ubicacion.getCiudad(), ubicacion.getRuta(), ubicacion.getDireccion()};
+        escribirTextos(buffer, posicion, TEXTOS_UBICACION, textos);
+        sellar(buffer, posicion, TIPO_UBICACION);
+    }
+
+    static void escribir(ByteBuffer buffer, int posicion, long secuencia, long instanteMs, HorarioVehiculo horario) {
+        limpiar(buffer, posicion);
+        buffer.putLong(posicion + 8, secuencia);
+        buffer.putLong(posicion + 16, instanteMs);
+        buffer.putLong(posicion + 24, epochMs(horario.getTimestamp()));
+        buffer.putLong(posicion + 32, horario.getHorarioEstimado() == null ? NULO_LONG : horario.getHorarioEstimado().toNanoOfDay());
+        buffer.putLong(posicion + 40, horario.getHorarioReal() == null ? NULO_LONG : horario.getHorarioReal().toNanoOfDay());
+        buffer.putInt(posicion + 48, entero(horario.getRetrasoMinutos()));
+        buffer.putInt(posicion + 52, entero(horario.getSecuenciaParada()));
+        String[] textos = {horario.getVehiculoId(), horario.getPlacaVehiculo(), horario.getParadaId(),
+                horario.getEstado(), horario.getRuta(), horario.getNombreParada()};
+        escribirTextos(buffer, posicion, TEXTOS_HORARIO, textos);
+        sellar(buffer, posicion, TIPO_HORARIO);
+    }
+
+    /**
+     * Lee el registro de la posición indicada.
+     * @return el registro, o null si la posición está libre o el registro está incompleto o dañado
+     */
+    static RegistroJournal leer(ByteBuffer buffer, int posicion) {
+        byte tipo = buffer.get(posicion);
+        if (tipo != TIPO_UBICACION && tipo != TIPO_HORARIO) {
+            return null;
+        }
+        if (buffer.getInt(posicion + 4) != crc(buffer, posicion)) {
+            return null;
+        }
+
+        long secuencia = buffer.getLong(posicion + 8);
+        long instanteMs = buffer.getLong(posicion + 16);
+        if (tipo == TIPO_UBICACION) {
+            String[] textos = leerTextos(buffer, posicion, TEXTOS_UBICACION);
+            UbicacionVehiculo ubicacion = UbicacionVehiculo.builder()
+                    .latitud(doble(buffer.getDouble(posicion + 24)))
+                    .longitud(doble(buffer.getDouble(posicion + 32)))
+                    .velocidad(doble(buffer.getDouble(posicion + 40)))
+                    .timestamp(fechaHora(buffer.getLong(posicion + 48)))
+                    .pasajeros(entero(buffer.getInt(posicion + 56)))
+                    .vehiculoId(textos[0])
+                    .placaVehiculo(textos[1])
+                    .estado(textos[2])
+                    .ciudad(textos[3])
+                    .ruta(textos[4])
+                    .direccion(textos[5])
+                    .build();
+            return new RegistroJournal(RegistroJournal.Tipo.UBICACION, secuencia, instanteMs, ubicacion, null);
+        }
+
+        String[] textos = leerTextos(buffer, posicion, TEXTOS_HORARIO);
+        long estimado = buffer.getLong(posicion + 32);
+        long real = buffer.getLong(posicion + 40);
+        HorarioVehiculo horario = HorarioVehiculo.builder()
+                .timestamp(fechaHora(buffer.getLong(posicion + 24)))
+                .horarioEstimado(estimado == NULO_LONG ? null : LocalTime.ofNanoOfDay(estimado))
+                .horarioReal(real == NULO_LONG ? null : LocalTime.ofNanoOfDay(real))
+                .retrasoMinutos(entero(buffer.getInt(posicion + 48)))
+                .secuenciaParada(entero(buffer.getInt(posicion + 52)))
+                .vehiculoId(textos[0])
+                .placaVehiculo(textos[1])
+                .paradaId(textos[2])
+                .estado(textos[3])
+                .ruta(textos[4])
+                .nombreParada(textos[5])
+                .build();
+        return new RegistroJournal(RegistroJournal.Tipo.HORARIO, secuencia, instanteMs, null, horario);
+    }
+
+    private static void limpiar(ByteBuffer buffer, int posicion) {
+        for (int i = 0; i < TAMANIO_REGISTRO; i += Long.BYTES) {
+            buffer.putLong(posicion + i, 0L);
+        }
+    }
+
+    private static void sellar(ByteBuffer buffer, int posicion, byte tipo) {
+        buffer.put(posicion + 1, (byte) VERSION);
+        buffer.putInt(posicion + 4, crc(buffer, posicion));
+        buffer.put(posicion, tipo);
+    }
+
+    private static int crc(ByteBuffer buffer, int posicion) {
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.slice(posicion + INICIO_CRC, TAMANIO_REGISTRO - INICIO_CRC));
+        return (int) crc.getValue();
+    }
+
+    /**
+     * @param campos pares (desplazamiento, ancho) de cada texto, en el orden de {@code textos}
+     */
+    private static void escribirTextos(ByteBuffer buffer, int posicion, int[] campos, String[] textos) {
+        for (int i = 0; i < textos.length; i++) {
+            int inicio = posicion + campos[2 * i];
+            int ancho = campos[2 * i + 1];
+            if (textos[i] == null) {
+                buffer.put(inicio, (byte) NULO_TEXTO);
+                continue;
+            }
+            byte[] bytes = textos[i].getBytes(StandardCharsets.UTF_8);
+            int longitud = Math.min(bytes.length, ancho - 1);
+            // No cortar una secuencia UTF-8 a la mitad
+            while (longitud > 0 && longitud < bytes.length && (bytes[longitud] & 0xC0) == 0x80) {
+                longitud--;
+            }
+            buffer.put(inicio, (byte) longitud);
+            buffer.put(inicio + 1, bytes, 0, longitud);
+        }
+    }
+
+    private static String[] leerTextos(ByteBuffer buffer, int posicion, int[] campos) {
+        String[] textos = new String[campos.length / 2];
+        for (int i = 0; i < textos.length; i++) {
+            int inicio = posicion + campos[2 * i];
+            int longitud = buffer.get(inicio) & 0xFF;
+            if (longitud == NULO_TEXTO) {
+                continue;
+            }
+            byte[] bytes = new byte[longitud];
+            buffer.get(inicio + 1, bytes);
+            textos[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return textos;
+    }
+
+    private static double doble(Double valor) {
+        return valor == null ? Double.NaN : valor;
+    }
+
+    private static Double doble(double valor) {
+        return Double.isNaN(valor) ? null : valor;
+    }
+
+    private static int entero(Integer valor) {
+        return valor == null ? NULO_INT : valor;
+    }
+
+    private static Integer entero(int valor) {
+        return valor == NULO_INT ? null : valor;
+    }
+
+    private static long epochMs(LocalDateTime fechaHora) {
+        return fechaHora == null ? NULO_LONG : fechaHora.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    private static LocalDateTime fechaHora(long epochMs) {
+        return epochMs == NULO_LONG ? null : LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMs), ZoneOffset.UTC);
+    }
+}
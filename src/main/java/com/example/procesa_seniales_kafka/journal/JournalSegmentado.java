@@ -0,0 +1,239 @@
+package com.example.procesa_seniales_kafka.journal;
+
+import com.example.procesa_seniales_kafka.model.HorarioVehiculo;
+import com.example.procesa_seniales_kafka.model.UbicacionVehiculo;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Journal local de las ubicaciones consumidas y los horarios publicados, en segmentos de tamaño fijo
+ * mapeados en memoria.
+ *
+ * Escribir un registro es copiar {@value FormatoJournal#TAMANIO_REGISTRO} bytes en el segmento activo,
+ * sin formatear texto ni pasar por el logger. Cuando el segmento se llena se fuerza a disco, se abre
+ * el siguiente y se borran los más antiguos según la retención. Al arrancar se continúa el último
+ * segmento a partir de su último registro válido.
+ *
+ * Se habilita con {@code procesador.journal.habilitado=true}; los registros se leen con {@link LectorJournal}.
+ */
+@Slf4j
+@Component
+public class JournalSegmentado implements DisposableBean {
+
+    private final boolean habilitado;
+    private final Path directorio;
+    private final long tamanioSegmento;
+    private final int capacidadSegmento;
+    private final PoliticaFsync politicaFsync;
+    private final int retencionSegmentos;
+
+    private MappedByteBuffer segmentoActivo;
+    private Path archivoActivo;
+    private int siguienteIndice;
+    private int indiceSincronizado;
+    private long siguienteSecuencia;
+
+    @Autowired
+    public JournalSegmentado(@Value("${procesador.journal.habilitado:false}") boolean habilitado,
+                             @Value("${procesador.journal.directorio:journal}") String directorio,
+                             @Value("${procesador.journal.tamanio-segmento-mb:64}") int tamanioSegmentoMb,
+                             @Value("${procesador.journal.fsync:intervalo}") String politicaFsync,
+                             @Value("${procesador.journal.retencion-segmentos:16}") int retencionSegmentos) {
+        this(habilitado, Path.of(directorio), tamanioSegmentoMb * 1024L * 1024L,
+                PoliticaFsync.desdeConfiguracion(politicaFsync), retencionSegmentos);
+    }
+
+    public JournalSegmentado(boolean habilitado, Path directorio, long tamanioSegmento,
+                             PoliticaFsync politicaFsync, int retencionSegmentos) {
+        this.habilitado = habilitado;
+        this.directorio = directorio;
+        this.tamanioSegmento = tamanioSegmento;
+        this.capacidadSegmento = FormatoJournal.capacidad(tamanioSegmento);
+        this.politicaFsync = politicaFsync;
+        this.retencionSegmentos = retencionSegmentos;
+
+        if (!habilitado) {
+            return;
+        }
+        if (capacidadSegmento <= 0 || tamanioSegmento > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Tamaño de segmento inválido: " + tamanioSegmento + " bytes");
+        }
+        if (retencionSegmentos < 1) {
+            throw new IllegalArgumentException("La retención debe ser de al menos un segmento: " + retencionSegmentos);
+        }
+
+        try {
+            Files.createDirectories(directorio);
+            recuperar();
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo abrir el journal en " + directorio.toAbsolutePath(), e);
+        }
+        log.info("📒 Journal habilitado en {} (segmentos de {} registros, fsync {}, retención {} segmentos)",
+                directorio.toAbsolutePath(), capacidadSegmento, politicaFsync, retencionSegmentos);
+    }
+
+    public boolean habilitado() {
+        return habilitado;
+    }
+
+    public synchronized void registrar(UbicacionVehiculo ubicacion) {
+        if (segmentoActivo == null) {
+            return;
+        }
+        int posicion = reservar();
+        FormatoJournal.escribir(segmentoActivo, posicion, siguienteSecuencia++, System.currentTimeMillis(), ubicacion);
+        confirmar(posicion);
+    }
+
+    public synchronized void registrar(HorarioVehiculo horario) {
+        if (segmentoActivo == null) {
+            return;
+        }
+        int posicion = reservar();
+        FormatoJournal.escribir(segmentoActivo, posicion, siguienteSecuencia++, System.currentTimeMillis(), horario);
+        confirmar(posicion);
+    }
+
+    /**
+     * Fuerza a disco lo escrito desde la última sincronización (política {@code intervalo}).
+     */
+    @Scheduled(fixedDelayString = "${procesador.journal.fsync-intervalo-ms:1000}")
+    public synchronized void sincronizar() {
+        if (segmentoActivo == null || indiceSincronizado == siguienteIndice) {
+            return;
+        }
+        int desde = FormatoJournal.posicion(indiceSincronizado);
+        segmentoActivo.force(desde, FormatoJournal.posicion(siguienteIndice) - desde);
+        indiceSincronizado = siguienteIndice;
+    }
+
+    public synchronized long getSiguienteSecuencia() {
+        return siguienteSecuencia;
+    }
+
+    public synchronized Path getArchivoActivo() {
+        return archivoActivo;
+    }
+
+    public Path getDirectorio() {
+        return directorio;
+    }
+
+    public PoliticaFsync getPoliticaFsync() {
+        return politicaFsync;
+    }
+
+    public long getTamanioSegmento() {
+        return tamanioSegmento;
+    }
+
+    @Override
+    public synchronized void destroy() {
+        if (segmentoActivo != null) {
+            segmentoActivo.force();
+            segmentoActivo = null;
+        }
+    }
+
+    private int reservar() {
+        if (siguienteIndice == capacidadSegmento) {
+            try {
+                segmentoActivo.force();
+                abrirSegmento(siguienteSecuencia);
+                aplicarRetencion();
+            } catch (IOException e) {
+                throw new UncheckedIOException("No se pudo abrir un nuevo segmento del journal", e);
+            }
+        }
+        return FormatoJournal.posicion(siguienteIndice++);
+    }
+
+    private void confirmar(int posicion) {
+        if (politicaFsync == PoliticaFsync.SIEMPRE) {
+            segmentoActivo.force(posicion, FormatoJournal.TAMANIO_REGISTRO);
+            indiceSincronizado = siguienteIndice;
+        }
+    }
+
+    /**
+     * Retoma el último segmento existente a partir de su primer registro libre o inválido.
+     */
+    private void recuperar() throws IOException {
+        List<Path> segmentos = LectorJournal.segmentos(directorio);
+        if (segmentos.isEmpty()) {
+            abrirSegmento(0);
+            return;
+        }
+
+        Path ultimo = segmentos.get(segmentos.size() - 1);
+        if (Files.size(ultimo) != tamanioSegmento) {
+            // Cambió el tamaño configurado: el segmento anterior queda como está y se empieza uno nuevo
+            abrirSegmento(LectorJournal.siguienteSecuencia(ultimo));
+            return;
+        }
+
+        MappedByteBuffer buffer = mapear(ultimo);
+        if (!FormatoJournal.cabeceraValida(buffer)) {
+            throw new IOException("Segmento de journal con cabecera inválida: " + ultimo);
+        }
+        int indice = 0;
+        long secuencia = FormatoJournal.primeraSecuencia(buffer);
+        while (indice < capacidadSegmento) {
+            RegistroJournal registro = FormatoJournal.leer(buffer, FormatoJournal.posicion(indice));
+            if (registro == null) {
+                break;
+            }
+            secuencia = registro.getSecuencia() + 1;
+            indice++;
+        }
+
+        this.segmentoActivo = buffer;
+        this.archivoActivo = ultimo;
+        this.siguienteIndice = indice;
+        this.indiceSincronizado = indice;
+        this.siguienteSecuencia = secuencia;
+        log.info("📒 Journal retomado en {} desde la secuencia {}", ultimo.getFileName(), secuencia);
+    }
+
+    private void abrirSegmento(long primeraSecuencia) throws IOException {
+        Path archivo = directorio.resolve(LectorJournal.nombreSegmento(primeraSecuencia));
+        MappedByteBuffer buffer = mapear(archivo);
+        FormatoJournal.escribirCabecera(buffer, System.currentTimeMillis(), primeraSecuencia);
+        buffer.force(0, FormatoJournal.TAMANIO_CABECERA);
+
+        this.segmentoActivo = buffer;
+        this.archivoActivo = archivo;
+        this.siguienteIndice = 0;
+        this.indiceSincronizado = 0;
+        this.siguienteSecuencia = primeraSecuencia;
+    }
+
+    private MappedByteBuffer mapear(Path archivo) throws IOException {
+        try (FileChannel canal = FileChannel.open(archivo,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // El mapeo sigue siendo válido después de cerrar el canal
+            return canal.map(FileChannel.MapMode.READ_WRITE, 0, tamanioSegmento);
+        }
+    }
+
+    private void aplicarRetencion() throws IOException {
+        List<Path> segmentos = LectorJournal.segmentos(directorio);
+        for (int i = 0; i < segmentos.size() - retencionSegmentos; i++) {
+            Files.deleteIfExists(segmentos.get(i));
+            log.info("🗑️  Segmento de journal eliminado por retención: {}", segmentos.get(i).getFileName());
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.procesa_seniales_kafka.journal;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Lectura y replay de los segmentos del journal.
+ *
+ * Puede usarse mientras el microservicio escribe: solo entrega registros completos y, en el segmento
+ * activo, se detiene en el primer registro libre.
+ */
+public final class LectorJournal {
+
+    private static final String PREFIJO = "segmento-";
+    private static final String EXTENSION = ".journal";
+
+    private LectorJournal() {
+    }
+
+    /**
+     * Recorre en orden todos los registros con secuencia mayor o igual a {@code desdeSecuencia}.
+     * @return Cantidad de registros entregados
+     */
+    public static long recorrer(Path directorio, long desdeSecuencia, Consumer<RegistroJournal> consumidor) throws IOException {
+        List<Path> segmentos = segmentos(directorio);
+        long entregados = 0;
+        for (int i = 0; i < segmentos.size(); i++) {
+            // Los segmentos que terminan antes de la secuencia pedida se saltan sin leerlos
+            if (i + 1 < segmentos.size() && primeraSecuencia(segmentos.get(i + 1)) <= desdeSecuencia) {
+                continue;
+            }
+            entregados += recorrerSegmento(segmentos.get(i), desdeSecuencia, consumidor);
+        }
+        return entregados;
+    }
+
+    /**
+     * Segmentos del directorio ordenados por su primera secuencia (el nombre la lleva con ceros a la izquierda).
+     */
+    public static List<Path> segmentos(Path directorio) throws IOException {
+        if (!Files.isDirectory(directorio)) {
+            return List.of();
+        }
+        try (Stream<Path> archivos = Files.list(directorio)) {
+            return archivos
+                    .filter(archivo -> {
+                        String nombre = archivo.getFileName().toString();
+                        return nombre.startsWith(PREFIJO) && nombre.endsWith(EXTENSION);
+                    })
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    static String nombreSegmento(long primeraSecuencia) {
+        return String.format("%s%020d%s", PREFIJO, primeraSecuencia, EXTENSION);
+    }
+
+    static long primeraSecuencia(Path segmento) {
+        String nombre = segmento.getFileName().toString();
+        return Long.parseLong(nombre.substring(PREFIJO.length(), nombre.length() - EXTENSION.length()));
+    }
+
+    /**
+     * Secuencia siguiente al último registro válido del segmento.
+     */
+    static long siguienteSecuencia(Path segmento) throws IOException {
+        long[] siguiente = {primeraSecuencia(segmento)};
+        recorrerSegmento(segmento, Long.MIN_VALUE, registro -> siguiente[0] = registro.getSecuencia() + 1);
+        return siguiente[0];
+    }
+
+    private static long recorrerSegmento(Path segmento, long desdeSecuencia, Consumer<RegistroJournal> consumidor)
+            throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel canal = FileChannel.open(segmento, StandardOpenOption.READ)) {
+            buffer = canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size());
+        }
+        if (!FormatoJournal.cabeceraValida(buffer)) {
+            throw new IOException("Segmento de journal con cabecera inválida: " + segmento);
+        }
+
+        long entregados = 0;
+        int capacidad = FormatoJournal.capacidad(buffer.capacity());
+        for (int indice = 0; indice < capacidad; indice++) {
+            RegistroJournal registro = FormatoJournal.leer(buffer, FormatoJournal.posicion(indice));
+            if (registro == null) {
+                break;
+            }
+            if (registro.getSecuencia() >= desdeSecuencia) {
+                consumidor.accept(registro);
+                entregados++;
+            }
+        }
+        return entregados;
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.procesa_seniales_kafka.journal;
+
+import java.util.Locale;
+
+/**
+ * Cuándo se fuerza a disco el segmento activo del journal.
+ */
+public enum PoliticaFsync {
+
+    /** Nunca explícitamente: el sistema operativo decide (sobrevive a la caída del proceso, no a la del equipo). */
+    NUNCA,
+
+    /** Periódicamente, cada {@code procesador.journal.fsync-intervalo-ms}. */
+    INTERVALO,
+
+    /** Después de cada registro: máxima durabilidad, mayor costo por escritura. */
+    SIEMPRE;
+
+    public static PoliticaFsync desdeConfiguracion(String valor) {
+        try {
+            return valueOf(valor.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Política de fsync desconocida: '" + valor
+                    + "' (valores válidos: nunca, intervalo, siempre)", e);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.procesa_seniales_kafka.journal;
+
+import com.example.procesa_seniales_kafka.model.HorarioVehiculo;
+import com.example.procesa_seniales_kafka.model.UbicacionVehiculo;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Registro leído del journal: su posición, el instante en que se escribió y el evento capturado
+ * (una ubicación consumida o un horario publicado; el otro campo queda en null).
+ */
+@Getter
+@AllArgsConstructor
+public class RegistroJournal {
+
+    public enum Tipo {
+        UBICACION,
+        HORARIO
+    }
+
+    private final Tipo tipo;
+    private final long secuencia;
+    private final long instanteEscrituraMs;
+    private final UbicacionVehiculo ubicacion;
+    private final HorarioVehiculo horario;
+}
@@ -0,0 +1,154 @@
+package com.example.procesa_seniales_kafka.kpis;
+
+import com.example.procesa_seniales_kafka.model.ResumenKpi;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Acumulador combinable de las llegadas de una ruta a una parada: conteos, sumas, extremos y sketches
+ * de retraso e intervalo. Es el estado de una franja de {@link AgregadorKpis} y también sirve para
+ * combinar resúmenes ya publicados.
+ *
+ * No es thread-safe: lo protege la serie que lo contiene.
+ */
+public final class AcumuladorKpi {
+
+    private long llegadas;
+
+    private long sumaRetraso;
+    private long minimoRetraso = Long.MAX_VALUE;
+    private long maximoRetraso = Long.MIN_VALUE;
+    private final SketchLogLineal retrasos = new SketchLogLineal();
+
+    private long sumaIntervalo;
+    private long maximoIntervalo;
+    private final SketchLogLineal intervalos = new SketchLogLineal();
+
+    /**
+     * @param retrasoMinutos retraso frente al horario, o null si la parada no tiene horario
+     */
+    public void registrarLlegada(Integer retrasoMinutos) {
+        llegadas++;
+        if (retrasoMinutos != null) {
+            long retraso = retrasoMinutos;
+            sumaRetraso += retraso;
+            minimoRetraso = Math.min(minimoRetraso, retraso);
+            maximoRetraso = Math.max(maximoRetraso, retraso);
+            retrasos.registrar(retraso);
+        }
+    }
+
+    public void registrarIntervalo(long segundos) {
+        sumaIntervalo += segundos;
+        maximoIntervalo = Math.max(maximoIntervalo, segundos);
+        intervalos.registrar(segundos);
+    }
+
+    public void combinar(AcumuladorKpi otro) {
+        llegadas += otro.llegadas;
+        sumaRetraso += otro.sumaRetraso;
+        minimoRetraso = Math.min(minimoRetraso, otro.minimoRetraso);
+        maximoRetraso = Math.max(maximoRetraso, otro.maximoRetraso);
+        retrasos.combinar(otro.retrasos);
+        sumaIntervalo += otro.sumaIntervalo;
+        maximoIntervalo = Math.max(maximoIntervalo, otro.maximoIntervalo);
+        intervalos.combinar(otro.intervalos);
+    }
+
+    public boolean vacio() {
+        return llegadas == 0 && intervalos.getTotal() == 0;
+    }
+
+    public void limpiar() {
+        llegadas = 0;
+        sumaRetraso = 0;
+        minimoRetraso = Long.MAX_VALUE;
+        maximoRetraso = Long.MIN_VALUE;
+        retrasos.limpiar();
+        sumaIntervalo = 0;
+        maximoIntervalo = 0;
+        intervalos.limpiar();
+    }
+
+    public long getLlegadas() {
+        return llegadas;
+    }
+
+    public long percentilRetraso(double percentil) {
+        return retrasos.percentil(percentil);
+    }
+
+    public long percentilIntervalo(double percentil) {
+        return intervalos.percentil(percentil);
+    }
+
+    /**
+     * Resume el acumulador para la ventana [inicioMs, finMs), en milisegundos del tiempo de evento.
+     */
+    public ResumenKpi resumen(String ruta, String paradaId, String tipo, long inicioMs, long finMs,
+                              String emisor, boolean parcial) {
+        long muestrasRetraso = retrasos.getTotal();
+        long muestrasIntervalo = intervalos.getTotal();
+        boolean conRetraso = muestrasRetraso > 0;
+        boolean conIntervalo = muestrasIntervalo > 0;
+        return ResumenKpi.builder()
+                .ruta(ruta)
+                .paradaId(paradaId)
+                .tipo(tipo)
+                .inicio(fecha(inicioMs))
+                .fin(fecha(finMs))
+                .emisor(emisor)
+                .parcial(parcial)
+                .llegadas(llegadas)
+                .retrasoMuestras(muestrasRetraso)
+                .retrasoSumaMinutos(sumaRetraso)
+                .retrasoMinimoMinutos(conRetraso ? minimoRetraso : null)
+                .retrasoMaximoMinutos(conRetraso ? maximoRetraso : null)
+                .retrasoPromedioMinutos(conRetraso ? redondear((double) sumaRetraso / muestrasRetraso) : null)
+                .retrasoP50Minutos(conRetraso ? retrasos.percentil(50) : null)
+                .retrasoP90Minutos(conRetraso ? retrasos.percentil(90) : null)
+                .retrasoP95Minutos(conRetraso ? retrasos.percentil(95) : null)
+                .retrasoBuckets(retrasos.pares())
+                .intervaloMuestras(muestrasIntervalo)
+                .intervaloSumaSegundos(sumaIntervalo)
+                .intervaloMaximoSegundos(conIntervalo ? maximoIntervalo : null)
+                .intervaloPromedioSegundos(conIntervalo ? redondear((double) sumaIntervalo / muestrasIntervalo) : null)
+                .intervaloP50Segundos(conIntervalo ? intervalos.percentil(50) : null)
+                .intervaloP90Segundos(conIntervalo ? intervalos.percentil(90) : null)
+                .intervaloBuckets(intervalos.pares())
+                .build();
+    }
+
+    /**
+     * Acumulador con el aporte de un resumen publicado, para combinarlo con otros de la misma ventana.
+     */
+    public static AcumuladorKpi desde(ResumenKpi resumen) {
+        AcumuladorKpi acumulador = new AcumuladorKpi();
+        acumulador.llegadas = resumen.getLlegadas();
+        acumulador.sumaRetraso = resumen.getRetrasoSumaMinutos();
+        if (resumen.getRetrasoMinimoMinutos() != null) {
+            acumulador.minimoRetraso = resumen.getRetrasoMinimoMinutos();
+            acumulador.maximoRetraso = resumen.getRetrasoMaximoMinutos();
+        }
+        acumulador.retrasos.combinar(SketchLogLineal.desdePares(resumen.getRetrasoBuckets()));
+        acumulador.sumaIntervalo = resumen.getIntervaloSumaSegundos();
+        if (resumen.getIntervaloMaximoSegundos() != null) {
+            acumulador.maximoIntervalo = resumen.getIntervaloMaximoSegundos();
+        }
+        acumulador.intervalos.combinar(SketchLogLineal.desdePares(resumen.getIntervaloBuckets()));
+        return acumulador;
+    }
+
+    /**
+     * Instante del tiempo de evento como hora local, en la misma escala que {@code ReordenEventos.instanteMs}.
+     */
+    static LocalDateTime fecha(long instanteMs) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(instanteMs, 1000),
+                (int) Math.floorMod(instanteMs, 1000) * 1_000_000, ZoneOffset.UTC);
+    }
+
+    private static double redondear(double valor) {
+        return Math.round(valor * 100) / 100.0;
+    }
+}
@@ -0,0 +1,365 @@
+package com.example.procesa_seniales_kafka.kpis;
+
+import com.example.procesa_seniales_kafka.model.ResumenKpi;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * KPIs de llegadas por ruta y parada en ventanas de tiempo de evento, publicados en el tópico
+ * {@code procesador.kpis.topico} al cerrar cada ventana: cantidad de llegadas, retraso frente al
+ * horario (promedio, extremos, p50/p90/p95) e intervalo entre vehículos consecutivos (headway).
+ *
+ * Cada serie ruta-parada guarda un anillo de franjas de {@code ventana-minutos} con un
+ * {@link AcumuladorKpi}. Al cerrar la franja se publica su ventana fija y la deslizante de
+ * {@code deslizante-minutos} que termina en ella, combinando las franjas que cubre; una llegada se
+ * registra una sola vez aunque cuente en varias ventanas deslizantes. Las ventanas cierran cuando la
+ * marca de agua (mayor tiempo de evento visto menos {@code demora-ms}) pasa su fin; las llegadas a una
+ * ventana ya cerrada se descartan como tardías. La memoria queda acotada por {@code max-claves} series
+ * (las demás se agrupan en {@value #CLAVE_OTRAS}) por franjas por los buckets de los sketches.
+ *
+ * Cada resumen es un aporte a su ventana etiquetado con el emisor. Al perder particiones en un
+ * rebalanceo, y al detenerse, el agregador publica como parcial lo que tiene de las ventanas abiertas
+ * y lo descarta: nada queda retenido en una instancia que ya no recibe esas ubicaciones, y la suma de
+ * los aportes de una ventana sigue siendo exacta. El intervalo se mide entre las llegadas que ve cada
+ * instancia; las llegadas de un vehículo anteriores a la última registrada en la parada no generan
+ * intervalo.
+ */
+@Slf4j
+@Component
+public class AgregadorKpis implements DisposableBean {
+
+    public static final String TIPO_FIJA = "fija";
+    public static final String TIPO_DESLIZANTE = "deslizante";
+    static final String CLAVE_OTRAS = "otras";
+
+    private static final long MS_POR_MINUTO = 60_000L;
+
+    private final long ventanaMs;
+    private final long deslizanteMs;
+    private final long demoraMs;
+    private final long ttlMs;
+    private final int maxClaves;
+    private final int franjas;
+    private final String emisor;
+    private final Consumer<ResumenKpi> destino;
+
+    private final ConcurrentHashMap<String, Serie> series = new ConcurrentHashMap<>();
+    private final AtomicLong maximoEventoMs = new AtomicLong(Long.MIN_VALUE);
+    private final ReentrantLock cierre = new ReentrantLock();
+
+    // Fin de la última ventana cerrada, para decidir sin lock si hay que cerrar otra
+    private volatile long cerradoHastaMs = Long.MIN_VALUE;
+
+    private final LongAdder llegadas = new LongAdder();
+    private final LongAdder tardias = new LongAdder();
+    private final LongAdder desbordes = new LongAdder();
+    private final LongAdder resumenes = new LongAdder();
+    private final LongAdder parciales = new LongAdder();
+
+    @Autowired
+    public AgregadorKpis(@Value("${procesador.kpis.ventana-minutos:5}") int ventanaMinutos,
+                         @Value("${procesador.kpis.deslizante-minutos:15}") int deslizanteMinutos,
+                         @Value("${procesador.kpis.demora-ms:60000}") long demoraMs,
+                         @Value("${procesador.kpis.max-claves:10000}") int maxClaves,
+                         @Value("${procesador.kpis.ttl-minutos:120}") int ttlMinutos,
+                         @Value("${procesador.kpis.emisor:}") String emisor,
+                         PublicadorKpis publicador) {
+        this(ventanaMinutos * MS_POR_MINUTO, deslizanteMinutos * MS_POR_MINUTO, demoraMs, maxClaves,
+                ttlMinutos * MS_POR_MINUTO, emisor == null || emisor.isBlank() ? emisorPorDefecto() : emisor.trim(),
+                publicador::publicar);
+    }
+
+    public AgregadorKpis(long ventanaMs, long deslizanteMs, long demoraMs, int maxClaves, long ttlMs,
+                         String emisor, Consumer<ResumenKpi> destino) {
+        if (ventanaMs <= 0 || deslizanteMs < ventanaMs || deslizanteMs % ventanaMs != 0) {
+            throw new IllegalArgumentException("La ventana deslizante de KPIs (" + deslizanteMs
+                    + " ms) debe ser un múltiplo de la ventana fija (" + ventanaMs + " ms)");
+        }
+        this.ventanaMs = ventanaMs;
+        this.deslizanteMs = deslizanteMs;
+        this.demoraMs = Math.max(0, demoraMs);
+        this.ttlMs = Math.max(deslizanteMs, ttlMs);
+        this.maxClaves = maxClaves;
+        // Franjas de la ventana deslizante más las que siguen abiertas durante la demora
+        this.franjas = (int) (deslizanteMs / ventanaMs + (this.demoraMs + ventanaMs - 1) / ventanaMs + 2);
+        this.emisor = emisor;
+        this.destino = destino;
+    }
+
+    private static String emisorPorDefecto() {
+        // pid@host
+        return ManagementFactory.getRuntimeMXBean().getName();
+    }
+
+    /**
+     * Registra la llegada de un vehículo a una parada.
+     * @param retrasoMinutos retraso frente al horario, o null si no hay horario para la parada
+     * @param instanteMs     tiempo de evento de la llegada
+     */
+    public void registrarLlegada(String ruta, String paradaId, String vehiculoId, Integer retrasoMinutos,
+                                 long instanteMs) {
+        llegadas.increment();
+        // Una serie quitada por el cierre mientras se la buscaba ya no está en el mapa: se crea de nuevo
+        while (!serie(ruta, paradaId).registrar(vehiculoId, retrasoMinutos, instanteMs)) {
+            Thread.onSpinWait();
+        }
+        long maximo = maximoEventoMs.accumulateAndGet(instanteMs, Math::max);
+        if (maximo - demoraMs >= cerradoHastaMs + ventanaMs) {
+            cerrarVentanas();
+        }
+    }
+
+    private Serie serie(String ruta, String paradaId) {
+        String claveRuta = ruta != null ? ruta : "";
+        String clave = claveRuta + '|' + paradaId;
+        Serie serie = series.get(clave);
+        if (serie != null) {
+            return serie;
+        }
+        if (series.size() >= maxClaves) {
+            String otras = CLAVE_OTRAS + '|' + CLAVE_OTRAS;
+            if (!series.containsKey(otras)) {
+                log.warn("⚠️  Límite de {} series de KPIs alcanzado; las nuevas se agrupan en '{}'",
+                        maxClaves, CLAVE_OTRAS);
+            }
+            return series.computeIfAbsent(otras, c -> new Serie(CLAVE_OTRAS, CLAVE_OTRAS, false));
+        }
+        return series.computeIfAbsent(clave, c -> new Serie(ruta, paradaId, true));
+    }
+
+    /**
+     * Cierra las ventanas que terminan antes de la marca de agua y publica sus resúmenes.
+     * Si otro hilo ya está cerrando, no espera.
+     */
+    @Scheduled(fixedDelayString = "${procesador.kpis.revision-ms:1000}")
+    public void cerrarVentanas() {
+        long maximo = maximoEventoMs.get();
+        if (maximo == Long.MIN_VALUE || !cierre.tryLock()) {
+            return;
+        }
+        List<ResumenKpi> salida = new ArrayList<>();
+        try {
+            long finMs = Math.floorDiv(maximo - demoraMs, ventanaMs) * ventanaMs;
+            if (finMs <= cerradoHastaMs) {
+                return;
+            }
+            series.values().removeIf(serie -> serie.cerrar(finMs, salida));
+            cerradoHastaMs = finMs;
+        } finally {
+            cierre.unlock();
+        }
+        publicar(salida, false);
+    }
+
+    /**
+     * Publica como parciales las ventanas abiertas y las deslizantes que todavía no cerraron, y vacía
+     * las series. Se llama al perder particiones y al detenerse: las ubicaciones que siguen a partir
+     * de ahí en otra instancia aportan al resto de esas ventanas.
+     */
+    public void publicarParciales() {
+        List<ResumenKpi> salida = new ArrayList<>();
+        cierre.lock();
+        try {
+            for (Serie serie : series.values()) {
+                serie.vaciar(salida);
+            }
+        } finally {
+            cierre.unlock();
+        }
+        publicar(salida, true);
+    }
+
+    private void publicar(List<ResumenKpi> salida, boolean parcial) {
+        for (ResumenKpi resumen : salida) {
+            destino.accept(resumen);
+        }
+        (parcial ? parciales : resumenes).add(salida.size());
+        if (!salida.isEmpty()) {
+            log.debug("📊 {} resúmenes de KPIs publicados{}", salida.size(), parcial ? " como parciales" : "");
+        }
+    }
+
+    @Override
+    public void destroy() {
+        publicarParciales();
+    }
+
+    public int tamanio() {
+        return series.size();
+    }
+
+    public long getLlegadas() {
+        return llegadas.sum();
+    }
+
+    public long getTardias() {
+        return tardias.sum();
+    }
+
+    public long getDesbordes() {
+        return desbordes.sum();
+    }
+
+    public long getResumenes() {
+        return resumenes.sum();
+    }
+
+    public long getParciales() {
+        return parciales.sum();
+    }
+
+    /**
+     * Franjas y última llegada de una ruta-parada. Los métodos se sincronizan sobre la serie: las
+     * llegadas a una misma parada son pocas y el cierre la visita una vez por ventana.
+     */
+    private final class Serie {
+
+        private final String ruta;
+        private final String paradaId;
+        private final boolean conIntervalo;
+        private final long[] inicios = new long[franjas];
+        private final AcumuladorKpi[] acumuladores = new AcumuladorKpi[franjas];
+
+        private long cerradaHastaMs = cerradoHastaMs;
+        private long ultimaLlegadaMs = Long.MIN_VALUE;
+        private String ultimoVehiculo;
+        private boolean eliminada;
+
+        private Serie(String ruta, String paradaId, boolean conIntervalo) {
+            this.ruta = ruta;
+            this.paradaId = paradaId;
+            this.conIntervalo = conIntervalo;
+            Arrays.fill(inicios, Long.MIN_VALUE);
+            for (int i = 0; i < franjas; i++) {
+                acumuladores[i] = new AcumuladorKpi();
+            }
+        }
+
+        /**
+         * @return false solo si la serie fue quitada y hay que registrar en la nueva
+         */
+        private synchronized boolean registrar(String vehiculoId, Integer retrasoMinutos, long instanteMs) {
+            if (eliminada) {
+                return false;
+            }
+            long inicio = Math.floorDiv(instanteMs, ventanaMs) * ventanaMs;
+            if (inicio + ventanaMs <= cerradaHastaMs) {
+                tardias.increment();
+                return true;
+            }
+            int i = (int) Math.floorMod(inicio / ventanaMs, franjas);
+            if (inicios[i] != inicio) {
+                // La franja guarda otra ventana que todavía cuenta para alguna deslizante abierta
+                if (inicios[i] != Long.MIN_VALUE && inicios[i] + deslizanteMs > cerradaHastaMs
+                        && !acumuladores[i].vacio()) {
+                    desbordes.increment();
+                    return true;
+                }
+                inicios[i] = inicio;
+                acumuladores[i].limpiar();
+            }
+            acumuladores[i].registrarLlegada(retrasoMinutos);
+
+            if (conIntervalo && ultimaLlegadaMs != Long.MIN_VALUE && instanteMs > ultimaLlegadaMs
+                    && !vehiculoId.equals(ultimoVehiculo)) {
+                acumuladores[i].registrarIntervalo((instanteMs - ultimaLlegadaMs) / 1000);
+            }
+            if (instanteMs >= ultimaLlegadaMs) {
+                ultimaLlegadaMs = instanteMs;
+                ultimoVehiculo = vehiculoId;
+            }
+            return true;
+        }
+
+        /**
+         * Resume las ventanas que terminan en (cerradaHastaMs, finMs] y tienen alguna llegada.
+         * @return true si la serie quedó sin datos y sin llegadas dentro del TTL, para quitarla
+         */
+        private synchronized boolean cerrar(long finMs, List<ResumenKpi> salida) {
+            if (finMs <= cerradaHastaMs) {
+                return false;
+            }
+            resumir(cerradaHastaMs, finMs, false, salida);
+            cerradaHastaMs = finMs;
+            boolean conDatos = false;
+            for (int i = 0; i < franjas; i++) {
+                // Ya no cuenta para ninguna ventana por cerrar
+                if (inicios[i] != Long.MIN_VALUE && inicios[i] + deslizanteMs <= finMs) {
+                    inicios[i] = Long.MIN_VALUE;
+                    acumuladores[i].limpiar();
+                }
+                conDatos |= inicios[i] != Long.MIN_VALUE;
+            }
+            eliminada = !conDatos && (ultimaLlegadaMs == Long.MIN_VALUE || ultimaLlegadaMs + ttlMs <= finMs);
+            return eliminada;
+        }
+
+        private synchronized void vaciar(List<ResumenKpi> salida) {
+            resumir(cerradaHastaMs, Long.MAX_VALUE, true, salida);
+            for (int i = 0; i < franjas; i++) {
+                inicios[i] = Long.MIN_VALUE;
+                acumuladores[i].limpiar();
+            }
+        }
+
+        /**
+         * Resume las ventanas que terminan en (desdeMs, hastaMs]: la fija de cada franja con datos y las
+         * deslizantes que la contienen.
+         */
+        private void resumir(long desdeMs, long hastaMs, boolean parcial, List<ResumenKpi> salida) {
+            long[] fines = new long[franjas * (int) (deslizanteMs / ventanaMs)];
+            int cantidad = 0;
+            for (int i = 0; i < franjas; i++) {
+                if (inicios[i] == Long.MIN_VALUE || acumuladores[i].vacio()) {
+                    continue;
+                }
+                for (long fin = inicios[i] + ventanaMs; fin <= inicios[i] + deslizanteMs; fin += ventanaMs) {
+                    if (fin > desdeMs && fin <= hastaMs) {
+                        fines[cantidad++] = fin;
+                    }
+                }
+            }
+            Arrays.sort(fines, 0, cantidad);
+            for (int k = 0; k < cantidad; k++) {
+                long fin = fines[k];
+                if (k > 0 && fin == fines[k - 1]) {
+                    continue;
+                }
+                AcumuladorKpi fija = franja(fin - ventanaMs);
+                if (fija != null) {
+                    salida.add(fija.resumen(ruta, paradaId, TIPO_FIJA, fin - ventanaMs, fin, emisor, parcial));
+                }
+                if (deslizanteMs > ventanaMs) {
+                    AcumuladorKpi deslizante = new AcumuladorKpi();
+                    for (long inicio = fin - deslizanteMs; inicio < fin; inicio += ventanaMs) {
+                        AcumuladorKpi acumulador = franja(inicio);
+                        if (acumulador != null) {
+                            deslizante.combinar(acumulador);
+                        }
+                    }
+                    salida.add(deslizante.resumen(ruta, paradaId, TIPO_DESLIZANTE, fin - deslizanteMs, fin,
+                            emisor, parcial));
+                }
+            }
+        }
+
+        private AcumuladorKpi franja(long inicio) {
+            int i = (int) Math.floorMod(inicio / ventanaMs, franjas);
+            return inicios[i] == inicio && !acumuladores[i].vacio() ? acumuladores[i] : null;
+        }
+    }
+}
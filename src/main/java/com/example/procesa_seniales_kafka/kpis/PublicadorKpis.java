@@ -0,0 +1,50 @@
+package com.example.procesa_seniales_kafka.kpis;
+
+import com.example.procesa_seniales_kafka.model.ResumenKpi;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Envía los resúmenes de {@link AgregadorKpis} al tópico de KPIs, con clave {@code ruta|paradaId} para que
+ * todos los aportes de una ruta-parada queden en la misma partición. Los resúmenes no bloquean ningún
+ * offset: un envío fallido solo se cuenta y se registra.
+ */
+@Slf4j
+@Component
+public class PublicadorKpis {
+
+    @Autowired
+    private KafkaTemplate<String, ResumenKpi> kafkaTemplateKpis;
+
+    @Value("${procesador.kpis.topico:kpis}")
+    private String topico;
+
+    private final LongAdder publicados = new LongAdder();
+    private final LongAdder fallidos = new LongAdder();
+
+    public void publicar(ResumenKpi resumen) {
+        kafkaTemplateKpis.send(topico, resumen.getRuta() + '|' + resumen.getParadaId(), resumen)
+                .whenComplete((resultado, error) -> {
+                    if (error != null) {
+                        fallidos.increment();
+                        log.error("❌ Error al publicar KPIs de {} en {} ({} {}): {}", resumen.getRuta(),
+                                resumen.getParadaId(), resumen.getTipo(), resumen.getInicio(), error.getMessage());
+                    } else {
+                        publicados.increment();
+                    }
+                });
+    }
+
+    public long getPublicados() {
+        return publicados.sum();
+    }
+
+    public long getFallidos() {
+        return fallidos.sum();
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.procesa_seniales_kafka.kpis;
+
+import java.util.Arrays;
+
+/**
+ * Sketch de cuantiles combinable, con buckets log-lineales como {@code HistogramaLogLineal} pero con
+ * signo y guardado en forma dispersa: solo ocupan memoria los buckets con conteo.
+ *
+ * Los valores con módulo menor a {@value #SUB_BUCKETS} tienen un bucket propio; a partir de ahí cada
+ * potencia de dos se divide en {@value #SUB_BUCKETS} buckets de igual ancho (error relativo de a lo sumo
+ * 1/{@value #SUB_BUCKETS}). Un valor negativo usa el código {@code -1 - bucket(-valor)}, de modo que el
+ * orden de los códigos es el de los valores. Los buckets distintos están acotados por
+ * {@link #CODIGOS_MAXIMOS}, sin importar cuántos valores se registren.
+ *
+ * Dos sketches se combinan sumando los conteos de cada código, así que un resumen publicado como pares
+ * (código, conteo) se puede sumar con otros del mismo período sin perder precisión.
+ *
+ * No es thread-safe: lo protege la serie que lo contiene.
+ */
+public final class SketchLogLineal {
+
+    private static final int BITS = 4;
+    static final int SUB_BUCKETS = 1 << BITS;
+
+    /** Mayor potencia de dos representada (2^21 ≈ 24 días en segundos). */
+    private static final int EXPONENTE_MAXIMO = 20;
+    static final long VALOR_MAXIMO = (1L << (EXPONENTE_MAXIMO + 1)) - 1;
+
+    private static final int BUCKETS_POR_SIGNO = SUB_BUCKETS + (EXPONENTE_MAXIMO - BITS + 1) * SUB_BUCKETS;
+    static final int CODIGOS_MAXIMOS = 2 * BUCKETS_POR_SIGNO;
+
+    private int[] codigos = new int[4];
+    private long[] conteos = new long[4];
+    private int usados;
+    private long total;
+
+    public void registrar(long valor) {
+        sumar(codigo(valor), 1);
+    }
+
+    public void combinar(SketchLogLineal otro) {
+        for (int i = 0; i < otro.usados; i++) {
+            sumar(otro.codigos[i], otro.conteos[i]);
+        }
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public void limpiar() {
+        usados = 0;
+        total = 0;
+    }
+
+    /**
+     * @param percentil entre 0 y 100
+     * @return valor representativo del bucket que contiene al percentil (el límite más alejado de cero
+     *         para los positivos, el más cercano para los negativos), o 0 sin muestras
+     */
+    public long percentil(double percentil) {
+        if (total == 0) {
+            return 0;
+        }
+        long objetivo = Math.max(1, (long) Math.ceil(total * percentil / 100.0));
+        long acumulado = 0;
+        for (int i = 0; i < usados; i++) {
+            acumulado += conteos[i];
+            if (acumulado >= objetivo) {
+                return valor(codigos[i]);
+            }
+        }
+        return valor(codigos[usados - 1]);
+    }
+
+    /**
+     * Buckets como pares aplanados {@code [código, conteo, código, conteo, ...]} en orden de código.
+     */
+    public long[] pares() {
+        long[] pares = new long[usados * 2];
+        for (int i = 0; i < usados; i++) {
+            pares[2 * i] = codigos[i];
+            pares[2 * i + 1] = conteos[i];
+        }
+        return pares;
+    }
+
+    /**
+     * Reconstruye un sketch a partir de {@link #pares()}, por ejemplo para combinar resúmenes publicados.
+     */
+    public static SketchLogLineal desdePares(long[] pares) {
+        SketchLogLineal sketch = new SketchLogLineal();
+        if (pares != null) {
+            for (int i = 0; i + 1 < pares.length; i += 2) {
+                int codigo = (int) pares[i];
+                if (codigo < -BUCKETS_POR_SIGNO || codigo >= BUCKETS_POR_SIGNO || pares[i + 1] < 0) {
+                    throw new IllegalArgumentException("Bucket inválido en el sketch: " + pares[i] + "=" + pares[i + 1]);
+                }
+                sketch.sumar(codigo, pares[i + 1]);
+            }
+        }
+        return sketch;
+    }
+
+    private void sumar(int codigo, long conteo) {
+        int posicion = Arrays.binarySearch(codigos, 0, usados, codigo);
+        if (posicion < 0) {
+            posicion = -posicion - 1;
+            if (usados == codigos.length) {
+                codigos = Arrays.copyOf(codigos, usados * 2);
+                conteos = Arrays.copyOf(conteos, usados * 2);
+            }
+            System.arraycopy(codigos, posicion, codigos, posicion + 1, usados - posicion);
+            System.arraycopy(conteos, posicion, conteos, posicion + 1, usados - posicion);
+            codigos[posicion] = codigo;
+            conteos[posicion] = 0;
+            usados++;
+        }
+        conteos[posicion] += conteo;
+        total += conteo;
+    }
+
+    static int codigo(long valor) {
+        return valor >= 0 ? bucket(valor) : -1 - bucket(valor == Long.MIN_VALUE ? Long.MAX_VALUE : -valor);
+    }
+
+    static long valor(int codigo) {
+        return codigo >= 0 ? limiteSuperior(codigo) : -limiteInferior(-1 - codigo);
+    }
+
+    private static int bucket(long valor) {
+        if (valor < SUB_BUCKETS) {
+            return (int) valor;
+        }
+        if (valor > VALOR_MAXIMO) {
+            return BUCKETS_POR_SIGNO - 1;
+        }
+        int exponente = 63 - Long.numberOfLeadingZeros(valor);
+        int desplazamiento = exponente - BITS;
+        int sub = (int) (valor >>> desplazamiento) - SUB_BUCKETS;
+        return SUB_BUCKETS + desplazamiento * SUB_BUCKETS + sub;
+    }
+
+    private static long limiteInferior(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int desplazamiento = (bucket - SUB_BUCKETS) / SUB_BUCKETS;
+        int sub = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+        return (long) (SUB_BUCKETS + sub) << desplazamiento;
+    }
+
+    private static long limiteSuperior(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int desplazamiento = (bucket - SUB_BUCKETS) / SUB_BUCKETS;
+        return limiteInferior(bucket) + (1L << desplazamiento) - 1;
+    }
+}
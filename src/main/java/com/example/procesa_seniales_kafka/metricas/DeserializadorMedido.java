@@ -0,0 +1,58 @@
+package com.example.procesa_seniales_kafka.metricas;
+
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Deserializer;
+
+import java.util.Map;
+
+/**
+ * Deserializer que mide (con muestreo) el tiempo del deserializer envuelto y distingue los payloads que fallan.
+ * Va por dentro del {@code ErrorHandlingDeserializer}, por lo que ve las excepciones antes de que
+ * se conviertan en un valor null para el listener.
+ */
+public class DeserializadorMedido<T> implements Deserializer<T> {
+
+    private final Deserializer<T> delegado;
+    private final MetricasProcesamiento metricas;
+
+    public DeserializadorMedido(Deserializer<T> delegado, MetricasProcesamiento metricas) {
+        this.delegado = delegado;
+        this.metricas = metricas;
+    }
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        delegado.configure(configs, isKey);
+    }
+
+    @Override
+    public T deserialize(String topic, byte[] data) {
+        long inicio = metricas.inicio();
+        boolean ok = false;
+        try {
+            T valor = delegado.deserialize(topic, data);
+            ok = true;
+            return valor;
+        } finally {
+            metricas.registrarDeserializacion(inicio, ok);
+        }
+    }
+
+    @Override
+    public T deserialize(String topic, Headers headers, byte[] data) {
+        long inicio = metricas.inicio();
+        boolean ok = false;
+        try {
+            T valor = delegado.deserialize(topic, headers, data);
+            ok = true;
+            return valor;
+        } finally {
+            metricas.registrarDeserializacion(inicio, ok);
+        }
+    }
+
+    @Override
+    public void close() {
+        delegado.close();
+    }
+}
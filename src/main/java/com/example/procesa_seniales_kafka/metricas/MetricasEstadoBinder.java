@@ -0,0 +1,237 @@
+package com.example.procesa_seniales_kafka.metricas;
+
+import com.example.procesa_seniales_kafka.auditoria.RegistroAuditoria;
+import com.example.procesa_seniales_kafka.catalogo.CatalogoParadas;
+import com.example.procesa_seniales_kafka.checkpoint.CheckpointEstado;
+import com.example.procesa_seniales_kafka.cinematica.SeguimientoVehiculos;
+import com.example.procesa_seniales_kafka.consulta.VistaLlegadas;
+import com.example.procesa_seniales_kafka.errores.CanalErrores;
+import com.example.procesa_seniales_kafka.errores.ClaseFallo;
+import com.example.procesa_seniales_kafka.estado.EstadoDedupStore;
+import com.example.procesa_seniales_kafka.estado.MaquinaEstadosParada;
+import com.example.procesa_seniales_kafka.estado.ReordenEventos;
+import com.example.procesa_seniales_kafka.kpis.AgregadorKpis;
+import com.example.procesa_seniales_kafka.kpis.PublicadorKpis;
+import com.example.procesa_seniales_kafka.service.PublicadorHorarios;
+import com.example.procesa_seniales_kafka.service.PublicadorTardias;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gauges y contadores derivados del estado que los componentes ya llevan.
+ *
+ * No agrega trabajo al procesamiento: los valores se leen de los contadores existentes
+ * (LongAdder, semáforo de la ventana en vuelo, tamaños de tabla) solo cuando se hace scrape.
+ */
+@Component
+public class MetricasEstadoBinder implements MeterBinder {
+
+    private final EstadoDedupStore estadoDedup;
+    private final PublicadorHorarios publicador;
+    private final RegistroAuditoria auditoria;
+    private final CatalogoParadas catalogo;
+    private final SeguimientoVehiculos seguimiento;
+    private final MaquinaEstadosParada maquinaEstados;
+    private final ReordenEventos reorden;
+    private final PublicadorTardias publicadorTardias;
+    private final AgregadorKpis kpis;
+    private final PublicadorKpis publicadorKpis;
+    private final CheckpointEstado checkpoint;
+    private final CanalErrores canalErrores;
+    private final VistaLlegadas vistaLlegadas;
+
+    public MetricasEstadoBinder(EstadoDedupStore estadoDedup, PublicadorHorarios publicador,
+                                RegistroAuditoria auditoria, CatalogoParadas catalogo,
+                                SeguimientoVehiculos seguimiento, MaquinaEstadosParada maquinaEstados,
+                                ReordenEventos reorden, PublicadorTardias publicadorTardias,
+                                AgregadorKpis kpis, PublicadorKpis publicadorKpis, CheckpointEstado checkpoint,
+                                CanalErrores canalErrores, VistaLlegadas vistaLlegadas) {
+        this.estadoDedup = estadoDedup;
+        this.publicador = publicador;
+        this.auditoria = auditoria;
+        this.catalogo = catalogo;
+        this.seguimiento = seguimiento;
+        this.maquinaEstados = maquinaEstados;
+        this.reorden = reorden;
+        this.publicadorTardias = publicadorTardias;
+        this.kpis = kpis;
+        this.publicadorKpis = publicadorKpis;
+        this.checkpoint = checkpoint;
+        this.canalErrores = canalErrores;
+        this.vistaLlegadas = vistaLlegadas;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registro) {
+        Gauge.builder("procesador.dedup.entradas", estadoDedup, EstadoDedupStore::tamanio)
+                .description("Pares vehículo-parada en el estado de deduplicación")
+                .register(registro);
+        Gauge.builder("procesador.dedup.memoria", estadoDedup, EstadoDedupStore::memoriaAproximadaBytes)
+                .description("Memoria aproximada de las tablas de deduplicación")
+                .baseUnit("bytes")
+                .register(registro);
+        FunctionCounter.builder("procesador.dedup.desalojos", estadoDedup, EstadoDedupStore::getDesalojosTtl)
+                .tag("causa", "ttl")
+                .register(registro);
+        FunctionCounter.builder("procesador.dedup.desalojos", estadoDedup, EstadoDedupStore::getDesalojosCapacidad)
+                .tag("causa", "capacidad")
+                .register(registro);
+
+        Gauge.builder("procesador.publicacion.en.vuelo", publicador, PublicadorHorarios::getEnVuelo)
+                .description("Horarios enviados y aún no confirmados por el broker")
+                .register(registro);
+        Gauge.builder("procesador.publicacion.max.en.vuelo", publicador, PublicadorHorarios::getMaxEnVuelo)
+                .register(registro);
+        FunctionCounter.builder("procesador.publicacion.fallidas", publicador, PublicadorHorarios::getFallidos)
+                .description("Horarios que el productor no pudo entregar")
+                .register(registro);
+
+        Gauge.builder("procesador.auditoria.en.cola", auditoria, RegistroAuditoria::getEnCola)
+                .description("Líneas de auditoría pendientes de escribir en modo asíncrono")
+                .register(registro);
+
+        Gauge.builder("procesador.catalogo.version", catalogo, c -> c.snapshot().getVersion())
+                .description("Versión del catálogo de paradas vigente")
+                .register(registro);
+        Gauge.builder("procesador.catalogo.paradas", catalogo, c -> c.snapshot().getIndice().tamanio())
+                .description("Paradas en el catálogo vigente")
+                .register(registro);
+        FunctionTimer.builder("procesador.catalogo.recarga", catalogo,
+                        CatalogoParadas::getRecargas, CatalogoParadas::getNanosRecargas, TimeUnit.NANOSECONDS)
+                .description("Recargas exitosas del catálogo: lectura de la fuente más construcción del índice")
+                .register(registro);
+        FunctionCounter.builder("procesador.catalogo.recargas.fallidas", catalogo, CatalogoParadas::getRecargasFallidas)
+                .description("Recargas del catálogo que fallaron; se conservó la versión anterior")
+                .register(registro);
+
+        Gauge.builder("procesador.estado.vehiculos", maquinaEstados, MaquinaEstadosParada::tamanio)
+                .description("Vehículos con parada activa o visitada recientemente en la máquina de estados")
+                .register(registro);
+        FunctionCounter.builder("procesador.estado.transiciones", maquinaEstados, MaquinaEstadosParada::getTransiciones)
+                .description("Entradas y avances de estado de la parada activa")
+                .register(registro);
+        FunctionCounter.builder("procesador.estado.pasadas", maquinaEstados, MaquinaEstadosParada::getPasadas)
+                .description("Paradas dejadas atrás (horarios PASADO)")
+                .register(registro);
+        FunctionCounter.builder("procesador.estado.llegadas.cruce", maquinaEstados, MaquinaEstadosParada::getCruces)
+                .description("Llegadas detectadas sobre el tramo entre dos ubicaciones, sin ninguna dentro de la parada")
+                .register(registro);
+        FunctionCounter.builder("procesador.estado.llegadas.corregidas", maquinaEstados, MaquinaEstadosParada::getCorrecciones)
+                .description("Llegadas adelantadas por una ubicación tardía (política corregir)")
+                .register(registro);
+
+        Gauge.builder("procesador.eventos.retenidas", reorden, ReordenEventos::getRetenidas)
+                .description("Ubicaciones retenidas en los buffers de reorden por tiempo de evento")
+                .register(registro);
+        Gauge.builder("procesador.eventos.vehiculos", reorden, ReordenEventos::tamanio)
+                .register(registro);
+        FunctionCounter.builder("procesador.eventos.reordenadas", reorden, ReordenEventos::getReordenadas)
+                .description("Ubicaciones que llegaron antes que otra más nueva ya retenida y se reordenaron")
+                .register(registro);
+        FunctionCounter.builder("procesador.eventos.descartadas", reorden, ReordenEventos::getRepetidas)
+                .tag("causa", "repetida")
+                .register(registro);
+        FunctionCounter.builder("procesador.eventos.descartadas", reorden, ReordenEventos::getTardias)
+                .tag("causa", "tardia")
+                .register(registro);
+        FunctionCounter.builder("procesador.eventos.liberadas", reorden, ReordenEventos::getVencidas)
+                .tag("causa", "espera")
+                .register(registro);
+        FunctionCounter.builder("procesador.eventos.liberadas", reorden, ReordenEventos::getDesbordes)
+                .tag("causa", "capacidad")
+                .register(registro);
+        FunctionCounter.builder("procesador.eventos.tardias.publicadas", publicadorTardias, PublicadorTardias::getPublicadas)
+                .description("Ubicaciones tardías reenviadas al tópico lateral")
+                .register(registro);
+
+        Gauge.builder("procesador.kpis.series", kpis, AgregadorKpis::tamanio)
+                .description("Series ruta-parada con ventanas de KPIs abiertas")
+                .register(registro);
+        FunctionCounter.builder("procesador.kpis.llegadas", kpis, AgregadorKpis::getLlegadas)
+                .register(registro);
+        FunctionCounter.builder("procesador.kpis.descartadas", kpis, AgregadorKpis::getTardias)
+                .tag("causa", "tardia")
+                .register(registro);
+        FunctionCounter.builder("procesador.kpis.descartadas", kpis, AgregadorKpis::getDesbordes)
+                .tag("causa", "capacidad")
+                .register(registro);
+        FunctionCounter.builder("procesador.kpis.resumenes", kpis, AgregadorKpis::getResumenes)
+                .tag("tipo", "cierre")
+                .register(registro);
+        FunctionCounter.builder("procesador.kpis.resumenes", kpis, AgregadorKpis::getParciales)
+                .tag("tipo", "parcial")
+                .register(registro);
+        FunctionCounter.builder("procesador.kpis.publicacion.fallidas", publicadorKpis, PublicadorKpis::getFallidos)
+                .register(registro);
+
+        FunctionTimer.builder("procesador.checkpoint.guardado", checkpoint,
+                        CheckpointEstado::getGuardados, CheckpointEstado::getNanosGuardado, TimeUnit.NANOSECONDS)
+                .description("Checkpoints de partición escritos; el tiempo es el de cada pasada completa")
+                .register(registro);
+        FunctionCounter.builder("procesador.checkpoint.fallidos", checkpoint, CheckpointEstado::getFallidos)
+                .register(registro);
+        FunctionTimer.builder("procesador.checkpoint.restauracion", checkpoint,
+                        CheckpointEstado::getRestauraciones, CheckpointEstado::getNanosRestauracion, TimeUnit.NANOSECONDS)
+                .description("Particiones restauradas desde su checkpoint al asignarse")
+                .register(registro);
+        FunctionCounter.builder("procesador.checkpoint.rechazados", checkpoint, CheckpointEstado::getRechazados)
+                .description("Checkpoints dañados o incompatibles con el tópico, ignorados al restaurar")
+                .register(registro);
+        FunctionCounter.builder("procesador.checkpoint.entradas.restauradas", checkpoint, CheckpointEstado::getRestauradas)
+                .register(registro);
+
+        for (ClaseFallo clase : ClaseFallo.values()) {
+            FunctionCounter.builder("procesador.errores.fallos", canalErrores, c -> c.getFallos(clase))
+                    .description("Registros de ubicaciones fallidos por clase de fallo")
+                    .tag("clase", clase.getNombre())
+                    .register(registro);
+        }
+        FunctionCounter.builder("procesador.errores.derivados", canalErrores, CanalErrores::getAReintento)
+                .tag("destino", "reintento")
+                .register(registro);
+        FunctionCounter.builder("procesador.errores.derivados", canalErrores, CanalErrores::getADlt)
+                .tag("destino", "dlt")
+                .register(registro);
+        FunctionCounter.builder("procesador.errores.recuperados", canalErrores, CanalErrores::getRecuperados)
+                .description("Ubicaciones procesadas con éxito en un tópico de reintento")
+                .register(registro);
+        FunctionCounter.builder("procesador.errores.envios.fallidos", canalErrores, CanalErrores::getEnviosFallidos)
+                .description("Reenvíos a reintento o dead-letter que el broker no aceptó; el offset no se confirma")
+                .register(registro);
+
+        Gauge.builder("procesador.consulta.vehiculos", vistaLlegadas, VistaLlegadas::getVehiculos)
+                .description("Vehículos con horarios recientes en la vista de consultas en vivo")
+                .register(registro);
+        Gauge.builder("procesador.consulta.paradas", vistaLlegadas, VistaLlegadas::getParadas)
+                .description("Paradas con llegadas en la vista de consultas en vivo")
+                .register(registro);
+        FunctionCounter.builder("procesador.consulta.actualizaciones", vistaLlegadas, VistaLlegadas::getActualizaciones)
+                .register(registro);
+        FunctionCounter.builder("procesador.consulta.ignoradas", vistaLlegadas, VistaLlegadas::getIgnoradas)
+                .description("Horarios anteriores al ya registrado para el mismo vehículo y parada")
+                .register(registro);
+        FunctionCounter.builder("procesador.consulta.descartadas", vistaLlegadas, VistaLlegadas::getDescartadas)
+                .description("Horarios de vehículos nuevos sin lugar en la vista (max-vehiculos)")
+                .register(registro);
+        FunctionCounter.builder("procesador.consulta.expiradas", vistaLlegadas, VistaLlegadas::getExpiradas)
+                .register(registro);
+
+        Gauge.builder("procesador.cinematica.vehiculos", seguimiento, SeguimientoVehiculos::tamanio)
+                .description("Vehículos con posiciones recientes en el seguimiento cinemático")
+                .register(registro);
+        Gauge.builder("procesador.cinematica.memoria", seguimiento, SeguimientoVehiculos::memoriaAproximadaBytes)
+                .baseUnit("bytes")
+                .register(registro);
+        FunctionCounter.builder("procesador.cinematica.fuera.de.orden", seguimiento, SeguimientoVehiculos::getFueraDeOrden)
+                .description("Posiciones ignoradas por ser anteriores a la última del vehículo")
+                .register(registro);
+        FunctionCounter.builder("procesador.cinematica.desalojos", seguimiento, SeguimientoVehiculos::getDesalojos)
+                .register(registro);
+    }
+}
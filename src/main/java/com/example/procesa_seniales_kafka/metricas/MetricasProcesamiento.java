@@ -0,0 +1,186 @@
+package com.example.procesa_seniales_kafka.metricas;
+
+import com.example.procesa_seniales_kafka.model.EstadoParada;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Timers y contadores del pipeline de procesamiento, expuestos en {@code /actuator/prometheus}.
+ *
+ * Todos los medidores se crean una sola vez y se guardan en campos: el camino caliente no busca
+ * medidores en el registro ni arma tags por mensaje. Los contadores son exactos; los tiempos se
+ * muestrean: {@link #inicio()} decide al azar (una de cada {@code procesador.metricas.muestreo-tiempos}
+ * operaciones) si la operación se mide, y solo en ese caso lee el reloj. El promedio de los tiempos
+ * muestreados no tiene sesgo; la cantidad de operaciones se obtiene de los contadores.
+ *
+ * Por defecto los tiempos se acumulan en dos {@link LongAdder} (cantidad y nanos) que se leen como
+ * {@link FunctionTimer} al hacer scrape; un {@link Timer} completo cuesta varias veces más por registro
+ * por el máximo por ventana. Con {@code procesador.metricas.histogramas=true} se usan Timers con
+ * histograma de percentiles, útiles para diagnosticar latencias pero más caros.
+ */
+@Component
+public class MetricasProcesamiento {
+
+    /** Valor de {@link #inicio()} para una operación que no se mide. */
+    public static final long SIN_MEDICION = Long.MIN_VALUE;
+
+    private final MeterRegistry registro;
+    private final boolean histogramas;
+    private final int mascaraMuestreo;
+
+    private final Medidor deserializacion;
+    private final Medidor deserializacionFallida;
+    private final Medidor busquedaParada;
+    private final Medidor generacionHorario;
+    private final Medidor confirmacionHorario;
+    private final Medidor confirmacionHorarioFallida;
+
+    private final Counter mensajesRecibidos;
+    private final Counter coincidenciasParada;
+    private final Counter duplicadosSuprimidos;
+
+    // Horarios publicados por estado; los estados conocidos se registran de antemano
+    private final Map<String, Counter> publicadosPorEstado = new ConcurrentHashMap<>();
+
+    public MetricasProcesamiento(MeterRegistry registro,
+                                 @Value("${procesador.metricas.histogramas:false}") boolean histogramas,
+                                 @Value("${procesador.metricas.muestreo-tiempos:16}") int muestreoTiempos) {
+        this.registro = registro;
+        this.histogramas = histogramas;
+        // Se redondea a potencia de dos para decidir con una máscara
+        this.mascaraMuestreo = Integer.highestOneBit(Math.max(1, muestreoTiempos)) - 1;
+
+        String descripcionDeserializacion = "Tiempo de deserialización de una ubicación";
+        String descripcionConfirmacion = "Tiempo entre el envío del horario y la confirmación del broker";
+        this.deserializacion = medidor("procesador.deserializacion", descripcionDeserializacion, "resultado", "ok");
+        this.deserializacionFallida = medidor("procesador.deserializacion", descripcionDeserializacion, "resultado", "error");
+        this.busquedaParada = medidor("procesador.busqueda.parada",
+                "Tiempo de búsqueda de la parada más cercana en el índice", null, null);
+        this.generacionHorario = medidor("procesador.generacion.horario",
+                "Tiempo de construcción del horario a partir de la ubicación", null, null);
+        this.confirmacionHorario = medidor("procesador.publicacion.confirmacion", descripcionConfirmacion, "resultado", "ok");
+        this.confirmacionHorarioFallida = medidor("procesador.publicacion.confirmacion", descripcionConfirmacion, "resultado", "error");
+
+        this.mensajesRecibidos = Counter.builder("procesador.mensajes.recibidos")
+                .description("Ubicaciones recibidas desde ubicaciones_vehiculos")
+                .register(registro);
+        this.coincidenciasParada = Counter.builder("procesador.paradas.coincidencias")
+                .description("Ubicaciones con una parada dentro del umbral de distancia")
+                .register(registro);
+        this.duplicadosSuprimidos = Counter.builder("procesador.horarios.duplicados")
+                .description("Horarios no publicados por la regla de deduplicación")
+                .register(registro);
+
+        for (EstadoParada estado : EstadoParada.values()) {
+            publicadosPorEstado.put(estado.name(), contadorPublicados(estado.name()));
+        }
+    }
+
+    private Medidor medidor(String nombre, String descripcion, String tag, String valorTag) {
+        Medidor medidor = new Medidor();
+        if (histogramas) {
+            Timer.Builder builder = Timer.builder(nombre)
+                    .description(descripcion)
+                    .publishPercentileHistogram();
+            if (tag != null) {
+                builder.tag(tag, valorTag);
+            }
+            medidor.timer = builder.register(registro);
+        } else {
+            FunctionTimer.Builder<Medidor> builder = FunctionTimer.builder(nombre, medidor,
+                            m -> m.cantidad.sum(), m -> m.nanos.sum(), TimeUnit.NANOSECONDS)
+                    .description(descripcion);
+            if (tag != null) {
+                builder.tag(tag, valorTag);
+            }
+            builder.register(registro);
+        }
+        return medidor;
+    }
+
+    private Counter contadorPublicados(String estado) {
+        return Counter.builder("procesador.horarios.publicados")
+                .description("Horarios enviados al tópico horarios")
+                .tag("estado", estado)
+                .register(registro);
+    }
+
+    /**
+     * Marca el inicio de una operación.
+     * @return instante en nanos si la operación quedó en la muestra, o {@link #SIN_MEDICION}
+     */
+    public long inicio() {
+        if ((ThreadLocalRandom.current().nextInt() & mascaraMuestreo) != 0) {
+            return SIN_MEDICION;
+        }
+        return System.nanoTime();
+    }
+
+    public void registrarDeserializacion(long inicio, boolean ok) {
+        (ok ? deserializacion : deserializacionFallida).registrar(inicio);
+    }
+
+    public void registrarMensajesRecibidos(int cantidad) {
+        mensajesRecibidos.increment(cantidad);
+    }
+
+    public void registrarBusquedaParada(long inicio, boolean encontrada) {
+        busquedaParada.registrar(inicio);
+        if (encontrada) {
+            coincidenciasParada.increment();
+        }
+    }
+
+    public void registrarGeneracionHorario(long inicio) {
+        generacionHorario.registrar(inicio);
+    }
+
+    public void registrarDuplicadoSuprimido() {
+        duplicadosSuprimidos.increment();
+    }
+
+    public void registrarHorarioPublicado(String estado) {
+        Counter contador = estado == null ? null : publicadosPorEstado.get(estado);
+        if (contador == null) {
+            contador = publicadosPorEstado.computeIfAbsent(String.valueOf(estado), this::contadorPublicados);
+        }
+        contador.increment();
+    }
+
+    public void registrarConfirmacion(long inicio, boolean ok) {
+        (ok ? confirmacionHorario : confirmacionHorarioFallida).registrar(inicio);
+    }
+
+    /**
+     * Tiempo acumulado de una operación: en un Timer si hay histogramas, o en contadores propios.
+     */
+    private static final class Medidor {
+
+        private Timer timer;
+        private final LongAdder cantidad = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+
+        void registrar(long inicio) {
+            if (inicio == SIN_MEDICION) {
+                return;
+            }
+            long duracionNanos = System.nanoTime() - inicio;
+            if (timer != null) {
+                timer.record(duracionNanos, TimeUnit.NANOSECONDS);
+            } else {
+                cantidad.increment();
+                nanos.add(duracionNanos);
+            }
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.procesa_seniales_kafka.model;
+
+/**
+ * Estado de un vehículo respecto a una parada, en el orden en que ocurre una visita:
+ * la parada se estima, el vehículo se acerca, llega y la deja atrás.
+ * En los mensajes de horarios viaja como texto ({@link #name()}).
+ */
+public enum EstadoParada {
+    ESTIMADO,
+    LLEGANDO,
+    LLEGADO,
+    PASADO;
+
+    private static final EstadoParada[] VALORES = values();
+
+    public static EstadoParada deOrdinal(int ordinal) {
+        return VALORES[ordinal];
+    }
+}
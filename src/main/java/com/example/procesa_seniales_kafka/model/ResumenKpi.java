@@ -0,0 +1,58 @@
+package com.example.procesa_seniales_kafka.model;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Resumen de llegadas de una ruta a una parada en una ventana de tiempo de evento: cantidad de
+ * llegadas, retraso frente al horario (minutos) e intervalo entre vehículos consecutivos (segundos).
+ *
+ * Cada resumen es un aporte a su ventana: los de distintos emisores, o los parciales que un mismo
+ * emisor publica al perder particiones, se combinan sumando muestras, sumas y buckets y tomando
+ * mínimo y máximo. Los percentiles y promedios son los del aporte; los de la ventana completa se
+ * recalculan desde los buckets ({@code AcumuladorKpi.desde}).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ResumenKpi {
+
+    private String ruta;
+    private String paradaId;
+    private String tipo; // fija, deslizante
+
+    @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss")
+    private LocalDateTime inicio;
+
+    @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss")
+    private LocalDateTime fin;
+
+    private String emisor;
+    private boolean parcial;
+
+    private long llegadas;
+
+    private long retrasoMuestras;
+    private long retrasoSumaMinutos;
+    private Long retrasoMinimoMinutos;
+    private Long retrasoMaximoMinutos;
+    private Double retrasoPromedioMinutos;
+    private Long retrasoP50Minutos;
+    private Long retrasoP90Minutos;
+    private Long retrasoP95Minutos;
+    private long[] retrasoBuckets; // pares código-conteo
+
+    private long intervaloMuestras;
+    private long intervaloSumaSegundos;
+    private Long intervaloMaximoSegundos;
+    private Double intervaloPromedioSegundos;
+    private Long intervaloP50Segundos;
+    private Long intervaloP90Segundos;
+    private long[] intervaloBuckets; // pares código-conteo
+}
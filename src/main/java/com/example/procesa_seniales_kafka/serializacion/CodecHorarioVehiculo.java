@@ -0,0 +1,91 @@
+package com.example.procesa_seniales_kafka.serializacion;
+
+import com.example.procesa_seniales_kafka.model.HorarioVehiculo;
+import org.apache.kafka.common.errors.SerializationException;
+
+import java.time.LocalTime;
+
+/**
+ * Codificación binaria compacta de {@link HorarioVehiculo} (formato {@code bin-v1}).
+ *
+ * Mismo esquema que {@link CodecUbicacionVehiculo}: versión, máscara de presencia y campos
+ * presentes en orden de declaración. Los horarios se guardan como nanos del día (varint).
+ */
+public final class CodecHorarioVehiculo {
+
+    static final int VERSION = 1;
+
+    private static final int VEHICULO_ID = 1;
+    private static final int PLACA = 1 << 1;
+    private static final int PARADA_ID = 1 << 2;
+    private static final int NOMBRE_PARADA = 1 << 3;
+    private static final int DIRECCION_PARADA = 1 << 4;
+    private static final int HORARIO_ESTIMADO = 1 << 5;
+    private static final int HORARIO_REAL = 1 << 6;
+    private static final int RETRASO = 1 << 7;
+    private static final int TIMESTAMP = 1 << 8;
+    private static final int RUTA = 1 << 9;
+    private static final int SECUENCIA = 1 << 10;
+    private static final int ESTADO = 1 << 11;
+
+    private CodecHorarioVehiculo() {
+    }
+
+    public static byte[] codificar(HorarioVehiculo horario) {
+        int mascara = (horario.getVehiculoId() != null ? VEHICULO_ID : 0)
+                | (horario.getPlacaVehiculo() != null ? PLACA : 0)
+                | (horario.getParadaId() != null ? PARADA_ID : 0)
+                | (horario.getNombreParada() != null ? NOMBRE_PARADA : 0)
+                | (horario.getDireccionParada() != null ? DIRECCION_PARADA : 0)
+                | (horario.getHorarioEstimado() != null ? HORARIO_ESTIMADO : 0)
+                | (horario.getHorarioReal() != null ? HORARIO_REAL : 0)
+                | (horario.getRetrasoMinutos() != null ? RETRASO : 0)
+                | (horario.getTimestamp() != null ? TIMESTAMP : 0)
+                | (horario.getRuta() != null ? RUTA : 0)
+                | (horario.getSecuenciaParada() != null ? SECUENCIA : 0)
+                | (horario.getEstado() != null ? ESTADO : 0);
+
+        SalidaBinaria salida = new SalidaBinaria(128);
+        salida.escribirByte(VERSION);
+        salida.escribirShort(mascara);
+
+        if ((mascara & VEHICULO_ID) != 0) salida.escribirString(horario.getVehiculoId());
+        if ((mascara & PLACA) != 0) salida.escribirString(horario.getPlacaVehiculo());
+        if ((mascara & PARADA_ID) != 0) salida.escribirString(horario.getParadaId());
+        if ((mascara & NOMBRE_PARADA) != 0) salida.escribirString(horario.getNombreParada());
+        if ((mascara & DIRECCION_PARADA) != 0) salida.escribirString(horario.getDireccionParada());
+        if ((mascara & HORARIO_ESTIMADO) != 0) salida.escribirVarLong(horario.getHorarioEstimado().toNanoOfDay());
+        if ((mascara & HORARIO_REAL) != 0) salida.escribirVarLong(horario.getHorarioReal().toNanoOfDay());
+        if ((mascara & RETRASO) != 0) salida.escribirVarLongConSigno(horario.getRetrasoMinutos());
+        if ((mascara & TIMESTAMP) != 0) CodecUbicacionVehiculo.escribirFechaHora(salida, horario.getTimestamp());
+        if ((mascara & RUTA) != 0) salida.escribirString(horario.getRuta());
+        if ((mascara & SECUENCIA) != 0) salida.escribirVarLongConSigno(horario.getSecuenciaParada());
+        if ((mascara & ESTADO) != 0) salida.escribirString(horario.getEstado());
+
+        return salida.toByteArray();
+    }
+
+    public static HorarioVehiculo decodificar(byte[] datos) {
+        EntradaBinaria entrada = new EntradaBinaria(datos);
+        int version = entrada.leerByte();
+        if (version != VERSION) {
+            throw new SerializationException("Versión de HorarioVehiculo binaria no soportada: " + version);
+        }
+        int mascara = entrada.leerShort();
+
+        HorarioVehiculo horario = new HorarioVehiculo();
+        if ((mascara & VEHICULO_ID) != 0) horario.setVehiculoId(entrada.leerString());
+        if ((mascara & PLACA) != 0) horario.setPlacaVehiculo(entrada.leerString());
+        if ((mascara & PARADA_ID) != 0) horario.setParadaId(entrada.leerString());
+        if ((mascara & NOMBRE_PARADA) != 0) horario.setNombreParada(entrada.leerString());
+        if ((mascara & DIRECCION_PARADA) != 0) horario.setDireccionParada(entrada.leerString());
+        if ((mascara & HORARIO_ESTIMADO) != 0) horario.setHorarioEstimado(LocalTime.ofNanoOfDay(entrada.leerVarLong()));
+        if ((mascara & HORARIO_REAL) != 0) horario.setHorarioReal(LocalTime.ofNanoOfDay(entrada.leerVarLong()));
+        if ((mascara & RETRASO) != 0) horario.setRetrasoMinutos((int) entrada.leerVarLongConSigno());
+        if ((mascara & TIMESTAMP) != 0) horario.setTimestamp(CodecUbicacionVehiculo.leerFechaHora(entrada));
+        if ((mascara & RUTA) != 0) horario.setRuta(entrada.leerString());
+        if ((mascara & SECUENCIA) != 0) horario.setSecuenciaParada((int) entrada.leerVarLongConSigno());
+        if ((mascara & ESTADO) != 0) horario.setEstado(entrada.leerString());
+        return horario;
+    }
+}
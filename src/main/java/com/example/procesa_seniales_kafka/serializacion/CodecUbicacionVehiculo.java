@@ -0,0 +1,105 @@
+package com.example.procesa_seniales_kafka.serializacion;
+
+import com.example.procesa_seniales_kafka.model.UbicacionVehiculo;
+import org.apache.kafka.common.errors.SerializationException;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Codificación binaria compacta de {@link UbicacionVehiculo} (formato {@code bin-v1}).
+ *
+ * Layout: versión (1 byte), máscara de campos presentes (2 bytes) y luego, en orden de
+ * declaración, solo los campos presentes: textos como varint de largo + UTF-8, coordenadas
+ * y velocidad como double IEEE-754, pasajeros como varint zigzag y el timestamp como
+ * segundos epoch (zigzag) más nanos (varint). No usa reflexión ni metadatos por campo.
+ */
+public final class CodecUbicacionVehiculo {
+
+    static final int VERSION = 1;
+
+    private static final int VEHICULO_ID = 1;
+    private static final int PLACA = 1 << 1;
+    private static final int LATITUD = 1 << 2;
+    private static final int LONGITUD = 1 << 3;
+    private static final int VELOCIDAD = 1 << 4;
+    private static final int DIRECCION = 1 << 5;
+    private static final int CIUDAD = 1 << 6;
+    private static final int ESTADO = 1 << 7;
+    private static final int TIMESTAMP = 1 << 8;
+    private static final int CONDUCTOR = 1 << 9;
+    private static final int PASAJEROS = 1 << 10;
+    private static final int RUTA = 1 << 11;
+
+    private CodecUbicacionVehiculo() {
+    }
+
+    public static byte[] codificar(UbicacionVehiculo ubicacion) {
+        int mascara = (ubicacion.getVehiculoId() != null ? VEHICULO_ID : 0)
+                | (ubicacion.getPlacaVehiculo() != null ? PLACA : 0)
+                | (ubicacion.getLatitud() != null ? LATITUD : 0)
+                | (ubicacion.getLongitud() != null ? LONGITUD : 0)
+                | (ubicacion.getVelocidad() != null ? VELOCIDAD : 0)
+                | (ubicacion.getDireccion() != null ? DIRECCION : 0)
+                | (ubicacion.getCiudad() != null ? CIUDAD : 0)
+                | (ubicacion.getEstado() != null ? ESTADO : 0)
+                | (ubicacion.getTimestamp() != null ? TIMESTAMP : 0)
+                | (ubicacion.getConductor() != null ? CONDUCTOR : 0)
+                | (ubicacion.getPasajeros() != null ? PASAJEROS : 0)
+                | (ubicacion.getRuta() != null ? RUTA : 0);
+
+        SalidaBinaria salida = new SalidaBinaria(128);
+        salida.escribirByte(VERSION);
+        salida.escribirShort(mascara);
+
+        if ((mascara & VEHICULO_ID) != 0) salida.escribirString(ubicacion.getVehiculoId());
+        if ((mascara & PLACA) != 0) salida.escribirString(ubicacion.getPlacaVehiculo());
+        if ((mascara & LATITUD) != 0) salida.escribirDouble(ubicacion.getLatitud());
+        if ((mascara & LONGITUD) != 0) salida.escribirDouble(ubicacion.getLongitud());
+        if ((mascara & VELOCIDAD) != 0) salida.escribirDouble(ubicacion.getVelocidad());
+        if ((mascara & DIRECCION) != 0) salida.escribirString(ubicacion.getDireccion());
+        if ((mascara & CIUDAD) != 0) salida.escribirString(ubicacion.getCiudad());
+        if ((mascara & ESTADO) != 0) salida.escribirString(ubicacion.getEstado());
+        if ((mascara & TIMESTAMP) != 0) escribirFechaHora(salida, ubicacion.getTimestamp());
+        if ((mascara & CONDUCTOR) != 0) salida.escribirString(ubicacion.getConductor());
+        if ((mascara & PASAJEROS) != 0) salida.escribirVarLongConSigno(ubicacion.getPasajeros());
+        if ((mascara & RUTA) != 0) salida.escribirString(ubicacion.getRuta());
+
+        return salida.toByteArray();
+    }
+
+    public static UbicacionVehiculo decodificar(byte[] datos) {
+        EntradaBinaria entrada = new EntradaBinaria(datos);
+        int version = entrada.leerByte();
+        if (version != VERSION) {
+            throw new SerializationException("Versión de UbicacionVehiculo binaria no soportada: " + version);
+        }
+        int mascara = entrada.leerShort();
+
+        UbicacionVehiculo ubicacion = new UbicacionVehiculo();
+        if ((mascara & VEHICULO_ID) != 0) ubicacion.setVehiculoId(entrada.leerString());
+        if ((mascara & PLACA) != 0) ubicacion.setPlacaVehiculo(entrada.leerString());
+        if ((mascara & LATITUD) != 0) ubicacion.setLatitud(entrada.leerDouble());
+        if ((mascara & LONGITUD) != 0) ubicacion.setLongitud(entrada.leerDouble());
+        if ((mascara & VELOCIDAD) != 0) ubicacion.setVelocidad(entrada.leerDouble());
+        if ((mascara & DIRECCION) != 0) ubicacion.setDireccion(entrada.leerString());
+        if ((mascara & CIUDAD) != 0) ubicacion.setCiudad(entrada.leerString());
+        if ((mascara & ESTADO) != 0) ubicacion.setEstado(entrada.leerString());
+        if ((mascara & TIMESTAMP) != 0) ubicacion.setTimestamp(leerFechaHora(entrada));
+        if ((mascara & CONDUCTOR) != 0) ubicacion.setConductor(entrada.leerString());
+        if ((mascara & PASAJEROS) != 0) ubicacion.setPasajeros((int) entrada.leerVarLongConSigno());
+        if ((mascara & RUTA) != 0) ubicacion.setRuta(entrada.leerString());
+        return ubicacion;
+    }
+
+    static void escribirFechaHora(SalidaBinaria salida, LocalDateTime fechaHora) {
+        salida.escribirVarLongConSigno(fechaHora.toEpochSecond(ZoneOffset.UTC));
+        salida.escribirVarLong(fechaHora.getNano());
+    }
+
+    static LocalDateTime leerFechaHora(EntradaBinaria entrada) {
+        long segundos = entrada.leerVarLongConSigno();
+        int nanos = (int) entrada.leerVarLong();
+        return LocalDateTime.ofEpochSecond(segundos, nanos, ZoneOffset.UTC);
+    }
+}
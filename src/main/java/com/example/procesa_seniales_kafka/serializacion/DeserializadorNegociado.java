@@ -0,0 +1,55 @@
+package com.example.procesa_seniales_kafka.serializacion;
+
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Deserializer;
+
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Deserializer que elige el formato según el header {@value FormatoWire#HEADER} del registro.
+ * Los registros sin header (productores antiguos) se leen con el formato por defecto del tópico,
+ * que normalmente es JSON.
+ */
+public class DeserializadorNegociado<T> implements Deserializer<T> {
+
+    private final Deserializer<T> json;
+    private final Function<byte[], T> binario;
+    private final FormatoWire porDefecto;
+
+    public DeserializadorNegociado(Deserializer<T> json, Function<byte[], T> binario, FormatoWire porDefecto) {
+        this.json = json;
+        this.binario = binario;
+        this.porDefecto = porDefecto;
+    }
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        json.configure(configs, isKey);
+    }
+
+    @Override
+    public T deserialize(String topic, byte[] data) {
+        return deserializar(topic, null, data, porDefecto);
+    }
+
+    @Override
+    public T deserialize(String topic, Headers headers, byte[] data) {
+        return deserializar(topic, headers, data, FormatoWire.desdeHeaders(headers, porDefecto));
+    }
+
+    private T deserializar(String topic, Headers headers, byte[] data, FormatoWire formato) {
+        if (data == null) {
+            return null;
+        }
+        if (formato == FormatoWire.BINARIO) {
+            return binario.apply(data);
+        }
+        return headers == null ? json.deserialize(topic, data) : json.deserialize(topic, headers, data);
+    }
+
+    @Override
+    public void close() {
+        json.close();
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.procesa_seniales_kafka.serializacion;
+
+import org.apache.kafka.common.errors.SerializationException;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Lector de los buffers producidos por {@link SalidaBinaria}.
+ */
+final class EntradaBinaria {
+
+    private final byte[] buffer;
+    private int posicion;
+
+    EntradaBinaria(byte[] buffer) {
+        this.buffer = buffer;
+    }
+
+    int leerByte() {
+        verificar(1);
+        return buffer[posicion++] & 0xFF;
+    }
+
+    int leerShort() {
+        verificar(2);
+        int valor = ((buffer[posicion] & 0xFF) << 8) | (buffer[posicion + 1] & 0xFF);
+        posicion += 2;
+        return valor;
+    }
+
+    long leerLong() {
+        verificar(8);
+        long valor = 0;
+        for (int i = 0; i < 8; i++) {
+            valor = (valor << 8) | (buffer[posicion++] & 0xFF);
+        }
+        return valor;
+    }
+
+    double leerDouble() {
+        return Double.longBitsToDouble(leerLong());
+    }
+
+    long leerVarLong() {
+        long valor = 0;
+        for (int desplazamiento = 0; desplazamiento < 64; desplazamiento += 7) {
+            verificar(1);
+            byte b = buffer[posicion++];
+            valor |= (long) (b & 0x7F) << desplazamiento;
+            if ((b & 0x80) == 0) {
+                return valor;
+            }
+        }
+        throw new SerializationException("Varint mal formado en la posición " + posicion);
+    }
+
+    long leerVarLongConSigno() {
+        long valor = leerVarLong();
+        return (valor >>> 1) ^ -(valor & 1);
+    }
+
+    String leerString() {
+        long largo = leerVarLong();
+        if (largo < 0 || largo > buffer.length - posicion) {
+            throw new SerializationException("Largo de texto inválido: " + largo);
+        }
+        String valor = new String(buffer, posicion, (int) largo, StandardCharsets.UTF_8);
+        posicion += (int) largo;
+        return valor;
+    }
+
+    private void verificar(int bytes) {
+        if (posicion + bytes > buffer.length) {
+            throw new SerializationException("Payload binario truncado: se esperaban " + bytes
+                    + " bytes en la posición " + posicion + " de " + buffer.length);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.procesa_seniales_kafka.serializacion;
+
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Formatos de payload soportados en los tópicos y header con el que se negocian.
+ *
+ * El productor indica el formato en el header {@value #HEADER}; si el header no está
+ * (productores antiguos) el consumidor usa el formato configurado por defecto para el tópico.
+ */
+public enum FormatoWire {
+
+    JSON("json"),
+    BINARIO("bin-v1");
+
+    public static final String HEADER = "x-formato";
+
+    private final String valor;
+    private final byte[] valorBytes;
+
+    FormatoWire(String valor) {
+        this.valor = valor;
+        this.valorBytes = valor.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    public String getValor() {
+        return valor;
+    }
+
+    /**
+     * Interpreta el nombre usado en configuración: "json" o "binario"/"bin-v1".
+     */
+    public static FormatoWire desdeConfiguracion(String nombre) {
+        if (nombre == null || nombre.isBlank() || nombre.trim().equalsIgnoreCase("json")) {
+            return JSON;
+        }
+        String normalizado = nombre.trim().toLowerCase();
+        if (normalizado.equals("binario") || normalizado.equals(BINARIO.valor)) {
+            return BINARIO;
+        }
+        throw new IllegalArgumentException("Formato de serialización desconocido: " + nombre);
+    }
+
+    /**
+     * Formato indicado en los headers del registro, o el formato por defecto si no viene.
+     */
+    public static FormatoWire desdeHeaders(Headers headers, FormatoWire porDefecto) {
+        if (headers == null) {
+            return porDefecto;
+        }
+        Header header = headers.lastHeader(HEADER);
+        if (header == null || header.value() == null) {
+            return porDefecto;
+        }
+        byte[] valor = header.value();
+        for (FormatoWire formato : values()) {
+            if (Arrays.equals(formato.valorBytes, valor)) {
+                return formato;
+            }
+        }
+        throw new IllegalArgumentException("Formato de payload no soportado: "
+                + new String(valor, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Marca el formato en los headers del registro saliente.
+     */
+    public void escribirEn(Headers headers) {
+        if (headers != null) {
+            headers.remove(HEADER);
+            headers.add(HEADER, valorBytes);
+        }
+    }
+}
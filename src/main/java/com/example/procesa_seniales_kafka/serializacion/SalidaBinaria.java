@@ -0,0 +1,71 @@
+package com.example.procesa_seniales_kafka.serializacion;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Buffer de escritura big-endian con enteros de longitud variable (varint).
+ */
+final class SalidaBinaria {
+
+    private byte[] buffer;
+    private int posicion;
+
+    SalidaBinaria(int capacidadInicial) {
+        this.buffer = new byte[capacidadInicial];
+    }
+
+    void escribirByte(int valor) {
+        asegurar(1);
+        buffer[posicion++] = (byte) valor;
+    }
+
+    void escribirShort(int valor) {
+        asegurar(2);
+        buffer[posicion++] = (byte) (valor >>> 8);
+        buffer[posicion++] = (byte) valor;
+    }
+
+    void escribirLong(long valor) {
+        asegurar(8);
+        for (int desplazamiento = 56; desplazamiento >= 0; desplazamiento -= 8) {
+            buffer[posicion++] = (byte) (valor >>> desplazamiento);
+        }
+    }
+
+    void escribirDouble(double valor) {
+        escribirLong(Double.doubleToRawLongBits(valor));
+    }
+
+    void escribirVarLong(long valor) {
+        asegurar(10);
+        while ((valor & ~0x7FL) != 0) {
+            buffer[posicion++] = (byte) ((valor & 0x7F) | 0x80);
+            valor >>>= 7;
+        }
+        buffer[posicion++] = (byte) valor;
+    }
+
+    /** Varint con codificación zigzag, para valores que pueden ser negativos. */
+    void escribirVarLongConSigno(long valor) {
+        escribirVarLong((valor << 1) ^ (valor >> 63));
+    }
+
+    void escribirString(String valor) {
+        byte[] bytes = valor.getBytes(StandardCharsets.UTF_8);
+        escribirVarLong(bytes.length);
+        asegurar(bytes.length);
+        System.arraycopy(bytes, 0, buffer, posicion, bytes.length);
+        posicion += bytes.length;
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(buffer, posicion);
+    }
+
+    private void asegurar(int bytes) {
+        if (posicion + bytes > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, posicion + bytes));
+        }
+    }
+}
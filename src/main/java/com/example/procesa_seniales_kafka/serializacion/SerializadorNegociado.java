@@ -0,0 +1,55 @@
+package com.example.procesa_seniales_kafka.serializacion;
+
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Serializer;
+
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Serializer que escribe el payload en el formato configurado para el tópico
+ * y lo anuncia en el header {@value FormatoWire#HEADER}.
+ */
+public class SerializadorNegociado<T> implements Serializer<T> {
+
+    private final Serializer<T> json;
+    private final Function<T, byte[]> binario;
+    private final FormatoWire formato;
+
+    public SerializadorNegociado(Serializer<T> json, Function<T, byte[]> binario, FormatoWire formato) {
+        this.json = json;
+        this.binario = binario;
+        this.formato = formato;
+    }
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        json.configure(configs, isKey);
+    }
+
+    @Override
+    public byte[] serialize(String topic, T data) {
+        if (data == null) {
+            return null;
+        }
+        return formato == FormatoWire.BINARIO ? binario.apply(data) : json.serialize(topic, data);
+    }
+
+    @Override
+    public byte[] serialize(String topic, Headers headers, T data) {
+        if (data == null) {
+            return null;
+        }
+        formato.escribirEn(headers);
+        return formato == FormatoWire.BINARIO ? binario.apply(data) : json.serialize(topic, headers, data);
+    }
+
+    public FormatoWire getFormato() {
+        return formato;
+    }
+
+    @Override
+    public void close() {
+        json.close();
+    }
+}
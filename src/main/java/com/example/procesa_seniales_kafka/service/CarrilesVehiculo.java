@@ -0,0 +1,86 @@
+package com.example.procesa_seniales_kafka.service;
+
+import com.example.procesa_seniales_kafka.estado.EstadoDedupStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Pool de carriles de trabajo con afinidad por vehículo.
+ *
+ * Cada carril es un único hilo, y un vehículo siempre se asigna al mismo carril, por lo que las
+ * ubicaciones de un vehículo se procesan en el orden en que llegaron. La asignación usa el mismo
+ * hash que {@link EstadoDedupStore}: con una cantidad de carriles menor o igual a la de segmentos,
+ * dos carriles nunca comparten un segmento del estado de deduplicación. Los locks de esos segmentos
+ * igual se comparten con otros hilos: el que vacía los vehículos inactivos del reorden por tiempo de
+ * evento procesa ubicaciones de cualquier vehículo, y las purgas programadas recorren todos los segmentos.
+ *
+ * Solo se usan en el modo por lotes ({@code procesador.consumo.batch.habilitado=true}), donde un poll
+ * se reparte entre los carriles. El consumer por registro procesa cada ubicación en el hilo del listener:
+ * ahí el paralelismo lo da {@code procesador.consumo.concurrencia}, con el orden por vehículo que
+ * garantiza la partición. Ese hash es también el del particionador de Kafka, así que los hilos del
+ * listener quedan en segmentos disjuntos cuando la cantidad de particiones es potencia de dos y no
+ * supera la de segmentos.
+ *
+ * Se habilita con {@code procesador.consumo.carriles} mayor a 1 (se redondea a potencia de dos).
+ * Con {@code procesador.hilos.virtuales=true} cada carril corre sobre un hilo virtual.
+ */
+@Slf4j
+@Component
+public class CarrilesVehiculo implements DisposableBean {
+
+    private final ExecutorService[] carriles;
+    private final int mascara;
+
+    public CarrilesVehiculo(@Value("${procesador.consumo.carriles:0}") int cantidad,
+                            @Value("${procesador.hilos.virtuales:false}") boolean hilosVirtuales) {
+        if (cantidad <= 1) {
+            this.carriles = new ExecutorService[0];
+            this.mascara = 0;
+            return;
+        }
+
+        int potencia = Integer.highestOneBit(cantidad);
+        this.carriles = new ExecutorService[potencia];
+        this.mascara = potencia - 1;
+        for (int i = 0; i < potencia; i++) {
+            String nombre = "carril-vehiculo-" + i;
+            ThreadFactory fabrica = hilosVirtuales
+                    ? Thread.ofVirtual().name(nombre).factory()
+                    : Thread.ofPlatform().name(nombre).daemon().factory();
+            carriles[i] = Executors.newSingleThreadExecutor(fabrica);
+        }
+        log.info("🛣️  Carriles por vehículo habilitados: {} (hilos {})",
+                potencia, hilosVirtuales ? "virtuales" : "de plataforma");
+    }
+
+    public boolean habilitado() {
+        return carriles.length > 0;
+    }
+
+    public int cantidad() {
+        return carriles.length;
+    }
+
+    public int carrilDe(String vehiculoId) {
+        return EstadoDedupStore.hashVehiculo(vehiculoId) & mascara;
+    }
+
+    public <T> Future<T> enviar(int carril, Callable<T> tarea) {
+        return carriles[carril].submit(tarea);
+    }
+
+    @Override
+    public void destroy() {
+        for (ExecutorService carril : carriles) {
+            carril.shutdown();
+        }
+    }
+}
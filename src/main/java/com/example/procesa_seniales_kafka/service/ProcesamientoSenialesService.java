@@ -1,21 +1,40 @@
 package com.example.procesa_seniales_kafka.service;
 
+import com.example.procesa_seniales_kafka.auditoria.CategoriaAuditoria;
+import com.example.procesa_seniales_kafka.auditoria.RegistroAuditoria;
+import com.example.procesa_seniales_kafka.catalogo.CatalogoParadas;
+import com.example.procesa_seniales_kafka.catalogo.SnapshotCatalogo;
+import com.example.procesa_seniales_kafka.catalogo.TablaHorarios;
+import com.example.procesa_seniales_kafka.cinematica.PrediccionLlegadas;
+import com.example.procesa_seniales_kafka.cinematica.SeguimientoVehiculos;
+import com.example.procesa_seniales_kafka.consulta.VistaLlegadas;
+import com.example.procesa_seniales_kafka.estadisticas.EstadisticasTiempoReal;
+import com.example.procesa_seniales_kafka.estado.EstadoDedupStore;
+import com.example.procesa_seniales_kafka.estado.MaquinaEstadosParada;
+import com.example.procesa_seniales_kafka.estado.ReordenEventos;
+import com.example.procesa_seniales_kafka.geo.IndiceParadas;
+import com.example.procesa_seniales_kafka.kpis.AgregadorKpis;
+import com.example.procesa_seniales_kafka.metricas.MetricasProcesamiento;
+import com.example.procesa_seniales_kafka.model.EstadoParada;
 import com.example.procesa_seniales_kafka.model.HorarioVehiculo;
 import com.example.procesa_seniales_kafka.model.Parada;
 import com.example.procesa_seniales_kafka.model.UbicacionVehiculo;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.time.ZoneOffset;
 import java.time.temporal.ChronoUnit;
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
-import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.function.BiFunction;
 
 /**
  * Servicio principal de procesamiento de señales de vehículos.
@@ -23,13 +42,28 @@ import java.util.Optional;
  */
 @Slf4j
 @Service
-public class ProcesamientoSenialesService {
+public class ProcesamientoSenialesService implements DisposableBean {
+
+    // Future ya completado para las ubicaciones que no publican nada (el mismo que usa el reorden)
+    private static final CompletableFuture<Void> SIN_PUBLICACION = ReordenEventos.COMPLETADO;
+
+    // Paradas que se buscan como máximo en el tramo entre dos ubicaciones
+    private static final int MAX_CRUCES_POR_TRAMO = 8;
+
+    @Autowired
+    private PublicadorHorarios publicadorHorarios;
+
+    @Autowired
+    private CatalogoParadas catalogoParadas;
 
     @Autowired
-    private KafkaTemplate<String, HorarioVehiculo> kafkaTemplate;
+    private TablaHorarios tablaHorarios;
 
     @Autowired
-    private List<Parada> paradasPredefinidas;
+    private SeguimientoVehiculos seguimiento;
+
+    @Autowired
+    private PrediccionLlegadas prediccion;
 
     @Value("${procesador.distancia.umbral.km:0.5}")
     private double distanciaUmbralKm;
@@ -37,103 +71,508 @@ public class ProcesamientoSenialesService {
     @Value("${procesador.tiempo.llegando.minutos:5}")
     private int tiempoLlegandoMinutos;
 
-    // Mapa para rastrear el estado de cada vehículo por parada
-    // Key: vehiculoId-paradaId, Value: último horario registrado
-    private Map<String, HorarioVehiculo> estadoVehiculos = new HashMap<>();
+    // Detección de llegadas sobre el tramo entre ubicaciones consecutivas (muestreo espaciado)
+    @Value("${procesador.trayectoria.habilitada:true}")
+    private boolean trayectoriaHabilitada;
+
+    // Estado de cada vehículo por parada: último estado publicado e instante de publicación
+    @Autowired
+    private EstadoDedupStore estadoVehiculos;
+
+    // Parada activa de cada vehículo y su estado (con histéresis)
+    @Autowired
+    private MaquinaEstadosParada maquinaEstados;
+
+    @Autowired
+    private CarrilesVehiculo carriles;
+
+    @Autowired
+    private RegistroAuditoria auditoria;
+
+    @Autowired
+    private MetricasProcesamiento metricas;
+
+    @Autowired
+    private EstadisticasTiempoReal estadisticas;
+
+    // Ordena las ubicaciones de cada vehículo por tiempo de evento antes de procesarlas
+    @Autowired
+    private ReordenEventos reordenEventos;
+
+    @Autowired
+    private PublicadorTardias publicadorTardias;
+
+    @Value("${procesador.eventos.tardios.politica:descartar}")
+    private String politicaTardios;
+
+    // KPIs por ruta y parada en ventanas de tiempo de evento (tópico kpis)
+    @Autowired
+    private AgregadorKpis agregadorKpis;
+
+    @Value("${procesador.kpis.habilitado:true}")
+    private boolean kpisHabilitados;
+
+    // Último horario por vehículo y por parada para las consultas en vivo
+    @Autowired
+    private VistaLlegadas vistaLlegadas;
+
+    private final ReordenEventos.Destino destinoEventos = new ReordenEventos.Destino() {
+        @Override
+        public CompletableFuture<Void> procesar(UbicacionVehiculo ubicacion) {
+            return procesarEvento(ubicacion);
+        }
+
+        @Override
+        public CompletableFuture<Void> tardia(UbicacionVehiculo ubicacion, long ultimaEntregadaMs) {
+            return procesarTardia(ubicacion, ultimaEntregadaMs);
+        }
+    };
+
+    /**
+     * Recibe una ubicación de vehículo. Las ubicaciones se procesan en orden de tiempo de evento
+     * por vehículo ({@link ReordenEventos}): esta puede quedar retenida y liberar otras anteriores.
+     * @return Future que se completa cuando esta ubicación se procesó y el broker confirmó sus horarios
+     *         (si quedó retenida, recién al liberarse); inmediatamente si no hay nada que esperar
+     */
+    public CompletableFuture<Void> procesarUbicacion(UbicacionVehiculo ubicacion) {
+        estadisticas.registrarUbicacion();
+        return reordenEventos.ofrecer(ubicacion, destinoEventos);
+    }
 
     /**
-     * Procesa una ubicación de vehículo para determinar si genera un evento de horario.
+     * Como {@link #procesarUbicacion}, para quien no confirma offsets (carga en proceso, benchmarks): una
+     * ubicación que queda retenida no crea el future que esperaría su liberación. Así una ubicación que
+     * no está cerca de ninguna parada no reserva memoria en todo el camino; esperar la confirmación de
+     * una retenida cuesta un future.
      */
-    public void procesarUbicacion(UbicacionVehiculo ubicacion) {
-        log.debug("📍 Procesando ubicación: {}", ubicacion);
+    public void procesarUbicacionSinConfirmar(UbicacionVehiculo ubicacion) {
+        estadisticas.registrarUbicacion();
+        reordenEventos.ofrecerSinEsperar(ubicacion, destinoEventos);
+    }
+
+    /**
+     * Procesa una ubicación leída de un tópico de reintento sin retenerla en el reorden: sale en el
+     * momento, detrás de las retenidas anteriores de su vehículo.
+     * @return Future que se completa cuando la ubicación se procesó y el broker confirmó sus horarios
+     */
+    public CompletableFuture<Void> reprocesarUbicacion(UbicacionVehiculo ubicacion) {
+        return reordenEventos.entregarSinRetener(ubicacion, destinoEventos);
+    }
+
+    /**
+     * Procesa las ubicaciones que siguen retenidas en el buffer de reorden.
+     */
+    public void entregarRetenidas() {
+        reordenEventos.entregarTodas(destinoEventos);
+    }
+
+    @Override
+    public void destroy() {
+        entregarRetenidas();
+    }
+
+    /**
+     * Procesa una ubicación de vehículo, ya en orden de evento, para determinar si genera un evento de horario.
+     *
+     * Una ubicación que no está cerca de ninguna parada no reserva memoria: la búsqueda trabaja
+     * sobre arreglos primitivos del índice y los logs de depuración se evalúan solo si están activos.
+     * Si llega por {@link #procesarUbicacion} y queda retenida en el reorden, el future que espera su
+     * liberación sí es una asignación; {@link #procesarUbicacionSinConfirmar} no la hace.
+     * @return Future que se completa cuando el broker confirmó el horario derivado
+     *         (inmediatamente si la ubicación no generó ninguno)
+     */
+    private CompletableFuture<Void> procesarEvento(UbicacionVehiculo ubicacion) {
+        if (log.isDebugEnabled()) {
+            log.debug("📍 Procesando ubicación: {}", ubicacion);
+        }
+
+        // Toda la ubicación se resuelve con la misma versión del catálogo aunque haya una recarga en curso
+        SnapshotCatalogo catalogo = catalogoParadas.snapshot();
+        IndiceParadas indiceParadas = catalogo.getIndice();
+
+        // Velocidad suavizada sobre las últimas posiciones del vehículo (O(1) por ubicación); la usan
+        // las predicciones y la posición anterior, la detección por tramo: sin ellas no se sigue al vehículo
+        double velocidadKmh = prediccion.habilitada() || trayectoriaHabilitada
+                ? seguimiento.actualizar(ubicacion.getVehiculoId(), ubicacion.getLatitud(), ubicacion.getLongitud(),
+                        instanteMs(ubicacion.getTimestamp()))
+                : Double.NaN;
+
+        // Llegadas a paradas que quedaron entre la ubicación anterior y esta; se publican antes que lo
+        // que resulte de la ubicación actual
+        CompletableFuture<Void> cruce = trayectoriaHabilitada ? publicarCruces(catalogo, ubicacion) : SIN_PUBLICACION;
 
         // Buscar parada más cercana
-        Optional<ParadaCercana> paradaCercanaOpt = encontrarParadaMasCercana(ubicacion);
+        long inicio = metricas.inicio();
+        int indiceParada = encontrarParadaMasCercana(indiceParadas, ubicacion);
+        metricas.registrarBusquedaParada(inicio, indiceParada != IndiceParadas.SIN_PARADA);
 
-        if (paradaCercanaOpt.isPresent()) {
-            ParadaCercana paradaCercana = paradaCercanaOpt.get();
-            Parada parada = paradaCercana.getParada();
-            double distanciaKm = paradaCercana.getDistanciaKm();
+        if (indiceParada != IndiceParadas.SIN_PARADA) {
+            Parada parada = indiceParadas.parada(indiceParada);
+            double distanciaKm = indiceParadas.distanciaKm(
+                    indiceParada, ubicacion.getLatitud(), ubicacion.getLongitud());
 
-            log.info("🎯 Vehículo {} cerca de {} - Distancia: {:.3f} km", 
+            auditoria.info(CategoriaAuditoria.PROXIMIDAD, "🎯 Vehículo {} cerca de {} - Distancia: {} km",
                     ubicacion.getVehiculoId(), parada.getNombre(), distanciaKm);
 
-            // Generar horario basado en la distancia
-            HorarioVehiculo horario = generarHorario(ubicacion, parada, distanciaKm);
+            MaquinaEstadosParada.Transicion transicion = maquinaEstados.observar(ubicacion.getVehiculoId(),
+                    parada.getParadaId(), parada.getLatitud(), parada.getLongitud(), distanciaKm, ubicacion.getVelocidad(),
+                    instanteMs(ubicacion.getTimestamp()));
+            CompletableFuture<Void> confirmacion = combinar(cruce, publicarPasada(catalogo, ubicacion, transicion));
+
+            // Se publica al cambiar de estado y, sin cambios, cada intervalo de republicación
+            EstadoParada estado = transicion.getEstado();
+            boolean republicar = estado != null && estadoVehiculos.debePublicar(ubicacion.getVehiculoId(),
+                    parada.getParadaId(), estado, instanteMs(ubicacion.getTimestamp()));
+            if (estado != null && (transicion.isCambio() || republicar)) {
+                inicio = metricas.inicio();
+                HorarioVehiculo horario = generarHorario(
+                        ubicacion, parada, indiceParadas.secuencia(indiceParada), estado);
+                metricas.registrarGeneracionHorario(inicio);
+                confirmacion = combinar(confirmacion, publicarHorario(horario));
+                estadisticas.registrarHorario(ubicacion, horario);
+                if (transicion.isCambio() && estado == EstadoParada.LLEGADO) {
+                    registrarLlegada(horario);
+                }
+            } else {
+                metricas.registrarDuplicadoSuprimido();
+            }
 
-            // Verificar si debemos publicar este horario (evitar duplicados)
-            if (debePublicarHorario(horario)) {
-                publicarHorario(horario);
+            if (prediccion.habilitada()) {
+                confirmacion = publicarPredicciones(catalogo, ubicacion, indiceParada, velocidadKmh, confirmacion);
             }
-        } else {
+            return confirmacion;
+        }
+
+        if (log.isDebugEnabled()) {
             log.debug("ℹ️  Vehículo {} no está cerca de ninguna parada", ubicacion.getVehiculoId());
         }
+        return combinar(cruce, publicarPasada(catalogo, ubicacion, maquinaEstados.observarSinParada(
+                ubicacion.getVehiculoId(), ubicacion.getLatitud(), ubicacion.getLongitud())));
     }
 
     /**
-     * Encuentra la parada más cercana al vehículo usando la fórmula de Haversine.
+     * Busca las paradas por cuya zona de LLEGADO pasó el vehículo entre la ubicación anterior y esta sin
+     * que ninguna de las dos cayera adentro, en el orden en que las cruzó. Cada llegada se publica con la
+     * posición y el instante interpolados en el punto del tramo más cercano a la parada. Si ese punto es
+     * uno de los extremos, la ubicación correspondiente ya la detecta (o la detectó) por proximidad.
      */
-    private Optional<ParadaCercana> encontrarParadaMasCercana(UbicacionVehiculo ubicacion) {
-        ParadaCercana paradaMasCercana = null;
-        double distanciaMinima = Double.MAX_VALUE;
-
-        for (Parada parada : paradasPredefinidas) {
-            double distancia = calcularDistanciaHaversine(
-                    ubicacion.getLatitud(),
-                    ubicacion.getLongitud(),
-                    parada.getLatitud(),
-                    parada.getLongitud()
-            );
-
-            if (distancia < distanciaMinima && distancia <= distanciaUmbralKm) {
-                distanciaMinima = distancia;
-                paradaMasCercana = new ParadaCercana(parada, distancia);
+    private CompletableFuture<Void> publicarCruces(SnapshotCatalogo catalogo, UbicacionVehiculo ubicacion) {
+        long instante = instanteMs(ubicacion.getTimestamp());
+        SeguimientoVehiculos.PosicionAnterior anterior = seguimiento.anterior(ubicacion.getVehiculoId(), instante);
+        if (anterior == null) {
+            return SIN_PUBLICACION;
+        }
+        IndiceParadas indiceParadas = catalogo.getIndice();
+        double latitud = anterior.latitud();
+        double longitud = anterior.longitud();
+        long desdeMs = anterior.instanteMs();
+        int ultimoCruce = IndiceParadas.SIN_PARADA;
+        CompletableFuture<Void> confirmacion = SIN_PUBLICACION;
+        for (int k = 0; k < MAX_CRUCES_POR_TRAMO; k++) {
+            int indiceCruce = indiceParadas.buscarIndiceCruce(latitud, longitud,
+                    ubicacion.getLatitud(), ubicacion.getLongitud(), maquinaEstados.getLlegadoKm());
+            // La misma parada otra vez solo puede ser redondeo en el punto de paso anterior
+            if (indiceCruce == IndiceParadas.SIN_PARADA || indiceCruce == ultimoCruce) {
+                break;
             }
+            double fraccion = indiceParadas.fraccionCruce(indiceCruce, latitud, longitud,
+                    ubicacion.getLatitud(), ubicacion.getLongitud());
+            latitud += (ubicacion.getLatitud() - latitud) * fraccion;
+            longitud += (ubicacion.getLongitud() - longitud) * fraccion;
+            desdeMs += Math.round((instante - desdeMs) * fraccion);
+            confirmacion = combinar(confirmacion, publicarCruce(catalogo, indiceCruce,
+                    enPunto(ubicacion, latitud, longitud, desdeMs)));
+            ultimoCruce = indiceCruce;
+        }
+        return confirmacion;
+    }
+
+    private CompletableFuture<Void> publicarCruce(SnapshotCatalogo catalogo, int indiceCruce, UbicacionVehiculo enCruce) {
+        IndiceParadas indiceParadas = catalogo.getIndice();
+        Parada parada = indiceParadas.parada(indiceCruce);
+        long instanteCruce = instanteMs(enCruce.getTimestamp());
+        MaquinaEstadosParada.Transicion transicion = maquinaEstados.observarCruce(enCruce.getVehiculoId(),
+                parada.getParadaId(), parada.getLatitud(), parada.getLongitud(), instanteCruce);
+        if (!transicion.isCambio()) {
+            return SIN_PUBLICACION;
+        }
+        auditoria.info(CategoriaAuditoria.PROXIMIDAD, "🎯 Vehículo {} pasó por {} entre dos ubicaciones a las {}",
+                enCruce.getVehiculoId(), parada.getNombre(), enCruce.getTimestamp());
+
+        CompletableFuture<Void> confirmacion = publicarPasada(catalogo, enCruce, transicion);
+        estadoVehiculos.debePublicar(enCruce.getVehiculoId(), parada.getParadaId(), EstadoParada.LLEGADO,
+                instanteCruce);
+        HorarioVehiculo horario = generarHorario(
+                enCruce, parada, indiceParadas.secuencia(indiceCruce), EstadoParada.LLEGADO);
+        confirmacion = combinar(confirmacion, publicarHorario(horario));
+        estadisticas.registrarHorario(enCruce, horario);
+        registrarLlegada(horario);
+        return confirmacion;
+    }
+
+    /**
+     * Copia de la ubicación en otro punto e instante del tramo que termina en ella.
+     */
+    private static UbicacionVehiculo enPunto(UbicacionVehiculo ubicacion, double latitud, double longitud,
+                                             long instanteMs) {
+        return UbicacionVehiculo.builder()
+                .vehiculoId(ubicacion.getVehiculoId())
+                .placaVehiculo(ubicacion.getPlacaVehiculo())
+                .latitud(latitud)
+                .longitud(longitud)
+                .velocidad(ubicacion.getVelocidad())
+                .direccion(ubicacion.getDireccion())
+                .ciudad(ubicacion.getCiudad())
+                .estado(ubicacion.getEstado())
+                .timestamp(LocalDateTime.ofEpochSecond(Math.floorDiv(instanteMs, 1000),
+                        (int) Math.floorMod(instanteMs, 1000) * 1_000_000, ZoneOffset.UTC))
+                .conductor(ubicacion.getConductor())
+                .pasajeros(ubicacion.getPasajeros())
+                .ruta(ubicacion.getRuta())
+                .build();
+    }
+
+    /**
+     * Resuelve una ubicación anterior a la última procesada del vehículo según la política de tardías.
+     * Con {@code corregir} no se procesa: si el vehículo ya figura LLEGADO a la parada cercana y esta
+     * ubicación lo muestra allí antes, se republica la llegada con el instante corregido.
+     */
+    private CompletableFuture<Void> procesarTardia(UbicacionVehiculo ubicacion, long ultimaEntregadaMs) {
+        switch (ReordenEventos.PoliticaTardios.desde(politicaTardios)) {
+            case TOPICO:
+                return publicadorTardias.publicar(ubicacion, ultimaEntregadaMs);
+            case CORREGIR:
+                return corregirLlegada(ubicacion);
+            default:
+                if (log.isDebugEnabled()) {
+                    log.debug("⏪ Ubicación tardía de {} descartada: {} anterior a la última procesada",
+                            ubicacion.getVehiculoId(), ubicacion.getTimestamp());
+                }
+                return SIN_PUBLICACION;
+        }
+    }
+
+    private CompletableFuture<Void> corregirLlegada(UbicacionVehiculo ubicacion) {
+        SnapshotCatalogo catalogo = catalogoParadas.snapshot();
+        IndiceParadas indiceParadas = catalogo.getIndice();
+        int indiceParada = encontrarParadaMasCercana(indiceParadas, ubicacion);
+        if (indiceParada == IndiceParadas.SIN_PARADA) {
+            return SIN_PUBLICACION;
+        }
+        Parada parada = indiceParadas.parada(indiceParada);
+        double distanciaKm = indiceParadas.distanciaKm(indiceParada, ubicacion.getLatitud(), ubicacion.getLongitud());
+        if (maquinaEstados.clasificar(distanciaKm, ubicacion.getVelocidad()) != EstadoParada.LLEGADO
+                || !maquinaEstados.corregirLlegada(ubicacion.getVehiculoId(), parada.getParadaId(),
+                        instanteMs(ubicacion.getTimestamp()))) {
+            return SIN_PUBLICACION;
         }
+        HorarioVehiculo horario = generarHorario(
+                ubicacion, parada, indiceParadas.secuencia(indiceParada), EstadoParada.LLEGADO);
+        CompletableFuture<Void> confirmacion = publicarHorario(horario);
+        estadisticas.registrarHorario(ubicacion, horario);
+        return confirmacion;
+    }
 
-        return Optional.ofNullable(paradaMasCercana);
+    /**
+     * Publica como PASADO la parada que el vehículo dejó atrás según la transición, si la hay.
+     * Si una recarga quitó la parada del catálogo se publica solo con su ID.
+     */
+    private CompletableFuture<Void> publicarPasada(SnapshotCatalogo catalogo, UbicacionVehiculo ubicacion,
+                                                   MaquinaEstadosParada.Transicion transicion) {
+        String paradaId = transicion.getParadaPasada();
+        if (paradaId == null) {
+            return SIN_PUBLICACION;
+        }
+        int posicion = catalogo.posicion(paradaId);
+        Parada parada = posicion != IndiceParadas.SIN_PARADA
+                ? catalogo.getIndice().parada(posicion)
+                : Parada.builder().paradaId(paradaId).build();
+        int secuencia = posicion != IndiceParadas.SIN_PARADA ? catalogo.getIndice().secuencia(posicion) : 0;
+
+        HorarioVehiculo horario = generarHorario(ubicacion, parada, secuencia, EstadoParada.PASADO);
+        // Queda registrado para que la republicación del estado anterior no lo siga enviando
+        estadoVehiculos.debePublicar(ubicacion.getVehiculoId(), paradaId, EstadoParada.PASADO,
+                instanteMs(ubicacion.getTimestamp()));
+        CompletableFuture<Void> confirmacion = publicarHorario(horario);
+        estadisticas.registrarHorario(ubicacion, horario);
+        return confirmacion;
     }
 
     /**
-     * Calcula la distancia entre dos puntos GPS usando la fórmula de Haversine.
-     * @return Distancia en kilómetros
+     * Cuenta una llegada nueva en los KPIs; las republicaciones y correcciones no son llegadas nuevas.
      */
-    private double calcularDistanciaHaversine(double lat1, double lon1, double lat2, double lon2) {
-        final int RADIO_TIERRA_KM = 6371;
+    private void registrarLlegada(HorarioVehiculo horario) {
+        if (kpisHabilitados) {
+            agregadorKpis.registrarLlegada(horario.getRuta(), horario.getParadaId(), horario.getVehiculoId(),
+                    horario.getRetrasoMinutos(), instanteMs(horario.getTimestamp()));
+        }
+    }
 
-        double latDistancia = Math.toRadians(lat2 - lat1);
-        double lonDistancia = Math.toRadians(lon2 - lon1);
+    private static CompletableFuture<Void> combinar(CompletableFuture<Void> a, CompletableFuture<Void> b) {
+        if (a == SIN_PUBLICACION) {
+            return b;
+        }
+        return b == SIN_PUBLICACION ? a : CompletableFuture.allOf(a, b);
+    }
 
-        double a = Math.sin(latDistancia / 2) * Math.sin(latDistancia / 2)
-                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
-                * Math.sin(lonDistancia / 2) * Math.sin(lonDistancia / 2);
+    /**
+     * Publica como ESTIMADO la llegada prevista a las siguientes paradas de la ruta, a partir de la
+     * velocidad y el rumbo suavizados del vehículo. Cada predicción pasa por la deduplicación como
+     * cualquier horario, de modo que un vehículo detenido junto a una parada no la repite en cada ubicación.
+     * @return Future que combina la confirmación recibida con la de las predicciones publicadas
+     */
+    private CompletableFuture<Void> publicarPredicciones(SnapshotCatalogo catalogo, UbicacionVehiculo ubicacion,
+                                                         int indiceParada, double velocidadKmh,
+                                                         CompletableFuture<Void> confirmacion) {
+        List<PrediccionLlegadas.LlegadaPredicha> llegadas = prediccion.predecir(catalogo, ubicacion.getRuta(),
+                indiceParada, ubicacion.getLatitud(), ubicacion.getLongitud(), velocidadKmh,
+                seguimiento.rumbo(ubicacion.getVehiculoId()));
+        if (llegadas.isEmpty()) {
+            return confirmacion;
+        }
 
-        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+        List<CompletableFuture<Void>> confirmaciones = new ArrayList<>(llegadas.size() + 1);
+        if (confirmacion != SIN_PUBLICACION) {
+            confirmaciones.add(confirmacion);
+        }
+        IndiceParadas indiceParadas = catalogo.getIndice();
+        for (PrediccionLlegadas.LlegadaPredicha llegada : llegadas) {
+            HorarioVehiculo horario = generarPrediccion(ubicacion, indiceParadas.parada(llegada.getPosicion()),
+                    indiceParadas.secuencia(llegada.getPosicion()), llegada.getSegundos());
+            if (debePublicarHorario(horario, EstadoParada.ESTIMADO)) {
+                confirmaciones.add(publicarHorario(horario));
+                estadisticas.registrarHorario(ubicacion, horario);
+            } else {
+                metricas.registrarDuplicadoSuprimido();
+            }
+        }
+        if (confirmaciones.isEmpty()) {
+            return SIN_PUBLICACION;
+        }
+        return confirmaciones.size() == 1 ? confirmaciones.get(0)
+                : CompletableFuture.allOf(confirmaciones.toArray(new CompletableFuture[0]));
+    }
 
-        return RADIO_TIERRA_KM * c;
+    /**
+     * Procesa un lote de ubicaciones. Los errores se manejan por registro:
+     * una ubicación que falla se registra y no impide procesar el resto del lote.
+     *
+     * Con carriles habilitados el lote se reparte por vehículo entre los carriles y se espera
+     * a que todos terminen; cada vehículo conserva el orden de sus ubicaciones dentro del lote.
+     * @return Cantidad de ubicaciones procesadas y future de confirmación de sus horarios
+     */
+    public ResultadoLote procesarUbicaciones(List<UbicacionVehiculo> ubicaciones) {
+        return procesarUbicaciones(ubicaciones, null);
     }
 
     /**
-     * Genera un objeto HorarioVehiculo basado en la ubicación y parada.
+     * Como {@link #procesarUbicaciones(List)}, pero cada ubicación que falla (al procesarse o al confirmar
+     * sus horarios) se entrega a {@code alFallar}; la confirmación del lote espera también a esos futures.
+     * @param alFallar deriva la ubicación fallida (p. ej. a un tópico de reintento); null = solo registrarla
      */
-    private HorarioVehiculo generarHorario(UbicacionVehiculo ubicacion, Parada parada, double distanciaKm) {
-        LocalDateTime ahora = LocalDateTime.now();
-        LocalTime horaActual = ahora.toLocalTime();
+    public ResultadoLote procesarUbicaciones(List<UbicacionVehiculo> ubicaciones,
+                                             BiFunction<UbicacionVehiculo, Throwable, CompletableFuture<Void>> alFallar) {
+        if (!carriles.habilitado() || ubicaciones.size() < 2) {
+            return procesarEnOrden(ubicaciones, alFallar);
+        }
 
-        // Determinar el estado basado en la distancia y velocidad
-        String estado = determinarEstado(distanciaKm, ubicacion.getVelocidad());
+        List<List<UbicacionVehiculo>> porCarril = new ArrayList<>(carriles.cantidad());
+        for (int i = 0; i < carriles.cantidad(); i++) {
+            porCarril.add(new ArrayList<>());
+        }
+        for (UbicacionVehiculo ubicacion : ubicaciones) {
+            porCarril.get(carriles.carrilDe(ubicacion.getVehiculoId())).add(ubicacion);
+        }
 
-        // Calcular horario estimado (simulado - en producción vendría de una tabla de horarios)
-        LocalTime horarioEstimado = calcularHorarioEstimado(ubicacion, parada);
+        List<Future<ResultadoLote>> pendientes = new ArrayList<>(carriles.cantidad());
+        for (int i = 0; i < porCarril.size(); i++) {
+            List<UbicacionVehiculo> lote = porCarril.get(i);
+            if (!lote.isEmpty()) {
+                pendientes.add(carriles.enviar(i, () -> procesarEnOrden(lote, alFallar)));
+            }
+        }
 
-        // El horario real es la hora actual
-        LocalTime horarioReal = horaActual;
+        int procesadas = 0;
+        List<CompletableFuture<Void>> confirmaciones = new ArrayList<>(pendientes.size());
+        try {
+            for (Future<ResultadoLote> pendiente : pendientes) {
+                ResultadoLote parcial = pendiente.get();
+                procesadas += parcial.getProcesadas();
+                confirmaciones.add(parcial.getConfirmacion());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrumpido esperando a los carriles de procesamiento", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Error en un carril de procesamiento", e.getCause());
+        }
+        return new ResultadoLote(procesadas, CompletableFuture.allOf(confirmaciones.toArray(new CompletableFuture[0])));
+    }
 
-        // Calcular retraso en minutos
-        int retrasoMinutos = calcularRetraso(horarioEstimado, horarioReal);
+    private ResultadoLote procesarEnOrden(List<UbicacionVehiculo> ubicaciones,
+                                          BiFunction<UbicacionVehiculo, Throwable, CompletableFuture<Void>> alFallar) {
+        int procesadas = 0;
+        List<CompletableFuture<Void>> confirmaciones = new ArrayList<>();
+        for (UbicacionVehiculo ubicacion : ubicaciones) {
+            try {
+                CompletableFuture<Void> confirmacion = procesarUbicacion(ubicacion);
+                if (confirmacion != SIN_PUBLICACION) {
+                    confirmaciones.add(alFallar == null ? confirmacion
+                            : confirmacion.exceptionallyCompose(error -> alFallar.apply(ubicacion, error)));
+                }
+                procesadas++;
+            } catch (Exception e) {
+                log.error("❌ Error al procesar ubicación del vehículo {}: {}",
+                        ubicacion.getVehiculoId(), e.getMessage(), e);
+                if (alFallar != null) {
+                    confirmaciones.add(alFallar.apply(ubicacion, e));
+                }
+            }
+        }
+        return new ResultadoLote(procesadas, CompletableFuture.allOf(confirmaciones.toArray(new CompletableFuture[0])));
+    }
 
-        // Obtener secuencia de parada (simulado)
-        int secuenciaParada = obtenerSecuenciaParada(parada.getParadaId());
+    /**
+     * Encuentra la parada más cercana al vehículo dentro del umbral usando el índice espacial.
+     * @return Posición de la parada en el índice, o {@link IndiceParadas#SIN_PARADA}
+     */
+    int encontrarParadaMasCercana(IndiceParadas indiceParadas, UbicacionVehiculo ubicacion) {
+        return indiceParadas.buscarIndiceMasCercano(
+                ubicacion.getLatitud(),
+                ubicacion.getLongitud(),
+                distanciaUmbralKm
+        );
+    }
+
+    /**
+     * Genera un objeto HorarioVehiculo basado en la ubicación y parada.
+     *
+     * El horario real es el instante en que se observó al vehículo ({@code timestamp} de la ubicación).
+     * Con tabla de horarios, el estimado es la pasada programada de la ruta por la parada más cercana
+     * a ese instante y el retraso es la diferencia entre ambos; si la tabla no tiene el par ruta-parada,
+     * estimado y retraso quedan vacíos. Sin tabla configurada se mantiene la simulación por secuencia.
+     * El estado lo decide {@link MaquinaEstadosParada}.
+     */
+    HorarioVehiculo generarHorario(UbicacionVehiculo ubicacion, Parada parada, int secuenciaParada, EstadoParada estado) {
+        LocalDateTime observada = instanteEvento(ubicacion);
+        LocalTime horarioReal = observada.toLocalTime();
+
+        LocalTime horarioEstimado = null;
+        Integer retrasoMinutos = null;
+        if (tablaHorarios.estaVacia()) {
+            // Sin tabla de horarios: simulación según la secuencia
+            horarioEstimado = calcularHorarioEstimado(horarioReal, secuenciaParada);
+            retrasoMinutos = calcularRetraso(horarioEstimado, horarioReal);
+        } else {
+            int segundoReal = horarioReal.toSecondOfDay();
+            int pasada = tablaHorarios.buscarMasCercano(ubicacion.getRuta(), parada.getParadaId(), segundoReal);
+            if (pasada != TablaHorarios.SIN_HORARIO) {
+                horarioEstimado = LocalTime.ofSecondOfDay(tablaHorarios.segundos(pasada));
+                retrasoMinutos = Math.round(
+                        TablaHorarios.diferenciaSegundos(segundoReal, tablaHorarios.segundos(pasada)) / 60f);
+                secuenciaParada = tablaHorarios.secuencia(pasada);
+            }
+        }
 
         return HorarioVehiculo.builder()
                 .vehiculoId(ubicacion.getVehiculoId())
@@ -144,39 +583,55 @@ public class ProcesamientoSenialesService {
                 .horarioEstimado(horarioEstimado)
                 .horarioReal(horarioReal)
                 .retrasoMinutos(retrasoMinutos)
-                .timestamp(ahora)
+                .timestamp(observada)
                 .ruta(ubicacion.getRuta())
                 .secuenciaParada(secuenciaParada)
-                .estado(estado)
+                .estado(estado.name())
                 .build();
     }
 
     /**
-     * Determina el estado del vehículo respecto a la parada.
+     * Genera el horario ESTIMADO de una llegada prevista: el horario estimado es el instante observado
+     * más el tiempo de viaje previsto, y con tabla de horarios el retraso es el previsto frente a la
+     * pasada programada más cercana. No tiene horario real porque el vehículo todavía no llegó.
      */
-    private String determinarEstado(double distanciaKm, double velocidad) {
-        if (distanciaKm < 0.05) { // Menos de 50 metros
-            return "LLEGADO";
-        } else if (distanciaKm < 0.2 && velocidad < 10) { // Menos de 200m y velocidad baja
-            return "LLEGANDO";
-        } else if (distanciaKm <= distanciaUmbralKm) {
-            return "ESTIMADO";
-        } else {
-            return "PASADO";
+    HorarioVehiculo generarPrediccion(UbicacionVehiculo ubicacion, Parada parada, int secuenciaParada, long segundosViaje) {
+        LocalDateTime observada = instanteEvento(ubicacion);
+        LocalTime llegadaPrevista = observada.toLocalTime().plusSeconds(segundosViaje);
+
+        Integer retrasoMinutos = null;
+        if (!tablaHorarios.estaVacia()) {
+            int segundoPrevisto = llegadaPrevista.toSecondOfDay();
+            int pasada = tablaHorarios.buscarMasCercano(ubicacion.getRuta(), parada.getParadaId(), segundoPrevisto);
+            if (pasada != TablaHorarios.SIN_HORARIO) {
+                retrasoMinutos = Math.round(
+                        TablaHorarios.diferenciaSegundos(segundoPrevisto, tablaHorarios.segundos(pasada)) / 60f);
+                secuenciaParada = tablaHorarios.secuencia(pasada);
+            }
         }
+
+        return HorarioVehiculo.builder()
+                .vehiculoId(ubicacion.getVehiculoId())
+                .placaVehiculo(ubicacion.getPlacaVehiculo())
+                .paradaId(parada.getParadaId())
+                .nombreParada(parada.getNombre())
+                .direccionParada(parada.getDireccion())
+                .horarioEstimado(llegadaPrevista)
+                .retrasoMinutos(retrasoMinutos)
+                .timestamp(observada)
+                .ruta(ubicacion.getRuta())
+                .secuenciaParada(secuenciaParada)
+                .estado(EstadoParada.ESTIMADO.name())
+                .build();
     }
 
     /**
-     * Calcula el horario estimado de llegada (simulado).
-     * En producción, esto vendría de una tabla de horarios predefinidos.
+     * Calcula el horario estimado de llegada (simulado) cuando no hay tabla de horarios
+     * ({@code procesador.horarios.stop-times}).
      */
-    private LocalTime calcularHorarioEstimado(UbicacionVehiculo ubicacion, Parada parada) {
-        // Simulación: basado en la hora actual más/menos algunos minutos según la secuencia
-        LocalTime ahora = LocalTime.now();
-        int secuencia = obtenerSecuenciaParada(parada.getParadaId());
-        
-        // Ajustar según la secuencia (simulación simple)
-        return ahora.plusMinutes(secuencia * 5L);
+    private LocalTime calcularHorarioEstimado(LocalTime horarioReal, int secuencia) {
+        // Simulación: basado en la hora observada más algunos minutos según la secuencia
+        return horarioReal.plusMinutes(secuencia * 5L);
     }
 
     /**
@@ -187,91 +642,58 @@ public class ProcesamientoSenialesService {
     }
 
     /**
-     * Obtiene la secuencia de la parada en la ruta (simulado).
+     * Verifica si se debe publicar el horario para evitar duplicados.
+     *
+     * @param estado el del horario, que en el mensaje viaja como texto
      */
-    private int obtenerSecuenciaParada(String paradaId) {
-        // Extrae el número del ID (P001 -> 1, P002 -> 2, etc.)
-        return Integer.parseInt(paradaId.substring(1));
+    boolean debePublicarHorario(HorarioVehiculo horario, EstadoParada estado) {
+        return estadoVehiculos.debePublicar(
+                horario.getVehiculoId(),
+                horario.getParadaId(),
+                estado,
+                instanteMs(horario.getTimestamp())
+        );
     }
 
     /**
-     * Verifica si se debe publicar el horario para evitar duplicados.
+     * Tiempo de evento de la ubicación; la hora actual solo si no trae timestamp.
      */
-    private boolean debePublicarHorario(HorarioVehiculo horario) {
-        String clave = horario.getVehiculoId() + "-" + horario.getParadaId();
-        HorarioVehiculo ultimoHorario = estadoVehiculos.get(clave);
-
-        // Si no hay registro previo, publicar
-        if (ultimoHorario == null) {
-            estadoVehiculos.put(clave, horario);
-            return true;
-        }
-
-        // Si el estado cambió, publicar
-        if (!ultimoHorario.getEstado().equals(horario.getEstado())) {
-            estadoVehiculos.put(clave, horario);
-            return true;
-        }
-
-        // Si pasó más de 1 minuto desde la última actualización, publicar
-        long minutosDiferencia = ChronoUnit.MINUTES.between(
-                ultimoHorario.getTimestamp(),
-                horario.getTimestamp()
-        );
-
-        if (minutosDiferencia >= 1) {
-            estadoVehiculos.put(clave, horario);
-            return true;
-        }
+    private static LocalDateTime instanteEvento(UbicacionVehiculo ubicacion) {
+        return ubicacion.getTimestamp() != null ? ubicacion.getTimestamp() : LocalDateTime.now();
+    }
 
-        return false;
+    /**
+     * Instante en milisegundos de una fecha local (la actual si es null). Solo importan las
+     * diferencias entre instantes, por eso basta con una escala fija.
+     */
+    private static long instanteMs(LocalDateTime fecha) {
+        return ReordenEventos.instanteMs(fecha != null ? fecha : LocalDateTime.now());
     }
 
     /**
      * Publica el horario al tópico de Kafka.
+     * @return Future que se completa cuando el broker confirma el horario
      */
-    private void publicarHorario(HorarioVehiculo horario) {
+    private CompletableFuture<Void> publicarHorario(HorarioVehiculo horario) {
         try {
-            kafkaTemplate.send("horarios", horario.getVehiculoId(), horario);
+            CompletableFuture<Void> confirmacion = publicadorHorarios.publicar(horario);
+            metricas.registrarHorarioPublicado(horario.getEstado());
+            vistaLlegadas.actualizar(horario);
             
-            log.info("✅ HORARIO PUBLICADO → Tópico: horarios | Vehículo: {} | Parada: {} | Estado: {} | Retraso: {} min",
+            auditoria.info(CategoriaAuditoria.PUBLICACION,
+                    "✅ HORARIO PUBLICADO → Tópico: horarios | Vehículo: {} | Parada: {} | Estado: {} | Retraso: {} min",
                     horario.getVehiculoId(),
                     horario.getNombreParada(),
                     horario.getEstado(),
                     horario.getRetrasoMinutos());
             
-            // Log adicional en archivo para cuando no haya BD
-            log.info("📝 [LOG BD PENDIENTE] HORARIO - vehiculoId: {}, paradaId: {}, estado: {}, horarioEstimado: {}, horarioReal: {}, retraso: {} min",
-                    horario.getVehiculoId(),
-                    horario.getParadaId(),
-                    horario.getEstado(),
-                    horario.getHorarioEstimado(),
-                    horario.getHorarioReal(),
-                    horario.getRetrasoMinutos());
+            // Registro adicional para cuando no haya BD
+            auditoria.horarioPendiente(horario);
             
+            return confirmacion;
         } catch (Exception e) {
             log.error("❌ Error al publicar horario: {}", e.getMessage(), e);
-        }
-    }
-
-    /**
-     * Clase interna para almacenar información de parada cercana.
-     */
-    private static class ParadaCercana {
-        private final Parada parada;
-        private final double distanciaKm;
-
-        public ParadaCercana(Parada parada, double distanciaKm) {
-            this.parada = parada;
-            this.distanciaKm = distanciaKm;
-        }
-
-        public Parada getParada() {
-            return parada;
-        }
-
-        public double getDistanciaKm() {
-            return distanciaKm;
+            return CompletableFuture.failedFuture(e);
         }
     }
 }
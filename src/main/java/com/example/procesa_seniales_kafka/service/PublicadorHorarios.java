@@ -0,0 +1,110 @@
+package com.example.procesa_seniales_kafka.service;
+
+import com.example.procesa_seniales_kafka.metricas.MetricasProcesamiento;
+import com.example.procesa_seniales_kafka.model.HorarioVehiculo;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pipeline de salida hacia el tópico 'horarios'.
+ *
+ * Cada envío ocupa un permiso de una ventana acotada de mensajes en vuelo; cuando la ventana
+ * está llena, {@link #publicar} bloquea al hilo que procesa ubicaciones, lo que frena el consumo
+ * hasta que el broker confirme envíos anteriores. El future devuelto se completa cuando el broker
+ * confirma el horario, y es lo que usan los consumers para decidir cuándo confirmar offsets.
+ */
+@Slf4j
+@Component
+public class PublicadorHorarios {
+
+    private static final String TOPICO_HORARIOS = "horarios";
+
+    @Autowired
+    private KafkaTemplate<String, HorarioVehiculo> kafkaTemplate;
+
+    @Autowired
+    private ExecutorService ejecutorPublicacion;
+
+    @Autowired
+    private MetricasProcesamiento metricas;
+
+    private final Semaphore ventanaEnVuelo;
+    private final int maxEnVuelo;
+
+    private final LongAdder enviados = new LongAdder();
+    private final LongAdder confirmados = new LongAdder();
+    private final LongAdder fallidos = new LongAdder();
+
+    public PublicadorHorarios(@Value("${procesador.productor.max-en-vuelo:10000}") int maxEnVuelo) {
+        this.maxEnVuelo = maxEnVuelo;
+        this.ventanaEnVuelo = new Semaphore(maxEnVuelo);
+    }
+
+    /**
+     * Envía el horario de forma asíncrona.
+     * @return Future que se completa cuando el broker confirma el horario, o falla si no pudo entregarse
+     */
+    public CompletableFuture<Void> publicar(HorarioVehiculo horario) {
+        try {
+            ventanaEnVuelo.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.failedFuture(e);
+        }
+
+        enviados.increment();
+        CompletableFuture<Void> confirmacion = new CompletableFuture<>();
+        long inicio = metricas.inicio();
+        try {
+            kafkaTemplate.send(TOPICO_HORARIOS, horario.getVehiculoId(), horario)
+                    .whenCompleteAsync((resultado, error) -> {
+                        ventanaEnVuelo.release();
+                        metricas.registrarConfirmacion(inicio, error == null);
+                        if (error == null) {
+                            confirmados.increment();
+                            confirmacion.complete(null);
+                        } else {
+                            fallidos.increment();
+                            log.error("❌ Error al confirmar horario de {} en parada {}: {}",
+                                    horario.getVehiculoId(), horario.getParadaId(), error.getMessage());
+                            confirmacion.completeExceptionally(error);
+                        }
+                    }, ejecutorPublicacion);
+        } catch (RuntimeException e) {
+            // El envío falló antes de llegar al productor (serialización, metadata, etc.)
+            ventanaEnVuelo.release();
+            fallidos.increment();
+            metricas.registrarConfirmacion(inicio, false);
+            confirmacion.completeExceptionally(e);
+        }
+        return confirmacion;
+    }
+
+    public long getEnviados() {
+        return enviados.sum();
+    }
+
+    public long getConfirmados() {
+        return confirmados.sum();
+    }
+
+    public long getFallidos() {
+        return fallidos.sum();
+    }
+
+    public int getEnVuelo() {
+        return maxEnVuelo - ventanaEnVuelo.availablePermits();
+    }
+
+    public int getMaxEnVuelo() {
+        return maxEnVuelo;
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.procesa_seniales_kafka.service;
+
+import com.example.procesa_seniales_kafka.model.UbicacionVehiculo;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Salida lateral de las ubicaciones tardías (política {@code topico}): se reenvían sin procesar, con
+ * la misma clave y en el formato del tópico de ubicaciones, para que otro proceso las concilie.
+ * El header {@value #HEADER_ULTIMA_ENTREGADA} lleva el instante (epoch ms, UTC) de la última ubicación
+ * que el vehículo ya había procesado.
+ */
+@Slf4j
+@Component
+public class PublicadorTardias {
+
+    public static final String HEADER_ULTIMA_ENTREGADA = "x-ultima-entregada";
+
+    @Autowired
+    private KafkaTemplate<String, UbicacionVehiculo> kafkaTemplateUbicaciones;
+
+    @Value("${procesador.eventos.tardios.topico:ubicaciones_tardias}")
+    private String topico;
+
+    private final LongAdder publicadas = new LongAdder();
+    private final LongAdder fallidas = new LongAdder();
+
+    /**
+     * @return Future que se completa cuando el broker confirma la ubicación, o falla si no pudo entregarse
+     */
+    public CompletableFuture<Void> publicar(UbicacionVehiculo ubicacion, long ultimaEntregadaMs) {
+        ProducerRecord<String, UbicacionVehiculo> registro =
+                new ProducerRecord<>(topico, ubicacion.getVehiculoId(), ubicacion);
+        registro.headers().add(HEADER_ULTIMA_ENTREGADA,
+                Long.toString(ultimaEntregadaMs).getBytes(StandardCharsets.US_ASCII));
+        return kafkaTemplateUbicaciones.send(registro)
+                .handle((resultado, error) -> {
+                    if (error != null) {
+                        fallidas.increment();
+                        log.error("❌ Error al publicar ubicación tardía de {} en '{}': {}",
+                                ubicacion.getVehiculoId(), topico, error.getMessage());
+                        throw new IllegalStateException(error);
+                    }
+                    publicadas.increment();
+                    return null;
+                });
+    }
+
+    public long getPublicadas() {
+        return publicadas.sum();
+    }
+
+    public long getFallidas() {
+        return fallidas.sum();
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.procesa_seniales_kafka.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Resultado del procesamiento de un lote de ubicaciones.
+ */
+@Getter
+@AllArgsConstructor
+public class ResultadoLote {
+
+    /** Ubicaciones procesadas sin error. */
+    private final int procesadas;
+
+    /** Se completa cuando el broker confirmó todos los horarios publicados por el lote. */
+    private final CompletableFuture<Void> confirmacion;
+}
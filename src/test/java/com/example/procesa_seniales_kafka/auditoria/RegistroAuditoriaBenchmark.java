@@ -0,0 +1,144 @@
+package com.example.procesa_seniales_kafka.auditoria;
+
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.FileAppender;
+import com.example.procesa_seniales_kafka.model.HorarioVehiculo;
+import com.example.procesa_seniales_kafka.model.UbicacionVehiculo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput de las cinco líneas de log que hoy se escriben por cada ubicación que genera un horario,
+ * en modo síncrono y asíncrono y con distintas tasas de muestreo.
+ *
+ * Los logs van a un archivo en target/ (no a la consola) para que la salida de JMH quede legible.
+ * Al terminar cada prueba se imprime cuántas líneas descartó la cola en modo asíncrono.
+ *
+ * Ejecución: {@code mvn -P benchmark verify -Dbenchmark.incluir=RegistroAuditoriaBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Threads(4)
+@Fork(1)
+public class RegistroAuditoriaBenchmark {
+
+    @Param({"sincrono", "asincrono"})
+    private String modo;
+
+    @Param({"1.0", "0.1"})
+    private double tasa;
+
+    private RegistroAuditoria auditoria;
+    private UbicacionVehiculo ubicacion;
+    private HorarioVehiculo horario;
+
+    @Setup(Level.Trial)
+    public void preparar() throws Exception {
+        Path directorio = Files.createDirectories(Path.of("target", "benchmark-auditoria"));
+        redirigirLogsA(directorio.resolve(modo + "-" + tasa + ".log"));
+
+        double[] tasas = new double[CategoriaAuditoria.values().length];
+        Arrays.fill(tasas, tasa);
+        auditoria = new RegistroAuditoria(modo, 65_536, directorio.resolve("bd-pendiente-" + tasa + ".csv"), tasas);
+
+        ubicacion = UbicacionVehiculo.builder()
+                .vehiculoId("VEH-001").placaVehiculo("ABC-001")
+                .latitud(-12.0464).longitud(-77.0428).velocidad(45.5)
+                .estado("EN_RUTA").ciudad("Lima").pasajeros(25)
+                .timestamp(LocalDateTime.of(2026, 2, 24, 10, 30, 15))
+                .build();
+        horario = HorarioVehiculo.builder()
+                .vehiculoId("VEH-001").paradaId("P001").nombreParada("Terminal Norte")
+                .estado("LLEGADO").retrasoMinutos(-3)
+                .horarioEstimado(LocalTime.of(10, 25)).horarioReal(LocalTime.of(10, 28))
+                .timestamp(LocalDateTime.of(2026, 2, 24, 10, 28))
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void liberar() throws InterruptedException {
+        long descartados = 0;
+        long registrados = 0;
+        for (CategoriaAuditoria categoria : CategoriaAuditoria.values()) {
+            descartados += auditoria.getDescartadosPorCola(categoria);
+            registrados += auditoria.getRegistrados(categoria);
+        }
+        auditoria.destroy();
+        System.out.printf("%n[%s, tasa %.1f] líneas escritas: %d, descartadas por cola llena: %d%n",
+                modo, tasa, registrados, descartados);
+    }
+
+    @Benchmark
+    public void lineasPorUbicacion() {
+        auditoria.info(CategoriaAuditoria.RECEPCION,
+                "📨 MENSAJE RECIBIDO → Tópico: ubicaciones_vehiculos | Key: {} | Partition: {} | Offset: {}",
+                ubicacion.getVehiculoId(), 3, 123_456L);
+        auditoria.info(CategoriaAuditoria.UBICACION,
+                "🚗 UBICACIÓN → Vehículo: {} | Placa: {} | Lat: {} | Lon: {} | Velocidad: {} km/h | Estado: {} | Pasajeros: {}",
+                ubicacion.getVehiculoId(), ubicacion.getPlacaVehiculo(), ubicacion.getLatitud(),
+                ubicacion.getLongitud(), ubicacion.getVelocidad(), ubicacion.getEstado(), ubicacion.getPasajeros());
+        auditoria.ubicacionPendiente(ubicacion);
+        auditoria.info(CategoriaAuditoria.PUBLICACION,
+                "✅ HORARIO PUBLICADO → Tópico: horarios | Vehículo: {} | Parada: {} | Estado: {} | Retraso: {} min",
+                horario.getVehiculoId(), horario.getNombreParada(), horario.getEstado(), horario.getRetrasoMinutos());
+        auditoria.horarioPendiente(horario);
+    }
+
+    /**
+     * Reemplaza los appenders del logger raíz por un único archivo, con el patrón de consola de Spring Boot.
+     */
+    private static void redirigirLogsA(Path archivo) {
+        LoggerContext contexto = (LoggerContext) LoggerFactory.getILoggerFactory();
+        ch.qos.logback.classic.Logger raiz = contexto.getLogger(Logger.ROOT_LOGGER_NAME);
+        raiz.detachAndStopAllAppenders();
+        raiz.setLevel(ch.qos.logback.classic.Level.INFO);
+
+        PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+        encoder.setContext(contexto);
+        encoder.setPattern("%d{yyyy-MM-dd'T'HH:mm:ss.SSSXXX} %5level %pid --- [%15.15thread] %-40.40logger{39} : %msg%n");
+        encoder.start();
+
+        FileAppender<ILoggingEvent> appender = new FileAppender<>();
+        appender.setContext(contexto);
+        appender.setFile(archivo.toString());
+        appender.setAppend(false);
+        appender.setEncoder(encoder);
+        appender.start();
+        raiz.addAppender(appender);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(RegistroAuditoriaBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.procesa_seniales_kafka.auditoria;
+
+import com.example.procesa_seniales_kafka.model.HorarioVehiculo;
+import com.example.procesa_seniales_kafka.model.UbicacionVehiculo;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RegistroAuditoriaTest {
+
+    @TempDir
+    Path directorio;
+
+    @Test
+    void enModoAsincronoLosRegistrosBdPendienteVanAlArchivoCsv() throws Exception {
+        Path archivo = directorio.resolve("bd-pendiente.csv");
+        RegistroAuditoria auditoria = new RegistroAuditoria("asincrono", 1024, archivo, tasas(1.0));
+
+        auditoria.ubicacionPendiente(UbicacionVehiculo.builder()
+                .vehiculoId("VEH-001").placaVehiculo("ABC-001")
+                .latitud(-12.0464).longitud(-77.0428).velocidad(45.5)
+                .estado("EN_RUTA").ciudad("Lima, Perú").pasajeros(25)
+                .timestamp(LocalDateTime.of(2026, 2, 24, 10, 30, 15))
+                .build());
+        auditoria.horarioPendiente(HorarioVehiculo.builder()
+                .vehiculoId("VEH-001").paradaId("P001").estado("LLEGADO")
+                .horarioEstimado(LocalTime.of(10, 25)).horarioReal(LocalTime.of(10, 28)).retrasoMinutos(3)
+                .timestamp(LocalDateTime.of(2026, 2, 24, 10, 28))
+                .build());
+        auditoria.destroy();
+
+        List<String> lineas = Files.readAllLines(archivo);
+        assertEquals(List.of(
+                "U,VEH-001,ABC-001,-12.0464,-77.0428,45.5,EN_RUTA,\"Lima, Perú\",25,2026-02-24T10:30:15",
+                "H,VEH-001,P001,LLEGADO,10:25,10:28,3,2026-02-24T10:28"), lineas);
+        assertEquals(2, auditoria.getRegistrados(CategoriaAuditoria.BD_PENDIENTE));
+    }
+
+    @Test
+    void unaTasaDeMuestreoCeroDescartaLaCategoria() throws Exception {
+        double[] tasas = tasas(1.0);
+        tasas[CategoriaAuditoria.RECEPCION.ordinal()] = 0;
+        RegistroAuditoria auditoria = new RegistroAuditoria("asincrono", 1024, directorio.resolve("bd.csv"), tasas);
+
+        for (int i = 0; i < 10; i++) {
+            auditoria.info(CategoriaAuditoria.RECEPCION, "recepción {}", i);
+            auditoria.info(CategoriaAuditoria.PUBLICACION, "publicación {}", i);
+        }
+        auditoria.destroy();
+
+        assertEquals(0, auditoria.getRegistrados(CategoriaAuditoria.RECEPCION));
+        assertEquals(10, auditoria.getDescartadosPorMuestreo(CategoriaAuditoria.RECEPCION));
+        assertEquals(10, auditoria.getRegistrados(CategoriaAuditoria.PUBLICACION));
+    }
+
+    private static double[] tasas(double tasa) {
+        double[] tasas = new double[CategoriaAuditoria.values().length];
+        Arrays.fill(tasas, tasa);
+        return tasas;
+    }
+}
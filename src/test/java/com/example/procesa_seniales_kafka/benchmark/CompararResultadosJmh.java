@@ -0,0 +1,85 @@
+package com.example.procesa_seniales_kafka.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compara dos archivos de resultados JMH en formato JSON (por ejemplo, los de dos commits)
+ * y muestra por benchmark el puntaje, la asignación por operación y la variación relativa.
+ *
+ * Ejecución: {@code java -cp <classpath de test> com.example.procesa_seniales_kafka.benchmark.CompararResultadosJmh base.json actual.json}
+ */
+public class CompararResultadosJmh {
+
+    private static final String ASIGNACION_POR_OPERACION = "gc.alloc.rate.norm";
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Uso: CompararResultadosJmh <base.json> <actual.json>");
+            System.exit(2);
+        }
+
+        Map<String, JsonNode> base = leer(new File(args[0]));
+        Map<String, JsonNode> actual = leer(new File(args[1]));
+
+        System.out.printf("%-100s %14s %14s %9s %12s %12s%n",
+                "benchmark", "base", "actual", "Δ %", "B/op base", "B/op actual");
+        for (Map.Entry<String, JsonNode> entrada : actual.entrySet()) {
+            JsonNode resultadoActual = entrada.getValue();
+            JsonNode resultadoBase = base.get(entrada.getKey());
+
+            double puntajeActual = resultadoActual.path("primaryMetric").path("score").asDouble();
+            String unidad = resultadoActual.path("primaryMetric").path("scoreUnit").asText();
+            if (resultadoBase == null) {
+                System.out.printf("%-100s %14s %14.3f %9s %12s %12.1f  %s%n",
+                        entrada.getKey(), "-", puntajeActual, "nuevo", "-", asignacion(resultadoActual), unidad);
+                continue;
+            }
+
+            double puntajeBase = resultadoBase.path("primaryMetric").path("score").asDouble();
+            double variacion = puntajeBase == 0 ? 0 : (puntajeActual - puntajeBase) / puntajeBase * 100;
+            System.out.printf("%-100s %14.3f %14.3f %+9.1f %12.1f %12.1f  %s%n",
+                    entrada.getKey(), puntajeBase, puntajeActual, variacion,
+                    asignacion(resultadoBase), asignacion(resultadoActual), unidad);
+        }
+    }
+
+    /**
+     * Indexa los resultados por nombre de benchmark más sus parámetros.
+     */
+    private static Map<String, JsonNode> leer(File archivo) throws IOException {
+        Map<String, JsonNode> resultados = new LinkedHashMap<>();
+        for (JsonNode resultado : new ObjectMapper().readTree(archivo)) {
+            StringBuilder clave = new StringBuilder(resultado.path("benchmark").asText()
+                    .replace("com.example.procesa_seniales_kafka.", ""));
+            Iterator<Map.Entry<String, JsonNode>> parametros = resultado.path("params").fields();
+            while (parametros.hasNext()) {
+                Map.Entry<String, JsonNode> parametro = parametros.next();
+                clave.append(' ').append(parametro.getKey()).append('=').append(parametro.getValue().asText());
+            }
+            resultados.put(clave.toString(), resultado);
+        }
+        return resultados;
+    }
+
+    /**
+     * Bytes asignados por operación según el profiler de GC (NaN si se corrió sin -prof gc).
+     */
+    private static double asignacion(JsonNode resultado) {
+        Iterator<Map.Entry<String, JsonNode>> metricas = resultado.path("secondaryMetrics").fields();
+        while (metricas.hasNext()) {
+            Map.Entry<String, JsonNode> metrica = metricas.next();
+            // Según la versión de JMH el nombre lleva o no el prefijo '·'
+            if (metrica.getKey().endsWith(ASIGNACION_POR_OPERACION)) {
+                return metrica.getValue().path("score").asDouble();
+            }
+        }
+        return Double.NaN;
+    }
+}
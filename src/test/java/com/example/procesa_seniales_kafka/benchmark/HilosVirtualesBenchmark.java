@@ -0,0 +1,200 @@
+package com.example.procesa_seniales_kafka.benchmark;
+
+import com.example.procesa_seniales_kafka.ProcesaSenialesKafkaApplication;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.kafka.test.EmbeddedKafkaKraftBroker;
+import org.springframework.kafka.test.utils.ContainerTestUtils;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.IntStream;
+
+/**
+ * Compara hilos de plataforma contra hilos virtuales de punta a punta sobre un broker embebido.
+ *
+ * Para cada modo y tasa objetivo levanta un broker nuevo y el microservicio completo, produce
+ * ubicaciones a ritmo constante (todas generan al menos un horario) y mide, con un consumer de 'horarios',
+ * el throughput sostenido en ubicaciones por segundo y, por ubicación, la latencia desde su envío hasta
+ * el CreateTime de su primer horario. Cada vehículo envía una sola ubicación, así que la key del horario
+ * identifica la ubicación que lo generó; los horarios siguientes de la misma ubicación no se cuentan.
+ *
+ * Ejecución: {@code java -cp <classpath de test> com.example.procesa_seniales_kafka.benchmark.HilosVirtualesBenchmark}
+ * Propiedades opcionales: {@code -Dbenchmark.tasas=1000,10000,50000 -Dbenchmark.segundos=10}
+ */
+public class HilosVirtualesBenchmark {
+
+    private static final DateTimeFormatter FORMATO_TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+    private static final int PARTICIONES = 8;
+
+    public static void main(String[] args) throws Exception {
+        int[] tasas = Arrays.stream(System.getProperty("benchmark.tasas", "1000,10000,50000").split(","))
+                .mapToInt(t -> Integer.parseInt(t.trim()))
+                .toArray();
+        int segundos = Integer.getInteger("benchmark.segundos", 10);
+
+        // Ronda descartada para que ambos modos se midan con el JIT ya caliente
+        ejecutar(false, tasas[0], 2);
+
+        System.out.printf("%-12s %10s %14s %10s %10s %10s%n",
+                "modo", "tasa", "ubicaciones/s", "p50 ms", "p99 ms", "max ms");
+        for (boolean virtuales : new boolean[]{false, true}) {
+            for (int tasa : tasas) {
+                Resultado resultado = ejecutar(virtuales, tasa, segundos);
+                System.out.printf("%-12s %10d %14.0f %10d %10d %10d%n",
+                        virtuales ? "virtuales" : "plataforma", tasa, resultado.throughput,
+                        resultado.percentil(0.50), resultado.percentil(0.99), resultado.percentil(1.0));
+            }
+        }
+        // Los brokers embebidos dejan hilos que no son daemon aunque se destruyan
+        System.exit(0);
+    }
+
+    private static Resultado ejecutar(boolean virtuales, int tasa, int segundos) throws Exception {
+        EmbeddedKafkaKraftBroker broker = new EmbeddedKafkaKraftBroker(1, PARTICIONES, "ubicaciones_vehiculos", "horarios");
+        broker.afterPropertiesSet();
+
+        ConfigurableApplicationContext contexto = new SpringApplicationBuilder(ProcesaSenialesKafkaApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.kafka.bootstrap-servers=" + broker.getBrokersAsString(),
+                        "spring.kafka.consumer.group-id=benchmark",
+                        "procesador.hilos.virtuales=" + virtuales,
+                        "procesador.consumo.concurrencia=0",
+                        // Sin reorden: se mide el hilo del listener, no la espera de la marca de agua
+                        "procesador.eventos.reorden.capacidad=0",
+                        "logging.level.com.example.procesa_seniales_kafka=WARN",
+                        "logging.level.org.apache.kafka=WARN")
+                .run();
+
+        // Se espera a que el grupo tenga todas las particiones para no medir el rebalanceo inicial
+        for (MessageListenerContainer contenedor : contexto.getBean(KafkaListenerEndpointRegistry.class).getListenerContainers()) {
+            ContainerTestUtils.waitForAssignment(contenedor, PARTICIONES);
+        }
+
+        int total = tasa * segundos;
+        long[] enviadoMs = new long[total];
+        long[] latenciasMs = new long[total];
+        // Ubicaciones con su primer horario ya recibido, y cuándo llegó el último de esos
+        BitSet vistas = new BitSet(total);
+        int[] recibidas = new int[1];
+        long[] ultimaNanos = new long[1];
+        AtomicBoolean corriendo = new AtomicBoolean(true);
+
+        try (KafkaConsumer<String, byte[]> consumidor = crearConsumidor(broker.getBrokersAsString());
+             KafkaProducer<String, String> productor = crearProductor(broker.getBrokersAsString())) {
+
+            Thread lector = new Thread(() -> {
+                consumidor.assign(IntStream.range(0, PARTICIONES)
+                        .mapToObj(p -> new TopicPartition("horarios", p))
+                        .toList());
+                while (corriendo.get() && recibidas[0] < total) {
+                    for (ConsumerRecord<String, byte[]> registro : consumidor.poll(Duration.ofMillis(100))) {
+                        int secuencia = Integer.parseInt(registro.key().substring(4));
+                        // Una ubicación puede generar más de un horario: se mide solo el primero
+                        if (vistas.get(secuencia)) {
+                            continue;
+                        }
+                        vistas.set(secuencia);
+                        latenciasMs[recibidas[0]++] = registro.timestamp() - enviadoMs[secuencia];
+                        ultimaNanos[0] = System.nanoTime();
+                    }
+                }
+            }, "lector-horarios");
+            lector.start();
+
+            String timestamp = LocalDateTime.now().format(FORMATO_TIMESTAMP);
+            long inicio = System.nanoTime();
+            long intervaloNanos = 1_000_000_000L / tasa;
+            for (int i = 0; i < total; i++) {
+                long objetivo = inicio + i * intervaloNanos;
+                long espera;
+                while ((espera = objetivo - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(espera);
+                }
+                String vehiculoId = String.format("VEH-%d", i);
+                enviadoMs[i] = System.currentTimeMillis();
+                productor.send(new ProducerRecord<>("ubicaciones_vehiculos", vehiculoId, ubicacionJson(vehiculoId, timestamp)));
+            }
+            productor.flush();
+
+            lector.join(Duration.ofSeconds(30));
+            corriendo.set(false);
+            lector.join();
+
+            if (recibidas[0] < total) {
+                System.out.printf("⚠️  %d de %d ubicaciones sin horario en 30 s%n", total - recibidas[0], total);
+            }
+            // Hasta el primer horario de la última ubicación procesada, sin la espera final del lector
+            double segundosTranscurridos = (ultimaNanos[0] - inicio) / 1e9;
+            double throughput = recibidas[0] > 0 ? recibidas[0] / segundosTranscurridos : 0;
+            return new Resultado(Arrays.copyOf(latenciasMs, recibidas[0]), throughput);
+        } finally {
+            contexto.close();
+            broker.destroy();
+        }
+    }
+
+    private static String ubicacionJson(String vehiculoId, String timestamp) {
+        // A unos 10 m de P001 (Terminal Norte): cada ubicación genera un horario LLEGADO
+        return "{\"vehiculoId\":\"" + vehiculoId + "\",\"placaVehiculo\":\"BEN-001\","
+                + "\"latitud\":-12.04645,\"longitud\":-77.04285,\"velocidad\":5.0,"
+                + "\"direccion\":\"Av. Principal 123\",\"ciudad\":\"Lima\",\"estado\":\"EN_RUTA\","
+                + "\"timestamp\":\"" + timestamp + "\",\"conductor\":\"Benchmark\",\"pasajeros\":10,"
+                + "\"ruta\":\"Ruta A - Norte\"}";
+    }
+
+    private static KafkaProducer<String, String> crearProductor(String brokers) {
+        return new KafkaProducer<>(Map.of(
+                ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, brokers,
+                ProducerConfig.LINGER_MS_CONFIG, 5,
+                ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class,
+                ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class));
+    }
+
+    private static KafkaConsumer<String, byte[]> crearConsumidor(String brokers) {
+        return new KafkaConsumer<>(Map.of(
+                ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, brokers,
+                ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest",
+                ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class,
+                ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class));
+    }
+
+    private static final class Resultado {
+        private final long[] latenciasMs;
+        private final double throughput;
+
+        private Resultado(long[] latenciasMs, double throughput) {
+            this.latenciasMs = latenciasMs;
+            this.throughput = throughput;
+            Arrays.sort(this.latenciasMs);
+        }
+
+        private long percentil(double p) {
+            if (latenciasMs.length == 0) {
+                return -1;
+            }
+            int indice = (int) Math.min(latenciasMs.length - 1, Math.ceil(p * latenciasMs.length) - 1);
+            return latenciasMs[Math.max(0, indice)];
+        }
+    }
+}
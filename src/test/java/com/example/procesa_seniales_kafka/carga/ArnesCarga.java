@@ -0,0 +1,123 @@
+package com.example.procesa_seniales_kafka.carga;
+
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Arnés de carga para dimensionar despliegues sin una flota real.
+ *
+ * Alimenta al pipeline con una flota sintética ({@link GeneradorFlota}) o con un volcado grabado de
+ * 'ubicaciones_vehiculos' ({@link ReproductorDump}), a 1x, 10x o a máxima velocidad, dentro del mismo
+ * proceso ({@link CargaEnProceso}) o de punta a punta sobre un broker embebido ({@link CargaKafkaEmbebido}),
+ * e imprime el {@link InformeCarga}.
+ *
+ * Ejecución: {@code mvn -P carga verify -Dcarga.argumentos="--modo=kafka --vehiculos=5000 --velocidad=10"}
+ * o {@code java -cp <classpath de test> com.example.procesa_seniales_kafka.carga.ArnesCarga [opciones]}.
+ *
+ * <pre>
+ * --modo=proceso|kafka        dónde corre el pipeline (proceso)
+ * --velocidad=1|10|max        ritmo según el timestamp de las ubicaciones (max)
+ * --mensajes=N                ubicaciones a inyectar (1000000; sin límite con --dump)
+ * --dump=archivo.jsonl        reproduce un volcado en lugar de la flota sintética
+ * --catalogo=paradas.csv      catálogo para el volcado (paradas predefinidas si falta)
+ * --stop-times=stop_times.txt tabla de horarios para el volcado
+ * --grabar=archivo.jsonl      graba N ubicaciones sintéticas y su catálogo, sin procesarlas
+ * --vehiculos=1000 --rutas=20 --paradas-por-ruta=25 --separacion-km=0.4
+ * --ruido-m=15 --intervalo-s=5 --semilla=42  parámetros de la flota sintética
+ * --lote=1 --carriles=0       en proceso: ubicaciones por llamada y carriles por vehículo
+ * --particiones=8             kafka: particiones de los tópicos
+ * --consultas=0               kafka: clientes HTTP consultando llegadas y vehículos durante la carga
+ * --procesador.x=valor        kafka: propiedad adicional del microservicio (también spring.*)
+ * </pre>
+ */
+public class ArnesCarga {
+
+    private static final Path DIRECTORIO_SINTETICO = Path.of("target", "carga");
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opciones = new LinkedHashMap<>();
+        Map<String, String> propiedades = new LinkedHashMap<>();
+        for (String argumento : args) {
+            if (!argumento.startsWith("--") || !argumento.contains("=")) {
+                System.err.println("Argumento inválido (se espera --clave=valor): " + argumento);
+                System.exit(2);
+            }
+            String clave = argumento.substring(2, argumento.indexOf('='));
+            String valor = argumento.substring(argumento.indexOf('=') + 1);
+            if (clave.startsWith("procesador.") || clave.startsWith("spring.")) {
+                propiedades.put(clave, valor);
+            } else {
+                opciones.put(clave, valor);
+            }
+        }
+
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME))
+                .setLevel(ch.qos.logback.classic.Level.WARN);
+
+        String dump = opciones.get("dump");
+        long mensajes = Long.parseLong(opciones.getOrDefault("mensajes", dump != null ? String.valueOf(Long.MAX_VALUE) : "1000000"));
+        Path catalogo = opciones.containsKey("catalogo") ? Path.of(opciones.get("catalogo")) : null;
+        Path stopTimes = opciones.containsKey("stop-times") ? Path.of(opciones.get("stop-times")) : null;
+
+        FuenteUbicaciones fuente;
+        if (dump != null) {
+            fuente = new ReproductorDump(Path.of(dump));
+        } else {
+            GeneradorFlota flota = new GeneradorFlota(
+                    entero(opciones, "vehiculos", 1000),
+                    entero(opciones, "rutas", 20),
+                    entero(opciones, "paradas-por-ruta", 25),
+                    Double.parseDouble(opciones.getOrDefault("separacion-km", "0.4")),
+                    Double.parseDouble(opciones.getOrDefault("ruido-m", "15")),
+                    entero(opciones, "intervalo-s", 5),
+                    Long.parseLong(opciones.getOrDefault("semilla", "42")),
+                    LocalDateTime.now().withNano(0));
+            Path grabar = opciones.containsKey("grabar") ? Path.of(opciones.get("grabar")).toAbsolutePath() : null;
+            Path directorio = grabar != null ? grabar.getParent() : DIRECTORIO_SINTETICO;
+            Files.createDirectories(directorio);
+            catalogo = directorio.resolve("paradas.csv");
+            stopTimes = directorio.resolve("stop_times.txt");
+            flota.escribirCatalogo(catalogo, stopTimes);
+            if (grabar != null) {
+                long grabadas = ReproductorDump.grabar(flota, mensajes, grabar);
+                System.out.printf("💾 %,d ubicaciones grabadas en %s (catálogo: %s, horarios: %s)%n",
+                        grabadas, grabar, catalogo, stopTimes);
+                return;
+            }
+            fuente = flota;
+        }
+
+        Ritmo ritmo = Ritmo.desde(opciones.getOrDefault("velocidad", "max"));
+        InformeCarga informe;
+        try (fuente) {
+            if ("kafka".equalsIgnoreCase(opciones.getOrDefault("modo", "proceso"))) {
+                informe = new CargaKafkaEmbebido(entero(opciones, "particiones", 8), entero(opciones, "consultas", 0),
+                        propiedades)
+                        .ejecutar(fuente, catalogo, stopTimes, ritmo, mensajes);
+            } else {
+                if (!propiedades.isEmpty()) {
+                    System.err.println("⚠️  Las propiedades del microservicio solo se aplican con --modo=kafka: "
+                            + propiedades.keySet());
+                }
+                if (opciones.containsKey("consultas")) {
+                    System.err.println("⚠️  Las consultas HTTP solo se hacen con --modo=kafka");
+                }
+                informe = new CargaEnProceso(entero(opciones, "lote", 1), entero(opciones, "carriles", 0))
+                        .ejecutar(fuente, catalogo, stopTimes, ritmo, mensajes);
+            }
+        }
+        informe.imprimir(System.out);
+        // Los hilos del cliente Kafka y de los carriles no son daemon
+        System.exit(0);
+    }
+
+    private static int entero(Map<String, String> opciones, String clave, int porDefecto) {
+        String valor = opciones.get(clave);
+        return valor == null ? porDefecto : Integer.parseInt(valor);
+    }
+}
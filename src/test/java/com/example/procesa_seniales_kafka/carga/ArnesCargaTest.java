@@ -0,0 +1,81 @@
+package com.example.procesa_seniales_kafka.carga;
+
+import com.example.procesa_seniales_kafka.model.UbicacionVehiculo;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ArnesCargaTest {
+
+    private static final LocalDateTime INICIO = LocalDateTime.of(2026, 3, 2, 8, 0);
+
+    @TempDir
+    Path directorio;
+
+    private GeneradorFlota flota() {
+        return new GeneradorFlota(50, 2, 10, 0.4, 15, 5, 7, INICIO);
+    }
+
+    @Test
+    void laFlotaSinteticaRecorreLasParadasEnProceso() throws Exception {
+        GeneradorFlota flota = flota();
+        Path catalogo = directorio.resolve("paradas.csv");
+        Path stopTimes = directorio.resolve("stop_times.txt");
+        flota.escribirCatalogo(catalogo, stopTimes);
+        assertEquals(21, Files.readAllLines(catalogo).size());
+
+        // 50 vehículos cada 5 s durante media hora simulada
+        InformeCarga informe = new CargaEnProceso(1, 0)
+                .ejecutar(flota, catalogo, stopTimes, Ritmo.desde("max"), 18_000);
+
+        assertEquals(18_000, informe.getMensajes());
+        assertEquals(0, informe.getDescartadas());
+        assertEquals(18_000, informe.getTotalLatencias());
+        assertTrue(informe.eventos("LLEGADO") > 0);
+        assertTrue(informe.eventos("PASADO") > 0);
+        assertTrue(informe.eventos("ESTIMADO") > 0);
+    }
+
+    @Test
+    void elVolcadoGrabadoSeReproduceIgual() throws Exception {
+        Path dump = directorio.resolve("ubicaciones.jsonl");
+        assertEquals(1_000, ReproductorDump.grabar(flota(), 1_000, dump));
+        // Una línea con clave (print.key=true) y otra ilegible
+        Files.writeString(dump, "VEH-X\t" + Files.readAllLines(dump).get(0) + "\nno es json\n",
+                StandardOpenOption.APPEND);
+
+        GeneradorFlota original = flota();
+        try (ReproductorDump reproductor = new ReproductorDump(dump)) {
+            for (int i = 0; i < 1_000; i++) {
+                UbicacionVehiculo esperada = original.siguiente();
+                UbicacionVehiculo leida = reproductor.siguiente();
+                assertEquals(esperada.getVehiculoId(), leida.getVehiculoId());
+                // El formato del tópico tiene precisión de segundos
+                assertEquals(esperada.getTimestamp().truncatedTo(ChronoUnit.SECONDS), leida.getTimestamp());
+                assertEquals(esperada.getLatitud(), leida.getLatitud(), 1e-12);
+            }
+            assertEquals("VEH-00000", reproductor.siguiente().getVehiculoId());
+            assertNull(reproductor.siguiente());
+            assertEquals(1, reproductor.descartadas());
+        }
+    }
+
+    @Test
+    void elRitmoSeMideDesdeLaPrimeraUbicacion() {
+        Ritmo ritmo = Ritmo.desde("10x");
+        long inicio = ritmo.esperar(INICIO);
+        long objetivo = ritmo.esperar(INICIO.plusSeconds(1));
+        // 1 s simulado a 10x son 100 ms, contados desde el primer evento y no desde la espera anterior
+        assertEquals(100_000_000, objetivo - inicio);
+        assertTrue(Ritmo.desde("max").maximo());
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.procesa_seniales_kafka.carga;
+
+import com.example.procesa_seniales_kafka.catalogo.FuenteParadas;
+import com.example.procesa_seniales_kafka.catalogo.FuenteParadasArchivo;
+import com.example.procesa_seniales_kafka.catalogo.FuenteParadasLista;
+import com.example.procesa_seniales_kafka.catalogo.LectorStopTimes;
+import com.example.procesa_seniales_kafka.catalogo.TablaHorarios;
+import com.example.procesa_seniales_kafka.config.ParadasConfig;
+import com.example.procesa_seniales_kafka.model.UbicacionVehiculo;
+import com.example.procesa_seniales_kafka.service.CarrilesVehiculo;
+import com.example.procesa_seniales_kafka.service.ProcesamientoSenialesService;
+import com.example.procesa_seniales_kafka.service.ServicioDePrueba;
+import org.springframework.kafka.core.KafkaTemplate;
+
+import java.io.IOException;
+import java.lang.ref.Reference;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Corre el pipeline dentro del mismo proceso, sin broker: el servicio se arma con {@link ServicioDePrueba}
+ * (valores por defecto de producción y un {@link KafkaTemplate} que confirma cada envío al instante) y
+ * cuenta los horarios por estado. Mide el trabajo de CPU y la memoria del microservicio sin el costo de la red.
+ *
+ * La latencia de cada ubicación va desde su instante objetivo según el {@link Ritmo} hasta que el
+ * servicio termina de procesarla (en microsegundos); con lotes, hasta que termina el lote completo.
+ * Las purgas programadas (TTL) no corren, así que el estado solo lo acota la capacidad de cada store.
+ */
+public class CargaEnProceso {
+
+    private final int lote;
+    private final int carriles;
+
+    /**
+     * @param lote     ubicaciones por llamada; 1 = {@code procesarUbicacion} como el consumer por registro,
+     *                 más = {@code procesarUbicaciones} como el consumer por lotes
+     * @param carriles carriles por vehículo para los lotes ({@code procesador.consumo.carriles}); 0 = sin carriles
+     */
+    public CargaEnProceso(int lote, int carriles) {
+        this.lote = Math.max(1, lote);
+        this.carriles = carriles;
+    }
+
+    /**
+     * @param catalogo   CSV o GeoJSON de paradas; null = paradas predefinidas
+     * @param stopTimes  stop_times al estilo GTFS; null = sin tabla de horarios
+     */
+    public InformeCarga ejecutar(FuenteUbicaciones fuente, Path catalogo, Path stopTimes,
+                                 Ritmo ritmo, long maxMensajes) throws IOException {
+        InformeCarga informe = new InformeCarga(lote > 1 ? "en proceso (lotes de " + lote + ")" : "en proceso",
+                fuente.descripcion(), ritmo.toString(), "µs");
+        informe.iniciarMedicionMemoria();
+
+        ExecutorService ejecutorPublicacion = Executors.newFixedThreadPool(2);
+        CarrilesVehiculo carrilesVehiculo = new CarrilesVehiculo(carriles, false);
+        ProcesamientoSenialesService servicio = armarServicio(
+                catalogo, stopTimes, ejecutorPublicacion, carrilesVehiculo, informe);
+
+        long mensajes = 0;
+        long errores = 0;
+        long servicioNanos = 0;
+        List<UbicacionVehiculo> pendientes = new ArrayList<>(lote);
+        long[] objetivos = new long[lote];
+        long inicio = System.nanoTime();
+        UbicacionVehiculo ubicacion;
+        while (mensajes < maxMensajes && (ubicacion = fuente.siguiente()) != null) {
+            long objetivo = ritmo.esperar(ubicacion.getTimestamp());
+            mensajes++;
+            if (lote == 1) {
+                long antes = System.nanoTime();
+                try {
+                    servicio.procesarUbicacion(ubicacion);
+                } catch (RuntimeException e) {
+                    errores++;
+                }
+                long despues = System.nanoTime();
+                servicioNanos += despues - antes;
+                informe.registrarLatencia((despues - objetivo) / 1000);
+                continue;
+            }
+            objetivos[pendientes.size()] = objetivo;
+            pendientes.add(ubicacion);
+            if (pendientes.size() == lote) {
+                servicioNanos += procesarLote(servicio, pendientes, objetivos, informe);
+            }
+        }
+        if (!pendientes.isEmpty()) {
+            servicioNanos += procesarLote(servicio, pendientes, objetivos, informe);
+        }
+        // Sin revisión programada: lo que quedó en los buffers de reorden se procesa al final
+        servicio.entregarRetenidas();
+
+        ejecutorPublicacion.shutdown();
+        try {
+            ejecutorPublicacion.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        informe.registrarDuracion(System.nanoTime() - inicio, servicioNanos);
+        informe.registrarMensajes(mensajes - errores, fuente.descartadas() + errores);
+
+        // Con el servicio todavía alcanzable, para que su estado cuente como retenido
+        informe.finalizarMedicionMemoria();
+        Reference.reachabilityFence(servicio);
+        carrilesVehiculo.destroy();
+        return informe;
+    }
+
+    private static long procesarLote(ProcesamientoSenialesService servicio, List<UbicacionVehiculo> pendientes,
+                                     long[] objetivos, InformeCarga informe) {
+        long antes = System.nanoTime();
+        servicio.procesarUbicaciones(pendientes);
+        long despues = System.nanoTime();
+        for (int i = 0; i < pendientes.size(); i++) {
+            informe.registrarLatencia((despues - objetivos[i]) / 1000);
+        }
+        pendientes.clear();
+        return despues - antes;
+    }
+
+    private static ProcesamientoSenialesService armarServicio(Path catalogo, Path stopTimes,
+                                                              ExecutorService ejecutorPublicacion,
+                                                              CarrilesVehiculo carriles,
+                                                              InformeCarga informe) throws IOException {
+        FuenteParadas fuenteParadas = catalogo != null
+                ? new FuenteParadasArchivo(catalogo, ReproductorDump.mapper())
+                : new FuenteParadasLista(new ParadasConfig().paradasPredefinidas(), "paradas predefinidas");
+        return ServicioDePrueba.con(fuenteParadas, ejecutorPublicacion)
+                .tablaHorarios(stopTimes != null ? LectorStopTimes.leer(stopTimes, null) : TablaHorarios.vacia())
+                .alEnviar((vehiculo, horario) -> informe.registrarEvento(horario.getEstado()))
+                .carriles(carriles)
+                .armar();
+    }
+}
@@ -0,0 +1,281 @@
+package com.example.procesa_seniales_kafka.carga;
+
+import com.example.procesa_seniales_kafka.ProcesaSenialesKafkaApplication;
+import com.example.procesa_seniales_kafka.model.UbicacionVehiculo;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.clients.admin.Admin;
+import org.apache.kafka.clients.admin.AdminClientConfig;
+import org.apache.kafka.clients.admin.OffsetSpec;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.kafka.test.EmbeddedKafkaKraftBroker;
+import org.springframework.kafka.test.utils.ContainerTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Corre el microservicio completo contra un broker embebido de {@code spring-kafka-test}: produce las
+ * ubicaciones en 'ubicaciones_vehiculos' y lee 'horarios' con un consumer propio.
+ *
+ * El throughput se mide hasta que el grupo del microservicio confirmó todos los offsets producidos,
+ * es decir, hasta que cada ubicación quedó procesada y sus horarios confirmados por el broker. La
+ * latencia (en milisegundos) va desde el instante objetivo de la ubicación hasta el CreateTime de su
+ * primer horario; la ubicación de origen se reconoce por vehículo y {@code horarioReal}, así que las
+ * predicciones (sin horario real) se cuentan como eventos pero no como muestras de latencia.
+ *
+ * Con clientes de consulta el microservicio levanta su servidor web en un puerto libre y
+ * {@link ConsultasEnVivo} consulta sus endpoints de llegadas y vehículos mientras procesa la carga.
+ *
+ * El broker, el microservicio y el arnés comparten la JVM: la memoria informada incluye a los tres.
+ */
+public class CargaKafkaEmbebido {
+
+    private static final String TOPICO_UBICACIONES = "ubicaciones_vehiculos";
+    private static final String TOPICO_HORARIOS = "horarios";
+    private static final String GRUPO = "carga";
+    private static final DateTimeFormatter FORMATO_HORA = DateTimeFormatter.ofPattern("HH:mm:ss");
+    private static final long ESPERA_MAXIMA_MS = 120_000;
+    private static final long INACTIVIDAD_HORARIOS_MS = 2_000;
+    private static final long ANTIGUEDAD_ENVIOS_MS = 120_000;
+    private static final long SOLO_CONSULTAS_MS = 10_000;
+
+    private final int particiones;
+    private final int clientesConsulta;
+    private final Map<String, String> propiedades;
+
+    /**
+     * @param clientesConsulta clientes HTTP que consultan llegadas y vehículos durante la carga; 0 = sin servidor web
+     * @param propiedades      propiedades adicionales del microservicio ({@code procesador.*}, {@code spring.*})
+     */
+    public CargaKafkaEmbebido(int particiones, int clientesConsulta, Map<String, String> propiedades) {
+        this.particiones = particiones;
+        this.clientesConsulta = clientesConsulta;
+        this.propiedades = propiedades;
+    }
+
+    /**
+     * @param catalogo  CSV o GeoJSON de paradas; null = paradas predefinidas
+     * @param stopTimes stop_times al estilo GTFS; null = sin tabla de horarios
+     */
+    public InformeCarga ejecutar(FuenteUbicaciones fuente, Path catalogo, Path stopTimes,
+                                 Ritmo ritmo, long maxMensajes) throws Exception {
+        InformeCarga informe = new InformeCarga("kafka embebido (" + particiones + " particiones)",
+                fuente.descripcion(), ritmo.toString(), "ms");
+
+        EmbeddedKafkaKraftBroker broker = new EmbeddedKafkaKraftBroker(1, particiones, TOPICO_UBICACIONES, TOPICO_HORARIOS);
+        broker.afterPropertiesSet();
+        ConfigurableApplicationContext contexto = null;
+        try {
+            informe.iniciarMedicionMemoria();
+            contexto = iniciarMicroservicio(broker.getBrokersAsString(), catalogo, stopTimes);
+            ConsultasEnVivo consultas = clientesConsulta > 0
+                    ? new ConsultasEnVivo(contexto.getEnvironment().getRequiredProperty("local.server.port", Integer.class),
+                            clientesConsulta)
+                    : null;
+
+            // Horario pendiente de cada ubicación enviada: instante objetivo en ms de pared
+            Map<String, Long> enviadas = new ConcurrentHashMap<>();
+            AtomicLong ultimoHorarioMs = new AtomicLong(System.currentTimeMillis());
+            AtomicBoolean corriendo = new AtomicBoolean(true);
+            Thread lector = new Thread(() -> leerHorarios(broker.getBrokersAsString(), enviadas, informe,
+                    ultimoHorarioMs, corriendo, consultas), "lector-horarios");
+            lector.start();
+            if (consultas != null) {
+                consultas.iniciar();
+            }
+
+            ObjectMapper objectMapper = ReproductorDump.mapper();
+            long mensajes = 0;
+            long inicio = System.nanoTime();
+            try (KafkaProducer<String, String> productor = crearProductor(broker.getBrokersAsString())) {
+                UbicacionVehiculo ubicacion;
+                while (mensajes < maxMensajes && (ubicacion = fuente.siguiente()) != null) {
+                    long objetivo = ritmo.esperar(ubicacion.getTimestamp());
+                    if (ubicacion.getTimestamp() != null) {
+                        long objetivoMs = System.currentTimeMillis() - (System.nanoTime() - objetivo) / 1_000_000;
+                        enviadas.put(clave(ubicacion.getVehiculoId(), ubicacion.getTimestamp().format(FORMATO_HORA)),
+                                objetivoMs);
+                    }
+                    productor.send(new ProducerRecord<>(TOPICO_UBICACIONES, ubicacion.getVehiculoId(),
+                            objectMapper.writeValueAsString(ubicacion)));
+                    if (++mensajes % 100_000 == 0) {
+                        // Ubicaciones que no generaron horario
+                        long limite = System.currentTimeMillis() - ANTIGUEDAD_ENVIOS_MS;
+                        enviadas.values().removeIf(enviada -> enviada < limite);
+                    }
+                }
+                productor.flush();
+            }
+
+            esperarConsumo(broker.getBrokersAsString());
+            informe.registrarDuracion(System.nanoTime() - inicio, 0);
+            if (consultas != null) {
+                consultas.detener(informe, "durante la carga");
+                // Sin ubicaciones: una fase de calentamiento que no se informa y otra medida
+                consultas.iniciar();
+                TimeUnit.MILLISECONDS.sleep(SOLO_CONSULTAS_MS);
+                consultas.detener(null, null);
+                consultas.iniciar();
+                TimeUnit.MILLISECONDS.sleep(SOLO_CONSULTAS_MS);
+                consultas.detener(informe, "sin carga");
+            }
+            informe.registrarMensajes(mensajes, fuente.descartadas());
+
+            while (System.currentTimeMillis() - ultimoHorarioMs.get() < INACTIVIDAD_HORARIOS_MS) {
+                TimeUnit.MILLISECONDS.sleep(100);
+            }
+            corriendo.set(false);
+            lector.join();
+
+            informe.finalizarMedicionMemoria();
+            return informe;
+        } finally {
+            if (contexto != null) {
+                contexto.close();
+            }
+            broker.destroy();
+        }
+    }
+
+    private ConfigurableApplicationContext iniciarMicroservicio(String brokers, Path catalogo, Path stopTimes) {
+        List<String> configuracion = new ArrayList<>(List.of(
+                "spring.kafka.bootstrap-servers=" + brokers,
+                "spring.kafka.consumer.group-id=" + GRUPO,
+                "procesador.consumo.concurrencia=0",
+                "server.port=0",
+                "logging.level.com.example.procesa_seniales_kafka=WARN",
+                "logging.level.auditoria=WARN",
+                "logging.level.org.springframework.kafka=WARN",
+                "logging.level.org.apache.kafka=WARN"));
+        if (catalogo != null) {
+            configuracion.add("procesador.catalogo.fuente=archivo");
+            configuracion.add("procesador.catalogo.archivo=" + catalogo.toAbsolutePath());
+        }
+        if (stopTimes != null) {
+            configuracion.add("procesador.horarios.stop-times=" + stopTimes.toAbsolutePath());
+        }
+        propiedades.forEach((clave, valor) -> configuracion.add(clave + "=" + valor));
+        // Con devtools en el classpath, el reinicio volvería a ejecutar el main del arnés sin sus argumentos
+        System.setProperty("spring.devtools.restart.enabled", "false");
+
+        ConfigurableApplicationContext contexto = new SpringApplicationBuilder(ProcesaSenialesKafkaApplication.class)
+                .web(clientesConsulta > 0 ? WebApplicationType.SERVLET : WebApplicationType.NONE)
+                .properties(configuracion.toArray(new String[0]))
+                .run();
+
+        // Se espera a que el grupo tenga todas las particiones para no medir el rebalanceo inicial
+        for (MessageListenerContainer contenedor : contexto.getBean(KafkaListenerEndpointRegistry.class).getListenerContainers()) {
+            ContainerTestUtils.waitForAssignment(contenedor, particiones);
+        }
+        return contexto;
+    }
+
+    /**
+     * Espera a que el grupo del microservicio haya confirmado el último offset de cada partición.
+     */
+    private void esperarConsumo(String brokers) throws InterruptedException, ExecutionException {
+        try (Admin admin = Admin.create(Map.of(AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG, brokers))) {
+            Map<TopicPartition, OffsetSpec> ultimos = IntStream.range(0, particiones)
+                    .mapToObj(p -> new TopicPartition(TOPICO_UBICACIONES, p))
+                    .collect(Collectors.toMap(Function.identity(), p -> OffsetSpec.latest()));
+            Map<TopicPartition, Long> finales = admin.listOffsets(ultimos).all().get().entrySet().stream()
+                    .collect(Collectors.toMap(Map.Entry::getKey, e -> e.getValue().offset()));
+
+            long limite = System.currentTimeMillis() + ESPERA_MAXIMA_MS;
+            while (System.currentTimeMillis() < limite) {
+                Map<TopicPartition, OffsetAndMetadata> confirmados =
+                        admin.listConsumerGroupOffsets(GRUPO).partitionsToOffsetAndMetadata().get();
+                boolean completo = finales.entrySet().stream().allMatch(e -> e.getValue() == 0
+                        || confirmados.get(e.getKey()) != null && confirmados.get(e.getKey()).offset() >= e.getValue());
+                if (completo) {
+                    return;
+                }
+                TimeUnit.MILLISECONDS.sleep(20);
+            }
+            System.err.println("⚠️  El microservicio no confirmó todas las ubicaciones en "
+                    + ESPERA_MAXIMA_MS / 1000 + " s; el throughput informado es una cota inferior");
+        }
+    }
+
+    private void leerHorarios(String brokers, Map<String, Long> enviadas, InformeCarga informe,
+                              AtomicLong ultimoHorarioMs, AtomicBoolean corriendo, ConsultasEnVivo consultas) {
+        ObjectMapper objectMapper = ReproductorDump.mapper();
+        try (KafkaConsumer<String, byte[]> consumidor = crearConsumidor(brokers)) {
+            consumidor.assign(IntStream.range(0, particiones)
+                    .mapToObj(p -> new TopicPartition(TOPICO_HORARIOS, p))
+                    .toList());
+            while (corriendo.get()) {
+                for (ConsumerRecord<String, byte[]> registro : consumidor.poll(Duration.ofMillis(100))) {
+                    ultimoHorarioMs.set(System.currentTimeMillis());
+                    JsonNode horario;
+                    try {
+                        horario = objectMapper.readTree(registro.value());
+                    } catch (IOException e) {
+                        informe.registrarEvento("ilegible");
+                        continue;
+                    }
+                    informe.registrarEvento(horario.path("estado").asText(null));
+                    if (consultas != null) {
+                        consultas.registrar(horario.path("vehiculoId").asText(null), horario.path("paradaId").asText(null));
+                    }
+                    if (horario.hasNonNull("horarioReal")) {
+                        Long enviada = enviadas.remove(clave(horario.path("vehiculoId").asText(),
+                                horario.path("horarioReal").asText()));
+                        if (enviada != null) {
+                            informe.registrarLatencia(Math.max(0, registro.timestamp() - enviada));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static String clave(String vehiculoId, String hora) {
+        return vehiculoId + '|' + hora;
+    }
+
+    private static KafkaProducer<String, String> crearProductor(String brokers) {
+        return new KafkaProducer<>(Map.of(
+                ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, brokers,
+                ProducerConfig.LINGER_MS_CONFIG, 5,
+                ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class,
+                ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class));
+    }
+
+    private static KafkaConsumer<String, byte[]> crearConsumidor(String brokers) {
+        return new KafkaConsumer<>(Map.of(
+                ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, brokers,
+                ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest",
+                ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class,
+                ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class));
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.procesa_seniales_kafka.carga;
+
+import com.example.procesa_seniales_kafka.estadisticas.HistogramaLogLineal;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Clientes HTTP que consultan las llegadas de paradas y el estado de vehículos mientras el microservicio
+ * procesa la carga: cada cliente hace una consulta tras otra (3 de paradas por cada una de vehículo)
+ * sobre una conexión keep-alive, con los IDs vistos en el tópico 'horarios'.
+ *
+ * Las consultas se miden en fases: mientras llegan ubicaciones y, con el pipeline ya en reposo, solo
+ * consultas, para separar el costo de los endpoints de la competencia por CPU con el procesamiento.
+ * La latencia (en microsegundos) va desde el envío de la solicitud hasta leer el cuerpo completo; un 404
+ * de un vehículo ya purgado cuenta como respuesta, cualquier otro estado o excepción como error.
+ */
+public class ConsultasEnVivo {
+
+    private static final int REFRESCO_IDS = 1024;
+
+    private final String base;
+    private final int clientes;
+    private final Set<String> paradas = ConcurrentHashMap.newKeySet();
+    private final Set<String> vehiculos = ConcurrentHashMap.newKeySet();
+    private final List<Thread> hilos = new ArrayList<>();
+
+    private long[] conteos;
+    private long respuestas;
+    private long errores;
+    private volatile boolean corriendo;
+    private long inicioNanos;
+
+    public ConsultasEnVivo(int puerto, int clientes) {
+        this.base = "http://localhost:" + puerto + "/api/procesador/";
+        this.clientes = clientes;
+    }
+
+    /**
+     * Registra un vehículo y una parada que aparecieron en un horario publicado.
+     */
+    public void registrar(String vehiculoId, String paradaId) {
+        if (vehiculoId != null && !vehiculoId.isEmpty()) {
+            vehiculos.add(vehiculoId);
+        }
+        if (paradaId != null && !paradaId.isEmpty()) {
+            paradas.add(paradaId);
+        }
+    }
+
+    /**
+     * Arranca una fase de consultas; cada fase se mide por separado.
+     */
+    public void iniciar() {
+        conteos = new long[HistogramaLogLineal.CANTIDAD_BUCKETS];
+        respuestas = 0;
+        errores = 0;
+        hilos.clear();
+        corriendo = true;
+        inicioNanos = System.nanoTime();
+        for (int c = 0; c < clientes; c++) {
+            Thread hilo = new Thread(this::consultar, "consultas-" + c);
+            hilo.setDaemon(true);
+            hilo.start();
+            hilos.add(hilo);
+        }
+    }
+
+    /**
+     * Detiene a los clientes y vuelca los resultados de la fase en el informe (si hay informe).
+     */
+    public void detener(InformeCarga informe, String fase) throws InterruptedException {
+        corriendo = false;
+        for (Thread hilo : hilos) {
+            hilo.join();
+        }
+        if (informe != null) {
+            informe.registrarConsultas(fase, clientes, respuestas, errores, System.nanoTime() - inicioNanos, conteos);
+        }
+    }
+
+    private void consultar() {
+        long[] propios = new long[conteos.length];
+        long okPropias = 0;
+        long erroresPropios = 0;
+        SplittableRandom azar = new SplittableRandom(Thread.currentThread().threadId());
+        String[] idsParadas = new String[0];
+        String[] idsVehiculos = new String[0];
+        try (HttpClient cliente = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build()) {
+            for (long n = 0; corriendo; n++) {
+                if (n % REFRESCO_IDS == 0 || idsParadas.length == 0 || idsVehiculos.length == 0) {
+                    idsParadas = paradas.toArray(new String[0]);
+                    idsVehiculos = vehiculos.toArray(new String[0]);
+                    if (idsParadas.length == 0 || idsVehiculos.length == 0) {
+                        TimeUnit.MILLISECONDS.sleep(10);
+                        continue;
+                    }
+                }
+                String ruta = n % 4 == 3
+                        ? "vehiculos/" + codificar(idsVehiculos[azar.nextInt(idsVehiculos.length)])
+                        : "paradas/" + codificar(idsParadas[azar.nextInt(idsParadas.length)]) + "/llegadas";
+                HttpRequest solicitud = HttpRequest.newBuilder(URI.create(base + ruta)).GET().build();
+                long antes = System.nanoTime();
+                try {
+                    HttpResponse<byte[]> respuesta = cliente.send(solicitud, HttpResponse.BodyHandlers.ofByteArray());
+                    propios[HistogramaLogLineal.indice((System.nanoTime() - antes) / 1000)]++;
+                    if (respuesta.statusCode() == 200 || respuesta.statusCode() == 404) {
+                        okPropias++;
+                    } else {
+                        erroresPropios++;
+                    }
+                } catch (IOException e) {
+                    erroresPropios++;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Los hilos de una fase terminan antes de que la siguiente reemplace los contadores
+        synchronized (this) {
+            for (int i = 0; i < propios.length; i++) {
+                conteos[i] += propios[i];
+            }
+            respuestas += okPropias;
+            errores += erroresPropios;
+        }
+    }
+
+    private static String codificar(String id) {
+        return URLEncoder.encode(id, StandardCharsets.UTF_8).replace("+", "%20");
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.procesa_seniales_kafka.carga;
+
+import com.example.procesa_seniales_kafka.model.UbicacionVehiculo;
+
+import java.io.IOException;
+
+/**
+ * Secuencia de ubicaciones que alimenta al arnés de carga, en orden de timestamp.
+ */
+public interface FuenteUbicaciones extends AutoCloseable {
+
+    /**
+     * @return la siguiente ubicación, o null cuando la fuente se agotó
+     */
+    UbicacionVehiculo siguiente() throws IOException;
+
+    /**
+     * Descripción breve para el informe.
+     */
+    String descripcion();
+
+    /**
+     * Registros de la fuente que no se pudieron leer.
+     */
+    default long descartadas() {
+        return 0;
+    }
+
+    @Override
+    default void close() throws IOException {
+    }
+}
@@ -0,0 +1,273 @@
+package com.example.procesa_seniales_kafka.carga;
+
+import com.example.procesa_seniales_kafka.geo.DistanciaGeo;
+import com.example.procesa_seniales_kafka.geo.ParadasAleatorias;
+import com.example.procesa_seniales_kafka.model.Parada;
+import com.example.procesa_seniales_kafka.model.UbicacionVehiculo;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Flota sintética que recorre rutas entre paradas, para cargar el pipeline sin una flota real.
+ *
+ * Cada ruta es una polilínea cuyos vértices son sus paradas, separadas en promedio
+ * {@code separacionKm} con un giro aleatorio en cada una. Los vehículos se reparten entre las rutas
+ * en posiciones al azar y las recorren de ida y vuelta con un perfil de velocidad realista: aceleran
+ * hasta su velocidad de crucero, frenan para detenerse en cada parada y esperan entre 20 y 60 s.
+ * Cada vehículo informa su posición cada {@code intervaloSegundos}, con ruido gaussiano en la
+ * posición ({@code ruidoMetros}) y en la velocidad (2 km/h); los envíos de la flota se escalonan
+ * dentro del intervalo y salen en orden de timestamp.
+ *
+ * {@link #escribirCatalogo} deja las paradas y una tabla de horarios de las rutas en archivos, para que
+ * el pipeline las cargue como en producción y calcule retrasos y predicciones sobre las mismas rutas.
+ *
+ * La fuente no se agota: el arnés la corta por cantidad de mensajes o por tiempo simulado.
+ */
+public class GeneradorFlota implements FuenteUbicaciones {
+
+    private static final double ACELERACION_MS2 = 1.0;
+    private static final double FRENADO_MS2 = 1.2;
+    private static final double RUIDO_VELOCIDAD_KMH = 2;
+    private static final int ESPERA_MINIMA_S = 20;
+    private static final int ESPERA_MAXIMA_S = 60;
+    private static final double CRUCERO_MINIMO_KMH = 25;
+    private static final double CRUCERO_MAXIMO_KMH = 45;
+    private static final double GIRO_MAXIMO_GRADOS = 20;
+    private static final int SEGUNDOS_DIA = 86_400;
+    private static final int FRECUENCIA_SALIDAS_S = 15 * 60;
+    private static final double VELOCIDAD_PROGRAMADA_KMH = 20;
+
+    private final int vehiculos;
+    private final double ruidoKm;
+    private final long intervaloMs;
+    private final LocalDateTime inicio;
+    private final Random random;
+
+    // Por ruta: coordenadas de sus paradas y distancia acumulada desde la primera
+    private final double[][] latitudes;
+    private final double[][] longitudes;
+    private final double[][] acumuladoKm;
+    private final List<Parada> paradas = new ArrayList<>();
+
+    // Por vehículo
+    private final int[] ruta;
+    private final double[] recorridoKm;
+    private final int[] siguiente;
+    private final int[] sentido;
+    private final double[] velocidadMs;
+    private final double[] cruceroMs;
+    private final double[] esperaS;
+    private final String[] ids;
+    private final String[] placas;
+
+    private long emitidos;
+
+    public GeneradorFlota(int vehiculos, int rutas, int paradasPorRuta, double separacionKm,
+                          double ruidoMetros, int intervaloSegundos, long semilla, LocalDateTime inicio) {
+        if (vehiculos < 1 || rutas < 1 || paradasPorRuta < 2 || intervaloSegundos < 1) {
+            throw new IllegalArgumentException("Se necesita al menos un vehículo, una ruta, dos paradas por ruta "
+                    + "y un intervalo de un segundo");
+        }
+        this.vehiculos = vehiculos;
+        this.ruidoKm = ruidoMetros / 1000;
+        this.intervaloMs = intervaloSegundos * 1000L;
+        this.inicio = inicio;
+        this.random = new Random(semilla);
+
+        latitudes = new double[rutas][paradasPorRuta];
+        longitudes = new double[rutas][paradasPorRuta];
+        acumuladoKm = new double[rutas][paradasPorRuta];
+        for (int r = 0; r < rutas; r++) {
+            trazarRuta(r, paradasPorRuta, separacionKm);
+        }
+
+        ruta = new int[vehiculos];
+        recorridoKm = new double[vehiculos];
+        siguiente = new int[vehiculos];
+        sentido = new int[vehiculos];
+        velocidadMs = new double[vehiculos];
+        cruceroMs = new double[vehiculos];
+        esperaS = new double[vehiculos];
+        ids = new String[vehiculos];
+        placas = new String[vehiculos];
+        for (int v = 0; v < vehiculos; v++) {
+            int r = v % rutas;
+            ruta[v] = r;
+            siguiente[v] = 1 + random.nextInt(paradasPorRuta - 1);
+            sentido[v] = 1;
+            double desde = acumuladoKm[r][siguiente[v] - 1];
+            recorridoKm[v] = desde + random.nextDouble() * (acumuladoKm[r][siguiente[v]] - desde);
+            cruceroMs[v] = (CRUCERO_MINIMO_KMH + random.nextDouble() * (CRUCERO_MAXIMO_KMH - CRUCERO_MINIMO_KMH)) / 3.6;
+            velocidadMs[v] = random.nextDouble() * cruceroMs[v];
+            ids[v] = String.format("VEH-%05d", v);
+            placas[v] = String.format("SIM-%05d", v);
+        }
+    }
+
+    private void trazarRuta(int r, int cantidad, double separacionKm) {
+        double latitud = ParadasAleatorias.latitud(random);
+        double longitud = ParadasAleatorias.longitud(random);
+        double rumbo = random.nextDouble() * 2 * Math.PI;
+        for (int k = 0; k < cantidad; k++) {
+            if (k > 0) {
+                double tramoKm = separacionKm * (0.8 + random.nextDouble() * 0.4);
+                rumbo += Math.toRadians((random.nextDouble() * 2 - 1) * GIRO_MAXIMO_GRADOS);
+                double nuevaLatitud = latitud + tramoKm * Math.cos(rumbo) / DistanciaGeo.KM_POR_GRADO;
+                double nuevaLongitud = longitud + tramoKm * Math.sin(rumbo)
+                        / (DistanciaGeo.KM_POR_GRADO * Math.cos(Math.toRadians(latitud)));
+                acumuladoKm[r][k] = acumuladoKm[r][k - 1]
+                        + DistanciaGeo.calcularDistanciaHaversine(latitud, longitud, nuevaLatitud, nuevaLongitud);
+                latitud = nuevaLatitud;
+                longitud = nuevaLongitud;
+            }
+            latitudes[r][k] = latitud;
+            longitudes[r][k] = longitud;
+            int numero = paradas.size() + 1;
+            paradas.add(Parada.builder()
+                    .paradaId(String.format("P%06d", numero))
+                    .nombre("Ruta " + r + " - Parada " + (k + 1))
+                    .direccion("Dirección " + numero)
+                    .latitud(latitud)
+                    .longitud(longitud)
+                    .build());
+        }
+    }
+
+    /**
+     * Paradas de todas las rutas, para armar el catálogo del pipeline bajo prueba.
+     */
+    public List<Parada> paradas() {
+        return paradas;
+    }
+
+    /**
+     * Escribe el catálogo ({@code paradas.csv}) y la tabla de horarios ({@code stop_times.txt}) de las
+     * rutas, en los formatos que lee el microservicio. La tabla tiene una salida desde la primera parada
+     * cada 15 minutos durante todo el día, a una velocidad comercial programada de 20 km/h.
+     */
+    public void escribirCatalogo(Path catalogo, Path stopTimes) throws IOException {
+        try (BufferedWriter escritor = Files.newBufferedWriter(catalogo, StandardCharsets.UTF_8)) {
+            escritor.write("paradaId,nombre,direccion,latitud,longitud");
+            escritor.newLine();
+            for (Parada parada : paradas) {
+                escritor.write(String.format(Locale.ROOT, "%s,%s,%s,%.7f,%.7f", parada.getParadaId(),
+                        parada.getNombre(), parada.getDireccion(), parada.getLatitud(), parada.getLongitud()));
+                escritor.newLine();
+            }
+        }
+
+        int paradasPorRuta = acumuladoKm[0].length;
+        try (BufferedWriter escritor = Files.newBufferedWriter(stopTimes, StandardCharsets.UTF_8)) {
+            escritor.write("trip_id,route_id,arrival_time,stop_id,stop_sequence");
+            escritor.newLine();
+            for (int r = 0; r < acumuladoKm.length; r++) {
+                for (int salida = 0; salida < SEGUNDOS_DIA; salida += FRECUENCIA_SALIDAS_S) {
+                    for (int k = 0; k < paradasPorRuta; k++) {
+                        int hora = salida + (int) Math.round(acumuladoKm[r][k] / VELOCIDAD_PROGRAMADA_KMH * 3600);
+                        escritor.write(String.format(Locale.ROOT, "R%d-%d,Ruta %d,%02d:%02d:%02d,%s,%d",
+                                r, salida, r, hora / 3600, hora / 60 % 60, hora % 60,
+                                paradas.get(r * paradasPorRuta + k).getParadaId(), k + 1));
+                        escritor.newLine();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Mensajes por segundo de tiempo simulado.
+     */
+    public double tasaSimulada() {
+        return vehiculos * 1000.0 / intervaloMs;
+    }
+
+    @Override
+    public UbicacionVehiculo siguiente() {
+        int v = (int) (emitidos % vehiculos);
+        long ronda = emitidos / vehiculos;
+        emitidos++;
+        // Las rondas siguientes avanzan un intervalo completo; la primera ubica al vehículo donde está
+        if (ronda > 0) {
+            avanzar(v, intervaloMs / 1000.0);
+        }
+        long instanteMs = ronda * intervaloMs + v * intervaloMs / vehiculos;
+
+        int r = ruta[v];
+        int tramo = sentido[v] > 0 ? siguiente[v] - 1 : siguiente[v];
+        double largoKm = acumuladoKm[r][tramo + 1] - acumuladoKm[r][tramo];
+        double fraccion = largoKm > 0 ? (recorridoKm[v] - acumuladoKm[r][tramo]) / largoKm : 0;
+        double latitud = latitudes[r][tramo] + fraccion * (latitudes[r][tramo + 1] - latitudes[r][tramo])
+                + random.nextGaussian() * ruidoKm / DistanciaGeo.KM_POR_GRADO;
+        double longitud = longitudes[r][tramo] + fraccion * (longitudes[r][tramo + 1] - longitudes[r][tramo])
+                + random.nextGaussian() * ruidoKm / (DistanciaGeo.KM_POR_GRADO * Math.cos(Math.toRadians(latitud)));
+        double velocidadKmh = Math.max(0, velocidadMs[v] * 3.6 + random.nextGaussian() * RUIDO_VELOCIDAD_KMH);
+
+        return UbicacionVehiculo.builder()
+                .vehiculoId(ids[v])
+                .placaVehiculo(placas[v])
+                .latitud(latitud)
+                .longitud(longitud)
+                .velocidad(velocidadKmh)
+                .direccion("Ruta " + r)
+                .ciudad("Lima")
+                .estado(esperaS[v] > 0 ? "EN_PARADA" : velocidadMs[v] < 0.3 ? "DETENIDO" : "EN_RUTA")
+                .timestamp(inicio.plusNanos(instanteMs * 1_000_000))
+                .conductor("Conductor " + v)
+                .pasajeros(random.nextInt(60))
+                .ruta("Ruta " + r)
+                .build();
+    }
+
+    /**
+     * Avanza la cinemática del vehículo: espera en la parada, o acelera hacia su velocidad de crucero
+     * sin superar la que le permite frenar a tiempo para la siguiente parada.
+     */
+    private void avanzar(int v, double segundos) {
+        int r = ruta[v];
+        if (esperaS[v] > 0) {
+            esperaS[v] -= segundos;
+            if (esperaS[v] > 0) {
+                return;
+            }
+            esperaS[v] = 0;
+            int ultima = acumuladoKm[r].length - 1;
+            if (siguiente[v] == ultima && sentido[v] > 0 || siguiente[v] == 0 && sentido[v] < 0) {
+                sentido[v] = -sentido[v];
+            }
+            siguiente[v] += sentido[v];
+        }
+
+        double restanteM = Math.abs(acumuladoKm[r][siguiente[v]] - recorridoKm[v]) * 1000;
+        double maximaParaFrenar = Math.sqrt(2 * FRENADO_MS2 * restanteM);
+        double objetivo = Math.min(cruceroMs[v], maximaParaFrenar);
+        double velocidad = velocidadMs[v] < objetivo
+                ? Math.min(objetivo, velocidadMs[v] + ACELERACION_MS2 * segundos)
+                : Math.max(objetivo, velocidadMs[v] - FRENADO_MS2 * segundos);
+        // Sin este mínimo el frenado converge a la parada sin llegar nunca
+        velocidad = Math.max(velocidad, Math.min(1.0, restanteM / segundos));
+        double avanceM = velocidad * segundos;
+        if (avanceM >= restanteM) {
+            recorridoKm[v] = acumuladoKm[r][siguiente[v]];
+            velocidadMs[v] = 0;
+            esperaS[v] = ESPERA_MINIMA_S + random.nextInt(ESPERA_MAXIMA_S - ESPERA_MINIMA_S + 1);
+        } else {
+            recorridoKm[v] += sentido[v] * avanceM / 1000;
+            velocidadMs[v] = velocidad;
+        }
+    }
+
+    @Override
+    public String descripcion() {
+        return String.format("flota sintética: %d vehículos, %d rutas, %d paradas, %.0f msgs/s simulados",
+                vehiculos, latitudes.length, paradas.size(), tasaSimulada());
+    }
+}
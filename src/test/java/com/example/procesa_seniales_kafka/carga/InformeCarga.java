@@ -0,0 +1,212 @@
+package com.example.procesa_seniales_kafka.carga;
+
+import com.example.procesa_seniales_kafka.estadisticas.HistogramaLogLineal;
+
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Resultado de una corrida del arnés: throughput sostenido, percentiles de latencia, horarios
+ * emitidos por estado, consultas en vivo (si hubo clientes HTTP) y uso de heap.
+ *
+ * Las latencias se acumulan en un {@link HistogramaLogLineal} (error relativo de ~3%) y se registran
+ * desde un solo hilo; los eventos pueden llegar de varios.
+ */
+public class InformeCarga {
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9, 100};
+
+    private final String modo;
+    private final String fuente;
+    private final String ritmo;
+    private final String unidadLatencia;
+
+    private final long[] conteosLatencia = new long[HistogramaLogLineal.CANTIDAD_BUCKETS];
+    private long totalLatencias;
+    private final Map<String, LongAdder> eventos = new ConcurrentHashMap<>();
+
+    private final Map<String, Consultas> consultas = new LinkedHashMap<>();
+
+    private long mensajes;
+    private long descartadas;
+    private long duracionNanos;
+    private long servicioNanos;
+
+    private long heapBase;
+    private long heapFinal;
+    private long heapPico;
+    private long recoleccionesBase;
+    private long recoleccionesMsBase;
+    private long recolecciones;
+    private long recoleccionesMs;
+
+    public InformeCarga(String modo, String fuente, String ritmo, String unidadLatencia) {
+        this.modo = modo;
+        this.fuente = fuente;
+        this.ritmo = ritmo;
+        this.unidadLatencia = unidadLatencia;
+    }
+
+    /**
+     * Toma la línea base de memoria y GC justo antes de armar el pipeline.
+     */
+    public void iniciarMedicionMemoria() {
+        heapBase = heapTrasGc();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            pool.resetPeakUsage();
+        }
+        for (GarbageCollectorMXBean recolector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            recoleccionesBase += Math.max(0, recolector.getCollectionCount());
+            recoleccionesMsBase += Math.max(0, recolector.getCollectionTime());
+        }
+    }
+
+    /**
+     * Cierra la medición de memoria con el pipeline todavía vivo, para que su estado cuente como retenido.
+     */
+    public void finalizarMedicionMemoria() {
+        for (GarbageCollectorMXBean recolector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            recolecciones += Math.max(0, recolector.getCollectionCount());
+            recoleccionesMs += Math.max(0, recolector.getCollectionTime());
+        }
+        recolecciones -= recoleccionesBase;
+        recoleccionesMs -= recoleccionesMsBase;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null) {
+                heapPico += pool.getPeakUsage().getUsed();
+            }
+        }
+        heapFinal = heapTrasGc();
+    }
+
+    private static long heapTrasGc() {
+        System.gc();
+        System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    public void registrarLatencia(long valor) {
+        conteosLatencia[HistogramaLogLineal.indice(valor)]++;
+        totalLatencias++;
+    }
+
+    public void registrarEvento(String estado) {
+        eventos.computeIfAbsent(estado == null ? "?" : estado, e -> new LongAdder()).increment();
+    }
+
+    /**
+     * Resultado de una fase de consultas HTTP, con sus latencias en microsegundos.
+     */
+    public void registrarConsultas(String fase, int clientes, long respuestas, long errores, long duracionNanos,
+                                   long[] conteos) {
+        consultas.put(fase, new Consultas(clientes, respuestas, errores, duracionNanos, conteos));
+    }
+
+    public void registrarMensajes(long mensajes, long descartadas) {
+        this.mensajes = mensajes;
+        this.descartadas = descartadas;
+    }
+
+    public void registrarDuracion(long duracionNanos, long servicioNanos) {
+        this.duracionNanos = duracionNanos;
+        this.servicioNanos = servicioNanos;
+    }
+
+    public long getMensajes() {
+        return mensajes;
+    }
+
+    public long getDescartadas() {
+        return descartadas;
+    }
+
+    public double mensajesPorSegundo() {
+        return duracionNanos == 0 ? 0 : mensajes * 1e9 / duracionNanos;
+    }
+
+    public long percentilLatencia(double percentil) {
+        return HistogramaLogLineal.percentil(conteosLatencia, totalLatencias, percentil);
+    }
+
+    public long getTotalLatencias() {
+        return totalLatencias;
+    }
+
+    public Consultas consultas(String fase) {
+        return consultas.get(fase);
+    }
+
+    public long eventos(String estado) {
+        LongAdder contador = eventos.get(estado);
+        return contador == null ? 0 : contador.sum();
+    }
+
+    public long totalEventos() {
+        return eventos.values().stream().mapToLong(LongAdder::sum).sum();
+    }
+
+    public long heapRetenidoBytes() {
+        return heapFinal - heapBase;
+    }
+
+    public void imprimir(PrintStream salida) {
+        salida.println();
+        salida.println("📊 Carga " + modo + " | " + fuente + " | ritmo " + ritmo);
+        salida.printf("   Mensajes:        %,d procesados, %,d descartados en %.1f s%n",
+                mensajes, descartadas, duracionNanos / 1e9);
+        salida.printf("   Throughput:      %,.0f msgs/s sostenidos", mensajesPorSegundo());
+        if (servicioNanos > 0) {
+            salida.printf(" (%,.0f msgs/s solo en el servicio)", mensajes * 1e9 / servicioNanos);
+        }
+        salida.println();
+        salida.print("   Latencia (" + unidadLatencia + "):");
+        for (double percentil : PERCENTILES) {
+            salida.printf("  p%s=%,d", percentil == 100 ? "max" : formatear(percentil), percentilLatencia(percentil));
+        }
+        salida.printf("  (%,d muestras)%n", totalLatencias);
+        consultas.forEach((fase, faseConsultas) -> {
+            salida.printf("   Consultas HTTP %s: %,d en %.1f s con %d clientes (%,.0f req/s), %,d errores%n",
+                    fase, faseConsultas.respuestas(), faseConsultas.duracionNanos() / 1e9, faseConsultas.clientes(),
+                    faseConsultas.porSegundo(), faseConsultas.errores());
+            salida.print("     Latencia (µs):");
+            for (double percentil : PERCENTILES) {
+                salida.printf("  p%s=%,d", percentil == 100 ? "max" : formatear(percentil),
+                        faseConsultas.percentil(percentil));
+            }
+            salida.println();
+        });
+        Map<String, Long> porEstado = new TreeMap<>();
+        eventos.forEach((estado, contador) -> porEstado.put(estado, contador.sum()));
+        salida.printf("   Horarios:        %,d emitidos %s (%.2f por mensaje)%n",
+                totalEventos(), porEstado, mensajes == 0 ? 0 : (double) totalEventos() / mensajes);
+        salida.printf("   Heap:            %,d KB retenidos tras GC, pico %,d KB (base %,d KB)%n",
+                heapRetenidoBytes() / 1024, heapPico / 1024, heapBase / 1024);
+        salida.printf("   GC:              %,d recolecciones, %,d ms%n", recolecciones, recoleccionesMs);
+    }
+
+    /**
+     * Consultas HTTP de una fase de la corrida.
+     */
+    public record Consultas(int clientes, long respuestas, long errores, long duracionNanos, long[] conteos) {
+
+        public double porSegundo() {
+            return duracionNanos == 0 ? 0 : respuestas * 1e9 / duracionNanos;
+        }
+
+        public long percentil(double percentil) {
+            return HistogramaLogLineal.percentil(conteos, respuestas + errores, percentil);
+        }
+    }
+
+    private static String formatear(double percentil) {
+        return percentil == Math.rint(percentil) ? String.valueOf((long) percentil) : String.valueOf(percentil);
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.procesa_seniales_kafka.carga;
+
+import com.example.procesa_seniales_kafka.model.UbicacionVehiculo;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Lee un volcado del tópico 'ubicaciones_vehiculos': un JSON por línea, tal como lo deja
+ * {@code kafka-console-consumer --topic ubicaciones_vehiculos --from-beginning > dump.jsonl}.
+ * Si el volcado se tomó con {@code --property print.key=true}, la clave se ignora (se lee desde la
+ * primera llave). Las líneas vacías o que no se pueden leer se cuentan y se saltan.
+ */
+public class ReproductorDump implements FuenteUbicaciones {
+
+    private final Path archivo;
+    private final BufferedReader lector;
+    private final ObjectMapper objectMapper;
+    private long descartadas;
+
+    public ReproductorDump(Path archivo) throws IOException {
+        this.archivo = archivo;
+        this.lector = Files.newBufferedReader(archivo, StandardCharsets.UTF_8);
+        this.objectMapper = mapper();
+    }
+
+    @Override
+    public UbicacionVehiculo siguiente() throws IOException {
+        String linea;
+        while ((linea = lector.readLine()) != null) {
+            int inicio = linea.indexOf('{');
+            if (inicio < 0) {
+                if (!linea.isBlank()) {
+                    descartadas++;
+                }
+                continue;
+            }
+            try {
+                return objectMapper.readValue(linea.substring(inicio), UbicacionVehiculo.class);
+            } catch (JsonProcessingException e) {
+                descartadas++;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public long descartadas() {
+        return descartadas;
+    }
+
+    @Override
+    public String descripcion() {
+        return "volcado " + archivo;
+    }
+
+    @Override
+    public void close() throws IOException {
+        lector.close();
+    }
+
+    /**
+     * Graba las primeras {@code cantidad} ubicaciones de la fuente en el mismo formato que se lee.
+     * @return ubicaciones grabadas
+     */
+    public static long grabar(FuenteUbicaciones fuente, long cantidad, Path archivo) throws IOException {
+        ObjectMapper objectMapper = mapper();
+        long grabadas = 0;
+        try (BufferedWriter escritor = Files.newBufferedWriter(archivo, StandardCharsets.UTF_8)) {
+            UbicacionVehiculo ubicacion;
+            while (grabadas < cantidad && (ubicacion = fuente.siguiente()) != null) {
+                escritor.write(objectMapper.writeValueAsString(ubicacion));
+                escritor.newLine();
+                grabadas++;
+            }
+        }
+        return grabadas;
+    }
+
+    static ObjectMapper mapper() {
+        return new ObjectMapper().registerModule(new JavaTimeModule());
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.procesa_seniales_kafka.carga;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Locale;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Ritmo de inyección según el timestamp de cada ubicación: a 1x se respeta la separación original
+ * entre mensajes, a 10x se comprime diez veces y en "max" no se espera nada.
+ *
+ * El instante objetivo de cada mensaje se calcula desde el primero, no desde el anterior, de modo que
+ * un retraso del pipeline no desplaza a los mensajes siguientes; la latencia se mide desde ese instante
+ * objetivo y por eso incluye la espera en cola cuando el pipeline no da abasto.
+ */
+public final class Ritmo {
+
+    private final double factor;
+    private long primerEventoNanos = Long.MIN_VALUE;
+    private long inicioNanos;
+
+    private Ritmo(double factor) {
+        this.factor = factor;
+    }
+
+    /**
+     * @param valor "max", o un factor como "1", "10" o "10x"
+     */
+    public static Ritmo desde(String valor) {
+        String normalizado = valor.trim().toLowerCase(Locale.ROOT);
+        if (normalizado.equals("max")) {
+            return new Ritmo(0);
+        }
+        if (normalizado.endsWith("x")) {
+            normalizado = normalizado.substring(0, normalizado.length() - 1);
+        }
+        double factor = Double.parseDouble(normalizado);
+        if (factor <= 0) {
+            throw new IllegalArgumentException("El factor de velocidad debe ser positivo o 'max': " + valor);
+        }
+        return new Ritmo(factor);
+    }
+
+    public boolean maximo() {
+        return factor == 0;
+    }
+
+    /**
+     * Espera hasta el instante que le corresponde al evento, si todavía no llegó.
+     * @return instante objetivo en {@link System#nanoTime()}; el actual en modo "max" o sin timestamp
+     */
+    public long esperar(LocalDateTime timestamp) {
+        long ahora = System.nanoTime();
+        if (maximo() || timestamp == null) {
+            return ahora;
+        }
+        long eventoNanos = timestamp.toEpochSecond(ZoneOffset.UTC) * 1_000_000_000L + timestamp.getNano();
+        if (primerEventoNanos == Long.MIN_VALUE) {
+            primerEventoNanos = eventoNanos;
+            inicioNanos = ahora;
+        }
+        long objetivo = inicioNanos + (long) ((eventoNanos - primerEventoNanos) / factor);
+        long espera;
+        while ((espera = objetivo - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(espera);
+        }
+        return objetivo;
+    }
+
+    @Override
+    public String toString() {
+        return maximo() ? "max" : String.format(Locale.ROOT, "%.0fx", factor);
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.procesa_seniales_kafka.catalogo;
+
+import com.example.procesa_seniales_kafka.geo.IndiceParadasGrid;
+import com.example.procesa_seniales_kafka.geo.ParadasAleatorias;
+import com.example.procesa_seniales_kafka.model.Parada;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tiempo de una recarga completa del catálogo desde CSV y GeoJSON: lectura, validación y
+ * construcción del índice grid, con 100.000 paradas.
+ *
+ * Ejecución: {@code mvn -P benchmark verify -Dbenchmark.incluir=CatalogoParadasBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CatalogoParadasBenchmark {
+
+    @Param({"100000"})
+    private int cantidadParadas;
+
+    private Path directorio;
+    private CatalogoParadas csv;
+    private CatalogoParadas geoJson;
+
+    @Setup(Level.Trial)
+    public void preparar() throws IOException {
+        List<Parada> paradas = ParadasAleatorias.generar(cantidadParadas, 7);
+        directorio = Files.createTempDirectory("catalogo-benchmark");
+
+        Path archivoCsv = directorio.resolve("paradas.csv");
+        try (BufferedWriter writer = Files.newBufferedWriter(archivoCsv)) {
+            writer.write("paradaId,nombre,direccion,latitud,longitud\n");
+            for (Parada parada : paradas) {
+                writer.write(parada.getParadaId() + "," + parada.getNombre() + ",\"" + parada.getDireccion() + "\","
+                        + parada.getLatitud() + "," + parada.getLongitud() + "\n");
+            }
+        }
+        Path archivoGeoJson = directorio.resolve("paradas.geojson");
+        try (BufferedWriter writer = Files.newBufferedWriter(archivoGeoJson)) {
+            writer.write("{\"type\":\"FeatureCollection\",\"features\":[");
+            for (int i = 0; i < paradas.size(); i++) {
+                Parada parada = paradas.get(i);
+                writer.write((i == 0 ? "" : ",") + "{\"type\":\"Feature\",\"geometry\":{\"type\":\"Point\",\"coordinates\":["
+                        + parada.getLongitud() + "," + parada.getLatitud() + "]},\"properties\":{\"paradaId\":\""
+                        + parada.getParadaId() + "\",\"nombre\":\"" + parada.getNombre() + "\"}}");
+            }
+            writer.write("]}");
+        }
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        csv = new CatalogoParadas(new FuenteParadasArchivo(archivoCsv, objectMapper),
+                lista -> new IndiceParadasGrid(lista, 0.5));
+        geoJson = new CatalogoParadas(new FuenteParadasArchivo(archivoGeoJson, objectMapper),
+                lista -> new IndiceParadasGrid(lista, 0.5));
+    }
+
+    @TearDown(Level.Trial)
+    public void liberar() throws IOException {
+        try (var archivos = Files.list(directorio)) {
+            for (Path archivo : archivos.toList()) {
+                Files.delete(archivo);
+            }
+        }
+        Files.delete(directorio);
+    }
+
+    @Benchmark
+    public SnapshotCatalogo recargarCsv() throws IOException {
+        return csv.recargar();
+    }
+
+    @Benchmark
+    public SnapshotCatalogo recargarGeoJson() throws IOException {
+        return geoJson.recargar();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(CatalogoParadasBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
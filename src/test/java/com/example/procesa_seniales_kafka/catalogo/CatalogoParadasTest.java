@@ -0,0 +1,94 @@
+package com.example.procesa_seniales_kafka.catalogo;
+
+import com.example.procesa_seniales_kafka.geo.IndiceParadas;
+import com.example.procesa_seniales_kafka.geo.IndiceParadasGrid;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CatalogoParadasTest {
+
+    @TempDir
+    Path directorio;
+
+    @Test
+    void cargaCsvYGeoJsonDescartandoFilasInvalidas() throws IOException {
+        Path csv = directorio.resolve("paradas.csv");
+        Files.writeString(csv, """
+                latitud,longitud,paradaId,nombre,direccion
+                -12.0464,-77.0428,P001,Terminal Norte,"Av. Principal 123, Lima"
+                -12.0565,-77.0352,P002,"Plaza ""Mayor\""",Jr. Unión 456
+                abc,-77.0389,P003,Sin latitud,
+                -12.0834,-77.0321,P001,Repetida,
+                95.0,-77.0321,P005,Fuera de rango,
+                """);
+        CatalogoParadas desdeCsv = catalogo(csv);
+        IndiceParadas indice = desdeCsv.indice();
+        assertEquals(2, indice.tamanio());
+        assertEquals(3, desdeCsv.snapshot().getDescartadas());
+        assertEquals("Av. Principal 123, Lima", indice.parada(0).getDireccion());
+        assertEquals("Plaza \"Mayor\"", indice.parada(1).getNombre());
+        assertEquals(0, indice.buscarIndiceMasCercano(-12.0465, -77.0428, 0.5));
+
+        Path geoJson = directorio.resolve("paradas.geojson");
+        Files.writeString(geoJson, """
+                {"type": "FeatureCollection", "name": "paradas", "features": [
+                  {"type": "Feature", "geometry": {"type": "Point", "coordinates": [-77.0428, -12.0464]},
+                   "properties": {"paradaId": "P001", "nombre": "Terminal Norte", "extra": {"a": [1, 2]}}},
+                  {"type": "Feature", "geometry": {"type": "LineString", "coordinates": [[0, 0], [1, 1]]},
+                   "properties": {"id": "L1"}},
+                  {"type": "Feature", "geometry": {"type": "Point", "coordinates": [-77.0352, -12.0565]},
+                   "properties": {"id": "P002"}}
+                ]}
+                """);
+        CatalogoParadas desdeGeoJson = catalogo(geoJson);
+        assertEquals(2, desdeGeoJson.indice().tamanio());
+        assertEquals("P002", desdeGeoJson.indice().parada(1).getParadaId());
+        assertEquals(-12.0565, desdeGeoJson.indice().parada(1).getLatitud());
+    }
+
+    @Test
+    void laRecargaPublicaUnaVersionNuevaYUnFalloConservaLaAnterior() throws IOException {
+        Path csv = directorio.resolve("paradas.csv");
+        Files.writeString(csv, "paradaId,latitud,longitud\nP001,-12.0464,-77.0428\n");
+        CatalogoParadas catalogo = catalogo(csv);
+        SnapshotCatalogo inicial = catalogo.snapshot();
+        assertEquals(1, inicial.getVersion());
+
+        // Sin cambios en el archivo la revisión no recarga
+        catalogo.revisarCambios();
+        assertSame(inicial, catalogo.snapshot());
+
+        Files.writeString(csv, "paradaId,latitud,longitud\nP001,-12.0464,-77.0428\nP002,-12.0565,-77.0352\n");
+        Files.setLastModifiedTime(csv, FileTime.fromMillis(Files.getLastModifiedTime(csv).toMillis() + 1000));
+        catalogo.revisarCambios();
+        assertEquals(2, catalogo.snapshot().getVersion());
+        assertEquals(2, catalogo.indice().tamanio());
+        // El snapshot anterior sigue intacto para quien lo estaba usando
+        assertEquals(1, inicial.getIndice().tamanio());
+
+        SnapshotCatalogo vigente = catalogo.snapshot();
+        Files.writeString(csv, "paradaId,latitud,longitud\nP001,x,y\n");
+        assertThrows(IllegalStateException.class, catalogo::recargar);
+        Files.delete(csv);
+        assertThrows(IOException.class, catalogo::recargar);
+        assertSame(vigente, catalogo.snapshot());
+        assertEquals(2, catalogo.getRecargasFallidas());
+        assertNotEquals(0, catalogo.getNanosRecargas());
+    }
+
+    private static CatalogoParadas catalogo(Path archivo) {
+        return new CatalogoParadas(new FuenteParadasArchivo(archivo, new ObjectMapper()),
+                paradas -> new IndiceParadasGrid(paradas, 0.5));
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.procesa_seniales_kafka.catalogo;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tabla de horarios con 2.000 rutas de 40 paradas y 2 millones de pasadas:
+ * carga completa del stop_times (lectura, orden y construcción) y costo de una búsqueda
+ * de la pasada más cercana, que no debe reservar memoria.
+ *
+ * Ejecución: {@code mvn -P benchmark verify -Dbenchmark.incluir=TablaHorariosBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+public class TablaHorariosBenchmark {
+
+    private static final int PARADAS_POR_RUTA = 40;
+    private static final int CONSULTAS = 1024;
+
+    @Param({"2000"})
+    private int rutas;
+
+    @Param({"25"})
+    private int viajesPorRuta;
+
+    private Path directorio;
+    private Path stopTimes;
+    private TablaHorarios tabla;
+    private final String[] rutasConsulta = new String[CONSULTAS];
+    private final String[] paradasConsulta = new String[CONSULTAS];
+    private final int[] segundosConsulta = new int[CONSULTAS];
+    private int siguiente;
+
+    @Setup(Level.Trial)
+    public void preparar() throws IOException {
+        directorio = Files.createTempDirectory("horarios-benchmark");
+        stopTimes = directorio.resolve("stop_times.txt");
+        Random random = new Random(5);
+        try (BufferedWriter writer = Files.newBufferedWriter(stopTimes)) {
+            writer.write("trip_id,arrival_time,departure_time,stop_id,stop_sequence,route_id\n");
+            for (int ruta = 0; ruta < rutas; ruta++) {
+                for (int viaje = 0; viaje < viajesPorRuta; viaje++) {
+                    int segundos = 5 * 3600 + viaje * 2400 + random.nextInt(600);
+                    for (int parada = 1; parada <= PARADAS_POR_RUTA; parada++) {
+                        String hora = String.format("%02d:%02d:%02d", segundos / 3600, segundos / 60 % 60, segundos % 60);
+                        writer.write("T" + ruta + "-" + viaje + "," + hora + "," + hora + ",S" + (ruta * 7 + parada)
+                                + "," + parada + ",R" + ruta + "\n");
+                        segundos += 60 + random.nextInt(120);
+                    }
+                }
+            }
+        }
+        tabla = LectorStopTimes.leer(stopTimes, null);
+
+        for (int i = 0; i < CONSULTAS; i++) {
+            int ruta = random.nextInt(rutas);
+            rutasConsulta[i] = "R" + ruta;
+            paradasConsulta[i] = "S" + (ruta * 7 + 1 + random.nextInt(PARADAS_POR_RUTA));
+            segundosConsulta[i] = random.nextInt(TablaHorarios.SEGUNDOS_DIA);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void liberar() throws IOException {
+        Files.delete(stopTimes);
+        Files.delete(directorio);
+    }
+
+    @Benchmark
+    public int buscarMasCercano() {
+        int i = siguiente++ & (CONSULTAS - 1);
+        return tabla.buscarMasCercano(rutasConsulta[i], paradasConsulta[i], segundosConsulta[i]);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public TablaHorarios cargar() throws IOException {
+        return LectorStopTimes.leer(stopTimes, null);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(TablaHorariosBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.procesa_seniales_kafka.catalogo;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TablaHorariosTest {
+
+    @TempDir
+    Path directorio;
+
+    @Test
+    void cargaStopTimesConTripsYDescartaFilasSinHora() throws IOException {
+        Path trips = directorio.resolve("trips.txt");
+        Files.writeString(trips, """
+                route_id,service_id,trip_id
+                R1,LV,T1
+                R1,LV,T2
+                "R2",LV,"T3"
+                """);
+        Path stopTimes = directorio.resolve("stop_times.txt");
+        Files.writeString(stopTimes, """
+                trip_id,arrival_time,departure_time,stop_id,stop_sequence
+                T1,08:00:00,08:00:30,P001,1
+                T1,,,P002,2
+                T1,8:10:00,08:10:00,P003,3
+                T2,09:00:00,09:00:00,P001,1
+                T2,09:12:00,09:12:00,P003,3
+                "T3",,23:55:00,"P001",7
+                T3,24:20:00,24:20:00,P002,8
+                T9,10:00:00,10:00:00,P001,1
+                T1,08:xx:00,,P004,4
+                """);
+
+        TablaHorarios tabla = LectorStopTimes.leer(stopTimes, trips);
+        assertEquals(6, tabla.tamanio());
+        assertEquals(2, tabla.cantidadRutas());
+
+        // Más cercana en cualquier sentido; el empate va a la anterior
+        assertEquals(hora(8, 0), tabla.segundos(tabla.buscarMasCercano("R1", "P001", hora(8, 20))));
+        assertEquals(hora(9, 0), tabla.segundos(tabla.buscarMasCercano("R1", "P001", hora(8, 40))));
+        assertEquals(hora(8, 0), tabla.segundos(tabla.buscarMasCercano("R1", "P001", hora(8, 30))));
+        assertEquals(3, tabla.secuencia(tabla.buscarMasCercano("R1", "P003", hora(9, 0))));
+
+        // Pasada de las 24:20 normalizada a las 00:20; la búsqueda da la vuelta al día
+        int pasada = tabla.buscarMasCercano("R2", "P002", hora(23, 58));
+        assertEquals(hora(0, 20), tabla.segundos(pasada));
+        assertEquals(-22 * 60, TablaHorarios.diferenciaSegundos(hora(23, 58), tabla.segundos(pasada)));
+        assertEquals(hora(23, 55), tabla.segundos(tabla.buscarMasCercano("R2", "P001", hora(0, 5))));
+        assertEquals(10 * 60, TablaHorarios.diferenciaSegundos(hora(0, 5), hora(23, 55)));
+
+        assertEquals(TablaHorarios.SIN_HORARIO, tabla.buscarMasCercano("R1", "P002", hora(8, 5)));
+        assertEquals(TablaHorarios.SIN_HORARIO, tabla.buscarMasCercano("R3", "P001", hora(8, 5)));
+        assertEquals(TablaHorarios.SIN_HORARIO, tabla.buscarMasCercano(null, "P001", hora(8, 5)));
+    }
+
+    @Test
+    void coincideConLaBusquedaLinealEnUnaTablaGrande() {
+        TablaHorarios.Acumulador acumulador = new TablaHorarios.Acumulador();
+        Random random = new Random(3);
+        int[][] horas = new int[20][];
+        for (int ruta = 0; ruta < horas.length; ruta++) {
+            horas[ruta] = new int[1 + random.nextInt(200)];
+            for (int i = 0; i < horas[ruta].length; i++) {
+                horas[ruta][i] = random.nextInt(TablaHorarios.SEGUNDOS_DIA + 7200);
+                acumulador.agregar("R" + ruta, "P1", horas[ruta][i], i);
+                acumulador.agregar("R" + ruta, "P2", random.nextInt(TablaHorarios.SEGUNDOS_DIA), i);
+            }
+        }
+        TablaHorarios tabla = acumulador.construir();
+
+        for (int consulta = 0; consulta < 5_000; consulta++) {
+            int ruta = random.nextInt(horas.length);
+            int segundo = random.nextInt(TablaHorarios.SEGUNDOS_DIA);
+            int mejor = Integer.MAX_VALUE;
+            for (int hora : horas[ruta]) {
+                mejor = Math.min(mejor, Math.abs(TablaHorarios.diferenciaSegundos(segundo, hora % TablaHorarios.SEGUNDOS_DIA)));
+            }
+            int pasada = tabla.buscarMasCercano("R" + ruta, "P1", segundo);
+            assertEquals(mejor, Math.abs(TablaHorarios.diferenciaSegundos(segundo, tabla.segundos(pasada))));
+        }
+    }
+
+    private static int hora(int horas, int minutos) {
+        return horas * 3600 + minutos * 60;
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.procesa_seniales_kafka.checkpoint;
+
+import com.example.procesa_seniales_kafka.estado.EstadoDedupStore;
+import com.example.procesa_seniales_kafka.estado.MaquinaEstadosParada;
+import com.example.procesa_seniales_kafka.model.EstadoParada;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.BitSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Guardado y restauración del checkpoint de una partición con 1 millón de pares vehículo-parada
+ * (50.000 vehículos con 20 paradas cada uno) más la máquina de estados de esos vehículos.
+ *
+ * Ejecución: {@code mvn -P benchmark verify -Dbenchmark.incluir=CheckpointEstadoBenchmark}
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+public class CheckpointEstadoBenchmark {
+
+    private static final int VEHICULOS = 50_000;
+    private static final int PARADAS_POR_VEHICULO = 20;
+    private static final BitSet PARTICION_0 = BitSet.valueOf(new long[]{1});
+
+    private Path directorio;
+    private CheckpointEstado lleno;
+    private CheckpointEstado vacio;
+    private EstadoDedupStore estadoVacio;
+
+    @Setup(Level.Trial)
+    public void preparar() throws IOException {
+        directorio = Files.createTempDirectory(Path.of("target"), "benchmark-checkpoint");
+        EstadoDedupStore estado = estado();
+        MaquinaEstadosParada maquina = maquina();
+        long instante = System.currentTimeMillis();
+        String[] paradas = new String[PARADAS_POR_VEHICULO * 10];
+        for (int p = 0; p < paradas.length; p++) {
+            paradas[p] = "PARADA-" + p;
+        }
+        for (int v = 0; v < VEHICULOS; v++) {
+            String vehiculo = "VEH-" + v;
+            for (int p = 0; p < PARADAS_POR_VEHICULO; p++) {
+                estado.debePublicar(vehiculo, paradas[(v + p * 7) % paradas.length], EstadoParada.ESTIMADO, instante);
+            }
+            maquina.observar(vehiculo, paradas[v % paradas.length], -12.0, -77.0, 0.1, 5, instante);
+        }
+        if (estado.tamanio() != VEHICULOS * PARADAS_POR_VEHICULO) {
+            throw new IllegalStateException("Estado incompleto: " + estado.tamanio());
+        }
+
+        // Todos los vehículos en una sola partición
+        lleno = new CheckpointEstado(true, directorio, "ubicaciones", 0, estado, maquina, System::currentTimeMillis);
+        lleno.restaurar(0, 1, 0, Long.MAX_VALUE, 0);
+        lleno.registrarOffset(0, 999_999);
+        lleno.guardar(PARTICION_0);
+    }
+
+    @Setup(Level.Iteration)
+    public void vaciar() {
+        estadoVacio = estado();
+        vacio = new CheckpointEstado(true, directorio, "ubicaciones", 0, estadoVacio, maquina(),
+                System::currentTimeMillis);
+    }
+
+    @Benchmark
+    public int restaurarUnMillonDeEntradas() {
+        vacio.restaurar(0, 1, 0, Long.MAX_VALUE, 1_000_000);
+        return estadoVacio.tamanio();
+    }
+
+    @Benchmark
+    public int guardarUnMillonDeEntradas() {
+        return lleno.guardar(PARTICION_0);
+    }
+
+    private static EstadoDedupStore estado() {
+        return new EstadoDedupStore(2 * VEHICULOS * PARADAS_POR_VEHICULO, 30, 64, 60);
+    }
+
+    private static MaquinaEstadosParada maquina() {
+        return new MaquinaEstadosParada(0.5, 0.05, 0.2, 10, 0.05, 2, 2 * VEHICULOS, 30, 64);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(CheckpointEstadoBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
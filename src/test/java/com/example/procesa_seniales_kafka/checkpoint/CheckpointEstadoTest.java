@@ -0,0 +1,127 @@
+package com.example.procesa_seniales_kafka.checkpoint;
+
+import com.example.procesa_seniales_kafka.estado.EstadoDedupStore;
+import com.example.procesa_seniales_kafka.estado.MaquinaEstadosParada;
+import com.example.procesa_seniales_kafka.model.EstadoParada;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CheckpointEstadoTest {
+
+    private static final String TOPICO = "ubicaciones";
+    private static final int PARTICIONES = 4;
+    private static final int VEHICULOS = 200;
+    private static final int PARADAS = 5;
+    private static final long INSTANTE = 1_700_000_000_000L;
+
+    @TempDir
+    Path directorio;
+
+    private final EstadoDedupStore estado = new EstadoDedupStore(10_000, 30, 8, 60);
+    private final MaquinaEstadosParada maquina = maquina();
+
+    @Test
+    void guardaLaParticionRevocadaYLaRestauraAlineadaConElLog() {
+        cargarVehiculos();
+        CheckpointEstado checkpoint = checkpoint(estado, maquina);
+        for (int particion = 0; particion < PARTICIONES; particion++) {
+            assertEquals(100, checkpoint.restaurar(particion, PARTICIONES, 0, 1000, 100));
+        }
+        checkpoint.registrarOffset(1, 149);
+        // Una confirmación que llega atrasada no retrocede el offset
+        checkpoint.registrarOffset(1, 130);
+
+        int enParticion = vehiculosEnParticion(1);
+        checkpoint.revocadas(List.of(new TopicPartition(TOPICO, 1)));
+        assertEquals((VEHICULOS - enParticion) * PARADAS, estado.tamanio());
+        assertEquals(VEHICULOS - enParticion, maquina.tamanio());
+
+        // Otra instancia recibe la partición con el offset confirmado detrás del checkpoint
+        EstadoDedupStore otroEstado = new EstadoDedupStore(10_000, 30, 8, 60);
+        MaquinaEstadosParada otraMaquina = maquina();
+        CheckpointEstado otro = checkpoint(otroEstado, otraMaquina);
+        assertEquals(120, otro.restaurar(1, PARTICIONES, 0, 1000, 120));
+        assertEquals(enParticion * PARADAS, otroEstado.tamanio());
+        assertEquals(enParticion, otraMaquina.tamanio());
+
+        for (int v = 0; v < VEHICULOS; v++) {
+            String vehiculo = "VEH-" + v;
+            boolean restaurado = CheckpointEstado.particionDe(vehiculo, PARTICIONES) == 1;
+            assertEquals(!restaurado, otroEstado.debePublicar(vehiculo, "P-0", EstadoParada.LLEGANDO, INSTANTE + 1000));
+            MaquinaEstadosParada.Transicion transicion = otraMaquina.observar(vehiculo, "P-0", -12.0, -77.0, 0.01, 0,
+                    INSTANTE + 1000);
+            assertEquals(EstadoParada.LLEGADO, transicion.getEstado());
+            assertEquals(!restaurado, transicion.isCambio());
+        }
+
+        // Con el offset confirmado más adelante, se retrocede hasta el checkpoint para reprocesar el hueco
+        CheckpointEstado tercero = checkpoint(new EstadoDedupStore(10_000, 30, 8, 60), maquina());
+        assertEquals(150, tercero.restaurar(1, PARTICIONES, 0, 1000, 400));
+        assertEquals(2, tercero.getRestauraciones() + otro.getRestauraciones());
+    }
+
+    @Test
+    void descartaLosCheckpointsDaniadosOIncompatibles() throws Exception {
+        cargarVehiculos();
+        CheckpointEstado checkpoint = checkpoint(estado, maquina);
+        checkpoint.restaurar(0, PARTICIONES, 0, 1000, 500);
+        checkpoint.guardarAsignadas();
+        assertEquals(1, checkpoint.getGuardados());
+
+        EstadoDedupStore vacio = new EstadoDedupStore(10_000, 30, 8, 60);
+        CheckpointEstado otro = checkpoint(vacio, maquina());
+        // Cambió la cantidad de particiones: los vehículos ya no caen en las mismas
+        assertEquals(50, otro.restaurar(0, 2 * PARTICIONES, 0, 1000, 50));
+        // El tópico se recreó y el log es más corto que el checkpoint
+        assertEquals(50, otro.restaurar(0, PARTICIONES, 0, 100, 50));
+
+        Path archivo = otro.archivo(0);
+        byte[] bytes = Files.readAllBytes(archivo);
+        bytes[bytes.length / 2] ^= 0x01;
+        Files.write(archivo, bytes);
+        assertEquals(50, otro.restaurar(0, PARTICIONES, 0, 1000, 50));
+
+        assertEquals(3, otro.getRechazados());
+        assertEquals(0, otro.getRestauraciones());
+        assertEquals(0, vacio.tamanio());
+    }
+
+    private void cargarVehiculos() {
+        for (int v = 0; v < VEHICULOS; v++) {
+            String vehiculo = "VEH-" + v;
+            for (int p = 0; p < PARADAS; p++) {
+                assertTrue(estado.debePublicar(vehiculo, "P-" + p, EstadoParada.LLEGANDO, INSTANTE));
+            }
+            assertTrue(maquina.observar(vehiculo, "P-0", -12.0, -77.0, 0.01, 0, INSTANTE).isCambio());
+        }
+        assertFalse(estado.debePublicar("VEH-0", "P-0", EstadoParada.LLEGANDO, INSTANTE + 1000));
+    }
+
+    private CheckpointEstado checkpoint(EstadoDedupStore estadoDedup, MaquinaEstadosParada maquinaEstados) {
+        return new CheckpointEstado(true, directorio, TOPICO, 1000, estadoDedup, maquinaEstados,
+                System::currentTimeMillis);
+    }
+
+    private static MaquinaEstadosParada maquina() {
+        return new MaquinaEstadosParada(0.5, 0.05, 0.2, 10, 0.05, 2, 10_000, 30, 8);
+    }
+
+    private static int vehiculosEnParticion(int particion) {
+        int cantidad = 0;
+        for (int v = 0; v < VEHICULOS; v++) {
+            if (CheckpointEstado.particionDe("VEH-" + v, PARTICIONES) == particion) {
+                cantidad++;
+            }
+        }
+        return cantidad;
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.procesa_seniales_kafka.cinematica;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Actualización de la cinemática de un vehículo con la flota completa en memoria
+ * (50.000 vehículos con el anillo lleno). Una actualización no debe reservar memoria.
+ *
+ * Ejecución: {@code mvn -P benchmark verify -Dbenchmark.incluir=SeguimientoVehiculosBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SeguimientoVehiculosBenchmark {
+
+    @Param({"50000"})
+    private int vehiculos;
+
+    @Param({"8"})
+    private int historia;
+
+    private SeguimientoVehiculos seguimiento;
+    private String[] ids;
+    private double[] latitudes;
+    private double[] longitudes;
+    private long instante;
+    private int siguiente;
+
+    @Setup(Level.Trial)
+    public void preparar() {
+        seguimiento = new SeguimientoVehiculos(vehiculos, historia, Long.MAX_VALUE / 2, Long.MAX_VALUE / 2, 64,
+                System::currentTimeMillis);
+        ids = new String[vehiculos];
+        latitudes = new double[vehiculos];
+        longitudes = new double[vehiculos];
+        Random random = new Random(17);
+        for (int i = 0; i < vehiculos; i++) {
+            ids[i] = "BUS-" + i;
+            latitudes[i] = -12.0 - random.nextDouble() * 0.2;
+            longitudes[i] = -77.0 - random.nextDouble() * 0.2;
+        }
+        for (int vuelta = 0; vuelta < historia; vuelta++) {
+            for (int i = 0; i < vehiculos; i++) {
+                actualizar(i);
+            }
+        }
+    }
+
+    @Benchmark
+    public double actualizar() {
+        int i = siguiente++;
+        if (siguiente == vehiculos) {
+            siguiente = 0;
+        }
+        return actualizar(i);
+    }
+
+    private double actualizar(int i) {
+        latitudes[i] += 0.0001;
+        return seguimiento.actualizar(ids[i], latitudes[i], longitudes[i], instante += 10);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(SeguimientoVehiculosBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
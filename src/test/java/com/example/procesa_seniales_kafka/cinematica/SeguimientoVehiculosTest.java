@@ -0,0 +1,109 @@
+package com.example.procesa_seniales_kafka.cinematica;
+
+import com.example.procesa_seniales_kafka.catalogo.CatalogoParadas;
+import com.example.procesa_seniales_kafka.catalogo.FuenteParadasLista;
+import com.example.procesa_seniales_kafka.catalogo.SnapshotCatalogo;
+import com.example.procesa_seniales_kafka.catalogo.TablaHorarios;
+import com.example.procesa_seniales_kafka.geo.DistanciaGeo;
+import com.example.procesa_seniales_kafka.geo.IndiceParadasGrid;
+import com.example.procesa_seniales_kafka.model.Parada;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SeguimientoVehiculosTest {
+
+    private static final double LATITUD = -12.05;
+    private static final double LONGITUD = -77.04;
+
+    @Test
+    void velocidadYRumboSobreLaVentana() {
+        SeguimientoVehiculos seguimiento = new SeguimientoVehiculos(100, 4, 60_000, 300_000, 4, () -> 0);
+
+        // 36 km/h hacia el norte: 100 m cada 10 s
+        double gradosPorPaso = 0.1 / DistanciaGeo.KM_POR_GRADO;
+        assertTrue(Double.isNaN(seguimiento.actualizar("V1", LATITUD, LONGITUD, 0)));
+        double velocidad = Double.NaN;
+        for (int i = 1; i <= 10; i++) {
+            velocidad = seguimiento.actualizar("V1", LATITUD + i * gradosPorPaso, LONGITUD, i * 10_000L);
+        }
+        assertEquals(36, velocidad, 0.1);
+        assertEquals(0, seguimiento.rumbo("V1"), 0.5);
+
+        // Se detiene: la ventana de 4 posiciones olvida el tramo en movimiento en 3 actualizaciones
+        double latitudFinal = LATITUD + 10 * gradosPorPaso;
+        for (int i = 11; i <= 13; i++) {
+            velocidad = seguimiento.actualizar("V1", latitudFinal, LONGITUD, i * 10_000L);
+        }
+        assertEquals(0, velocidad, 1e-9);
+        assertEquals(0, seguimiento.rumbo("V1"), 0.5);
+
+        // Posiciones atrasadas se ignoran; tras una brecha larga la ventana empieza de nuevo
+        assertEquals(0, seguimiento.actualizar("V1", LATITUD, LONGITUD, 5_000), 1e-9);
+        assertEquals(1, seguimiento.getFueraDeOrden());
+        assertTrue(Double.isNaN(seguimiento.actualizar("V1", LATITUD, LONGITUD + 0.01, 1_000_000)));
+        double gradosLongitudPorPaso = gradosPorPaso / Math.cos(Math.toRadians(LATITUD));
+        velocidad = seguimiento.actualizar("V1", LATITUD, LONGITUD + 0.01 + 2 * gradosLongitudPorPaso, 1_020_000);
+        assertEquals(36, velocidad, 0.2);
+        assertEquals(90, seguimiento.rumbo("V1"), 0.5);
+    }
+
+    @Test
+    void respetaElMaximoDeVehiculosYExpiraLosInactivos() {
+        AtomicLong reloj = new AtomicLong();
+        SeguimientoVehiculos seguimiento = new SeguimientoVehiculos(64, 8, 60_000, 300_000, 4, reloj::get);
+        for (int i = 0; i < 1_000; i++) {
+            seguimiento.actualizar("V" + i, LATITUD, LONGITUD, 1_000);
+        }
+        assertTrue(seguimiento.tamanio() <= 64, "vehículos: " + seguimiento.tamanio());
+        assertEquals(1_000 - seguimiento.tamanio(), seguimiento.getDesalojos());
+
+        // El último sigue ubicable después de los desalojos
+        assertEquals(0, seguimiento.actualizar("V999", LATITUD, LONGITUD, 2_000), 1e-9);
+
+        reloj.set(120_000);
+        seguimiento.purgarExpirados();
+        seguimiento.actualizar("V1000", LATITUD, LONGITUD, 1_000);
+        reloj.set(150_000);
+        seguimiento.purgarExpirados();
+        assertEquals(1, seguimiento.tamanio());
+        assertTrue(Double.isNaN(seguimiento.velocidad("V999")));
+        assertEquals(0, seguimiento.actualizar("V1000", LATITUD, LONGITUD, 2_000), 1e-9);
+    }
+
+    @Test
+    void prediceLasSiguientesParadasEnElSentidoDelRumbo() {
+        // Paradas P001..P005 cada 1 km hacia el norte; sin tabla de horarios el recorrido es la secuencia del ID
+        List<Parada> paradas = new ArrayList<>();
+        for (int i = 1; i <= 5; i++) {
+            paradas.add(Parada.builder().paradaId("P00" + i)
+                    .latitud(LATITUD + (i - 1) / DistanciaGeo.KM_POR_GRADO).longitud(LONGITUD).build());
+        }
+        SnapshotCatalogo catalogo = new CatalogoParadas(new FuenteParadasLista(paradas, "test"),
+                lista -> new IndiceParadasGrid(lista, 0.5)).snapshot();
+        PrediccionLlegadas prediccion = new PrediccionLlegadas(TablaHorarios.vacia(), 2, 3, 60);
+
+        // En P002 a 30 km/h hacia el norte: P003 a 1 km (2 min) y P004 a 2 km (4 min)
+        List<PrediccionLlegadas.LlegadaPredicha> norte = prediccion.predecir(
+                catalogo, "R1", 1, paradas.get(1).getLatitud(), LONGITUD, 30, 0);
+        assertEquals(2, norte.size());
+        assertEquals(2, norte.get(0).getPosicion());
+        assertEquals(120, norte.get(0).getSegundos(), 1);
+        assertEquals(3, norte.get(1).getPosicion());
+        assertEquals(240, norte.get(1).getSegundos(), 1);
+
+        // Rumbo sur: la siguiente es P001 y no hay más paradas en ese sentido
+        List<PrediccionLlegadas.LlegadaPredicha> sur = prediccion.predecir(
+                catalogo, "R1", 1, paradas.get(1).getLatitud(), LONGITUD, 30, 180);
+        assertEquals(1, sur.size());
+        assertEquals(0, sur.get(0).getPosicion());
+
+        // Detenido: no se predice
+        assertTrue(prediccion.predecir(catalogo, "R1", 1, paradas.get(1).getLatitud(), LONGITUD, 1, 0).isEmpty());
+    }
+}
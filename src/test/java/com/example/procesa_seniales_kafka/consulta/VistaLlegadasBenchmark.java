@@ -0,0 +1,140 @@
+package com.example.procesa_seniales_kafka.consulta;
+
+import com.example.procesa_seniales_kafka.model.HorarioVehiculo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latencia de las consultas en vivo (llegadas de una parada y estado de un vehículo) con 20.000
+ * vehículos en 2.000 paradas, solo con lectores y con dos escritores publicando horarios al mismo
+ * tiempo. SampleTime reporta los percentiles de cada operación; las lecturas no deben degradarse
+ * con los escritores activos.
+ *
+ * Ejecución: {@code mvn -P benchmark verify -Dbenchmark.incluir=VistaLlegadasBenchmark}
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VistaLlegadasBenchmark {
+
+    private static final int VEHICULOS = 20_000;
+    private static final int PARADAS = 2_000;
+    private static final int PARADAS_POR_VEHICULO = 3;
+    private static final String[] ESTADOS = {"ESTIMADO", "ESTIMADO", "LLEGANDO", "LLEGADO", "PASADO"};
+
+    private VistaLlegadas vista;
+    private HorarioVehiculo[] horarios;
+    private String[] paradas;
+    private String[] vehiculos;
+
+    @Setup(Level.Trial)
+    public void preparar() {
+        vista = new VistaLlegadas(20, 2 * VEHICULOS, 900_000, System::currentTimeMillis);
+        paradas = new String[PARADAS];
+        for (int p = 0; p < PARADAS; p++) {
+            paradas[p] = "PARADA-" + p;
+        }
+        vehiculos = new String[VEHICULOS];
+        horarios = new HorarioVehiculo[VEHICULOS * PARADAS_POR_VEHICULO];
+        LocalDateTime instante = LocalDateTime.now();
+        for (int v = 0; v < VEHICULOS; v++) {
+            vehiculos[v] = "VEH-" + v;
+            for (int k = 0; k < PARADAS_POR_VEHICULO; k++) {
+                int i = v * PARADAS_POR_VEHICULO + k;
+                horarios[i] = HorarioVehiculo.builder()
+                        .vehiculoId(vehiculos[v])
+                        .placaVehiculo("ABC-" + v)
+                        .paradaId(paradas[(v + k * 7) % PARADAS])
+                        .nombreParada("Parada " + ((v + k * 7) % PARADAS))
+                        .ruta("R-" + v % 50)
+                        .secuenciaParada(k + 1)
+                        .estado(ESTADOS[i % ESTADOS.length])
+                        .horarioEstimado(LocalTime.of(8, 0).plusSeconds(i % 3600))
+                        .horarioReal(LocalTime.of(8, 0))
+                        .retrasoMinutos(i % 7)
+                        .timestamp(instante)
+                        .build();
+                vista.actualizar(horarios[i]);
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int siguiente;
+
+        // Cada hilo recorre la flota desde un punto distinto
+        @Setup(Level.Trial)
+        public void ubicar() {
+            siguiente = ThreadLocalRandom.current().nextInt(VEHICULOS);
+        }
+
+        int avanzar(int paso, int limite) {
+            siguiente = (siguiente + paso) % limite;
+            return siguiente;
+        }
+    }
+
+    @Benchmark
+    @Group("lecturas")
+    @GroupThreads(3)
+    public VistaLlegadas.LlegadasParada leerParada(Cursor cursor) {
+        return vista.llegadas(paradas[cursor.avanzar(31, PARADAS)]);
+    }
+
+    @Benchmark
+    @Group("lecturas")
+    @GroupThreads(1)
+    public VistaLlegadas.EstadoVehiculo leerVehiculo(Cursor cursor) {
+        return vista.vehiculo(vehiculos[cursor.avanzar(7919, VEHICULOS)]);
+    }
+
+    @Benchmark
+    @Group("conEscritores")
+    @GroupThreads(3)
+    public VistaLlegadas.LlegadasParada leerParadaConEscritores(Cursor cursor) {
+        return vista.llegadas(paradas[cursor.avanzar(31, PARADAS)]);
+    }
+
+    @Benchmark
+    @Group("conEscritores")
+    @GroupThreads(1)
+    public VistaLlegadas.EstadoVehiculo leerVehiculoConEscritores(Cursor cursor) {
+        return vista.vehiculo(vehiculos[cursor.avanzar(7919, VEHICULOS)]);
+    }
+
+    @Benchmark
+    @Group("conEscritores")
+    @GroupThreads(2)
+    public void actualizar(Cursor cursor) {
+        vista.actualizar(horarios[cursor.avanzar(1, horarios.length)]);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(VistaLlegadasBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.procesa_seniales_kafka.consulta;
+
+import com.example.procesa_seniales_kafka.model.HorarioVehiculo;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VistaLlegadasTest {
+
+    private static final LocalDateTime INICIO = LocalDateTime.of(2026, 3, 2, 8, 0);
+
+    private long ahora = 1_700_000_000_000L;
+    private final VistaLlegadas vista = new VistaLlegadas(3, 100, 60_000, () -> ahora);
+
+    @Test
+    void ordenaLasLlegadasDeLaParadaYQuitaAlVehiculoQueLaPaso() {
+        vista.actualizar(horario("VEH-1", "P1", "ESTIMADO", 10, 0));
+        vista.actualizar(horario("VEH-2", "P1", "ESTIMADO", 5, 0));
+        vista.actualizar(horario("VEH-3", "P1", "LLEGANDO", 12, 0));
+        vista.actualizar(horario("VEH-4", "P1", "ESTIMADO", 20, 0));
+
+        // En la parada primero los que se acercan, luego por horario estimado; el más lejano no entra
+        VistaLlegadas.LlegadasParada llegadas = vista.llegadas("P1");
+        assertEquals(List.of("VEH-3", "VEH-2", "VEH-1"), vehiculos(llegadas.llegadas()));
+
+        vista.actualizar(horario("VEH-3", "P1", "LLEGADO", 12, 60));
+        vista.actualizar(horario("VEH-3", "P1", "PASADO", 12, 120));
+        VistaLlegadas.LlegadasParada siguiente = vista.llegadas("P1");
+        assertEquals(List.of("VEH-2", "VEH-1"), vehiculos(siguiente.llegadas()));
+        assertTrue(siguiente.version() > llegadas.version());
+        // La instantánea anterior no cambia
+        assertEquals(3, llegadas.llegadas().size());
+
+        VistaLlegadas.EstadoVehiculo vehiculo = vista.vehiculo("VEH-3");
+        assertEquals("PASADO", vehiculo.ultima().estado());
+        assertTrue(vehiculo.proximas().isEmpty());
+
+        // Un horario anterior al ya registrado no vuelve a poner al vehículo en la parada
+        vista.actualizar(horario("VEH-3", "P1", "LLEGANDO", 12, 30));
+        assertEquals(List.of("VEH-2", "VEH-1"), vehiculos(vista.llegadas("P1").llegadas()));
+        assertEquals(1, vista.getIgnoradas());
+    }
+
+    @Test
+    void purgaLasLlegadasYLosVehiculosSinActualizar() {
+        vista.actualizar(horario("VEH-1", "P1", "ESTIMADO", 10, 0));
+        vista.actualizar(horario("VEH-1", "P2", "ESTIMADO", 15, 0));
+        ahora += 30_000;
+        vista.actualizar(horario("VEH-1", "P1", "LLEGANDO", 10, 30));
+        vista.actualizar(horario("VEH-2", "P2", "ESTIMADO", 18, 30));
+
+        ahora += 40_000;
+        vista.purgarExpiradas();
+
+        // La estimación de VEH-1 para P2 quedó vieja; lo demás sigue vigente
+        assertEquals(List.of("VEH-2"), vehiculos(vista.llegadas("P2").llegadas()));
+        assertEquals(List.of("P1"), vista.vehiculo("VEH-1").proximas().stream()
+                .map(VistaLlegadas.Llegada::paradaId).toList());
+
+        ahora += 60_000;
+        vista.purgarExpiradas();
+        assertNull(vista.llegadas("P1"));
+        assertNull(vista.vehiculo("VEH-1"));
+        assertEquals(0, vista.getParadas());
+        assertEquals(2, vista.getExpiradas());
+    }
+
+    private static List<String> vehiculos(List<VistaLlegadas.Llegada> llegadas) {
+        return llegadas.stream().map(VistaLlegadas.Llegada::vehiculoId).toList();
+    }
+
+    private static HorarioVehiculo horario(String vehiculoId, String paradaId, String estado, int minutosEstimado,
+                                           int segundosEvento) {
+        return HorarioVehiculo.builder()
+                .vehiculoId(vehiculoId)
+                .paradaId(paradaId)
+                .estado(estado)
+                .horarioEstimado(LocalTime.of(8, minutosEstimado))
+                .timestamp(INICIO.plusSeconds(segundosEvento))
+                .ruta("R-1")
+                .build();
+    }
+}
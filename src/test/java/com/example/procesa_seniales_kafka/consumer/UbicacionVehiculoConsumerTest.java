@@ -0,0 +1,130 @@
+package com.example.procesa_seniales_kafka.consumer;
+
+import com.example.procesa_seniales_kafka.auditoria.RegistroAuditoria;
+import com.example.procesa_seniales_kafka.checkpoint.CheckpointEstado;
+import com.example.procesa_seniales_kafka.errores.CanalErrores;
+import com.example.procesa_seniales_kafka.estado.ReordenEventos;
+import com.example.procesa_seniales_kafka.metricas.MetricasProcesamiento;
+import com.example.procesa_seniales_kafka.model.UbicacionVehiculo;
+import com.example.procesa_seniales_kafka.service.ProcesamientoSenialesService;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class UbicacionVehiculoConsumerTest {
+
+    private static final String TOPICO = "ubicaciones_vehiculos";
+
+    private final ProcesamientoSenialesService servicio = mock(ProcesamientoSenialesService.class);
+    private final CheckpointEstado checkpoint = mock(CheckpointEstado.class);
+    // Reenvíos al canal de errores y acks, en el orden en que ocurren
+    private final List<String> eventos = new CopyOnWriteArrayList<>();
+    // Respuesta del broker a los reenvíos del canal de errores
+    private CompletableFuture<Void> aceptacion = ReordenEventos.COMPLETADO;
+
+    private final CanalErrores canalErrores = new CanalErrores(new long[]{1000, 10_000}, TOPICO + "-reintento",
+            TOPICO + "-dlt", new String[]{"java.lang.IllegalArgumentException"}, new CanalErrores.Salida() {
+        @Override
+        public CompletableFuture<?> ubicacion(ProducerRecord<String, UbicacionVehiculo> registro) {
+            eventos.add(registro.topic() + " <- "
+                    + CanalErrores.numero(registro.headers(), CanalErrores.HEADER_OFFSET_ORIGEN, -1));
+            return aceptacion;
+        }
+
+        @Override
+        public CompletableFuture<?> bytes(ProducerRecord<String, byte[]> registro) {
+            throw new UnsupportedOperationException();
+        }
+    }, System::currentTimeMillis);
+
+    private final UbicacionVehiculoConsumer consumer = new UbicacionVehiculoConsumer();
+
+    UbicacionVehiculoConsumerTest() {
+        ReflectionTestUtils.setField(consumer, "procesamientoService", servicio);
+        ReflectionTestUtils.setField(consumer, "auditoria", mock(RegistroAuditoria.class));
+        ReflectionTestUtils.setField(consumer, "metricas", mock(MetricasProcesamiento.class));
+        ReflectionTestUtils.setField(consumer, "checkpoint", checkpoint);
+        ReflectionTestUtils.setField(consumer, "canalErrores", canalErrores);
+    }
+
+    @Test
+    void derivaLaFallidaAntesDeConfirmarSuOffset() {
+        UbicacionVehiculo ubicacion = ubicacion("VEH-001");
+        when(servicio.procesarUbicacion(ubicacion))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("sin broker")));
+        aceptacion = new CompletableFuture<>();
+
+        Acknowledgment ack = consumir(ubicacion, 7);
+        assertEquals(List.of(TOPICO + "-reintento-1 <- 7"), eventos);
+        verify(ack, never()).acknowledge();
+
+        // El offset se confirma recién cuando el broker aceptó el reenvío
+        aceptacion.complete(null);
+        assertEquals(List.of(TOPICO + "-reintento-1 <- 7", "ack 7"), eventos);
+        verify(checkpoint).registrarOffset(0, 7);
+    }
+
+    @Test
+    void noConfirmaOffsetsPosterioresAUnoSinResolver() {
+        UbicacionVehiculo retenida = ubicacion("VEH-001");
+        UbicacionVehiculo sana = ubicacion("VEH-002");
+        UbicacionVehiculo fallida = ubicacion("VEH-003");
+        CompletableFuture<Void> confirmacionRetenida = new CompletableFuture<>();
+        when(servicio.procesarUbicacion(retenida)).thenReturn(confirmacionRetenida);
+        when(servicio.procesarUbicacion(sana)).thenReturn(ReordenEventos.COMPLETADO);
+        when(servicio.procesarUbicacion(fallida))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("sin broker")));
+
+        Acknowledgment ack1 = consumir(retenida, 1);
+        Acknowledgment ack2 = consumir(sana, 2);
+        Acknowledgment ack3 = consumir(fallida, 3);
+
+        // La fallida ya se derivó, pero ningún offset se confirma detrás del 1
+        assertEquals(List.of(TOPICO + "-reintento-1 <- 3"), eventos);
+        verify(ack2, never()).acknowledge();
+        verify(ack3, never()).acknowledge();
+
+        confirmacionRetenida.complete(null);
+        assertEquals(List.of(TOPICO + "-reintento-1 <- 3", "ack 1", "ack 2", "ack 3"), eventos);
+        InOrder orden = inOrder(checkpoint);
+        orden.verify(checkpoint).registrarOffset(0, 1);
+        orden.verify(checkpoint).registrarOffset(0, 2);
+        orden.verify(checkpoint).registrarOffset(0, 3);
+        verify(ack1).acknowledge();
+    }
+
+    @Test
+    void mandaAlDeadLetterLaQueNoSePuedeReintentar() {
+        UbicacionVehiculo invalida = ubicacion("VEH-001");
+        when(servicio.procesarUbicacion(invalida)).thenThrow(new IllegalArgumentException("latitud fuera de rango"));
+
+        consumir(invalida, 4);
+
+        assertEquals(List.of(TOPICO + "-dlt <- 4", "ack 4"), eventos);
+    }
+
+    private Acknowledgment consumir(UbicacionVehiculo ubicacion, long offset) {
+        Acknowledgment ack = mock(Acknowledgment.class);
+        doAnswer(invocacion -> eventos.add("ack " + offset)).when(ack).acknowledge();
+        consumer.consumirUbicacion(ubicacion, ubicacion.getVehiculoId(), TOPICO, 0, offset, ack);
+        return ack;
+    }
+
+    private static UbicacionVehiculo ubicacion(String vehiculoId) {
+        return UbicacionVehiculo.builder().vehiculoId(vehiculoId).latitud(-12.0464).longitud(-77.0428).build();
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.procesa_seniales_kafka.consumer;
+
+import com.example.procesa_seniales_kafka.errores.CanalErrores;
+import com.example.procesa_seniales_kafka.estado.ReordenEventos;
+import com.example.procesa_seniales_kafka.model.UbicacionVehiculo;
+import com.example.procesa_seniales_kafka.service.ProcesamientoSenialesService;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.errors.TimeoutException;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.KafkaException;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class UbicacionVehiculoReintentoConsumerTest {
+
+    private static final String TOPICO = "ubicaciones_vehiculos";
+
+    private final ProcesamientoSenialesService servicio = mock(ProcesamientoSenialesService.class);
+    // Reenvíos al canal de errores y acks, en el orden en que ocurren
+    private final List<String> eventos = new CopyOnWriteArrayList<>();
+    // Respuesta del broker a los reenvíos del canal de errores
+    private CompletableFuture<Void> aceptacion = ReordenEventos.COMPLETADO;
+
+    private final CanalErrores canalErrores = new CanalErrores(new long[]{1000, 10_000}, TOPICO + "-reintento",
+            TOPICO + "-dlt", new String[]{"java.lang.IllegalArgumentException"}, new CanalErrores.Salida() {
+        @Override
+        public CompletableFuture<?> ubicacion(ProducerRecord<String, UbicacionVehiculo> registro) {
+            eventos.add(registro.topic() + " <- "
+                    + CanalErrores.numero(registro.headers(), CanalErrores.HEADER_OFFSET_ORIGEN, -1));
+            return aceptacion;
+        }
+
+        @Override
+        public CompletableFuture<?> bytes(ProducerRecord<String, byte[]> registro) {
+            throw new UnsupportedOperationException();
+        }
+    }, System::currentTimeMillis);
+
+    private final UbicacionVehiculoReintentoConsumer consumer = new UbicacionVehiculoReintentoConsumer();
+
+    UbicacionVehiculoReintentoConsumerTest() {
+        ReflectionTestUtils.setField(consumer, "procesamientoService", servicio);
+        ReflectionTestUtils.setField(consumer, "canalErrores", canalErrores);
+    }
+
+    @Test
+    void postergaConNackHastaQueVenceLaEspera() {
+        Acknowledgment ack = ack();
+
+        consumer.consumirReintento(reintento(System.currentTimeMillis() + 60_000), ack);
+
+        verify(ack).nack(argThat((Duration espera) -> espera.toMillis() > 0 && espera.toMillis() <= 60_000));
+        verify(ack, never()).acknowledge();
+        verifyNoInteractions(servicio);
+    }
+
+    @Test
+    void confirmaElVencidoRecienCuandoSusHorariosSeConfirmaron() {
+        CompletableFuture<Void> confirmacion = new CompletableFuture<>();
+        when(servicio.reprocesarUbicacion(any())).thenReturn(confirmacion);
+        Acknowledgment ack = ack();
+        CompletableFuture.delayedExecutor(100, TimeUnit.MILLISECONDS)
+                .execute(() -> {
+                    eventos.add("horarios confirmados");
+                    confirmacion.complete(null);
+                });
+
+        consumer.consumirReintento(reintento(System.currentTimeMillis() - 1), ack);
+
+        assertEquals(List.of("horarios confirmados", "ack"), eventos);
+        assertEquals(1, canalErrores.getRecuperados());
+    }
+
+    @Test
+    void derivaAlSiguienteTopicoAntesDeConfirmar() {
+        when(servicio.reprocesarUbicacion(any()))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("sin broker")));
+        Acknowledgment ack = ack();
+
+        consumer.consumirReintento(reintento(System.currentTimeMillis() - 1), ack);
+        assertEquals(List.of(TOPICO + "-reintento-2 <- 42", "ack"), eventos);
+
+        // Si el broker no acepta el reenvío el offset no avanza: el contenedor vuelve a entregar el registro
+        aceptacion = CompletableFuture.failedFuture(new TimeoutException("sin broker"));
+        Acknowledgment otro = ack();
+        assertThrows(KafkaException.class,
+                () -> consumer.consumirReintento(reintento(System.currentTimeMillis() - 1), otro));
+        verify(otro, never()).acknowledge();
+        assertEquals(0, canalErrores.getRecuperados());
+    }
+
+    @Test
+    void mandaAlDeadLetterElRegistroVenenoso() {
+        when(servicio.reprocesarUbicacion(any())).thenThrow(new IllegalArgumentException("latitud fuera de rango"));
+        Acknowledgment ack = ack();
+
+        consumer.consumirReintento(reintento(System.currentTimeMillis() - 1), ack);
+
+        assertEquals(List.of(TOPICO + "-dlt <- 42", "ack"), eventos);
+        assertEquals(1, canalErrores.getADlt());
+        assertEquals(0, canalErrores.getRecuperados());
+    }
+
+    private Acknowledgment ack() {
+        Acknowledgment ack = mock(Acknowledgment.class);
+        doAnswer(invocacion -> eventos.add("ack")).when(ack).acknowledge();
+        return ack;
+    }
+
+    /**
+     * Primer reintento de la ubicación del offset 42 de la partición 3 del tópico principal.
+     */
+    private static ConsumerRecord<String, UbicacionVehiculo> reintento(long venceMs) {
+        ConsumerRecord<String, UbicacionVehiculo> registro = new ConsumerRecord<>(TOPICO + "-reintento-1", 0, 5,
+                "VEH-001", UbicacionVehiculo.builder().vehiculoId("VEH-001").build());
+        registro.headers().add(CanalErrores.HEADER_TOPICO_ORIGEN, TOPICO.getBytes(StandardCharsets.UTF_8));
+        registro.headers().add(CanalErrores.HEADER_PARTICION_ORIGEN, ascii(3));
+        registro.headers().add(CanalErrores.HEADER_OFFSET_ORIGEN, ascii(42));
+        registro.headers().add(CanalErrores.HEADER_INTENTO, ascii(1));
+        registro.headers().add(CanalErrores.HEADER_VENCE, ascii(venceMs));
+        return registro;
+    }
+
+    private static byte[] ascii(long valor) {
+        return Long.toString(valor).getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.procesa_seniales_kafka.errores;
+
+import com.example.procesa_seniales_kafka.model.UbicacionVehiculo;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.errors.TimeoutException;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.KafkaException;
+import org.springframework.kafka.support.KafkaUtils;
+import org.springframework.kafka.support.serializer.DeserializationException;
+import org.springframework.kafka.support.serializer.SerializationUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CanalErroresTest {
+
+    private static final long INSTANTE = 1_700_000_000_000L;
+
+    private final List<ProducerRecord<String, UbicacionVehiculo>> ubicaciones = new ArrayList<>();
+    private final List<ProducerRecord<String, byte[]>> bytes = new ArrayList<>();
+    private boolean brokerCaido;
+    private int rechazos;
+
+    private final CanalErrores canal = new CanalErrores(new long[]{1000, 10_000}, "ubicaciones-reintento",
+            "ubicaciones-dlt", new String[]{"java.lang.IllegalArgumentException"}, new CanalErrores.Salida() {
+        @Override
+        public CompletableFuture<?> ubicacion(ProducerRecord<String, UbicacionVehiculo> registro) {
+            ubicaciones.add(registro);
+            return brokerCaido || rechazos-- > 0 ? CompletableFuture.failedFuture(new TimeoutException("sin broker"))
+                    : CompletableFuture.completedFuture(null);
+        }
+
+        @Override
+        public CompletableFuture<?> bytes(ProducerRecord<String, byte[]> registro) {
+            CanalErroresTest.this.bytes.add(registro);
+            return CompletableFuture.completedFuture(null);
+        }
+    }, () -> INSTANTE);
+
+    @Test
+    void recorreLosTopicosDeReintentoYTerminaEnElDeadLetter() {
+        UbicacionVehiculo ubicacion = ubicacion();
+        canal.derivar(ubicacion, "ubicaciones", 3, 42, new IllegalStateException("falla")).join();
+
+        ProducerRecord<String, UbicacionVehiculo> primero = ubicaciones.get(0);
+        assertEquals("ubicaciones-reintento-1", primero.topic());
+        assertEquals("VEH-1", primero.key());
+        assertEquals("procesamiento", CanalErrores.texto(primero.headers(), CanalErrores.HEADER_CLASE));
+        assertEquals(INSTANTE + 1000, CanalErrores.numero(primero.headers(), CanalErrores.HEADER_VENCE, 0));
+
+        // Cada tópico de reintento deriva al siguiente conservando el origen
+        ProducerRecord<String, UbicacionVehiculo> segundo = reintentar(primero,
+                new CompletionException(new KafkaException("horario sin confirmar", new TimeoutException("lento"))));
+        assertEquals("ubicaciones-reintento-2", segundo.topic());
+        assertEquals("publicacion", CanalErrores.texto(segundo.headers(), CanalErrores.HEADER_CLASE));
+        assertEquals(INSTANTE + 10_000, CanalErrores.numero(segundo.headers(), CanalErrores.HEADER_VENCE, 0));
+
+        ProducerRecord<String, UbicacionVehiculo> dlt = reintentar(segundo, new IllegalStateException("otra vez"));
+        assertEquals("ubicaciones-dlt", dlt.topic());
+        assertEquals(3, CanalErrores.numero(dlt.headers(), CanalErrores.HEADER_INTENTO, 0));
+        assertEquals("ubicaciones", CanalErrores.texto(dlt.headers(), CanalErrores.HEADER_TOPICO_ORIGEN));
+        assertEquals(3, CanalErrores.numero(dlt.headers(), CanalErrores.HEADER_PARTICION_ORIGEN, -1));
+        assertEquals(42, CanalErrores.numero(dlt.headers(), CanalErrores.HEADER_OFFSET_ORIGEN, -1));
+        assertNull(dlt.headers().lastHeader(CanalErrores.HEADER_VENCE));
+
+        // Las excepciones de validación no se reintentan
+        canal.derivar(ubicacion, "ubicaciones", 0, 7, new IllegalArgumentException("latitud fuera de rango")).join();
+        assertEquals("ubicaciones-dlt", ubicaciones.get(3).topic());
+        assertEquals("java.lang.IllegalArgumentException",
+                CanalErrores.texto(ubicaciones.get(3).headers(), CanalErrores.HEADER_EXCEPCION));
+
+        assertEquals(2, canal.getFallos(ClaseFallo.PROCESAMIENTO));
+        assertEquals(1, canal.getFallos(ClaseFallo.PUBLICACION));
+        assertEquals(1, canal.getFallos(ClaseFallo.VALIDACION));
+        assertEquals(2, canal.getAReintento());
+        assertEquals(2, canal.getADlt());
+    }
+
+    @Test
+    void elDeadLetterConservaLosBytesDeLosRegistrosIlegibles() {
+        byte[] original = "{\"vehiculoId\": ".getBytes(StandardCharsets.UTF_8);
+        RecordHeaders headers = new RecordHeaders();
+        headers.add("x-formato", "json".getBytes(StandardCharsets.US_ASCII));
+        SerializationUtils.deserializationException(headers, original,
+                new DeserializationException("JSON incompleto", original, false, new IllegalStateException()), false);
+        ConsumerRecord<String, UbicacionVehiculo> registro = registro("ubicaciones", 1, 9, "VEH-1", null, headers);
+
+        canal.recuperar(registro, new IllegalStateException("contenedor"));
+
+        ProducerRecord<String, byte[]> dlt = bytes.get(0);
+        assertEquals("ubicaciones-dlt", dlt.topic());
+        assertArrayEquals(original, dlt.value());
+        assertEquals("json", CanalErrores.texto(dlt.headers(), "x-formato"));
+        assertNull(dlt.headers().lastHeader(KafkaUtils.VALUE_DESERIALIZER_EXCEPTION_HEADER));
+        assertEquals("deserializacion", CanalErrores.texto(dlt.headers(), CanalErrores.HEADER_CLASE));
+        assertEquals(9, CanalErrores.numero(dlt.headers(), CanalErrores.HEADER_OFFSET_ORIGEN, -1));
+        assertEquals(1, canal.getFallos(ClaseFallo.DESERIALIZACION));
+
+        // Si el broker no acepta el reenvío, el recuperador falla para que el registro se vuelva a entregar
+        brokerCaido = true;
+        assertThrows(KafkaException.class, () -> canal.recuperar(
+                registro("ubicaciones", 1, 10, "VEH-1", ubicacion(), new RecordHeaders()), new IllegalStateException()));
+        assertEquals(1, canal.getEnviosFallidos());
+        assertEquals(0, canal.getAReintento());
+    }
+
+    @Test
+    void repiteElReenvioHastaQueElBrokerLoAcepta() {
+        rechazos = 2;
+        CompletableFuture<Void> derivada = canal.derivar(ubicacion(), "ubicaciones", 0, 5,
+                new IllegalStateException("falla"));
+        assertFalse(derivada.isDone());
+
+        derivada.orTimeout(5, TimeUnit.SECONDS).join();
+        assertEquals(3, ubicaciones.size());
+        assertEquals("ubicaciones-reintento-1", ubicaciones.get(2).topic());
+        assertEquals(2, canal.getEnviosFallidos());
+        // El fallo se cuenta una sola vez aunque el reenvío se repita
+        assertEquals(1, canal.getFallos(ClaseFallo.PROCESAMIENTO));
+        assertEquals(1, canal.getAReintento());
+    }
+
+    private ProducerRecord<String, UbicacionVehiculo> reintentar(ProducerRecord<String, UbicacionVehiculo> enviado,
+                                                                 Throwable error) {
+        canal.derivar(registro(enviado.topic(), 0, ubicaciones.size(), enviado.key(), enviado.value(),
+                enviado.headers()), error).join();
+        return ubicaciones.get(ubicaciones.size() - 1);
+    }
+
+    private static ConsumerRecord<String, UbicacionVehiculo> registro(String topico, int particion, long offset,
+                                                                      String clave, UbicacionVehiculo valor,
+                                                                      Headers headers) {
+        return new ConsumerRecord<>(topico, particion, offset, INSTANTE, TimestampType.CREATE_TIME, -1, -1,
+                clave, valor, headers, Optional.empty());
+    }
+
+    private static UbicacionVehiculo ubicacion() {
+        return UbicacionVehiculo.builder().vehiculoId("VEH-1").latitud(-12.05).longitud(-77.04).build();
+    }
+}
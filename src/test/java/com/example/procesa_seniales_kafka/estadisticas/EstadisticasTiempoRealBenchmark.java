@@ -0,0 +1,95 @@
+package com.example.procesa_seniales_kafka.estadisticas;
+
+import com.example.procesa_seniales_kafka.model.HorarioVehiculo;
+import com.example.procesa_seniales_kafka.model.UbicacionVehiculo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Costo de registrar un horario en las estadísticas en vivo (ventanas global y por ruta y estado)
+ * con varios hilos escribiendo en las mismas series, y costo de armar el resumen del endpoint.
+ * Con {@code -prof gc} el registro debe reportar 0 B/op.
+ *
+ * Ejecución: {@code mvn -P benchmark verify -Dbenchmark.incluir=EstadisticasTiempoRealBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EstadisticasTiempoRealBenchmark {
+
+    private static final String[] RUTAS = {"R1", "R2", "R3", "R4", "R5", "R6", "R7", "R8"};
+    private static final String[] ESTADOS = {"LLEGADO", "LLEGANDO", "ESTIMADO", "PASADO"};
+
+    private EstadisticasTiempoReal estadisticas;
+    private UbicacionVehiculo[] ubicaciones;
+    private HorarioVehiculo[] horarios;
+
+    @Setup(Level.Trial)
+    public void preparar() {
+        estadisticas = new EstadisticasTiempoReal(64);
+        ubicaciones = new UbicacionVehiculo[64];
+        horarios = new HorarioVehiculo[64];
+        LocalDateTime ahora = LocalDateTime.now();
+        for (int i = 0; i < ubicaciones.length; i++) {
+            ubicaciones[i] = UbicacionVehiculo.builder()
+                    .vehiculoId("VEH-" + i)
+                    .timestamp(ahora.minusNanos((i * 37L % 2000) * 1_000_000))
+                    .build();
+            horarios[i] = HorarioVehiculo.builder()
+                    .vehiculoId("VEH-" + i)
+                    .ruta(RUTAS[i % RUTAS.length])
+                    .estado(ESTADOS[i % ESTADOS.length])
+                    .build();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int siguiente;
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void registrarHorario(Cursor cursor) {
+        int i = cursor.siguiente++ & 63;
+        estadisticas.registrarHorario(ubicaciones[i], horarios[i]);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void registrarUbicacion() {
+        estadisticas.registrarUbicacion();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public Map<String, Object> resumen() {
+        return estadisticas.resumen(null);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(EstadisticasTiempoRealBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
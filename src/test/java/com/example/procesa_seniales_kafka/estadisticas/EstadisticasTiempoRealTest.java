@@ -0,0 +1,89 @@
+package com.example.procesa_seniales_kafka.estadisticas;
+
+import com.example.procesa_seniales_kafka.model.HorarioVehiculo;
+import com.example.procesa_seniales_kafka.model.UbicacionVehiculo;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EstadisticasTiempoRealTest {
+
+    private static final LocalDateTime INICIO = LocalDateTime.of(2026, 2, 24, 8, 0);
+
+    private final AtomicLong reloj = new AtomicLong(INICIO.toInstant(ZoneOffset.UTC).toEpochMilli());
+    private final EstadisticasTiempoReal estadisticas = new EstadisticasTiempoReal(64, reloj::get, ZoneOffset.UTC);
+
+    @Test
+    void losPercentilesRespetanLaPrecisionDelHistograma() {
+        // Latencias de 1 a 10.000 ms: la ubicación es anterior al envío en esa cantidad de ms
+        for (int latencia = 1; latencia <= 10_000; latencia++) {
+            estadisticas.registrarHorario(ubicacionHace(latencia), horario("R1", "LLEGADO"));
+        }
+
+        Map<String, Object> latencia = latencia(ventana(estadisticas.resumen(null), "1m"));
+        assertEquals(10_000L, latencia.get("muestras"));
+        assertCercano(5_000, (long) latencia.get("p50"));
+        assertCercano(9_900, (long) latencia.get("p99"));
+        assertCercano(9_990, (long) latencia.get("p999"));
+        assertEquals(10_000L, latencia.get("max"));
+    }
+
+    @Test
+    void lasVentanasDescartanLosMinutosQueQuedanAtras() {
+        estadisticas.registrarHorario(ubicacionHace(100), horario("R1", "LLEGADO"));
+        estadisticas.registrarHorario(ubicacionHace(200), horario("R2", "ESTIMADO"));
+        estadisticas.registrarUbicacion();
+
+        reloj.addAndGet(3 * 60_000L);
+        estadisticas.registrarHorario(ubicacionHace(300), horario("R1", "LLEGADO"));
+
+        Map<String, Object> resumen = estadisticas.resumen(null);
+        assertEquals(1L, ventana(resumen, "1m").get("horarios"));
+        assertEquals(3L, ventana(resumen, "5m").get("horarios"));
+
+        // La ventana de 15 minutos cubre los 15 minutos completos anteriores más el minuto en curso
+        reloj.addAndGet(15 * 60_000L);
+        assertEquals(1L, ventana(estadisticas.resumen(null), "15m").get("horarios"));
+        reloj.addAndGet(60_000L);
+        estadisticas.registrarUbicacion();
+        assertEquals(0L, ventana(estadisticas.resumen(null), "15m").get("horarios"));
+
+        Map<?, ?> rutas = (Map<?, ?>) estadisticas.resumen("R2").get("por_ruta");
+        assertEquals(1, rutas.size());
+        assertTrue(rutas.containsKey("R2"));
+    }
+
+    private UbicacionVehiculo ubicacionHace(long milis) {
+        LocalDateTime ahora = LocalDateTime.ofEpochSecond(reloj.get() / 1000, (int) (reloj.get() % 1000) * 1_000_000,
+                ZoneOffset.UTC);
+        return UbicacionVehiculo.builder()
+                .vehiculoId("VEH-001")
+                .timestamp(ahora.minusNanos(milis * 1_000_000))
+                .build();
+    }
+
+    private static HorarioVehiculo horario(String ruta, String estado) {
+        return HorarioVehiculo.builder().vehiculoId("VEH-001").ruta(ruta).estado(estado).build();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> ventana(Map<String, Object> resumen, String nombre) {
+        return (Map<String, Object>) ((Map<String, Object>) resumen.get("ventanas")).get(nombre);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> latencia(Map<String, Object> ventana) {
+        return (Map<String, Object>) ventana.get("latencia_ms");
+    }
+
+    private static void assertCercano(long esperado, long real) {
+        assertTrue(real >= esperado && real <= esperado * 1.04,
+                "esperado ~" + esperado + " (error relativo < 4%) pero fue " + real);
+    }
+}
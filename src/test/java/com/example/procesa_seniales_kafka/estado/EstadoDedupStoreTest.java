@@ -0,0 +1,76 @@
+package com.example.procesa_seniales_kafka.estado;
+
+import com.example.procesa_seniales_kafka.model.EstadoParada;
+import org.apache.kafka.clients.producer.internals.BuiltInPartitioner;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EstadoDedupStoreTest {
+
+    private final AtomicLong reloj = new AtomicLong(1_000_000);
+
+    @Test
+    void publicaAlCambiarDeEstadoOTrasElIntervalo() {
+        EstadoDedupStore store = new EstadoDedupStore(1000, 600_000, 4, 60_000, reloj::get);
+
+        assertTrue(store.debePublicar("VEH-001", "P001", EstadoParada.ESTIMADO, 0));
+        assertFalse(store.debePublicar("VEH-001", "P001", EstadoParada.ESTIMADO, 30_000));
+        assertTrue(store.debePublicar("VEH-001", "P001", EstadoParada.LLEGANDO, 31_000));
+        assertFalse(store.debePublicar("VEH-001", "P001", EstadoParada.LLEGANDO, 90_999));
+        assertTrue(store.debePublicar("VEH-001", "P001", EstadoParada.LLEGANDO, 91_000));
+
+        // Otra parada del mismo vehículo es una clave distinta
+        assertTrue(store.debePublicar("VEH-001", "P002", EstadoParada.LLEGANDO, 91_000));
+        assertEquals(2, store.tamanio());
+        assertEquals(4, store.getAciertos());
+    }
+
+    @Test
+    void expiraEntradasInactivasPorTtl() {
+        EstadoDedupStore store = new EstadoDedupStore(1000, 10_000, 4, 60_000, reloj::get);
+        store.debePublicar("VEH-001", "P001", EstadoParada.ESTIMADO, 0);
+        store.debePublicar("VEH-002", "P001", EstadoParada.ESTIMADO, 0);
+
+        reloj.addAndGet(10_001);
+        assertTrue(store.debePublicar("VEH-001", "P001", EstadoParada.ESTIMADO, 1_000));
+
+        store.purgarExpirados();
+        assertEquals(1, store.tamanio());
+        assertEquals(2, store.getDesalojosTtl());
+    }
+
+    @Test
+    void respetaElMaximoDeEntradas() {
+        EstadoDedupStore store = new EstadoDedupStore(256, 600_000, 4, 60_000, reloj::get);
+        for (int i = 0; i < 10_000; i++) {
+            reloj.incrementAndGet();
+            store.debePublicar("VEH-" + i, "P001", EstadoParada.ESTIMADO, i);
+        }
+
+        assertTrue(store.tamanio() <= 256);
+        assertEquals(10_000 - store.tamanio(), store.getDesalojosCapacidad());
+
+        // Las entradas más recientes siguen presentes
+        assertFalse(store.debePublicar("VEH-9999", "P001", EstadoParada.ESTIMADO, 9_999));
+    }
+
+    @Test
+    void eligeElSegmentoConElHashDelParticionadorDeKafka() {
+        int particiones = 8;
+        int mascaraSegmentos = 64 - 1;
+        for (String vehiculoId : new String[]{"VEH-001", "VEH-0002", "VEH-00003", "V", "", "BUS-ñandú-7"}) {
+            int hash = EstadoDedupStore.hashVehiculo(vehiculoId);
+            int particion = BuiltInPartitioner.partitionForKey(vehiculoId.getBytes(StandardCharsets.UTF_8), particiones);
+
+            assertEquals(particion, (hash & 0x7fffffff) % particiones, vehiculoId);
+            // Los segmentos de una partición no se cruzan con los de otra
+            assertEquals(particion, (hash & mascaraSegmentos) % particiones, vehiculoId);
+        }
+    }
+}
@@ -0,0 +1,296 @@
+package com.example.procesa_seniales_kafka.estado;
+
+import com.example.procesa_seniales_kafka.geo.DistanciaGeo;
+import com.example.procesa_seniales_kafka.geo.IndiceParadas;
+import com.example.procesa_seniales_kafka.geo.IndiceParadasGrid;
+import com.example.procesa_seniales_kafka.model.EstadoParada;
+import com.example.procesa_seniales_kafka.model.Parada;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MaquinaEstadosParadaTest {
+
+    private static final double UMBRAL_KM = 0.5;
+    private static final double LATITUD = -12.05;
+    private static final double LONGITUD = -77.04;
+
+    private final AtomicLong reloj = new AtomicLong(1_000_000);
+
+    private MaquinaEstadosParada maquina() {
+        return new MaquinaEstadosParada(UMBRAL_KM, 0.05, 0.2, 10, 0.05, 2, 1000, 600_000, 4, reloj::get);
+    }
+
+    @Test
+    void avanzaSinRetrocederYPasaConHisteresis() {
+        MaquinaEstadosParada maquina = maquina();
+
+        assertTransicion(EstadoParada.ESTIMADO, true, null, observar(maquina, "P1", 0.4, 30));
+        assertTransicion(EstadoParada.LLEGANDO, true, null, observar(maquina, "P1", 0.15, 8));
+        assertTransicion(EstadoParada.LLEGADO, true, null, observar(maquina, "P1", 0.045, 0));
+        // Ruido alrededor de 50 m: no vuelve a LLEGANDO ni republica LLEGADO
+        assertTransicion(EstadoParada.LLEGADO, false, null, observar(maquina, "P1", 0.055, 0));
+        assertTransicion(EstadoParada.LLEGADO, false, null, observar(maquina, "P1", 0.048, 0));
+
+        // Partida: más de 100 m (50 m + histéresis) en dos ubicaciones seguidas
+        assertTransicion(EstadoParada.LLEGADO, false, null, observar(maquina, "P1", 0.12, 20));
+        assertTransicion(EstadoParada.LLEGADO, false, null, observar(maquina, "P1", 0.09, 20));
+        assertTransicion(EstadoParada.LLEGADO, false, null, observar(maquina, "P1", 0.12, 20));
+        assertTransicion(null, false, "P1", observar(maquina, "P1", 0.16, 30));
+        // Ya pasada: no se vuelve a informar aunque siga siendo la más cercana o salga del radio
+        assertSame(MaquinaEstadosParada.Transicion.NINGUNA, observar(maquina, "P1", 0.04, 30));
+        sinParada(maquina, 0.6);
+        assertSame(MaquinaEstadosParada.Transicion.NINGUNA, sinParada(maquina, 0.6));
+
+        // Sin llegar: entre el umbral (500 m) y el radio de salida (550 m) sigue con la parada,
+        // fuera de él hacen falta dos ubicaciones seguidas
+        observar(maquina, "P1", 0.45, 30);
+        assertSame(MaquinaEstadosParada.Transicion.NINGUNA, sinParada(maquina, 0.52));
+        assertSame(MaquinaEstadosParada.Transicion.NINGUNA, sinParada(maquina, 0.6));
+        assertTransicion(null, false, "P1", sinParada(maquina, 0.62));
+
+        // Cambio de parada: la nueva tiene que ser la más cercana dos veces seguidas
+        observar(maquina, "P1", 0.3, 30);
+        assertSame(MaquinaEstadosParada.Transicion.NINGUNA, observar(maquina, "P2", 0.25, 30));
+        assertTransicion(EstadoParada.ESTIMADO, false, null, observar(maquina, "P1", 0.26, 30));
+        assertSame(MaquinaEstadosParada.Transicion.NINGUNA, observar(maquina, "P2", 0.24, 30));
+        assertTransicion(EstadoParada.ESTIMADO, true, "P1", observar(maquina, "P2", 0.2, 30));
+
+        assertEquals(3, maquina.getPasadas());
+        assertEquals(1, maquina.tamanio());
+    }
+
+    @Test
+    void unaUbicacionTardiaAdelantaLaLlegada() {
+        MaquinaEstadosParada maquina = maquina();
+        maquina.observar("VEH-001", "P1", LATITUD, LONGITUD, 0.3, 30, 10_000);
+        // La ubicación de los 20 s en la parada todavía no llegó: la llegada queda a los 30 s
+        maquina.observar("VEH-001", "P1", LATITUD, LONGITUD, 0.04, 0, 30_000);
+
+        assertFalse(maquina.corregirLlegada("VEH-001", "P2", 20_000));
+        assertFalse(maquina.corregirLlegada("VEH-002", "P1", 20_000));
+        assertTrue(maquina.corregirLlegada("VEH-001", "P1", 20_000));
+        assertFalse(maquina.corregirLlegada("VEH-001", "P1", 25_000));
+
+        // Ya pasada sigue siendo corregible hasta que otra parada la reemplaza
+        maquina.observar("VEH-001", "P1", LATITUD, LONGITUD, 0.2, 30, 60_000);
+        assertEquals("P1", maquina.observar("VEH-001", "P1", LATITUD, LONGITUD, 0.25, 30, 65_000).getParadaPasada());
+        assertTrue(maquina.corregirLlegada("VEH-001", "P1", 15_000));
+        assertEquals(2, maquina.getCorrecciones());
+
+        // Sin llegada no hay nada que corregir
+        maquina.observar("VEH-003", "P1", LATITUD, LONGITUD, 0.15, 5, 10_000);
+        assertFalse(maquina.corregirLlegada("VEH-003", "P1", 5_000));
+    }
+
+    /**
+     * Traza de 20 vehículos que recorren 10 paradas separadas 400 m, con frenado antes de cada parada y
+     * de 30 a 60 s detenidos en ella, una ubicación cada 5 s con ruido GPS (σ = 15 m en la posición y
+     * 2 km/h en la velocidad informada). Se compara la regla anterior
+     * (publicar si cambia el texto del estado o pasó un minuto) con la máquina de estados más la misma
+     * republicación por minuto, que además informa PASADO.
+     */
+    @Test
+    void reduceLosEventosDeUnaTrazaConRuido() {
+        int cantidadParadas = 10;
+        List<Parada> paradas = new ArrayList<>();
+        for (int k = 0; k < cantidadParadas; k++) {
+            paradas.add(Parada.builder().paradaId("P" + k)
+                    .latitud(LATITUD + k * 0.4 / DistanciaGeo.KM_POR_GRADO).longitud(LONGITUD).build());
+        }
+        IndiceParadas indice = new IndiceParadasGrid(paradas, UMBRAL_KM);
+
+        EstadoDedupStore dedupAnterior = new EstadoDedupStore(100_000, 600_000, 4, 60_000, reloj::get);
+        EstadoDedupStore dedupNuevo = new EstadoDedupStore(100_000, 600_000, 4, 60_000, reloj::get);
+        MaquinaEstadosParada maquina = maquina();
+        int eventosAnteriores = 0;
+        int llegadas = 0;
+        Map<EstadoParada, Integer> eventos = new EnumMap<>(EstadoParada.class);
+
+        Random random = new Random(42);
+        for (int v = 0; v < 20; v++) {
+            String vehiculo = "VEH-" + v;
+            double recorridoKm = -0.6 - random.nextDouble() * 0.2;
+            int siguienteParada = 0;
+            int detenido = 0;
+            int espera = 6 + random.nextInt(7);
+            for (long instanteMs = 0; recorridoKm < (cantidadParadas - 1) * 0.4 + 0.8; instanteMs += 5_000) {
+                double velocidad;
+                double paradaKm = siguienteParada * 0.4;
+                if (siguienteParada < cantidadParadas && recorridoKm >= paradaKm) {
+                    velocidad = 0;
+                    if (++detenido >= espera) {
+                        siguienteParada++;
+                        detenido = 0;
+                        espera = 6 + random.nextInt(7);
+                    }
+                } else {
+                    velocidad = siguienteParada < cantidadParadas && paradaKm - recorridoKm < 0.15 ? 8 : 30;
+                    recorridoKm += velocidad * 5 / 3600;
+                    if (siguienteParada < cantidadParadas) {
+                        recorridoKm = Math.min(recorridoKm, paradaKm);
+                    }
+                }
+                double latitud = LATITUD + (recorridoKm + random.nextGaussian() * 0.015) / DistanciaGeo.KM_POR_GRADO;
+                double longitud = LONGITUD + random.nextGaussian() * 0.015 / DistanciaGeo.KM_POR_GRADO;
+                velocidad = Math.max(0, velocidad + random.nextGaussian() * 2);
+
+                int posicion = indice.buscarIndiceMasCercano(latitud, longitud, UMBRAL_KM);
+                if (posicion == IndiceParadas.SIN_PARADA) {
+                    String pasada = maquina.observarSinParada(vehiculo, latitud, longitud).getParadaPasada();
+                    if (pasada != null) {
+                        eventos.merge(EstadoParada.PASADO, 1, Integer::sum);
+                    }
+                    continue;
+                }
+                Parada parada = indice.parada(posicion);
+                double distanciaKm = indice.distanciaKm(posicion, latitud, longitud);
+
+                // Regla anterior: estado según la distancia de esta ubicación
+                EstadoParada estadoAnterior = distanciaKm < 0.05 ? EstadoParada.LLEGADO
+                        : distanciaKm < 0.2 && velocidad < 10 ? EstadoParada.LLEGANDO : EstadoParada.ESTIMADO;
+                if (dedupAnterior.debePublicar(vehiculo, parada.getParadaId(), estadoAnterior, instanteMs)) {
+                    eventosAnteriores++;
+                }
+
+                MaquinaEstadosParada.Transicion transicion = maquina.observar(vehiculo, parada.getParadaId(),
+                        parada.getLatitud(), parada.getLongitud(), distanciaKm, velocidad, instanteMs);
+                if (transicion.getParadaPasada() != null) {
+                    eventos.merge(EstadoParada.PASADO, 1, Integer::sum);
+                    dedupNuevo.debePublicar(vehiculo, transicion.getParadaPasada(), EstadoParada.PASADO, instanteMs);
+                }
+                EstadoParada estado = transicion.getEstado();
+                boolean republicar = estado != null
+                        && dedupNuevo.debePublicar(vehiculo, parada.getParadaId(), estado, instanteMs);
+                if (estado != null && (transicion.isCambio() || republicar)) {
+                    eventos.merge(estado, 1, Integer::sum);
+                    if (transicion.isCambio() && estado == EstadoParada.LLEGADO) {
+                        llegadas++;
+                    }
+                }
+            }
+        }
+
+        int eventosNuevos = eventos.values().stream().mapToInt(Integer::intValue).sum();
+        // Cada vehículo llega y deja atrás cada parada exactamente una vez
+        assertEquals(20 * cantidadParadas, llegadas);
+        assertEquals(20 * cantidadParadas, eventos.get(EstadoParada.PASADO));
+        // Con la semilla fija: 1373 eventos con la regla anterior y 991 con la máquina (200 de ellos PASADO)
+        assertTrue(eventosNuevos * 4 < eventosAnteriores * 3,
+                "eventos con la máquina de estados: " + eventosNuevos + ", con la regla anterior: " + eventosAnteriores);
+    }
+
+    /**
+     * 20 vehículos que pasan sin detenerse a 50 km/h por 10 paradas separadas 400 m, con una ubicación
+     * cada 30 s (~417 m) y ruido GPS de σ = 5 m. Solo por proximidad casi ninguna ubicación cae a menos
+     * de 50 m de una parada; con la detección sobre el tramo se registran todas las llegadas.
+     */
+    @Test
+    void detectaLlegadasEntreUbicacionesEspaciadas() {
+        int cantidadParadas = 10;
+        List<Parada> paradas = new ArrayList<>();
+        for (int k = 0; k < cantidadParadas; k++) {
+            paradas.add(Parada.builder().paradaId("P" + k)
+                    .latitud(LATITUD + k * 0.4 / DistanciaGeo.KM_POR_GRADO).longitud(LONGITUD).build());
+        }
+        IndiceParadas indice = new IndiceParadasGrid(paradas, UMBRAL_KM);
+        MaquinaEstadosParada soloProximidad = maquina();
+        MaquinaEstadosParada conTramos = maquina();
+        int[] llegadas = new int[2];
+        int pasadas = 0;
+
+        Random random = new Random(7);
+        for (int v = 0; v < 20; v++) {
+            String vehiculo = "VEH-" + v;
+            double anteriorLatitud = Double.NaN;
+            double anteriorLongitud = Double.NaN;
+            for (double recorridoKm = -0.6 - random.nextDouble() * 0.4; recorridoKm < (cantidadParadas - 1) * 0.4 + 2.0;
+                 recorridoKm += 50.0 * 30 / 3600) {
+                long instanteMs = reloj.addAndGet(30_000);
+                double latitud = LATITUD + (recorridoKm + random.nextGaussian() * 0.005) / DistanciaGeo.KM_POR_GRADO;
+                double longitud = LONGITUD + random.nextGaussian() * 0.005 / DistanciaGeo.KM_POR_GRADO;
+
+                // Paradas cruzadas en el tramo desde la ubicación anterior, en orden de paso
+                long desdeMs = instanteMs - 30_000;
+                for (int ultimo = IndiceParadas.SIN_PARADA; !Double.isNaN(anteriorLatitud); ) {
+                    int cruce = indice.buscarIndiceCruce(anteriorLatitud, anteriorLongitud, latitud, longitud, 0.05);
+                    if (cruce == IndiceParadas.SIN_PARADA || cruce == ultimo) {
+                        break;
+                    }
+                    double fraccion = indice.fraccionCruce(cruce, anteriorLatitud, anteriorLongitud, latitud, longitud);
+                    anteriorLatitud += (latitud - anteriorLatitud) * fraccion;
+                    anteriorLongitud += (longitud - anteriorLongitud) * fraccion;
+                    desdeMs += Math.round((instanteMs - desdeMs) * fraccion);
+                    Parada parada = indice.parada(cruce);
+                    MaquinaEstadosParada.Transicion transicion = conTramos.observarCruce(vehiculo,
+                            parada.getParadaId(), parada.getLatitud(), parada.getLongitud(), desdeMs);
+                    llegadas[1] += transicion.isCambio() ? 1 : 0;
+                    pasadas += transicion.getParadaPasada() != null ? 1 : 0;
+                    ultimo = cruce;
+                }
+                anteriorLatitud = latitud;
+                anteriorLongitud = longitud;
+
+                int posicion = indice.buscarIndiceMasCercano(latitud, longitud, UMBRAL_KM);
+                MaquinaEstadosParada[] maquinas = {soloProximidad, conTramos};
+                for (int m = 0; m < 2; m++) {
+                    MaquinaEstadosParada.Transicion transicion;
+                    if (posicion == IndiceParadas.SIN_PARADA) {
+                        transicion = maquinas[m].observarSinParada(vehiculo, latitud, longitud);
+                    } else {
+                        Parada parada = indice.parada(posicion);
+                        transicion = maquinas[m].observar(vehiculo, parada.getParadaId(), parada.getLatitud(),
+                                parada.getLongitud(), indice.distanciaKm(posicion, latitud, longitud), 50, instanteMs);
+                    }
+                    if (transicion.isCambio() && transicion.getEstado() == EstadoParada.LLEGADO) {
+                        llegadas[m]++;
+                    }
+                    if (m == 1 && transicion.getParadaPasada() != null) {
+                        pasadas++;
+                    }
+                }
+            }
+        }
+
+        // Cada vehículo llega y deja atrás cada parada exactamente una vez
+        assertEquals(20 * cantidadParadas, llegadas[1]);
+        assertEquals(20 * cantidadParadas, pasadas);
+        assertTrue(llegadas[0] * 3 < llegadas[1], "llegadas solo por proximidad: " + llegadas[0]);
+    }
+
+    private MaquinaEstadosParada.Transicion observar(MaquinaEstadosParada maquina, String paradaId,
+                                                     double distanciaKm, double velocidad) {
+        double latitudParada = "P1".equals(paradaId) ? LATITUD : LATITUD + 0.5 / DistanciaGeo.KM_POR_GRADO;
+        return maquina.observar("VEH-001", paradaId, latitudParada, LONGITUD, distanciaKm, velocidad, reloj.get());
+    }
+
+    /**
+     * Ubicación al norte de P1, a la distancia indicada y sin paradas dentro del umbral.
+     */
+    private MaquinaEstadosParada.Transicion sinParada(MaquinaEstadosParada maquina, double distanciaKm) {
+        return maquina.observarSinParada("VEH-001", LATITUD - distanciaKm / DistanciaGeo.KM_POR_GRADO, LONGITUD);
+    }
+
+    private static void assertTransicion(EstadoParada estado, boolean cambio, String paradaPasada,
+                                         MaquinaEstadosParada.Transicion transicion) {
+        assertEquals(estado, transicion.getEstado());
+        assertEquals(cambio, transicion.isCambio());
+        if (paradaPasada == null) {
+            assertNull(transicion.getParadaPasada());
+        } else {
+            assertEquals(paradaPasada, transicion.getParadaPasada());
+        }
+        assertFalse(transicion.isCambio() && estado == null);
+    }
+}
@@ -0,0 +1,198 @@
+package com.example.procesa_seniales_kafka.estado;
+
+import com.example.procesa_seniales_kafka.model.UbicacionVehiculo;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReordenEventosTest {
+
+    private static final LocalDateTime INICIO = LocalDateTime.of(2026, 3, 2, 8, 0);
+
+    private final AtomicLong reloj = new AtomicLong(1_000_000);
+    private final List<String> procesadas = new ArrayList<>();
+    private final List<String> tardias = new ArrayList<>();
+    // Confirmación del broker por ubicación; las que no figuran se confirman al instante
+    private final Map<String, CompletableFuture<Void>> confirmaciones = new HashMap<>();
+
+    private final ReordenEventos.Destino destino = new ReordenEventos.Destino() {
+        @Override
+        public CompletableFuture<Void> procesar(UbicacionVehiculo ubicacion) {
+            String clave = ubicacion.getVehiculoId() + "@" + ubicacion.getTimestamp().getSecond();
+            procesadas.add(clave);
+            return confirmaciones.getOrDefault(clave, ReordenEventos.COMPLETADO);
+        }
+
+        @Override
+        public CompletableFuture<Void> tardia(UbicacionVehiculo ubicacion, long ultimaEntregadaMs) {
+            long ultimaSegundo = (ultimaEntregadaMs - ReordenEventos.instanteMs(INICIO)) / 1000;
+            tardias.add(ubicacion.getVehiculoId() + "@" + ubicacion.getTimestamp().getSecond() + "<" + ultimaSegundo);
+            return ReordenEventos.COMPLETADO;
+        }
+    };
+
+    private static UbicacionVehiculo ubicacion(String vehiculoId, int segundo) {
+        return UbicacionVehiculo.builder()
+                .vehiculoId(vehiculoId)
+                .timestamp(INICIO.plusSeconds(segundo))
+                .build();
+    }
+
+    @Test
+    void entregaEnOrdenDeEventoCuandoLaMarcaDeAguaAvanza() {
+        ReordenEventos reorden = new ReordenEventos(4, 5_000, 60_000, 1000, 600_000, reloj::get, Runnable::run);
+
+        reorden.ofrecer(ubicacion("VEH-001", 10), destino);
+        reorden.ofrecer(ubicacion("VEH-001", 12), destino);
+        reorden.ofrecer(ubicacion("VEH-001", 11), destino);
+        assertEquals(List.of(), procesadas);
+        assertEquals(3, reorden.getRetenidas());
+
+        // La marca de agua pasa a 16 - 5 = 11: salen 10 y 11 en orden
+        reorden.ofrecer(ubicacion("VEH-001", 16), destino);
+        assertEquals(List.of("VEH-001@10", "VEH-001@11"), procesadas);
+        assertEquals(1, reorden.getReordenadas());
+
+        // Cada vehículo tiene su propia marca de agua
+        reorden.ofrecer(ubicacion("VEH-002", 1), destino);
+        assertEquals(2, procesadas.size());
+
+        // El orden solo se garantiza dentro de cada vehículo
+        reorden.entregarTodas(destino);
+        assertEquals(List.of("VEH-001@10", "VEH-001@11", "VEH-001@12", "VEH-001@16"),
+                procesadas.stream().filter(p -> p.startsWith("VEH-001")).toList());
+        assertEquals(5, procesadas.size());
+        assertEquals(0, reorden.getRetenidas());
+    }
+
+    @Test
+    void descartaRepetidasYDerivaLasTardias() {
+        ReordenEventos reorden = new ReordenEventos(4, 0, 60_000, 1000, 600_000, reloj::get, Runnable::run);
+
+        reorden.ofrecer(ubicacion("VEH-001", 10), destino);
+        reorden.ofrecer(ubicacion("VEH-001", 20), destino);
+        assertEquals(List.of("VEH-001@10", "VEH-001@20"), procesadas);
+
+        // Al releer el tópico: la misma ubicación se descarta, una anterior es tardía
+        reorden.ofrecer(ubicacion("VEH-001", 20), destino);
+        reorden.ofrecer(ubicacion("VEH-001", 15), destino);
+        assertEquals(2, procesadas.size());
+        assertEquals(1, reorden.getRepetidas());
+        assertEquals(1, reorden.getTardias());
+        assertEquals(List.of("VEH-001@15<20"), tardias);
+    }
+
+    @Test
+    void liberaPorCapacidadYPorEspera() {
+        ReordenEventos reorden = new ReordenEventos(2, 60_000, 500, 1000, 600_000, reloj::get, Runnable::run);
+
+        reorden.ofrecer(ubicacion("VEH-001", 3), destino);
+        reorden.ofrecer(ubicacion("VEH-001", 1), destino);
+        reorden.ofrecer(ubicacion("VEH-001", 2), destino);
+        // Con el buffer lleno sale la más vieja aunque la marca de agua no la alcance
+        assertEquals(List.of("VEH-001@1"), procesadas);
+        assertEquals(1, reorden.getDesbordes());
+
+        // La revisión programada vacía al vehículo sin ubicaciones nuevas durante espera-ms
+        reorden.entregarVencidas();
+        assertEquals(1, procesadas.size());
+        reloj.addAndGet(500);
+        reorden.entregarVencidas();
+        assertEquals(List.of("VEH-001@1", "VEH-001@2", "VEH-001@3"), procesadas);
+        assertEquals(2, reorden.getVencidas());
+
+        // Sin actividad dentro del TTL el vehículo se olvida
+        reloj.addAndGet(600_001);
+        reorden.purgarExpirados();
+        assertEquals(0, reorden.tamanio());
+    }
+
+    @Test
+    void confirmaLasRetenidasRecienAlEntregarlasYSoloVaciaVehiculosInactivos() {
+        ReordenEventos reorden = new ReordenEventos(4, 5_000, 500, 1000, 600_000, reloj::get, Runnable::run);
+        CompletableFuture<Void> broker = new CompletableFuture<>();
+        confirmaciones.put("VEH-001@10", broker);
+
+        CompletableFuture<Void> diez = reorden.ofrecer(ubicacion("VEH-001", 10), destino);
+        CompletableFuture<Void> once = reorden.ofrecer(ubicacion("VEH-001", 11), destino);
+        assertFalse(diez.isDone());
+
+        // Mientras el vehículo siga enviando, el reloj no suelta nada aunque pase la espera
+        reloj.addAndGet(400);
+        reorden.ofrecer(ubicacion("VEH-001", 12), destino);
+        reloj.addAndGet(400);
+        reorden.entregarVencidas();
+        assertEquals(List.of(), procesadas);
+
+        // La marca de agua alcanza a la 10: se entrega, pero su future espera al broker
+        reorden.ofrecer(ubicacion("VEH-001", 15), destino);
+        assertEquals(List.of("VEH-001@10"), procesadas);
+        assertFalse(diez.isDone());
+        broker.complete(null);
+        assertTrue(diez.isDone());
+
+        // Una retenida que falla al entregarse falla su propio future
+        confirmaciones.put("VEH-001@11", CompletableFuture.failedFuture(new IllegalStateException("sin broker")));
+        reloj.addAndGet(500);
+        reorden.entregarVencidas();
+        assertEquals(List.of("VEH-001@10", "VEH-001@11", "VEH-001@12", "VEH-001@15"), procesadas);
+        assertTrue(once.isCompletedExceptionally());
+    }
+
+    @Test
+    void entregaLasReintentadasSinRetenerlasDetrasDeLasAnteriores() {
+        ReordenEventos reorden = new ReordenEventos(4, 5_000, 60_000, 1000, 600_000, reloj::get, Runnable::run);
+
+        reorden.ofrecer(ubicacion("VEH-001", 10), destino);
+        reorden.ofrecer(ubicacion("VEH-001", 14), destino);
+        CompletableFuture<Void> demorada = new CompletableFuture<>();
+        confirmaciones.put("VEH-001@12", demorada);
+
+        // Sale en el momento, después de la retenida anterior; la posterior sigue retenida
+        CompletableFuture<Void> reintentada = reorden.entregarSinRetener(ubicacion("VEH-001", 12), destino);
+        assertEquals(List.of("VEH-001@10", "VEH-001@12"), procesadas);
+        assertEquals(1, reorden.getRetenidas());
+        assertFalse(reintentada.isDone());
+        demorada.complete(null);
+        assertTrue(reintentada.isDone());
+
+        // Una repetida de una retenida no se entrega dos veces; una anterior a la última entregada es tardía
+        reorden.entregarSinRetener(ubicacion("VEH-001", 14), destino);
+        reorden.entregarSinRetener(ubicacion("VEH-001", 11), destino);
+        assertEquals(2, procesadas.size());
+        assertEquals(List.of("VEH-001@11<12"), tardias);
+    }
+
+    @Test
+    void retieneEnOrdenAunqueNoSeEspereLaConfirmacion() {
+        ReordenEventos reorden = new ReordenEventos(4, 5_000, 60_000, 1000, 600_000, reloj::get, Runnable::run);
+
+        reorden.ofrecerSinEsperar(ubicacion("VEH-001", 12), destino);
+        CompletableFuture<Void> diez = reorden.ofrecer(ubicacion("VEH-001", 10), destino);
+        assertEquals(2, reorden.getRetenidas());
+
+        // Las que no esperan salen igual en orden de evento; la que espera se completa al salir
+        reorden.ofrecerSinEsperar(ubicacion("VEH-001", 20), destino);
+        assertEquals(List.of("VEH-001@10", "VEH-001@12"), procesadas);
+        assertTrue(diez.isDone());
+        assertEquals(1, reorden.getRetenidas());
+    }
+
+    @Test
+    void interpretaLaPoliticaDeTardias() {
+        assertEquals(ReordenEventos.PoliticaTardios.DESCARTAR, ReordenEventos.PoliticaTardios.desde(""));
+        assertEquals(ReordenEventos.PoliticaTardios.TOPICO, ReordenEventos.PoliticaTardios.desde(" Topico "));
+        assertThrows(IllegalArgumentException.class, () -> ReordenEventos.PoliticaTardios.desde("reintentar"));
+    }
+}
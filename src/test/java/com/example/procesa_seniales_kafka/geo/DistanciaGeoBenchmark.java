@@ -0,0 +1,61 @@
+package com.example.procesa_seniales_kafka.geo;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Costo de una evaluación de Haversine sobre pares de puntos dentro de Lima.
+ *
+ * Ejecución: {@code mvn -P benchmark verify -Dbenchmark.incluir=DistanciaGeoBenchmark}
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DistanciaGeoBenchmark {
+
+    private static final int PUNTOS = 1024;
+
+    private final double[] latitudes = new double[PUNTOS];
+    private final double[] longitudes = new double[PUNTOS];
+    private int siguiente;
+
+    @Setup(Level.Trial)
+    public void preparar() {
+        Random random = new Random(3);
+        for (int i = 0; i < PUNTOS; i++) {
+            latitudes[i] = ParadasAleatorias.latitud(random);
+            longitudes[i] = ParadasAleatorias.longitud(random);
+        }
+    }
+
+    @Benchmark
+    public double haversine() {
+        int i = siguiente++ & (PUNTOS - 1);
+        int j = (i + 1) & (PUNTOS - 1);
+        return DistanciaGeo.calcularDistanciaHaversine(latitudes[i], longitudes[i], latitudes[j], longitudes[j]);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(DistanciaGeoBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.procesa_seniales_kafka.geo;
+
+import com.example.procesa_seniales_kafka.model.Parada;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compara el recorrido lineal con el índice por grilla para distintos tamaños de catálogo.
+ *
+ * Ejecución: {@code java -cp <classpath de test> com.example.procesa_seniales_kafka.geo.IndiceParadasBenchmark}
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IndiceParadasBenchmark {
+
+    private static final double RADIO_KM = 0.5;
+    private static final int PUNTOS = 1024;
+
+    @Param({"10", "1000", "10000", "100000"})
+    private int cantidadParadas;
+
+    private IndiceParadas lineal;
+    private IndiceParadas grid;
+
+    private final double[] latitudes = new double[PUNTOS];
+    private final double[] longitudes = new double[PUNTOS];
+    private int siguiente;
+
+    @Setup(Level.Trial)
+    public void preparar() {
+        List<Parada> paradas = ParadasAleatorias.generar(cantidadParadas, 7);
+        lineal = new IndiceParadasLineal(paradas);
+        grid = new IndiceParadasGrid(paradas, RADIO_KM);
+
+        Random random = new Random(11);
+        for (int i = 0; i < PUNTOS; i++) {
+            latitudes[i] = ParadasAleatorias.latitud(random);
+            longitudes[i] = ParadasAleatorias.longitud(random);
+        }
+    }
+
+    @Benchmark
+    public Optional<ParadaCercana> lineal() {
+        int i = siguiente++ & (PUNTOS - 1);
+        return lineal.buscarMasCercana(latitudes[i], longitudes[i], RADIO_KM);
+    }
+
+    @Benchmark
+    public Optional<ParadaCercana> grid() {
+        int i = siguiente++ & (PUNTOS - 1);
+        return grid.buscarMasCercana(latitudes[i], longitudes[i], RADIO_KM);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(IndiceParadasBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,150 @@
+package com.example.procesa_seniales_kafka.geo;
+
+import com.example.procesa_seniales_kafka.model.Parada;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IndiceParadasGridTest {
+
+    @Test
+    void devuelveLaMismaParadaQueElRecorridoLineal() {
+        Random random = new Random(42);
+
+        for (int cantidad : new int[]{1, 10, 1_000, 10_000}) {
+            List<Parada> paradas = ParadasAleatorias.generar(cantidad, cantidad);
+            IndiceParadas lineal = new IndiceParadasLineal(paradas);
+            IndiceParadas grid = new IndiceParadasGrid(paradas, 0.5);
+
+            for (int i = 0; i < 500; i++) {
+                double latitud = ParadasAleatorias.latitud(random);
+                double longitud = ParadasAleatorias.longitud(random);
+                for (double radioKm : new double[]{0.05, 0.5, 3.0}) {
+                    assertMismoResultado(
+                            lineal.buscarMasCercana(latitud, longitud, radioKm),
+                            grid.buscarMasCercana(latitud, longitud, radioKm));
+                }
+            }
+        }
+    }
+
+    @Test
+    void elFiltroDeCuerdaNoCambiaElResultadoDeHaversine() {
+        Random random = new Random(2026);
+
+        for (int cantidad : new int[]{10, 1_000, 10_000}) {
+            List<Parada> paradas = ParadasAleatorias.generar(cantidad, cantidad + 1);
+            IndiceParadas lineal = new IndiceParadasLineal(paradas);
+            IndiceParadas grid = new IndiceParadasGrid(paradas, 0.5);
+
+            for (int i = 0; i < 1_000; i++) {
+                double radioKm = new double[]{0.05, 0.5, 3.0}[i % 3];
+                double[] punto = i % 2 == 0
+                        ? new double[]{ParadasAleatorias.latitud(random), ParadasAleatorias.longitud(random)}
+                        : puntoEnElBorde(paradas.get(random.nextInt(cantidad)), radioKm, random);
+
+                Optional<ParadaCercana> esperado = recorridoSinFiltro(paradas, punto[0], punto[1], radioKm);
+                assertMismoResultado(esperado, lineal.buscarMasCercana(punto[0], punto[1], radioKm));
+                assertMismoResultado(esperado, grid.buscarMasCercana(punto[0], punto[1], radioKm));
+            }
+        }
+    }
+
+    @Test
+    void detectaLaMismaParadaCruzadaQueElRecorridoLineal() {
+        Random random = new Random(7);
+
+        for (int cantidad : new int[]{10, 1_000, 10_000}) {
+            List<Parada> paradas = ParadasAleatorias.generar(cantidad, cantidad + 2);
+            IndiceParadas lineal = new IndiceParadasLineal(paradas);
+            IndiceParadas grid = new IndiceParadasGrid(paradas, 0.5);
+
+            for (int i = 0; i < 500; i++) {
+                // Tramos de hasta ~1 km, como 30 s a 120 km/h
+                double latitud1 = ParadasAleatorias.latitud(random);
+                double longitud1 = ParadasAleatorias.longitud(random);
+                double latitud2 = latitud1 + (random.nextDouble() - 0.5) * 0.018;
+                double longitud2 = longitud1 + (random.nextDouble() - 0.5) * 0.018;
+                for (double radioKm : new double[]{0.05, 0.5}) {
+                    int esperado = lineal.buscarIndiceCruce(latitud1, longitud1, latitud2, longitud2, radioKm);
+                    assertEquals(esperado, grid.buscarIndiceCruce(latitud1, longitud1, latitud2, longitud2, radioKm));
+                }
+            }
+        }
+    }
+
+    @Test
+    void ubicaElPuntoDelTramoMasCercanoALaParada() {
+        // Parada junto a una avenida; dos ubicaciones a ~220 m antes y después, ninguna dentro de 50 m
+        Parada parada = Parada.builder().paradaId("P001").latitud(-12.0464).longitud(-77.0428).build();
+        IndiceParadas grid = new IndiceParadasGrid(List.of(parada), 0.5);
+
+        double latitud1 = -12.0484;
+        double latitud2 = -12.0444;
+        double longitud = -77.0430;
+        assertTrue(grid.distanciaKm(0, latitud1, longitud) > 0.2);
+        assertEquals(IndiceParadas.SIN_PARADA, grid.buscarIndiceMasCercano(latitud1, longitud, 0.05));
+
+        assertEquals(0, grid.buscarIndiceCruce(latitud1, longitud, latitud2, longitud, 0.05));
+        assertEquals(0.5, grid.fraccionCruce(0, latitud1, longitud, latitud2, longitud), 1e-9);
+        assertEquals(0.0217, grid.distanciaTramoKm(0, latitud1, longitud, latitud2, longitud), 1e-3);
+        // El tramo pasa a más de 20 m: con un radio menor no hay cruce
+        assertEquals(IndiceParadas.SIN_PARADA, grid.buscarIndiceCruce(latitud1, longitud, latitud2, longitud, 0.02));
+    }
+
+    @Test
+    void desempataPorElOrdenOriginalDeLasParadas() {
+        Parada primera = Parada.builder().paradaId("P001").latitud(-12.0464).longitud(-77.0428).build();
+        Parada duplicada = Parada.builder().paradaId("P002").latitud(-12.0464).longitud(-77.0428).build();
+
+        Optional<ParadaCercana> resultado = new IndiceParadasGrid(List.of(primera, duplicada), 0.5)
+                .buscarMasCercana(-12.0465, -77.0429, 0.5);
+
+        assertTrue(resultado.isPresent());
+        assertEquals("P001", resultado.get().getParada().getParadaId());
+    }
+
+    /**
+     * Haversine original (en grados) sobre todas las paradas, sin ningún descarte previo.
+     */
+    private static Optional<ParadaCercana> recorridoSinFiltro(List<Parada> paradas, double latitud, double longitud,
+                                                              double radioKm) {
+        ParadaCercana masCercana = null;
+        for (Parada parada : paradas) {
+            double distancia = DistanciaGeo.calcularDistanciaHaversine(
+                    latitud, longitud, parada.getLatitud(), parada.getLongitud());
+            if (distancia <= radioKm && (masCercana == null || distancia < masCercana.getDistanciaKm())) {
+                masCercana = new ParadaCercana(parada, distancia);
+            }
+        }
+        return Optional.ofNullable(masCercana);
+    }
+
+    /**
+     * Punto a una distancia de la parada prácticamente igual al radio (apenas por dentro o por fuera),
+     * para ejercitar el filtro justo en su frontera.
+     */
+    private static double[] puntoEnElBorde(Parada parada, double radioKm, Random random) {
+        double rumbo = random.nextDouble() * 2 * Math.PI;
+        double deltaLatitud = Math.cos(rumbo) * 0.01;
+        double deltaLongitud = Math.sin(rumbo) * 0.01;
+        double distancia = DistanciaGeo.calcularDistanciaHaversine(parada.getLatitud(), parada.getLongitud(),
+                parada.getLatitud() + deltaLatitud, parada.getLongitud() + deltaLongitud);
+        double escala = radioKm / distancia * (1 + (random.nextDouble() - 0.5) * 1e-9);
+        return new double[]{parada.getLatitud() + deltaLatitud * escala, parada.getLongitud() + deltaLongitud * escala};
+    }
+
+    private static void assertMismoResultado(Optional<ParadaCercana> esperado, Optional<ParadaCercana> obtenido) {
+        assertEquals(esperado.isPresent(), obtenido.isPresent());
+        esperado.ifPresent(e -> {
+            assertEquals(e.getParada().getParadaId(), obtenido.get().getParada().getParadaId());
+            // La variante en radianes redondea distinto que la original en los últimos bits
+            assertEquals(e.getDistanciaKm(), obtenido.get().getDistanciaKm(), 1e-9);
+        });
+    }
+}
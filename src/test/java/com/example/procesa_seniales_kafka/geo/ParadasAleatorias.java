@@ -0,0 +1,45 @@
+package com.example.procesa_seniales_kafka.geo;
+
+import com.example.procesa_seniales_kafka.model.Parada;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generador de paradas sintéticas dentro de la caja de Lima Metropolitana,
+ * compartido por pruebas y benchmarks.
+ */
+public final class ParadasAleatorias {
+
+    public static final double LATITUD_MIN = -12.30;
+    public static final double LATITUD_MAX = -11.80;
+    public static final double LONGITUD_MIN = -77.20;
+    public static final double LONGITUD_MAX = -76.80;
+
+    private ParadasAleatorias() {
+    }
+
+    public static List<Parada> generar(int cantidad, long semilla) {
+        Random random = new Random(semilla);
+        List<Parada> paradas = new ArrayList<>(cantidad);
+        for (int i = 0; i < cantidad; i++) {
+            paradas.add(Parada.builder()
+                    .paradaId(String.format("P%06d", i + 1))
+                    .nombre("Parada " + (i + 1))
+                    .direccion("Dirección " + (i + 1))
+                    .latitud(latitud(random))
+                    .longitud(longitud(random))
+                    .build());
+        }
+        return paradas;
+    }
+
+    public static double latitud(Random random) {
+        return LATITUD_MIN + random.nextDouble() * (LATITUD_MAX - LATITUD_MIN);
+    }
+
+    public static double longitud(Random random) {
+        return LONGITUD_MIN + random.nextDouble() * (LONGITUD_MAX - LONGITUD_MIN);
+    }
+}
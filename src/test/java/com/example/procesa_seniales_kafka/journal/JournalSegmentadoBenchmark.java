@@ -0,0 +1,73 @@
+package com.example.procesa_seniales_kafka.journal;
+
+import com.example.procesa_seniales_kafka.model.UbicacionVehiculo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Costo de escribir una ubicación en el journal según la política de fsync.
+ *
+ * Ejecución: {@code mvn -P benchmark verify -Dbenchmark.incluir=JournalSegmentadoBenchmark}
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JournalSegmentadoBenchmark {
+
+    @Param({"NUNCA", "SIEMPRE"})
+    private PoliticaFsync politica;
+
+    private JournalSegmentado journal;
+    private UbicacionVehiculo ubicacion;
+
+    @Setup(Level.Trial)
+    public void preparar() throws IOException {
+        Path directorio = Files.createTempDirectory(Path.of("target"), "benchmark-journal");
+        journal = new JournalSegmentado(true, directorio, 64L * 1024 * 1024, politica, 2);
+        ubicacion = UbicacionVehiculo.builder()
+                .vehiculoId("VEH-001").placaVehiculo("ABC-001")
+                .latitud(-12.0464).longitud(-77.0428).velocidad(45.5)
+                .estado("EN_RUTA").ciudad("Lima").pasajeros(25).ruta("Ruta A - Norte")
+                .timestamp(LocalDateTime.of(2026, 2, 24, 10, 30, 15))
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void liberar() {
+        journal.destroy();
+    }
+
+    @Benchmark
+    public void registrarUbicacion() {
+        journal.registrar(ubicacion);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(JournalSegmentadoBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.procesa_seniales_kafka.journal;
+
+import com.example.procesa_seniales_kafka.model.HorarioVehiculo;
+import com.example.procesa_seniales_kafka.model.UbicacionVehiculo;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.StringWriter;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class JournalSegmentadoTest {
+
+    // Cabecera más diez registros por segmento
+    private static final long TAMANIO_SEGMENTO = FormatoJournal.TAMANIO_CABECERA + 10L * FormatoJournal.TAMANIO_REGISTRO;
+
+    @TempDir
+    Path directorio;
+
+    @Test
+    void rotaSegmentosAplicaRetencionYRetomaDespuesDeReiniciar() throws Exception {
+        JournalSegmentado journal = new JournalSegmentado(true, directorio, TAMANIO_SEGMENTO, PoliticaFsync.NUNCA, 3);
+        for (int i = 0; i < 35; i++) {
+            journal.registrar(ubicacion(i));
+        }
+        journal.destroy();
+
+        // 35 registros en segmentos de 10: quedan los 3 últimos (secuencias 10 a 34)
+        assertEquals(3, LectorJournal.segmentos(directorio).size());
+        assertEquals(List.of(10L, 34L), extremos(leer(0)));
+
+        JournalSegmentado reabierto = new JournalSegmentado(true, directorio, TAMANIO_SEGMENTO, PoliticaFsync.SIEMPRE, 3);
+        assertEquals(35, reabierto.getSiguienteSecuencia());
+        reabierto.registrar(horario());
+        reabierto.destroy();
+
+        List<RegistroJournal> registros = leer(30);
+        assertEquals(6, registros.size());
+        RegistroJournal ultimo = registros.get(5);
+        assertEquals(35, ultimo.getSecuencia());
+        assertEquals(RegistroJournal.Tipo.HORARIO, ultimo.getTipo());
+        assertEquals(horario(), ultimo.getHorario());
+    }
+
+    @Test
+    void conservaLosCamposYTruncaLosTextosLargos() throws Exception {
+        JournalSegmentado journal = new JournalSegmentado(true, directorio, TAMANIO_SEGMENTO, PoliticaFsync.NUNCA, 3);
+        UbicacionVehiculo larga = ubicacion(1);
+        larga.setRuta("Ruta Ñ - Corredor Javier Prado Este / Oeste");
+        larga.setPasajeros(null);
+        journal.registrar(larga);
+        journal.destroy();
+
+        UbicacionVehiculo leida = leer(0).get(0).getUbicacion();
+        assertEquals(larga.getVehiculoId(), leida.getVehiculoId());
+        assertEquals(larga.getLatitud(), leida.getLatitud());
+        assertEquals(larga.getTimestamp(), leida.getTimestamp());
+        assertNull(leida.getPasajeros());
+        assertEquals("Ruta Ñ - Corredor Javier Prado", leida.getRuta());
+    }
+
+    @Test
+    void exportaComoCsv() throws Exception {
+        JournalSegmentado journal = new JournalSegmentado(true, directorio, TAMANIO_SEGMENTO, PoliticaFsync.NUNCA, 3);
+        journal.registrar(ubicacion(7));
+        journal.registrar(horario());
+        journal.destroy();
+
+        StringWriter salida = new StringWriter();
+        assertEquals(1, ExportadorJournal.exportar(directorio, "csv", 1, salida));
+        String[] columnas = salida.toString().trim().split(",");
+        assertEquals("H", columnas[0]);
+        assertEquals("1", columnas[1]);
+        assertEquals("VEH-001,P001,LLEGADO,10:25,10:28:30,3,2026-02-24T10:28",
+                String.join(",", List.of(columnas).subList(3, columnas.length)));
+    }
+
+    private List<RegistroJournal> leer(long desde) throws Exception {
+        List<RegistroJournal> registros = new ArrayList<>();
+        LectorJournal.recorrer(directorio, desde, registros::add);
+        return registros;
+    }
+
+    private static List<Long> extremos(List<RegistroJournal> registros) {
+        return List.of(registros.get(0).getSecuencia(), registros.get(registros.size() - 1).getSecuencia());
+    }
+
+    private static UbicacionVehiculo ubicacion(int i) {
+        return UbicacionVehiculo.builder()
+                .vehiculoId("VEH-" + i)
+                .placaVehiculo("ABC-" + i)
+                .latitud(-12.0464 + i * 1e-4)
+                .longitud(-77.0428)
+                .velocidad(45.5)
+                .estado("EN_RUTA")
+                .ciudad("Lima")
+                .pasajeros(25)
+                .ruta("Ruta A - Norte")
+                .timestamp(LocalDateTime.of(2026, 2, 24, 10, 30, i % 60))
+                .build();
+    }
+
+    private static HorarioVehiculo horario() {
+        return HorarioVehiculo.builder()
+                .vehiculoId("VEH-001")
+                .placaVehiculo("ABC-001")
+                .paradaId("P001")
+                .nombreParada("Terminal Norte")
+                .horarioEstimado(LocalTime.of(10, 25))
+                .horarioReal(LocalTime.of(10, 28, 30))
+                .retrasoMinutos(3)
+                .timestamp(LocalDateTime.of(2026, 2, 24, 10, 28))
+                .ruta("Ruta A - Norte")
+                .secuenciaParada(1)
+                .estado("LLEGADO")
+                .build();
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.procesa_seniales_kafka.kpis;
+
+import com.example.procesa_seniales_kafka.model.ResumenKpi;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AgregadorKpisTest {
+
+    private static final long MINUTO = 60_000;
+
+    private final List<ResumenKpi> publicados = new ArrayList<>();
+
+    private AgregadorKpis agregador(List<ResumenKpi> destino) {
+        return new AgregadorKpis(5 * MINUTO, 15 * MINUTO, MINUTO, 1000, 120 * MINUTO, "test", destino::add);
+    }
+
+    private ResumenKpi buscar(String tipo, long inicioMinuto, long finMinuto) {
+        LocalDateTime inicio = AcumuladorKpi.fecha(inicioMinuto * MINUTO);
+        LocalDateTime fin = AcumuladorKpi.fecha(finMinuto * MINUTO);
+        return publicados.stream()
+                .filter(r -> "P1".equals(r.getParadaId()) && tipo.equals(r.getTipo())
+                        && inicio.equals(r.getInicio()) && fin.equals(r.getFin()))
+                .findFirst()
+                .orElseThrow(() -> new AssertionError("Sin resumen " + tipo + " " + inicio + " - " + fin));
+    }
+
+    @Test
+    void cierraLasVentanasFijasYDeslizantesConLaMarcaDeAgua() {
+        AgregadorKpis kpis = agregador(publicados);
+
+        kpis.registrarLlegada("R1", "P1", "VEH-A", 1, MINUTO);
+        kpis.registrarLlegada("R1", "P1", "VEH-B", 3, 6 * MINUTO);
+        kpis.registrarLlegada("R1", "P1", "VEH-C", -2, 12 * MINUTO);
+        // La marca de agua (12 - 1 min) solo cerró las ventanas que terminan en 5 y 10
+        assertEquals(4, publicados.size());
+        assertEquals(1, buscar(AgregadorKpis.TIPO_FIJA, 0, 5).getLlegadas());
+
+        // Otra parada adelanta la marca de agua a 20 min
+        kpis.registrarLlegada("R1", "P2", "VEH-A", 0, 21 * MINUTO);
+        ResumenKpi fija = buscar(AgregadorKpis.TIPO_FIJA, 10, 15);
+        assertEquals(1, fija.getLlegadas());
+        assertEquals(1, fija.getIntervaloMuestras());
+        assertEquals(360, fija.getIntervaloSumaSegundos());
+
+        ResumenKpi deslizante = buscar(AgregadorKpis.TIPO_DESLIZANTE, 0, 15);
+        assertEquals(3, deslizante.getLlegadas());
+        assertEquals(2, deslizante.getIntervaloMuestras());
+        assertEquals(330.0, deslizante.getIntervaloPromedioSegundos());
+        assertEquals(-2, deslizante.getRetrasoMinimoMinutos());
+        assertEquals(3, deslizante.getRetrasoMaximoMinutos());
+        assertEquals(1, deslizante.getRetrasoP50Minutos());
+        assertFalse(deslizante.isParcial());
+
+        // La ventana de VEH-A ya cerró: la llegada se descarta
+        kpis.registrarLlegada("R1", "P1", "VEH-D", 0, 3 * MINUTO);
+        assertEquals(1, kpis.getTardias());
+    }
+
+    @Test
+    void losAportesDeDosInstanciasSumanLoMismoQueUnaSola() {
+        List<ResumenKpi> unica = new ArrayList<>();
+        List<ResumenKpi> repartida = new ArrayList<>();
+        AgregadorKpis sola = agregador(unica);
+        AgregadorKpis antes = agregador(repartida);
+        AgregadorKpis despues = agregador(repartida);
+
+        Random random = new Random(11);
+        long instante = 0;
+        for (int i = 0; i < 2000; i++) {
+            instante += random.nextInt(20_000);
+            String parada = "P" + random.nextInt(5);
+            String vehiculo = "VEH-" + random.nextInt(30);
+            int retraso = (int) Math.round(random.nextGaussian() * 4);
+            sola.registrarLlegada("R1", parada, vehiculo, retraso, instante);
+            // A mitad de camino las particiones pasan a otra instancia
+            (i < 1000 ? antes : despues).registrarLlegada("R1", parada, vehiculo, retraso, instante);
+            if (i == 999) {
+                antes.publicarParciales();
+            }
+        }
+        sola.publicarParciales();
+        despues.publicarParciales();
+        assertTrue(antes.getParciales() > 0);
+
+        Map<String, AcumuladorKpi> esperado = combinarPorVentana(unica);
+        Map<String, AcumuladorKpi> obtenido = combinarPorVentana(repartida);
+        assertEquals(esperado.keySet(), obtenido.keySet());
+        esperado.forEach((ventana, acumulador) -> {
+            AcumuladorKpi combinado = obtenido.get(ventana);
+            assertEquals(acumulador.getLlegadas(), combinado.getLlegadas(), ventana);
+            for (double percentil : new double[]{50, 90, 95}) {
+                assertEquals(acumulador.percentilRetraso(percentil), combinado.percentilRetraso(percentil), ventana);
+            }
+        });
+    }
+
+    private static Map<String, AcumuladorKpi> combinarPorVentana(List<ResumenKpi> resumenes) {
+        Map<String, AcumuladorKpi> porVentana = new HashMap<>();
+        for (ResumenKpi resumen : resumenes) {
+            String ventana = resumen.getParadaId() + " " + resumen.getTipo() + " " + resumen.getInicio();
+            porVentana.computeIfAbsent(ventana, v -> new AcumuladorKpi()).combinar(AcumuladorKpi.desde(resumen));
+        }
+        return porVentana;
+    }
+
+    @Test
+    void elSketchAcotaElErrorRelativoConSigno() {
+        Random random = new Random(3);
+        long[] valores = new long[10_000];
+        SketchLogLineal sketch = new SketchLogLineal();
+        for (int i = 0; i < valores.length; i++) {
+            valores[i] = (long) (random.nextGaussian() * 2000);
+            sketch.registrar(valores[i]);
+        }
+        Arrays.sort(valores);
+        for (double percentil : new double[]{1, 10, 50, 90, 99}) {
+            long exacto = valores[(int) Math.ceil(valores.length * percentil / 100.0) - 1];
+            long estimado = sketch.percentil(percentil);
+            assertTrue(Math.abs(estimado - exacto) <= Math.abs(exacto) / SketchLogLineal.SUB_BUCKETS + 1,
+                    "p" + percentil + ": " + estimado + " vs " + exacto);
+        }
+
+        SketchLogLineal copia = SketchLogLineal.desdePares(sketch.pares());
+        assertEquals(sketch.getTotal(), copia.getTotal());
+        assertEquals(sketch.percentil(95), copia.percentil(95));
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.procesa_seniales_kafka.metricas;
+
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MetricasProcesamientoTest {
+
+    @Test
+    void losContadoresSonExactosAunqueLosTiemposSeMuestreen() {
+        SimpleMeterRegistry registro = new SimpleMeterRegistry();
+        MetricasProcesamiento metricas = new MetricasProcesamiento(registro, false, 1 << 30);
+
+        for (int i = 0; i < 1000; i++) {
+            metricas.registrarBusquedaParada(metricas.inicio(), i % 4 == 0);
+        }
+        metricas.registrarHorarioPublicado("LLEGADO");
+        metricas.registrarHorarioPublicado("LLEGADO");
+        metricas.registrarHorarioPublicado("DESVIADO");
+        metricas.registrarDuplicadoSuprimido();
+
+        assertEquals(250, registro.get("procesador.paradas.coincidencias").counter().count());
+        assertEquals(2, registro.get("procesador.horarios.publicados").tag("estado", "LLEGADO").counter().count());
+        assertEquals(1, registro.get("procesador.horarios.publicados").tag("estado", "DESVIADO").counter().count());
+        assertEquals(1, registro.get("procesador.horarios.duplicados").counter().count());
+        // Con una muestra de 1 cada 2^30 prácticamente ninguna búsqueda lee el reloj
+        assertTrue(registro.get("procesador.busqueda.parada").functionTimer().count() < 1000);
+    }
+
+    @Test
+    void sinMuestreoSeMideCadaOperacionPorResultado() {
+        SimpleMeterRegistry registro = new SimpleMeterRegistry();
+        MetricasProcesamiento metricas = new MetricasProcesamiento(registro, false, 1);
+
+        for (int i = 0; i < 10; i++) {
+            metricas.registrarDeserializacion(metricas.inicio(), i != 0);
+        }
+
+        FunctionTimer ok = registro.get("procesador.deserializacion").tag("resultado", "ok").functionTimer();
+        FunctionTimer error = registro.get("procesador.deserializacion").tag("resultado", "error").functionTimer();
+        assertEquals(9, ok.count());
+        assertEquals(1, error.count());
+        assertTrue(ok.totalTime(TimeUnit.NANOSECONDS) >= 0);
+    }
+}
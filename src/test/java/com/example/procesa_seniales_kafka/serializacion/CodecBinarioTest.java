@@ -0,0 +1,86 @@
+package com.example.procesa_seniales_kafka.serializacion;
+
+import com.example.procesa_seniales_kafka.model.HorarioVehiculo;
+import com.example.procesa_seniales_kafka.model.UbicacionVehiculo;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CodecBinarioTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+
+    @Test
+    void ubicacionIdaYVuelta() {
+        UbicacionVehiculo ubicacion = ubicacion();
+        assertEquals(ubicacion, CodecUbicacionVehiculo.decodificar(CodecUbicacionVehiculo.codificar(ubicacion)));
+
+        UbicacionVehiculo incompleta = UbicacionVehiculo.builder().vehiculoId("VEH-002").latitud(-12.05).build();
+        assertEquals(incompleta, CodecUbicacionVehiculo.decodificar(CodecUbicacionVehiculo.codificar(incompleta)));
+    }
+
+    @Test
+    void horarioIdaYVuelta() {
+        HorarioVehiculo horario = HorarioVehiculo.builder()
+                .vehiculoId("VEH-001")
+                .placaVehiculo("ABC-001")
+                .paradaId("P001")
+                .nombreParada("Terminal Norte")
+                .direccionParada("Av. Principal 123")
+                .horarioEstimado(LocalTime.of(10, 25, 0, 123_000_000))
+                .horarioReal(LocalTime.of(10, 28))
+                .retrasoMinutos(-3)
+                .timestamp(LocalDateTime.of(2026, 2, 24, 10, 28, 0))
+                .ruta("Ruta A - Norte")
+                .secuenciaParada(1)
+                .estado("LLEGADO")
+                .build();
+
+        assertEquals(horario, CodecHorarioVehiculo.decodificar(CodecHorarioVehiculo.codificar(horario)));
+    }
+
+    @Test
+    void elDeserializadorNegociaPorHeaderYConservaJsonSinHeader() {
+        UbicacionVehiculo ubicacion = ubicacion();
+        DeserializadorNegociado<UbicacionVehiculo> deserializador = new DeserializadorNegociado<>(
+                new JsonDeserializer<>(UbicacionVehiculo.class, objectMapper, false),
+                CodecUbicacionVehiculo::decodificar,
+                FormatoWire.JSON);
+
+        // Productor antiguo: JSON sin header de formato
+        byte[] json = new JsonSerializer<UbicacionVehiculo>(objectMapper).serialize("ubicaciones_vehiculos", ubicacion);
+        assertEquals(ubicacion, deserializador.deserialize("ubicaciones_vehiculos", new RecordHeaders(), json));
+
+        // Productor nuevo: binario anunciado en el header
+        RecordHeaders headers = new RecordHeaders();
+        SerializadorNegociado<UbicacionVehiculo> serializador = new SerializadorNegociado<>(
+                new JsonSerializer<>(objectMapper), CodecUbicacionVehiculo::codificar, FormatoWire.BINARIO);
+        byte[] binario = serializador.serialize("ubicaciones_vehiculos", headers, ubicacion);
+        assertEquals(ubicacion, deserializador.deserialize("ubicaciones_vehiculos", headers, binario));
+    }
+
+    static UbicacionVehiculo ubicacion() {
+        return UbicacionVehiculo.builder()
+                .vehiculoId("VEH-001")
+                .placaVehiculo("ABC-001")
+                .latitud(-12.0464)
+                .longitud(-77.0428)
+                .velocidad(45.5)
+                .direccion("Av. Principal 456")
+                .ciudad("Lima")
+                .estado("EN_RUTA")
+                .timestamp(LocalDateTime.of(2026, 2, 24, 10, 30, 15))
+                .conductor("Juan Pérez")
+                .pasajeros(25)
+                .ruta("Ruta A - Norte")
+                .build();
+    }
+}
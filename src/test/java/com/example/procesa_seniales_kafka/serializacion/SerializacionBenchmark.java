@@ -0,0 +1,85 @@
+package com.example.procesa_seniales_kafka.serializacion;
+
+import com.example.procesa_seniales_kafka.model.UbicacionVehiculo;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compara JSON (Jackson) con el codec binario al serializar y deserializar ubicaciones.
+ *
+ * Ejecución: {@code java -cp <classpath de test> com.example.procesa_seniales_kafka.serializacion.SerializacionBenchmark}
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializacionBenchmark {
+
+    private static final String TOPICO = "ubicaciones_vehiculos";
+
+    private UbicacionVehiculo ubicacion;
+    private JsonSerializer<UbicacionVehiculo> serializadorJson;
+    private JsonDeserializer<UbicacionVehiculo> deserializadorJson;
+    private byte[] json;
+    private byte[] binario;
+
+    @Setup(Level.Trial)
+    public void preparar() {
+        ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+        ubicacion = CodecBinarioTest.ubicacion();
+        serializadorJson = new JsonSerializer<>(objectMapper);
+        deserializadorJson = new JsonDeserializer<>(UbicacionVehiculo.class, objectMapper, false);
+        json = serializadorJson.serialize(TOPICO, ubicacion);
+        binario = CodecUbicacionVehiculo.codificar(ubicacion);
+    }
+
+    @Benchmark
+    public byte[] serializarJson() {
+        return serializadorJson.serialize(TOPICO, ubicacion);
+    }
+
+    @Benchmark
+    public byte[] serializarBinario() {
+        return CodecUbicacionVehiculo.codificar(ubicacion);
+    }
+
+    @Benchmark
+    public UbicacionVehiculo deserializarJson() {
+        return deserializadorJson.deserialize(TOPICO, json);
+    }
+
+    @Benchmark
+    public UbicacionVehiculo deserializarBinario() {
+        return CodecUbicacionVehiculo.decodificar(binario);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        SerializacionBenchmark tamanios = new SerializacionBenchmark();
+        tamanios.preparar();
+        System.out.printf("Bytes por ubicación: json=%d binario=%d%n", tamanios.json.length, tamanios.binario.length);
+
+        new Runner(new OptionsBuilder()
+                .include(SerializacionBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.procesa_seniales_kafka.service;
+
+import com.example.procesa_seniales_kafka.catalogo.FuenteParadasLista;
+import com.example.procesa_seniales_kafka.estado.ReordenEventos;
+import com.example.procesa_seniales_kafka.model.Parada;
+import com.example.procesa_seniales_kafka.model.UbicacionVehiculo;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CarrilesVehiculoTest {
+
+    private static final Parada PARADA = Parada.builder()
+            .paradaId("P001").nombre("Terminal Norte").latitud(-12.0464).longitud(-77.0428).build();
+    // Distancia al norte de la parada (km) y velocidad de cada ubicación de la aproximación
+    private static final double[][] APROXIMACION = {{0.35, 30}, {0.15, 8}, {0.01, 3}};
+
+    private final CarrilesVehiculo carriles = new CarrilesVehiculo(4, false);
+    private final ExecutorService ejecutorPublicacion = Executors.newSingleThreadExecutor();
+    private final ReordenEventos reordenEventos = new ReordenEventos(0, 5000, 500, 100_000, 30);
+    // Estados publicados por vehículo, en el orden en que llegaron al productor
+    private final Map<String, List<String>> publicados = new ConcurrentHashMap<>();
+
+    @AfterEach
+    void liberar() {
+        carriles.destroy();
+        ejecutorPublicacion.shutdown();
+        reordenEventos.destroy();
+    }
+
+    @Test
+    void conservaLaSecuenciaDeEstadosDeCadaVehiculoEntreCarriles() {
+        ProcesamientoSenialesService servicio = armarServicio();
+        int vehiculos = 64;
+        LocalDateTime inicio = LocalDateTime.of(2026, 3, 2, 8, 0);
+
+        // Un lote con las ubicaciones de todos los vehículos intercaladas: cada carril recibe varios
+        List<UbicacionVehiculo> lote = new ArrayList<>();
+        for (int paso = 0; paso < APROXIMACION.length; paso++) {
+            for (int v = 0; v < vehiculos; v++) {
+                lote.add(UbicacionVehiculo.builder()
+                        .vehiculoId(String.format("VEH-%03d", v))
+                        .latitud(PARADA.getLatitud() + APROXIMACION[paso][0] / 111.2)
+                        .longitud(PARADA.getLongitud())
+                        .velocidad(APROXIMACION[paso][1])
+                        .timestamp(inicio.plusSeconds(30L * paso))
+                        .ruta("Ruta A - Norte")
+                        .build());
+            }
+        }
+
+        ResultadoLote resultado = servicio.procesarUbicaciones(lote);
+        resultado.getConfirmacion().join();
+
+        assertEquals(lote.size(), resultado.getProcesadas());
+        assertEquals(vehiculos, publicados.size());
+        publicados.forEach((vehiculo, estados) ->
+                assertEquals(List.of("ESTIMADO", "LLEGANDO", "LLEGADO"), estados, vehiculo));
+    }
+
+    private ProcesamientoSenialesService armarServicio() {
+        return ServicioDePrueba.con(new FuenteParadasLista(List.of(PARADA), "test"), ejecutorPublicacion)
+                .alEnviar((vehiculo, horario) ->
+                        publicados.computeIfAbsent(vehiculo, clave -> new ArrayList<>()).add(horario.getEstado()))
+                .carriles(carriles)
+                .reordenEventos(reordenEventos)
+                .trayectoria(false)
+                .kpis(false)
+                .auditoria(0.0)
+                .armar();
+    }
+}
@@ -0,0 +1,233 @@
+package com.example.procesa_seniales_kafka.service;
+
+import com.example.procesa_seniales_kafka.catalogo.FuenteParadasLista;
+import com.example.procesa_seniales_kafka.estado.MaquinaEstadosParada;
+import com.example.procesa_seniales_kafka.geo.IndiceParadas;
+import com.example.procesa_seniales_kafka.geo.IndiceParadasGrid;
+import com.example.procesa_seniales_kafka.geo.ParadasAleatorias;
+import com.example.procesa_seniales_kafka.model.EstadoParada;
+import com.example.procesa_seniales_kafka.model.HorarioVehiculo;
+import com.example.procesa_seniales_kafka.model.Parada;
+import com.example.procesa_seniales_kafka.model.UbicacionVehiculo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.LoggerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Camino caliente del procesamiento de una ubicación, por etapas y de punta a punta.
+ *
+ * El servicio se arma sin Spring con {@link ServicioDePrueba}: su {@link KafkaTemplate} confirma cada
+ * envío al instante, de modo que se mide solo el trabajo de CPU del microservicio. Los logs se suben a WARN para que la
+ * salida por consola no domine la medición.
+ *
+ * Ejecución: {@code mvn -P benchmark verify -Dbenchmark.incluir=ProcesamientoSenialesBenchmark}
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProcesamientoSenialesBenchmark {
+
+    private static final int UBICACIONES = 4096;
+
+    @Param({"10", "1000", "100000"})
+    private int cantidadParadas;
+
+    // Flota simulada: define la cardinalidad de claves vehículo-parada del estado de deduplicación
+    @Param({"5000"})
+    private int cantidadVehiculos;
+
+    private ProcesamientoSenialesService servicio;
+    private ExecutorService ejecutorPublicacion;
+
+    private final UbicacionVehiculo[] ubicaciones = new UbicacionVehiculo[UBICACIONES];
+    private final UbicacionVehiculo[] ubicacionesSinParada = new UbicacionVehiculo[UBICACIONES];
+    private final Parada[] paradasCercanas = new Parada[UBICACIONES];
+    private final int[] secuencias = new int[UBICACIONES];
+    private final EstadoParada[] estados = new EstadoParada[UBICACIONES];
+    private final HorarioVehiculo[] horarios = new HorarioVehiculo[UBICACIONES];
+    private final int[] vehiculoDe = new int[UBICACIONES];
+    private IndiceParadas indiceParadas;
+    private int siguiente;
+
+    // De punta a punta cada vehículo alterna entre dos objetos propios: la ubicación anterior puede
+    // seguir retenida en el reorden mientras se ofrece la siguiente
+    private UbicacionVehiculo[][] enCurso;
+    private int[] apariciones;
+    // Instante de la aparición j de cualquier vehículo; se crea la primera vez que alguno llega a ella
+    private final List<LocalDateTime> instantes = new ArrayList<>();
+    private LocalDateTime inicio;
+
+    @Setup(Level.Trial)
+    public void preparar() {
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME))
+                .setLevel(ch.qos.logback.classic.Level.WARN);
+
+        List<Parada> paradas = ParadasAleatorias.generar(cantidadParadas, 7);
+        ejecutorPublicacion = Executors.newFixedThreadPool(2);
+
+        indiceParadas = new IndiceParadasGrid(paradas, ServicioDePrueba.UMBRAL_KM);
+        servicio = ServicioDePrueba.con(new FuenteParadasLista(paradas, "benchmark"), ejecutorPublicacion)
+                .indice(ignoradas -> indiceParadas)
+                .armar();
+        // Misma configuración que la del servicio: solo se usa para clasificar los horarios de las etapas aisladas
+        MaquinaEstadosParada maquinaEstados = ServicioDePrueba.maquinaEstados();
+
+        Random random = new Random(11);
+        inicio = LocalDateTime.of(2026, 2, 24, 8, 0);
+        enCurso = new UbicacionVehiculo[cantidadVehiculos][];
+        apariciones = new int[cantidadVehiculos];
+        for (int i = 0; i < UBICACIONES; i++) {
+            int vehiculo = random.nextInt(cantidadVehiculos);
+            vehiculoDe[i] = vehiculo;
+            ubicaciones[i] = UbicacionVehiculo.builder()
+                    .vehiculoId(String.format("VEH-%05d", vehiculo))
+                    .placaVehiculo(String.format("ABC-%05d", vehiculo))
+                    .latitud(ParadasAleatorias.latitud(random))
+                    .longitud(ParadasAleatorias.longitud(random))
+                    .velocidad(random.nextDouble() * 60)
+                    .direccion("Av. Principal " + i)
+                    .ciudad("Lima")
+                    .estado("EN_RUTA")
+                    .timestamp(inicio.plusSeconds(i))
+                    .conductor("Conductor " + vehiculo)
+                    .pasajeros(random.nextInt(60))
+                    .ruta("Ruta " + (vehiculo % 20))
+                    .build();
+
+            // Misma ubicación desplazada fuera de la ciudad: ninguna parada dentro del umbral
+            ubicacionesSinParada[i] = UbicacionVehiculo.builder()
+                    .vehiculoId(ubicaciones[i].getVehiculoId())
+                    .latitud(ubicaciones[i].getLatitud() + 2)
+                    .longitud(ubicaciones[i].getLongitud())
+                    .velocidad(ubicaciones[i].getVelocidad())
+                    .timestamp(ubicaciones[i].getTimestamp())
+                    .ruta(ubicaciones[i].getRuta())
+                    .build();
+
+            if (enCurso[vehiculo] == null) {
+                enCurso[vehiculo] = new UbicacionVehiculo[]{copia(ubicaciones[i]), copia(ubicaciones[i])};
+            }
+
+            // Para las etapas aisladas se usa siempre una parada, aunque la ubicación no esté cerca
+            Parada parada = paradas.get(random.nextInt(paradas.size()));
+            paradasCercanas[i] = parada;
+            secuencias[i] = Integer.parseInt(parada.getParadaId().substring(1));
+            estados[i] = maquinaEstados.clasificar(random.nextDouble() * ServicioDePrueba.UMBRAL_KM, ubicaciones[i].getVelocidad());
+            horarios[i] = servicio.generarHorario(ubicaciones[i], parada, secuencias[i], estados[i]);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void liberar() {
+        ejecutorPublicacion.shutdown();
+    }
+
+    @Benchmark
+    public int encontrarParadaMasCercana() {
+        return servicio.encontrarParadaMasCercana(indiceParadas, ubicaciones[siguiente++ & (UBICACIONES - 1)]);
+    }
+
+    @Benchmark
+    public HorarioVehiculo generarHorario() {
+        int i = siguiente++ & (UBICACIONES - 1);
+        return servicio.generarHorario(ubicaciones[i], paradasCercanas[i], secuencias[i], estados[i]);
+    }
+
+    @Benchmark
+    public boolean debePublicarHorario() {
+        int i = siguiente++ & (UBICACIONES - 1);
+        return servicio.debePublicarHorario(horarios[i], estados[i]);
+    }
+
+    @Benchmark
+    public CompletableFuture<Void> procesarUbicacion() {
+        return servicio.procesarUbicacion(siguienteEnOrden(ubicaciones));
+    }
+
+    /**
+     * Camino de una ubicación que no está cerca de ninguna parada, sin esperar su confirmación:
+     * no debería asignar memoria.
+     */
+    @Benchmark
+    public void procesarUbicacionSinParada() {
+        servicio.procesarUbicacionSinConfirmar(siguienteEnOrden(ubicacionesSinParada));
+    }
+
+    /**
+     * El mismo camino esperando la confirmación, como el consumer: cada ubicación que queda retenida
+     * en el reorden crea el future de su liberación.
+     */
+    @Benchmark
+    public CompletableFuture<Void> procesarUbicacionSinParadaConfirmada() {
+        return servicio.procesarUbicacion(siguienteEnOrden(ubicacionesSinParada));
+    }
+
+    /**
+     * Siguiente ubicación del ciclo, en el objeto de su vehículo y con un instante posterior al de su
+     * aparición anterior: si los timestamps se repitieran, el reorden por tiempo de evento las descartaría
+     * como ya procesadas. Las apariciones de un vehículo quedan a 10 min: más que la demora del reorden,
+     * así que cada una libera a la anterior, y más que la brecha máxima del seguimiento, porque las
+     * posiciones son aleatorias y el tramo entre dos cruzaría media ciudad. Solo asigna memoria cuando un vehículo llega a una aparición
+     * que ningún otro alcanzó todavía (una vez cada miles de llamadas).
+     */
+    private UbicacionVehiculo siguienteEnOrden(UbicacionVehiculo[] ciclo) {
+        int i = siguiente++ & (UBICACIONES - 1);
+        int vehiculo = vehiculoDe[i];
+        int aparicion = apariciones[vehiculo]++;
+        if (aparicion == instantes.size()) {
+            instantes.add(inicio.plusMinutes(10L * aparicion));
+        }
+        UbicacionVehiculo ubicacion = enCurso[vehiculo][aparicion & 1];
+        ubicacion.setLatitud(ciclo[i].getLatitud());
+        ubicacion.setLongitud(ciclo[i].getLongitud());
+        ubicacion.setVelocidad(ciclo[i].getVelocidad());
+        ubicacion.setTimestamp(instantes.get(aparicion));
+        return ubicacion;
+    }
+
+    private static UbicacionVehiculo copia(UbicacionVehiculo ubicacion) {
+        return UbicacionVehiculo.builder()
+                .vehiculoId(ubicacion.getVehiculoId())
+                .placaVehiculo(ubicacion.getPlacaVehiculo())
+                .direccion(ubicacion.getDireccion())
+                .ciudad(ubicacion.getCiudad())
+                .estado(ubicacion.getEstado())
+                .conductor(ubicacion.getConductor())
+                .pasajeros(ubicacion.getPasajeros())
+                .ruta(ubicacion.getRuta())
+                .build();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ProcesamientoSenialesBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,254 @@
+package com.example.procesa_seniales_kafka.service;
+
+import com.example.procesa_seniales_kafka.catalogo.FuenteParadasLista;
+import com.example.procesa_seniales_kafka.estado.ReordenEventos;
+import com.example.procesa_seniales_kafka.model.EstadoParada;
+import com.example.procesa_seniales_kafka.model.HorarioVehiculo;
+import com.example.procesa_seniales_kafka.model.Parada;
+import com.example.procesa_seniales_kafka.model.UbicacionVehiculo;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class ProcesamientoSenialesServiceTest {
+
+    private static final LocalDateTime INICIO = LocalDateTime.of(2026, 3, 2, 8, 0);
+    private static final Parada PARADA = Parada.builder()
+            .paradaId("P001").nombre("Terminal Norte").latitud(-12.0464).longitud(-77.0428).build();
+    // 600 m al sur de PARADA, sobre el mismo meridiano
+    private static final Parada PARADA_SUR = Parada.builder()
+            .paradaId("P002").nombre("Plaza Mayor").latitud(-12.0464 - 0.6 / 111.2).longitud(-77.0428).build();
+
+    private final ExecutorService ejecutorPublicacion = Executors.newSingleThreadExecutor();
+    // Reorden de producción: hasta 4 retenidas por vehículo y 5 s de demora
+    private final ReordenEventos reordenEventos = new ReordenEventos(4, 5000, 500, 100_000, 30);
+    // "ESTADO@hh:mm:ss" de cada horario enviado, en orden
+    private final List<String> publicados = new CopyOnWriteArrayList<>();
+    // Parada de cada horario enviado, en el mismo orden
+    private final List<String> paradasPublicadas = new CopyOnWriteArrayList<>();
+    private final List<ProducerRecord<String, UbicacionVehiculo>> tardiasEnviadas = new CopyOnWriteArrayList<>();
+
+    @AfterEach
+    void liberar() {
+        ejecutorPublicacion.shutdown();
+        reordenEventos.destroy();
+    }
+
+    @Test
+    void descartaLasTardias() throws Exception {
+        ProcesamientoSenialesService servicio = armarServicio("descartar");
+
+        llegarDesordenado(servicio);
+        servicio.procesarUbicacion(ubicacion(20, 0.02, 3)).get(5, TimeUnit.SECONDS);
+
+        assertEquals(List.of("ESTIMADO@08:00", "LLEGANDO@08:00:38", "LLEGADO@08:00:40"), publicados);
+        assertEquals(1, reordenEventos.getTardias());
+        assertEquals(List.of(), tardiasEnviadas);
+    }
+
+    @Test
+    void reenviaLasTardiasAlTopicoLateral() throws Exception {
+        ProcesamientoSenialesService servicio = armarServicio("topico");
+
+        llegarDesordenado(servicio);
+        servicio.procesarUbicacion(ubicacion(20, 0.02, 3)).get(5, TimeUnit.SECONDS);
+
+        assertEquals(List.of("ESTIMADO@08:00", "LLEGANDO@08:00:38", "LLEGADO@08:00:40"), publicados);
+        assertEquals(1, tardiasEnviadas.size());
+        ProducerRecord<String, UbicacionVehiculo> tardia = tardiasEnviadas.get(0);
+        assertEquals("ubicaciones_tardias", tardia.topic());
+        assertEquals("VEH-001", tardia.key());
+        assertEquals(INICIO.plusSeconds(20), tardia.value().getTimestamp());
+        assertEquals(Long.toString(ReordenEventos.instanteMs(INICIO.plusSeconds(40))), new String(
+                tardia.headers().lastHeader(PublicadorTardias.HEADER_ULTIMA_ENTREGADA).value(), StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    void corrigeLaLlegadaConUnaTardiaEnLaParada() throws Exception {
+        ProcesamientoSenialesService servicio = armarServicio("corregir");
+
+        llegarDesordenado(servicio);
+        servicio.procesarUbicacion(ubicacion(20, 0.02, 3)).get(5, TimeUnit.SECONDS);
+        // Una tardía fuera de la zona de LLEGADO no corrige nada
+        servicio.procesarUbicacion(ubicacion(10, 0.15, 8)).get(5, TimeUnit.SECONDS);
+
+        assertEquals(List.of("ESTIMADO@08:00", "LLEGANDO@08:00:38", "LLEGADO@08:00:40", "LLEGADO@08:00:20"),
+                publicados);
+        assertEquals(List.of(), tardiasEnviadas);
+    }
+
+    @Test
+    void confirmaLaRetenidaRecienCuandoSeLiberaYElBrokerConfirma() throws Exception {
+        CompletableFuture<Void> broker = new CompletableFuture<>();
+        ProcesamientoSenialesService servicio = armarServicio("descartar", horario ->
+                EstadoParada.LLEGADO.name().equals(horario.getEstado()) ? broker : ReordenEventos.COMPLETADO);
+
+        // Queda retenida hasta que la marca de agua la alcance: no publica ni se confirma
+        CompletableFuture<Void> llegada = servicio.procesarUbicacion(ubicacion(0, 0.01, 3));
+        assertEquals(List.of(), publicados);
+        assertFalse(llegada.isDone());
+
+        // La siguiente la libera: se publica, pero su confirmación espera al broker
+        servicio.procesarUbicacion(ubicacion(30, 0.01, 3));
+        assertEquals(List.of("LLEGADO@08:00"), publicados);
+        assertFalse(llegada.isDone());
+
+        broker.complete(null);
+        llegada.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void publicaPasadoCuandoElVehiculoSeAlejaDeLaParada() {
+        ProcesamientoSenialesService servicio = armarServicioConTrayectoria(PARADA);
+
+        servicio.procesarUbicacion(ubicacion(0, 0.01, 3));
+        // Dos ubicaciones seguidas fuera del radio de partida confirman la salida
+        servicio.procesarUbicacion(ubicacion(30, 0.2, 25));
+        servicio.procesarUbicacion(ubicacion(60, 0.3, 30));
+        // Sigue cerca, pero la visita ya terminó: no hay otro PASADO ni vuelve a LLEGADO
+        servicio.procesarUbicacion(ubicacion(90, 0.4, 30));
+        servicio.entregarRetenidas();
+
+        assertEquals(List.of("LLEGADO@08:00", "PASADO@08:01"), publicados);
+        assertEquals(List.of("P001", "P001"), paradasPublicadas);
+    }
+
+    @Test
+    void publicaLaLlegadaInterpoladaEntreDosUbicacionesEspaciadas() {
+        ProcesamientoSenialesService servicio = armarServicioConTrayectoria(PARADA);
+
+        // Ninguna de las dos cae en la zona de LLEGADO: el tramo pasa por la parada a mitad de camino
+        servicio.procesarUbicacion(ubicacion(0, 0.4, 40));
+        servicio.procesarUbicacion(ubicacion(60, -0.4, 40));
+        servicio.entregarRetenidas();
+
+        assertEquals(List.of("ESTIMADO@08:00", "LLEGADO@08:00:30"), publicados);
+    }
+
+    @Test
+    void publicaUnaSolaLlegadaPorParadaCruzadaEnElTramo() {
+        ProcesamientoSenialesService servicio = armarServicioConTrayectoria(PARADA, PARADA_SUR);
+
+        // El tramo cruza P001 a un cuarto y P002 a tres cuartos; la búsqueda sigue desde cada punto de
+        // paso, donde P001 vuelve a quedar a distancia cero
+        servicio.procesarUbicacion(ubicacion(0, 0.3, 40));
+        servicio.procesarUbicacion(ubicacion(60, -0.9, 40));
+        servicio.entregarRetenidas();
+
+        assertEquals(List.of("ESTIMADO@08:00", "LLEGADO@08:00:15", "PASADO@08:00:45", "LLEGADO@08:00:45"),
+                publicados);
+        assertEquals(List.of("P001", "P001", "P001", "P002"), paradasPublicadas);
+    }
+
+    @Test
+    void noRepiteLaLlegadaCuandoLaParadaReapareceDesdeElPuntoDePaso() {
+        ProcesamientoSenialesService servicio = armarServicioConTrayectoria(PARADA);
+
+        // Tramo en diagonal que pasa a 14 m de la parada: desde el punto de paso el redondeo la vuelve a
+        // dejar en el interior del tramo restante
+        servicio.procesarUbicacion(ubicacion(0, -0.8, 0.82, 40));
+        servicio.procesarUbicacion(ubicacion(40, 0.4, -0.38, 40));
+        servicio.entregarRetenidas();
+
+        assertEquals(List.of("LLEGADO@08:00:27"), publicados);
+    }
+
+    /**
+     * ESTIMADO, LLEGADO y, después, un LLEGANDO anterior que el reorden vuelve a poner en su lugar;
+     * la última ubicación deja procesada la llegada de las 08:00:40.
+     */
+    private static void llegarDesordenado(ProcesamientoSenialesService servicio) {
+        servicio.procesarUbicacion(ubicacion(0, 0.35, 30));
+        servicio.procesarUbicacion(ubicacion(40, 0.01, 3));
+        servicio.procesarUbicacion(ubicacion(38, 0.15, 8));
+        servicio.procesarUbicacion(ubicacion(60, 0.01, 3));
+    }
+
+    /**
+     * @param kmAlNorte distancia a la parada
+     */
+    private static UbicacionVehiculo ubicacion(int segundo, double kmAlNorte, double velocidad) {
+        return ubicacion(segundo, kmAlNorte, 0, velocidad);
+    }
+
+    private static UbicacionVehiculo ubicacion(int segundo, double kmAlNorte, double kmAlEste, double velocidad) {
+        return UbicacionVehiculo.builder()
+                .vehiculoId("VEH-001")
+                .latitud(PARADA.getLatitud() + kmAlNorte / 111.2)
+                .longitud(PARADA.getLongitud() + kmAlEste / (111.2 * Math.cos(Math.toRadians(PARADA.getLatitud()))))
+                .velocidad(velocidad)
+                .timestamp(INICIO.plusSeconds(segundo))
+                .ruta("Ruta A - Norte")
+                .build();
+    }
+
+    private ProcesamientoSenialesService armarServicio(String politicaTardios) {
+        return armarServicio(politicaTardios, horario -> ReordenEventos.COMPLETADO);
+    }
+
+    private ProcesamientoSenialesService armarServicio(String politicaTardios,
+                                                      Function<HorarioVehiculo, CompletableFuture<Void>> broker) {
+        PublicadorTardias publicadorTardias = new PublicadorTardias();
+        ReflectionTestUtils.setField(publicadorTardias, "kafkaTemplateUbicaciones", new KafkaTemplateTardias());
+        ReflectionTestUtils.setField(publicadorTardias, "topico", "ubicaciones_tardias");
+
+        return servicio(List.of(PARADA))
+                .broker(broker)
+                .politicaTardios(politicaTardios, publicadorTardias)
+                .trayectoria(false)
+                .armar();
+    }
+
+    /**
+     * Con la detección de llegadas sobre el tramo entre ubicaciones, como en producción. Sin predicciones:
+     * en una punta del recorrido anunciarían la parada que el vehículo acaba de dejar.
+     */
+    private ProcesamientoSenialesService armarServicioConTrayectoria(Parada... paradas) {
+        return servicio(List.of(paradas)).trayectoria(true).predicciones(false).armar();
+    }
+
+    private ServicioDePrueba servicio(List<Parada> paradas) {
+        return ServicioDePrueba.con(new FuenteParadasLista(paradas, "test"), ejecutorPublicacion)
+                .alEnviar((vehiculo, horario) -> {
+                    publicados.add(horario.getEstado() + "@" + horario.getTimestamp().toLocalTime());
+                    paradasPublicadas.add(horario.getParadaId());
+                })
+                .reordenEventos(reordenEventos)
+                .kpis(false)
+                .auditoria(0.0);
+    }
+
+    /**
+     * Template del tópico lateral: anota cada ubicación tardía y la confirma en el momento.
+     */
+    private final class KafkaTemplateTardias extends KafkaTemplate<String, UbicacionVehiculo> {
+
+        private KafkaTemplateTardias() {
+            super(new DefaultKafkaProducerFactory<>(Map.of()));
+        }
+
+        @Override
+        public CompletableFuture<SendResult<String, UbicacionVehiculo>> send(ProducerRecord<String, UbicacionVehiculo> registro) {
+            tardiasEnviadas.add(registro);
+            return CompletableFuture.completedFuture(new SendResult<>(registro, null));
+        }
+    }
+}
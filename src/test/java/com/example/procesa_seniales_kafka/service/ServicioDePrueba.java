@@ -0,0 +1,219 @@
+package com.example.procesa_seniales_kafka.service;
+
+import com.example.procesa_seniales_kafka.auditoria.CategoriaAuditoria;
+import com.example.procesa_seniales_kafka.auditoria.RegistroAuditoria;
+import com.example.procesa_seniales_kafka.catalogo.CatalogoParadas;
+import com.example.procesa_seniales_kafka.catalogo.FuenteParadas;
+import com.example.procesa_seniales_kafka.catalogo.TablaHorarios;
+import com.example.procesa_seniales_kafka.cinematica.PrediccionLlegadas;
+import com.example.procesa_seniales_kafka.cinematica.SeguimientoVehiculos;
+import com.example.procesa_seniales_kafka.consulta.VistaLlegadas;
+import com.example.procesa_seniales_kafka.estadisticas.EstadisticasTiempoReal;
+import com.example.procesa_seniales_kafka.estado.EstadoDedupStore;
+import com.example.procesa_seniales_kafka.estado.MaquinaEstadosParada;
+import com.example.procesa_seniales_kafka.estado.ReordenEventos;
+import com.example.procesa_seniales_kafka.geo.IndiceParadas;
+import com.example.procesa_seniales_kafka.geo.IndiceParadasGrid;
+import com.example.procesa_seniales_kafka.kpis.AgregadorKpis;
+import com.example.procesa_seniales_kafka.metricas.MetricasProcesamiento;
+import com.example.procesa_seniales_kafka.model.HorarioVehiculo;
+import com.example.procesa_seniales_kafka.model.Parada;
+import io.micrometer.prometheusmetrics.PrometheusConfig;
+import io.micrometer.prometheusmetrics.PrometheusMeterRegistry;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Arma {@link ProcesamientoSenialesService} sin Spring, con los valores por defecto de producción y un
+ * {@link KafkaTemplate} que no habla con ningún broker. Lo comparten los tests, los benchmarks y la
+ * carga en proceso para que todos midan y prueben el mismo servicio; cada uno cambia solo lo que necesita.
+ */
+public final class ServicioDePrueba {
+
+    public static final double UMBRAL_KM = 0.5;
+
+    private final FuenteParadas fuenteParadas;
+    private final ExecutorService ejecutorPublicacion;
+    private Function<List<Parada>, IndiceParadas> constructorIndice = paradas -> new IndiceParadasGrid(paradas, UMBRAL_KM);
+    private TablaHorarios tablaHorarios = TablaHorarios.vacia();
+    private BiConsumer<String, HorarioVehiculo> alEnviar = (clave, horario) -> { };
+    private Function<HorarioVehiculo, CompletableFuture<Void>> broker;
+    private CarrilesVehiculo carriles;
+    private ReordenEventos reordenEventos;
+    private PublicadorTardias publicadorTardias;
+    private String politicaTardios = "descartar";
+    private boolean trayectoriaHabilitada = true;
+    private boolean prediccionesHabilitadas = true;
+    private boolean kpisHabilitados = true;
+    private double tasaAuditoria = 1.0;
+
+    private ServicioDePrueba(FuenteParadas fuenteParadas, ExecutorService ejecutorPublicacion) {
+        this.fuenteParadas = fuenteParadas;
+        this.ejecutorPublicacion = ejecutorPublicacion;
+    }
+
+    /**
+     * @param ejecutorPublicacion completa las confirmaciones del productor; lo cierra quien lo creó
+     */
+    public static ServicioDePrueba con(FuenteParadas fuenteParadas, ExecutorService ejecutorPublicacion) {
+        return new ServicioDePrueba(fuenteParadas, ejecutorPublicacion);
+    }
+
+    public ServicioDePrueba indice(Function<List<Parada>, IndiceParadas> constructorIndice) {
+        this.constructorIndice = constructorIndice;
+        return this;
+    }
+
+    public ServicioDePrueba tablaHorarios(TablaHorarios tablaHorarios) {
+        this.tablaHorarios = tablaHorarios;
+        return this;
+    }
+
+    /**
+     * @param alEnviar recibe la clave y el horario de cada envío, en el orden en que llegan al productor
+     */
+    public ServicioDePrueba alEnviar(BiConsumer<String, HorarioVehiculo> alEnviar) {
+        this.alEnviar = alEnviar;
+        return this;
+    }
+
+    /**
+     * @param broker confirmación de cada horario enviado; por defecto se confirman en el momento
+     */
+    public ServicioDePrueba broker(Function<HorarioVehiculo, CompletableFuture<Void>> broker) {
+        this.broker = broker;
+        return this;
+    }
+
+    /**
+     * Por defecto, sin carriles. Quien los pasa los cierra.
+     */
+    public ServicioDePrueba carriles(CarrilesVehiculo carriles) {
+        this.carriles = carriles;
+        return this;
+    }
+
+    /**
+     * Por defecto, el reorden de producción ({@code capacidad=4}); quien lo pasa lo cierra.
+     */
+    public ServicioDePrueba reordenEventos(ReordenEventos reordenEventos) {
+        this.reordenEventos = reordenEventos;
+        return this;
+    }
+
+    public ServicioDePrueba politicaTardios(String politicaTardios, PublicadorTardias publicadorTardias) {
+        this.politicaTardios = politicaTardios;
+        this.publicadorTardias = publicadorTardias;
+        return this;
+    }
+
+    public ServicioDePrueba trayectoria(boolean habilitada) {
+        this.trayectoriaHabilitada = habilitada;
+        return this;
+    }
+
+    /**
+     * Sin predicciones no se publican los ESTIMADO de las próximas paradas del recorrido.
+     */
+    public ServicioDePrueba predicciones(boolean habilitadas) {
+        this.prediccionesHabilitadas = habilitadas;
+        return this;
+    }
+
+    public ServicioDePrueba kpis(boolean habilitados) {
+        this.kpisHabilitados = habilitados;
+        return this;
+    }
+
+    /**
+     * @param tasa muestreo de todas las categorías de auditoría; 0 = sin logs por mensaje
+     */
+    public ServicioDePrueba auditoria(double tasa) {
+        this.tasaAuditoria = tasa;
+        return this;
+    }
+
+    public ProcesamientoSenialesService armar() {
+        // Mismo registro que en producción, para que el costo de las métricas quede dentro de la medición
+        MetricasProcesamiento metricas = new MetricasProcesamiento(
+                new PrometheusMeterRegistry(PrometheusConfig.DEFAULT), false, 16);
+
+        PublicadorHorarios publicador = new PublicadorHorarios(10_000);
+        ReflectionTestUtils.setField(publicador, "metricas", metricas);
+        ReflectionTestUtils.setField(publicador, "kafkaTemplate", new KafkaTemplatePrueba(alEnviar, broker));
+        ReflectionTestUtils.setField(publicador, "ejecutorPublicacion", ejecutorPublicacion);
+
+        ProcesamientoSenialesService servicio = new ProcesamientoSenialesService();
+        ReflectionTestUtils.setField(servicio, "publicadorHorarios", publicador);
+        ReflectionTestUtils.setField(servicio, "catalogoParadas", new CatalogoParadas(fuenteParadas, constructorIndice));
+        ReflectionTestUtils.setField(servicio, "tablaHorarios", tablaHorarios);
+        ReflectionTestUtils.setField(servicio, "seguimiento", new SeguimientoVehiculos(50_000, 8, 30, 300, 64));
+        ReflectionTestUtils.setField(servicio, "prediccion", new PrediccionLlegadas(tablaHorarios, prediccionesHabilitadas ? 3 : 0, 3, 60));
+        ReflectionTestUtils.setField(servicio, "distanciaUmbralKm", UMBRAL_KM);
+        ReflectionTestUtils.setField(servicio, "tiempoLlegandoMinutos", 5);
+        ReflectionTestUtils.setField(servicio, "trayectoriaHabilitada", trayectoriaHabilitada);
+        ReflectionTestUtils.setField(servicio, "estadoVehiculos", new EstadoDedupStore(200_000, 30, 64, 60));
+        ReflectionTestUtils.setField(servicio, "maquinaEstados", maquinaEstados());
+        ReflectionTestUtils.setField(servicio, "carriles", carriles != null ? carriles : new CarrilesVehiculo(0, false));
+        ReflectionTestUtils.setField(servicio, "metricas", metricas);
+        ReflectionTestUtils.setField(servicio, "estadisticas", new EstadisticasTiempoReal(64));
+        ReflectionTestUtils.setField(servicio, "reordenEventos",
+                reordenEventos != null ? reordenEventos : new ReordenEventos(4, 5000, 500, 100_000, 30));
+        ReflectionTestUtils.setField(servicio, "publicadorTardias", publicadorTardias);
+        ReflectionTestUtils.setField(servicio, "politicaTardios", politicaTardios);
+        ReflectionTestUtils.setField(servicio, "agregadorKpis",
+                new AgregadorKpis(300_000, 900_000, 60_000, 10_000, 7_200_000, "prueba", resumen -> { }));
+        ReflectionTestUtils.setField(servicio, "kpisHabilitados", kpisHabilitados);
+        ReflectionTestUtils.setField(servicio, "vistaLlegadas",
+                new VistaLlegadas(20, 100_000, 900_000, System::currentTimeMillis));
+        double[] tasas = new double[CategoriaAuditoria.values().length];
+        Arrays.fill(tasas, tasaAuditoria);
+        ReflectionTestUtils.setField(servicio, "auditoria",
+                new RegistroAuditoria("sincrono", 1, Path.of("target", "bd-pendiente-prueba.csv"), tasas));
+        return servicio;
+    }
+
+    /**
+     * Máquina de estados con los umbrales por defecto de producción.
+     */
+    public static MaquinaEstadosParada maquinaEstados() {
+        return new MaquinaEstadosParada(UMBRAL_KM, 0.05, 0.2, 10, 0.05, 2, 200_000, 30, 64);
+    }
+
+    /**
+     * Template que no habla con ningún broker: avisa cada envío y lo confirma en el momento o cuando
+     * lo diga {@code broker}.
+     */
+    private static final class KafkaTemplatePrueba extends KafkaTemplate<String, HorarioVehiculo> {
+
+        private final BiConsumer<String, HorarioVehiculo> alEnviar;
+        private final Function<HorarioVehiculo, CompletableFuture<Void>> broker;
+
+        private KafkaTemplatePrueba(BiConsumer<String, HorarioVehiculo> alEnviar,
+                                    Function<HorarioVehiculo, CompletableFuture<Void>> broker) {
+            super(new DefaultKafkaProducerFactory<>(Map.of()));
+            this.alEnviar = alEnviar;
+            this.broker = broker;
+        }
+
+        @Override
+        public CompletableFuture<SendResult<String, HorarioVehiculo>> send(String topic, String key, HorarioVehiculo data) {
+            alEnviar.accept(key, data);
+            SendResult<String, HorarioVehiculo> resultado = new SendResult<>(new ProducerRecord<>(topic, key, data), null);
+            return broker == null ? CompletableFuture.completedFuture(resultado)
+                    : broker.apply(data).thenApply(confirmado -> resultado);
+        }
+    }
+}